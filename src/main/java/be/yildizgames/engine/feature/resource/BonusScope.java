@@ -0,0 +1,271 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import be.yildizgames.engine.feature.resource.bonus.BonusStacking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bonus shared by all the producers attached to it, like a world event, a region or a player bonus.
+ * Adding or removing a bonus only creates a new segment in the scope, its cost does not depend on the number of attached producers,
+ * they are not notified: they add the scope ratio and limit to their own when they compute their resources.
+ * Every change starts a new segment, so a producer computing its resources over a period containing changes
+ * uses every segment for the time it was active, and only updates the resources changed by each segment.
+ * The snapshots published by a producer resolve the following segments when projecting a value, the projections built
+ * from their ratio and limit only, like the aggregates, the leaderboard and the threshold index, are not updated on a scope change,
+ * the scope version can be used to detect it.
+ * Unlike the producer limit bonus, a scope limit bonus is removed with the bonus.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class BonusScope {
+
+    /**
+     * Scope name, for example world, region or player.
+     */
+    private final String name;
+
+    /**
+     * Number of resources.
+     */
+    private final int width;
+
+    /**
+     * Bonus currently applied, mapped to themselves to retrieve a replaced bonus.
+     */
+    private final Map<BonusResources, BonusResources> bonus = new HashMap<>();
+
+    /**
+     * Last segment, its values are the current ones.
+     */
+    private volatile Segment current;
+
+    /**
+     * Create a new scope without bonus.
+     *
+     * @param name  Scope name.
+     * @param width Number of resources.
+     */
+    public BonusScope(final String name, final int width) {
+        super();
+        assert name != null;
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive: " + width);
+        }
+        this.name = name;
+        this.width = width;
+        this.current = new Segment(Long.MIN_VALUE, 0, new DenseResourceVector(new float[width]), new DenseResourceVector(new float[width]), new int[0]);
+    }
+
+    /**
+     * Add a bonus, if an equal bonus already exists, it will be replaced by this one.
+     *
+     * @param bonusToAdd Bonus to add.
+     * @param time       Time from which the bonus is applied, it cannot be before the previous change.
+     * @throws IllegalArgumentException If the time is before the previous change, or if the bonus is not flat.
+     */
+    public synchronized void addBonus(final BonusResources bonusToAdd, final long time) {
+        assert bonusToAdd != null;
+        if (bonusToAdd.getStacking() != BonusStacking.FLAT) {
+            throw new IllegalArgumentException("Only flat bonus can be shared in a scope: " + bonusToAdd.getStacking());
+        }
+        this.checkTime(time);
+        BonusResources previous = this.bonus.remove(bonusToAdd);
+        this.bonus.put(bonusToAdd, bonusToAdd);
+        this.change(time, previous, bonusToAdd);
+    }
+
+    /**
+     * Remove a bonus, its ratio and limit are no longer applied.
+     *
+     * @param bonusToRemove Bonus to remove.
+     * @param time          Time from which the bonus is no longer applied, it cannot be before the previous change.
+     * @throws IllegalArgumentException If the time is before the previous change.
+     */
+    public synchronized void removeBonus(final BonusResources bonusToRemove, final long time) {
+        assert bonusToRemove != null;
+        this.checkTime(time);
+        BonusResources previous = this.bonus.remove(bonusToRemove);
+        if (previous != null) {
+            this.change(time, previous, null);
+        }
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The current ratio of the scope.
+     */
+    public float getRatio(final int position) {
+        return this.current.ratio.get(position);
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The current limit of the scope.
+     */
+    public float getLimit(final int position) {
+        return this.current.limit.get(position);
+    }
+
+    /**
+     * @return The number of changes of this scope, it is increased by every bonus addition or removal.
+     */
+    public long getVersion() {
+        return this.current.version;
+    }
+
+    /**
+     * @return The number of resources.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * @return The last segment.
+     */
+    Segment current() {
+        return this.current;
+    }
+
+    private void checkTime(final long time) {
+        if (time < this.current.start) {
+            throw new IllegalArgumentException("Change at " + time + " before the previous one at " + this.current.start);
+        }
+    }
+
+    /**
+     * Start a new segment, only the resources used by the removed and added bonus are changed.
+     *
+     * @param time    Time of the change.
+     * @param removed Bonus no longer applied, null if none.
+     * @param added   Bonus applied from now on, null if none.
+     */
+    private void change(final long time, final BonusResources removed, final BonusResources added) {
+        ResourceVector ratio = this.current.ratio.copy();
+        ResourceVector limit = this.current.limit.copy();
+        int[] changed = new int[indexCount(removed) + indexCount(added)];
+        int count = 0;
+        if (removed != null) {
+            count = apply(removed, -1, ratio, limit, changed, count);
+        }
+        if (added != null) {
+            count = apply(added, 1, ratio, limit, changed, count);
+        }
+        int[] indexes = Arrays.stream(changed, 0, count).sorted().distinct().toArray();
+        Segment segment = new Segment(time, this.current.version + 1, ratio, limit, indexes);
+        this.current.next = segment;
+        this.current = segment;
+    }
+
+    /**
+     * @param b Bonus, can be null.
+     * @return The number of ratio and limit indexes used by the bonus, 0 if it is null.
+     */
+    private static int indexCount(final BonusResources b) {
+        return b == null ? 0 : b.getRatioIndexCount() + b.getLimitIndexCount();
+    }
+
+    /**
+     * Add or subtract the values of a bonus.
+     *
+     * @param b       Bonus to apply.
+     * @param sign    1 to add the values, -1 to subtract them.
+     * @param ratio   Ratio to update.
+     * @param limit   Limit to update.
+     * @param changed Receive the updated indexes.
+     * @param count   Number of indexes already in changed.
+     * @return The new number of indexes in changed.
+     */
+    private static int apply(final BonusResources b, final int sign, final ResourceVector ratio, final ResourceVector limit, final int[] changed,
+                             final int count) {
+        int result = count;
+        for (int n = 0; n < b.getRatioIndexCount(); n++) {
+            int i = b.getRatioIndex(n);
+            ratio.set(i, ratio.get(i) + sign * b.getRatio(i));
+            changed[result++] = i;
+        }
+        for (int n = 0; n < b.getLimitIndexCount(); n++) {
+            int i = b.getLimitIndex(n);
+            limit.set(i, limit.get(i) + sign * b.getLimit(i));
+            changed[result++] = i;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Bonus scope:" + this.name;
+    }
+
+    /**
+     * Values of the scope from a time until the next change, never modified once created.
+     */
+    static final class Segment {
+
+        /**
+         * Time from which the values are applied.
+         */
+        final long start;
+
+        /**
+         * Number of changes of the scope before this segment.
+         */
+        final long version;
+
+        /**
+         * Ratio of the scope, never modified.
+         */
+        final ResourceVector ratio;
+
+        /**
+         * Limit of the scope, never modified.
+         */
+        final ResourceVector limit;
+
+        /**
+         * Sorted indexes of the resources whose ratio or limit differ from the previous segment, never modified.
+         */
+        final int[] changed;
+
+        /**
+         * Following segment, null until the next change.
+         */
+        volatile Segment next;
+
+        private Segment(final long start, final long version, final ResourceVector ratio, final ResourceVector limit, final int[] changed) {
+            super();
+            this.start = start;
+            this.version = version;
+            this.ratio = ratio;
+            this.limit = limit;
+            this.changed = changed;
+        }
+    }
+}
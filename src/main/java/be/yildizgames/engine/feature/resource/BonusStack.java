@@ -0,0 +1,216 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import be.yildizgames.engine.feature.resource.bonus.BonusStacking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Combine the ratio or the limit values of a set of bonus into a vector, following their stacking rules.
+ * As long as all bonus are flat, the vector is the sum of their values.
+ * Once a bonus using another rule is added, one coefficient vector per rule is kept, and the values are computed from them.
+ * Only the resources used by an added or removed bonus are computed again, the flat and percent coefficients are updated with the changed bonus values,
+ * only the cap is computed again from all the bonus.
+ *
+ * @author Grégory Van den Borre
+ */
+final class BonusStack {
+
+    /**
+     * Combined values.
+     */
+    private final ResourceVector values;
+
+    /**
+     * <code>true</code> to combine the ratio values of the bonus, <code>false</code> for the limit values.
+     */
+    private final boolean ratio;
+
+    /**
+     * Applied bonus, mapped to themselves to retrieve a replaced bonus.
+     */
+    private final Map<BonusResources, BonusResources> bonus = new HashMap<>();
+
+    /**
+     * Sum of the flat values, null while all bonus are flat.
+     */
+    private ResourceVector flat;
+
+    /**
+     * Sum of the additive percents, null while all bonus are flat.
+     */
+    private ResourceVector percentAdditive;
+
+    /**
+     * Product of the multiplicative percents minus 1, null while all bonus are flat.
+     */
+    private ResourceVector percentMultiplicative;
+
+    /**
+     * Smallest cap, 0 when there is none, null while all bonus are flat.
+     */
+    private ResourceVector cap;
+
+    /**
+     * Create a new stack.
+     *
+     * @param values Vector to contain the combined values, it must be empty.
+     * @param ratio  <code>true</code> to combine the ratio values of the bonus, <code>false</code> for the limit values.
+     */
+    BonusStack(final ResourceVector values, final boolean ratio) {
+        super();
+        this.values = values;
+        this.ratio = ratio;
+    }
+
+    /**
+     * Add a bonus, if an equal bonus already exists, it is replaced by this one.
+     *
+     * @param toAdd Bonus to add.
+     */
+    void add(final BonusResources toAdd) {
+        BonusResources previous = this.bonus.remove(toAdd);
+        this.bonus.put(toAdd, toAdd);
+        if (this.flat == null && toAdd.getStacking() != BonusStacking.FLAT) {
+            this.compile();
+        }
+        if (previous != null) {
+            this.update(previous, false);
+        }
+        this.update(toAdd, true);
+    }
+
+    /**
+     * Remove a bonus.
+     *
+     * @param toRemove Bonus to remove.
+     */
+    void remove(final BonusResources toRemove) {
+        BonusResources previous = this.bonus.remove(toRemove);
+        if (previous != null) {
+            this.update(previous, false);
+        }
+    }
+
+    /**
+     * Create the coefficient vectors from the current bonus.
+     */
+    private void compile() {
+        ResourceLayout layout = this.values.layout();
+        int width = this.values.width();
+        this.flat = layout.newVector(width);
+        this.percentAdditive = layout.newVector(width);
+        this.percentMultiplicative = layout.newVector(width);
+        this.cap = layout.newVector(width);
+        for (int e = 0; e < this.values.entryCount(); e++) {
+            this.flat.set(this.values.entryIndex(e), this.values.entryValue(e));
+        }
+    }
+
+    /**
+     * Compute again the resources used by a bonus.
+     *
+     * @param changed Added or removed bonus.
+     * @param added   <code>true</code> if the bonus was added, <code>false</code> if it was removed.
+     */
+    private void update(final BonusResources changed, final boolean added) {
+        int count = this.ratio ? changed.getRatioIndexCount() : changed.getLimitIndexCount();
+        for (int n = 0; n < count; n++) {
+            int i = this.ratio ? changed.getRatioIndex(n) : changed.getLimitIndex(n);
+            float v = this.ratio ? changed.getRatio(i) : changed.getLimit(i);
+            if (this.flat == null) {
+                this.values.set(i, added ? this.values.get(i) + v : this.values.get(i) - v);
+            } else {
+                ResourceVector coefficient = this.coefficient(changed.getStacking());
+                switch (changed.getStacking()) {
+                    case PERCENT_MULTIPLICATIVE:
+                        if (added) {
+                            coefficient.set(i, (coefficient.get(i) + 1) * (1 + v) - 1);
+                        } else if (v == -1) {
+                            //The product is 0 and cannot be divided, compute it again from the remaining bonus.
+                            coefficient.set(i, this.combine(BonusStacking.PERCENT_MULTIPLICATIVE, i, 1) - 1);
+                        } else {
+                            coefficient.set(i, (coefficient.get(i) + 1) / (1 + v) - 1);
+                        }
+                        break;
+                    case CAP:
+                        coefficient.set(i, this.combine(BonusStacking.CAP, i, 0));
+                        break;
+                    default:
+                        coefficient.set(i, added ? coefficient.get(i) + v : coefficient.get(i) - v);
+                }
+                float value = this.flat.get(i) * (1 + this.percentAdditive.get(i)) * (1 + this.percentMultiplicative.get(i));
+                float max = this.cap.get(i);
+                this.values.set(i, max != 0 && value > max ? max : value);
+            }
+        }
+    }
+
+    /**
+     * Combine the values of the bonus using a rule for a resource, used when a coefficient cannot be updated from the changed bonus only.
+     *
+     * @param stacking Rule of the bonus to combine.
+     * @param i        Resource index.
+     * @param initial  Value without bonus.
+     * @return The combined value.
+     */
+    private float combine(final BonusStacking stacking, final int i, final float initial) {
+        float result = initial;
+        for (BonusResources b : this.bonus.keySet()) {
+            if (b.getStacking() == stacking) {
+                float v = this.ratio ? b.getRatio(i) : b.getLimit(i);
+                if (v != 0) {
+                    switch (stacking) {
+                        case PERCENT_MULTIPLICATIVE:
+                            result *= 1 + v;
+                            break;
+                        case CAP:
+                            result = result == 0 ? v : Math.min(result, v);
+                            break;
+                        default:
+                            result += v;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private ResourceVector coefficient(final BonusStacking stacking) {
+        switch (stacking) {
+            case PERCENT_ADDITIVE:
+                return this.percentAdditive;
+            case PERCENT_MULTIPLICATIVE:
+                return this.percentMultiplicative;
+            case CAP:
+                return this.cap;
+            default:
+                return this.flat;
+        }
+    }
+}
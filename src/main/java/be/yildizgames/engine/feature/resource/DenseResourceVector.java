@@ -0,0 +1,105 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import java.util.Arrays;
+
+/**
+ * Vector storing every resource value in an array of the full catalog width.
+ *
+ * @author Grégory Van den Borre
+ */
+final class DenseResourceVector extends ResourceVector {
+
+    /**
+     * Values, one per resource.
+     */
+    final float[] values;
+
+    /**
+     * Create a new vector using the array, no copy is made.
+     *
+     * @param values Values to use.
+     */
+    DenseResourceVector(final float[] values) {
+        super();
+        this.values = values;
+    }
+
+    @Override
+    ResourceLayout layout() {
+        return ResourceLayout.DENSE;
+    }
+
+    @Override
+    int width() {
+        return this.values.length;
+    }
+
+    @Override
+    float get(final int index) {
+        return this.values[index];
+    }
+
+    @Override
+    void set(final int index, final float value) {
+        this.values[index] = value;
+    }
+
+    @Override
+    boolean contains(final int index) {
+        return true;
+    }
+
+    @Override
+    int entryCount() {
+        return this.values.length;
+    }
+
+    @Override
+    int entryIndex(final int entry) {
+        return entry;
+    }
+
+    @Override
+    float entryValue(final int entry) {
+        return this.values[entry];
+    }
+
+    @Override
+    void setEntryValue(final int entry, final float value) {
+        this.values[entry] = value;
+    }
+
+    @Override
+    void clear() {
+        Arrays.fill(this.values, 0);
+    }
+
+    @Override
+    DenseResourceVector copy() {
+        return new DenseResourceVector(this.values.clone());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read the published state of the producers from the file of an {@link OffHeapResourceStore}, possibly from another process.
+ * Reads never block the producers, a read made while a snapshot is written is retried.
+ * Cities created after opening are visible after a refresh. This class is not thread safe.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class OffHeapResourceReader {
+
+    /**
+     * Mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of resources of every city.
+     */
+    private final int width;
+
+    /**
+     * Size of a slot.
+     */
+    private final int slotSize;
+
+    /**
+     * Slot position for every known city.
+     */
+    private final Map<EntityId, Integer> slots = new HashMap<>();
+
+    /**
+     * Cities in creation order.
+     */
+    private final List<EntityId> cities = new ArrayList<>();
+
+    private OffHeapResourceReader(final ByteBuffer buffer) {
+        super();
+        this.buffer = buffer;
+        if (buffer.capacity() < OffHeapResourceStore.HEADER || buffer.getInt(0) != OffHeapResourceStore.MAGIC) {
+            throw new IllegalArgumentException("Not an off heap resource store");
+        }
+        int version = buffer.getInt(4);
+        if (version != OffHeapResourceStore.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported store format version: " + version);
+        }
+        this.width = buffer.getInt(8);
+        this.slotSize = OffHeapResourceStore.slotSize(this.width);
+        this.refresh();
+    }
+
+    /**
+     * Map the file of a store.
+     *
+     * @param file Store file.
+     * @return The reader.
+     * @throws UncheckedIOException     If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a store file.
+     */
+    public static OffHeapResourceReader open(final Path file) {
+        assert file != null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new OffHeapResourceReader(mapped.order(ByteOrder.nativeOrder()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Index the cities created since the last refresh.
+     */
+    public void refresh() {
+        int count = (int) OffHeapResourceStore.INT.getAcquire(this.buffer, OffHeapResourceStore.COUNT);
+        for (int i = this.cities.size(); i < count; i++) {
+            int slot = OffHeapResourceStore.HEADER + i * this.slotSize;
+            EntityId city = EntityId.valueOf(this.buffer.getLong(slot + OffHeapResourceStore.CITY));
+            this.slots.put(city, slot);
+            this.cities.add(city);
+        }
+    }
+
+    /**
+     * @return The known cities, in creation order.
+     */
+    public List<EntityId> getCities() {
+        return new ArrayList<>(this.cities);
+    }
+
+    /**
+     * @return The number of resources of every city.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Read the last published state of a city, the bonus indexes are not stored and are always empty.
+     *
+     * @param city City id.
+     * @return The state of the city, null if it is not known.
+     * @throws IllegalStateException If the writer died while writing the city slot.
+     */
+    public ResourceSnapshot read(final EntityId city) {
+        Integer slot = this.slots.get(city);
+        if (slot == null) {
+            return null;
+        }
+        return OffHeapResourceStore.read(this.buffer, slot, this.width, city, new int[0], new BonusScope.Segment[0]);
+    }
+}
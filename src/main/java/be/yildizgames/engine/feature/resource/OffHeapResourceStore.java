@@ -0,0 +1,331 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep the state of the producers outside of the heap, in a memory mapped file.
+ * Every city has a fixed size slot containing the live values, ratios, limits and reserved amounts used by its producer,
+ * and a copy of the last published state protected by a sequence lock.
+ * The published part can be read by another process mapping the same file with an {@link OffHeapResourceReader},
+ * without any serialization and without locking the producers.
+ * The producers do not keep a heap snapshot, publishing only copies the state in the slot, and getSnapshot reads it back from the slot.
+ * The file is mapped in a single buffer, so it is limited to 2GB: with 8 resources a slot takes 256 bytes and a store holds about 8 million cities,
+ * a bigger world must be split in several stores.
+ * A slot left in the middle of a write, by a writer process that died, is reported as torn once its sequence did not change for one second.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class OffHeapResourceStore {
+
+    /**
+     * Magic number at the beginning of the file.
+     */
+    static final int MAGIC = 0x524f4831;
+
+    /**
+     * Version of the format.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    /**
+     * File header size: magic, format version, width, capacity and slot count.
+     */
+    static final int HEADER = 32;
+
+    /**
+     * Position of the slot count in the header.
+     */
+    static final int COUNT = 16;
+
+    /**
+     * Slot header size: sequence, initialization flag, city, last update and version.
+     */
+    static final int SLOT_HEADER = 32;
+
+    /**
+     * Position of the initialization flag in a slot.
+     */
+    static final int INITIALIZED = 4;
+
+    /**
+     * Position of the city id in a slot.
+     */
+    static final int CITY = 8;
+
+    /**
+     * Position of the last update time in a slot.
+     */
+    static final int LAST_UPDATE = 16;
+
+    /**
+     * Position of the snapshot version in a slot.
+     */
+    static final int VERSION = 24;
+
+    /**
+     * Time a reader waits for a write in progress, in nanoseconds.
+     */
+    static final long READ_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Atomic access to the sequences and the slot count, in the native order.
+     */
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of resources of every city.
+     */
+    private final int width;
+
+    /**
+     * Maximum number of cities.
+     */
+    private final int capacity;
+
+    /**
+     * Size of a slot.
+     */
+    private final int slotSize;
+
+    /**
+     * Number of used slots.
+     */
+    private int count;
+
+    /**
+     * Create a new store, the file is created or replaced.
+     *
+     * @param file     File to map.
+     * @param width    Number of resources of every city.
+     * @param capacity Maximum number of cities.
+     * @throws UncheckedIOException     If the file cannot be created.
+     * @throws IllegalArgumentException If the width or capacity is not positive, or the file would be bigger than 2GB.
+     */
+    public OffHeapResourceStore(final Path file, final int width, final int capacity) {
+        super();
+        assert file != null;
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive: " + width);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.width = width;
+        this.capacity = capacity;
+        this.slotSize = slotSize(width);
+        long size = HEADER + (long) this.slotSize * capacity;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Store too big: " + size + " bytes");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.order(ByteOrder.nativeOrder());
+            this.buffer = mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer.putInt(0, MAGIC);
+        this.buffer.putInt(4, FORMAT_VERSION);
+        this.buffer.putInt(8, width);
+        this.buffer.putInt(12, capacity);
+        INT.setRelease(this.buffer, COUNT, 0);
+    }
+
+    /**
+     * Size of a slot, aligned on 8 bytes.
+     *
+     * @param width Number of resources.
+     * @return The slot size.
+     */
+    static int slotSize(final int width) {
+        int size = SLOT_HEADER + 7 * width * Float.BYTES;
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * Create a producer stored in this file.
+     *
+     * @param city      Associated city.
+     * @param time      Time when the resources were updated for the last time.
+     * @param resources Last computed values, copied in the store.
+     * @return The created producer.
+     * @throws IllegalStateException    If the store is full.
+     * @throws IllegalArgumentException If the values width does not match the store.
+     */
+    public synchronized ResourcesProducer create(final EntityId city, final long time, final ResourceValue resources) {
+        assert city != null;
+        assert resources != null;
+        if (this.count == this.capacity) {
+            throw new IllegalStateException("Store full: " + this.capacity);
+        }
+        if (resources.size() != this.width) {
+            throw new IllegalArgumentException("Expected " + this.width + " resources, got " + resources.size());
+        }
+        int slot = HEADER + this.count * this.slotSize;
+        this.buffer.putLong(slot + CITY, city.value);
+        int live = slot + SLOT_HEADER + 3 * this.width * Float.BYTES;
+        ResourceVector values = new OffHeapResourceVector(this.buffer, live, this.width);
+        for (int i = 0; i < this.width; i++) {
+            values.set(i, resources.getValue(i));
+        }
+        ResourceVector ratio = new OffHeapResourceVector(this.buffer, live + this.width * Float.BYTES, this.width);
+        ResourceVector limit = new OffHeapResourceVector(this.buffer, live + 2 * this.width * Float.BYTES, this.width);
+        ResourceVector held = new OffHeapResourceVector(this.buffer, live + 3 * this.width * Float.BYTES, this.width);
+        ratio.clear();
+        limit.clear();
+        held.clear();
+        ResourcesProducer producer = new ResourcesProducer(city, time, new ResourceValue(values), new ResourceRatio(ratio),
+                new ResourceLimit(limit), new ResourceValue(held), new Slot(city, slot));
+        this.count++;
+        INT.setRelease(this.buffer, COUNT, this.count);
+        return producer;
+    }
+
+    /**
+     * @return The number of cities in the store.
+     */
+    public synchronized int size() {
+        return this.count;
+    }
+
+    /**
+     * @return The maximum number of cities.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Read the published part of a slot, a read made while it is written is retried until the write completes.
+     *
+     * @param buffer       Mapped file.
+     * @param slot         Slot position.
+     * @param width        Number of resources.
+     * @param city         City of the slot.
+     * @param bonusIndexes Bonus indexes to put in the snapshot, they are not stored in the slot.
+     * @param segments     Scope segments to put in the snapshot, they are not stored in the slot.
+     * @return The published state.
+     * @throws IllegalStateException If the slot stayed in the middle of the same write for longer than the read timeout.
+     */
+    static ResourceSnapshot read(final ByteBuffer buffer, final int slot, final int width, final EntityId city, final int[] bonusIndexes,
+                                 final BonusScope.Segment[] segments) {
+        float[] values = new float[width];
+        float[] ratio = new float[width];
+        float[] limit = new float[width];
+        int waited = 0;
+        long deadline = 0;
+        while (true) {
+            int sequence = (int) INT.getAcquire(buffer, slot);
+            if ((sequence & 1) != 0) {
+                if (sequence != waited) {
+                    waited = sequence;
+                    deadline = System.nanoTime() + READ_TIMEOUT;
+                } else if (System.nanoTime() - deadline > 0) {
+                    throw new IllegalStateException("Torn slot for " + city + ", write " + sequence + " never completed.");
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            boolean initialized = buffer.getInt(slot + INITIALIZED) != 0;
+            long lastUpdate = buffer.getLong(slot + LAST_UPDATE);
+            long version = buffer.getLong(slot + VERSION);
+            int position = slot + SLOT_HEADER;
+            for (int i = 0; i < width; i++) {
+                values[i] = buffer.getFloat(position);
+                ratio[i] = buffer.getFloat(position + width * Float.BYTES);
+                limit[i] = buffer.getFloat(position + 2 * width * Float.BYTES);
+                position += Float.BYTES;
+            }
+            VarHandle.loadLoadFence();
+            if ((int) INT.getVolatile(buffer, slot) == sequence) {
+                return new ResourceSnapshot(city, new DenseResourceVector(values), new DenseResourceVector(ratio), new DenseResourceVector(limit),
+                        bonusIndexes, segments, lastUpdate, initialized, version);
+            }
+        }
+    }
+
+    /**
+     * Published part of a city slot, readers see either the previous or the new state.
+     */
+    private final class Slot implements ResourceSnapshotSlot {
+
+        private final EntityId city;
+
+        private final int position;
+
+        private Slot(final EntityId city, final int position) {
+            super();
+            this.city = city;
+            this.position = position;
+        }
+
+        @Override
+        public void write(final ResourceVector values, final ResourceVector ratio, final ResourceVector limit, final long lastUpdate,
+                          final boolean initialized, final long version) {
+            ByteBuffer b = OffHeapResourceStore.this.buffer;
+            int w = OffHeapResourceStore.this.width;
+            int sequence = (int) INT.getVolatile(b, this.position);
+            INT.setVolatile(b, this.position, sequence + 1);
+            VarHandle.storeStoreFence();
+            b.putInt(this.position + INITIALIZED, initialized ? 1 : 0);
+            b.putLong(this.position + LAST_UPDATE, lastUpdate);
+            b.putLong(this.position + VERSION, version);
+            int p = this.position + SLOT_HEADER;
+            for (int i = 0; i < w; i++) {
+                b.putFloat(p, values.get(i));
+                b.putFloat(p + w * Float.BYTES, ratio.get(i));
+                b.putFloat(p + 2 * w * Float.BYTES, limit.get(i));
+                p += Float.BYTES;
+            }
+            INT.setRelease(b, this.position, sequence + 2);
+        }
+
+        @Override
+        public ResourceSnapshot read(final int[] bonusIndexes, final BonusScope.Segment[] segments) {
+            return OffHeapResourceStore.read(OffHeapResourceStore.this.buffer, this.position, OffHeapResourceStore.this.width, this.city,
+                    bonusIndexes, segments);
+        }
+    }
+}
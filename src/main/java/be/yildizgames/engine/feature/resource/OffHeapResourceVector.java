@@ -0,0 +1,127 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Vector storing every resource value outside of the heap, in a region of a direct or memory mapped buffer.
+ * It behaves as a dense vector, copies are made on the heap.
+ *
+ * @author Grégory Van den Borre
+ */
+final class OffHeapResourceVector extends ResourceVector {
+
+    /**
+     * Buffer containing the values, shared with other vectors.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Position of the first value in the buffer.
+     */
+    private final int offset;
+
+    /**
+     * Number of values.
+     */
+    private final int width;
+
+    /**
+     * Create a new vector over a buffer region, no copy is made.
+     *
+     * @param buffer Buffer containing the values.
+     * @param offset Position of the first value in the buffer.
+     * @param width  Number of values.
+     */
+    OffHeapResourceVector(final ByteBuffer buffer, final int offset, final int width) {
+        super();
+        assert buffer != null;
+        assert offset >= 0;
+        assert offset + width * Float.BYTES <= buffer.capacity();
+        this.buffer = buffer;
+        this.offset = offset;
+        this.width = width;
+    }
+
+    @Override
+    ResourceLayout layout() {
+        return ResourceLayout.DENSE;
+    }
+
+    @Override
+    int width() {
+        return this.width;
+    }
+
+    @Override
+    float get(final int index) {
+        assert index >= 0 && index < this.width;
+        return this.buffer.getFloat(this.offset + index * Float.BYTES);
+    }
+
+    @Override
+    void set(final int index, final float value) {
+        assert index >= 0 && index < this.width;
+        this.buffer.putFloat(this.offset + index * Float.BYTES, value);
+    }
+
+    @Override
+    boolean contains(final int index) {
+        return true;
+    }
+
+    @Override
+    int entryCount() {
+        return this.width;
+    }
+
+    @Override
+    int entryIndex(final int entry) {
+        return entry;
+    }
+
+    @Override
+    float entryValue(final int entry) {
+        return this.get(entry);
+    }
+
+    @Override
+    void setEntryValue(final int entry, final float value) {
+        this.set(entry, value);
+    }
+
+    @Override
+    void clear() {
+        for (int i = 0; i < this.width; i++) {
+            this.set(i, 0);
+        }
+    }
+
+    @Override
+    DenseResourceVector copy() {
+        return new DenseResourceVector(this.toArray());
+    }
+}
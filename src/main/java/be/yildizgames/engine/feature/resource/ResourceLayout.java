@@ -0,0 +1,99 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+/**
+ * Memory layout used to store the resource values of a world.
+ * A dense layout keeps one value for every resource of the catalog, a sparse layout only keeps the non empty ones,
+ * so memory and computation scale with the resources actually held, which is better for wide catalogs.
+ * Both layouts provide the same operations and values of different layouts can be combined.
+ *
+ * @author Grégory Van den Borre
+ */
+public enum ResourceLayout {
+
+    /**
+     * One value for every resource.
+     */
+    DENSE {
+        @Override
+        ResourceVector newVector(final int width) {
+            return new DenseResourceVector(new float[width]);
+        }
+
+        @Override
+        ResourceVector newVector(final float[] values) {
+            return new DenseResourceVector(values.clone());
+        }
+    },
+
+    /**
+     * Only the non empty values, sorted by resource index.
+     */
+    SPARSE {
+        @Override
+        ResourceVector newVector(final int width) {
+            return new SparseResourceVector(width);
+        }
+
+        @Override
+        ResourceVector newVector(final float[] values) {
+            return SparseResourceVector.of(values);
+        }
+    };
+
+    /**
+     * Create a new resource value using this layout.
+     *
+     * @param values Values to set at initialization, a copy will be used.
+     * @return The created value.
+     */
+    public final ResourceValue newValue(final float[] values) {
+        assert values != null;
+        return new ResourceValue(this.newVector(values));
+    }
+
+    /**
+     * Create a new empty resource value using this layout.
+     *
+     * @param width Number of resources in the catalog.
+     * @return The created value, all resources are 0.
+     */
+    public final ResourceValue newValue(final int width) {
+        return new ResourceValue(this.newVector(width));
+    }
+
+    /**
+     * @param width Number of resources in the catalog.
+     * @return A new empty vector.
+     */
+    abstract ResourceVector newVector(int width);
+
+    /**
+     * @param values Values to set at initialization, a copy will be used.
+     * @return A new vector containing the values.
+     */
+    abstract ResourceVector newVector(float[] values);
+}
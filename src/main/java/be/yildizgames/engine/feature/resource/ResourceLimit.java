@@ -26,10 +26,6 @@ package be.yildizgames.engine.feature.resource;
 
 import be.yildizgames.engine.feature.resource.bonus.BonusResources;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * Set the limit values for a resource object.
  *
@@ -40,12 +36,12 @@ public final class ResourceLimit {
     /**
      * Limit values.
      */
-    private final float[] limits;
+    private final ResourceVector limits;
 
     /**
-     * List of bonus to change the limit values.
+     * Bonus to change the limit values.
      */
-    private final Set<BonusResources> bonus = new HashSet<>();
+    private final BonusStack bonus;
 
     /**
      * Build a new limit from an array values.
@@ -53,8 +49,18 @@ public final class ResourceLimit {
      * @param limits Values.
      */
     ResourceLimit(final float[] limits) {
+        this(ResourceLayout.DENSE.newVector(limits));
+    }
+
+    /**
+     * Create a limit using the given vector, no copy is made.
+     *
+     * @param limits Vector containing the limit values.
+     */
+    ResourceLimit(final ResourceVector limits) {
         super();
-        this.limits = limits.clone();
+        this.limits = limits;
+        this.bonus = new BonusStack(limits, false);
     }
 
     /**
@@ -64,7 +70,14 @@ public final class ResourceLimit {
      * @return The limit value for the matching resource.
      */
     float getLimits(final int position) {
-        return this.limits[position];
+        return this.limits.get(position);
+    }
+
+    /**
+     * @return The vector containing the limit values.
+     */
+    ResourceVector vector() {
+        return this.limits;
     }
 
     /**
@@ -73,35 +86,28 @@ public final class ResourceLimit {
      * @param bonusToAdd Bonus to add.
      */
     public void addBonus(final BonusResources bonusToAdd) {
-        this.bonus.remove(bonusToAdd);
         this.bonus.add(bonusToAdd);
-        Arrays.fill(this.limits, 0);
-        for (BonusResources max : this.bonus) {
-            for (int i = 0; i < this.limits.length; i++) {
-                this.limits[i] += max.getLimit(i);
-            }
-        }
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(this.limits);
+        return this.limits.valuesHashCode();
     }
 
     @Override
     public boolean equals(final Object obj) {
         return obj instanceof ResourceLimit
-                && Arrays.equals(this.limits, ((ResourceLimit) obj).limits);
+                && this.limits.valuesEqual(((ResourceLimit) obj).limits, 0);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("Resources limit:");
-        for (int i = 0; i < this.limits.length; i++) {
+        for (int i = 0; i < this.limits.width(); i++) {
             sb
                     .append(i)
                     .append(" : ")
-                    .append(this.limits[i])
+                    .append(this.limits.get(i))
                     .append(",");
         }
         return sb.toString();
@@ -27,6 +27,12 @@ package be.yildizgames.engine.feature.resource;
 
 import be.yildizgames.common.model.EntityId;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * @author Grégory Van den Borre
  */
@@ -34,4 +40,32 @@ public interface ResourceOwnerProvider {
 
     ResourceOwner getOwnerById(EntityId cityId);
 
+    /**
+     * Retrieve several owners at once, the default implementation retrieves them one by one, implementations backed by a store should override it to load them in a single call.
+     *
+     * @param cityIds Ids of the cities to retrieve.
+     * @return The found owners mapped by their id, in the iteration order of the given ids, ids without owner are not present.
+     */
+    default Map<EntityId, ResourceOwner> getOwnersByIds(Collection<EntityId> cityIds) {
+        Map<EntityId, ResourceOwner> result = new LinkedHashMap<>();
+        for (EntityId id : cityIds) {
+            ResourceOwner owner = this.getOwnerById(id);
+            if (owner != null) {
+                result.put(id, owner);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve several owners at once without blocking the caller.
+     *
+     * @param cityIds  Ids of the cities to retrieve.
+     * @param executor Executor running the lookup, it must allow blocking if the provider loads from a store.
+     * @return A future completed with the result of getOwnersByIds.
+     */
+    default CompletableFuture<Map<EntityId, ResourceOwner>> getOwnersByIdsAsync(Collection<EntityId> cityIds, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> this.getOwnersByIds(cityIds), executor);
+    }
+
 }
@@ -26,10 +26,6 @@ package be.yildizgames.engine.feature.resource;
 
 import be.yildizgames.engine.feature.resource.bonus.BonusResources;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * Contains the resources generation rate..
  *
@@ -40,12 +36,12 @@ public final class ResourceRatio {
     /**
      * List of rate values.
      */
-    private final float[] values;
+    private final ResourceVector values;
 
     /**
-     * List of bonus to apply to compute the ratio values.
+     * Bonus to apply to compute the ratio values.
      */
-    private final Set<BonusResources> bonusList = new HashSet<>();
+    private final BonusStack bonusList;
 
     /**
      * Full constructor.
@@ -53,8 +49,18 @@ public final class ResourceRatio {
      * @param ratioValues Values to affect, internally a copy will be used, modifying this object wont affect the newly created ResourceRatio object.
      */
     ResourceRatio(final float[] ratioValues) {
+        this(ResourceLayout.DENSE.newVector(ratioValues));
+    }
+
+    /**
+     * Create a ratio using the given vector, no copy is made.
+     *
+     * @param values Vector containing the rate values.
+     */
+    ResourceRatio(final ResourceVector values) {
         super();
-        this.values = Arrays.copyOf(ratioValues, ratioValues.length);
+        this.values = values;
+        this.bonusList = new BonusStack(values, true);
     }
 
     /**
@@ -62,7 +68,14 @@ public final class ResourceRatio {
      * @return The generation rate for a given resource.
      */
     public float getValues(final int position) {
-        return this.values[position];
+        return this.values.get(position);
+    }
+
+    /**
+     * @return The vector containing the rate values.
+     */
+    ResourceVector vector() {
+        return this.values;
     }
 
     /**
@@ -71,9 +84,7 @@ public final class ResourceRatio {
      * @param bonus Bonus to add.
      */
     void addBonus(final BonusResources bonus) {
-        this.bonusList.remove(bonus);
         this.bonusList.add(bonus);
-        this.recompute();
     }
 
     /**
@@ -84,26 +95,13 @@ public final class ResourceRatio {
     //@Ensures("!this.bonusList.contains(bonus)")
     void removeBonus(final BonusResources bonus) {
         this.bonusList.remove(bonus);
-        this.recompute();
-    }
-
-    /**
-     * Recompute the bonus values.
-     */
-    private void recompute() {
-        Arrays.fill(this.values, 0);
-        for (BonusResources bonus : this.bonusList) {
-            for (int i = 0; i < this.values.length; i++) {
-                this.values[i] += bonus.getRatio(i);
-            }
-        }
     }
 
     @Override
     public int hashCode() {
         final int PRIME = 31;
         int result = 1;
-        result = PRIME * result + Arrays.hashCode(values);
+        result = PRIME * result + this.values.valuesHashCode();
         return result;
     }
 
@@ -119,17 +117,17 @@ public final class ResourceRatio {
             return false;
         }
         ResourceRatio other = (ResourceRatio) obj;
-        return Arrays.equals(this.values, other.values);
+        return this.values.valuesEqual(other.values, 0);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("Resources ratio:");
-        for (int i = 0; i < this.values.length; i++) {
+        for (int i = 0; i < this.values.width(); i++) {
             sb
                     .append(i)
                     .append(" : ")
-                    .append(this.values[i])
+                    .append(this.values.get(i))
                     .append(",");
         }
         return sb.toString();
@@ -139,8 +137,8 @@ public final class ResourceRatio {
      * @return <code>true</code> If any value of this ratio is smaller than 0.
      */
     public boolean hasNegative() {
-        for (float v : this.values) {
-            if (v < 0) {
+        for (int i = 0; i < this.values.entryCount(); i++) {
+            if (this.values.entryValue(i) < 0) {
                 return true;
             }
         }
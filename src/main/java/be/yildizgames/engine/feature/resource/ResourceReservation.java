@@ -0,0 +1,285 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+/**
+ * Amount of resources reserved in a producer, the reserved resources cannot be bought or stolen
+ * until they are committed or released. A reservation can be committed in several parts.
+ * The state is guarded by the producer lock.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceReservation {
+
+    /**
+     * Producer holding the reserved resources.
+     */
+    private final ResourcesProducer producer;
+
+    /**
+     * Amount still reserved.
+     */
+    private final ResourceValue remaining;
+
+    /**
+     * <code>false</code> once fully committed or released.
+     */
+    private boolean open = true;
+
+    /**
+     * Create a new reservation, only the producer can create it.
+     *
+     * @param producer Producer holding the reserved resources.
+     * @param amount   Reserved amount, will be modified by this reservation.
+     */
+    ResourceReservation(final ResourcesProducer producer, final ResourceValue amount) {
+        super();
+        this.producer = producer;
+        this.remaining = amount;
+        this.closeIfEmpty();
+    }
+
+    /**
+     * Remove all the remaining reserved amount from the producer.
+     *
+     * @return <code>true</code> if the resources were removed, <code>false</code> if a negative production consumed them in the meantime,
+     * in that case, the reservation is still open.
+     * @throws IllegalStateException If the reservation is no longer open.
+     */
+    public boolean commit() {
+        synchronized (this.producer) {
+            this.checkOpen();
+            return this.producer.commit(this, this.remaining.copy());
+        }
+    }
+
+    /**
+     * Remove a part of the reserved amount from the producer, the rest remains reserved.
+     *
+     * @param amount Amount to remove.
+     * @return <code>true</code> if the resources were removed, <code>false</code> if a negative production consumed them in the meantime.
+     * @throws IllegalStateException    If the reservation is no longer open.
+     * @throws IllegalArgumentException If the amount is negative or bigger than the remaining reserved amount.
+     */
+    public boolean commit(final ResourceValue amount) {
+        synchronized (this.producer) {
+            this.checkCommit(amount);
+            return this.producer.commit(this, amount);
+        }
+    }
+
+    /**
+     * Commit parts of two reservations together, both are committed or none is.
+     * The producers are locked in the order of their unique lock order, so concurrent calls cannot dead lock.
+     *
+     * @param first        First reservation.
+     * @param firstAmount  Amount to remove from the first reservation.
+     * @param second       Second reservation.
+     * @param secondAmount Amount to remove from the second reservation.
+     * @return null if both were committed, otherwise the reservation whose producer does not have enough resources anymore,
+     * in that case, nothing was committed.
+     * @throws IllegalStateException    If a reservation is no longer open.
+     * @throws IllegalArgumentException If an amount is negative or bigger than its remaining reserved amount.
+     */
+    public static ResourceReservation commitBoth(final ResourceReservation first, final ResourceValue firstAmount,
+                                                 final ResourceReservation second, final ResourceValue secondAmount) {
+        ResourcesProducer lockFirst = first.producer;
+        ResourcesProducer lockSecond = second.producer;
+        if (compare(lockFirst, lockSecond) > 0) {
+            lockFirst = second.producer;
+            lockSecond = first.producer;
+        }
+        synchronized (lockFirst) {
+            synchronized (lockSecond) {
+                first.checkCommit(firstAmount);
+                second.checkCommit(secondAmount);
+                if (first.producer == second.producer) {
+                    ResourceValue total = firstAmount.copy();
+                    total.increase(secondAmount);
+                    if (!first.producer.canCommit(total)) {
+                        return first;
+                    }
+                } else if (!first.producer.canCommit(firstAmount)) {
+                    return first;
+                } else if (!second.producer.canCommit(secondAmount)) {
+                    return second;
+                }
+                first.producer.consume(first, firstAmount);
+                second.producer.consume(second, secondAmount);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Exchange single resources between the producers of two reservations, the first one gives a part of its reservation to the second one,
+     * and receives a part of the second reservation in return. Both parts are exchanged or none is, and every producer publishes a single change.
+     * The producers are locked in the same order as commitBoth.
+     *
+     * @param first          First reservation.
+     * @param firstPosition  Position of the resource given by the first producer.
+     * @param firstAmount    Amount given by the first producer, taken from the first reservation.
+     * @param second         Second reservation.
+     * @param secondPosition Position of the resource given by the second producer.
+     * @param secondAmount   Amount given by the second producer, taken from the second reservation.
+     * @return null if the exchange was done, otherwise the reservation whose producer does not have enough resources anymore,
+     * or could not hold what it receives under its limit, in that case, nothing was exchanged.
+     * @throws IllegalStateException    If a reservation is no longer open.
+     * @throws IllegalArgumentException If an amount is negative or bigger than its remaining reserved amount.
+     */
+    public static ResourceReservation exchange(final ResourceReservation first, final int firstPosition, final float firstAmount,
+                                               final ResourceReservation second, final int secondPosition, final float secondAmount) {
+        ResourcesProducer lockFirst = first.producer;
+        ResourcesProducer lockSecond = second.producer;
+        if (compare(lockFirst, lockSecond) > 0) {
+            lockFirst = second.producer;
+            lockSecond = first.producer;
+        }
+        synchronized (lockFirst) {
+            synchronized (lockSecond) {
+                first.checkCommit(firstPosition, firstAmount);
+                second.checkCommit(secondPosition, secondAmount);
+                if (first.producer == second.producer) {
+                    if (!first.producer.canExchange(firstPosition, firstAmount, secondPosition, 0)
+                            || !first.producer.canExchange(secondPosition, secondAmount, firstPosition, 0)) {
+                        return first;
+                    }
+                } else if (!first.producer.canExchange(firstPosition, firstAmount, secondPosition, secondAmount)) {
+                    return first;
+                } else if (!second.producer.canExchange(secondPosition, secondAmount, firstPosition, firstAmount)) {
+                    return second;
+                }
+                first.producer.exchange(first, firstPosition, firstAmount, secondPosition, secondAmount);
+                second.producer.exchange(second, secondPosition, secondAmount, firstPosition, firstAmount);
+                return null;
+            }
+        }
+    }
+
+    private static int compare(final ResourcesProducer p1, final ResourcesProducer p2) {
+        return Long.compare(p1.getLockOrder(), p2.getLockOrder());
+    }
+
+    /**
+     * Give back the remaining reserved amount to the producer, does nothing if the reservation is no longer open.
+     */
+    public void release() {
+        synchronized (this.producer) {
+            if (this.open) {
+                this.producer.release(this);
+                this.open = false;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the reservation still holds resources.
+     */
+    public boolean isOpen() {
+        synchronized (this.producer) {
+            return this.open;
+        }
+    }
+
+    /**
+     * @return A copy of the amount still reserved.
+     */
+    public ResourceValue getRemaining() {
+        synchronized (this.producer) {
+            return this.remaining.copy();
+        }
+    }
+
+    /**
+     * @return The producer holding the reserved resources.
+     */
+    public ResourcesProducer getProducer() {
+        return this.producer;
+    }
+
+    /**
+     * @return The amount still reserved, not a copy.
+     */
+    ResourceValue remaining() {
+        return this.remaining;
+    }
+
+    /**
+     * Update the remaining amount once a part has been committed.
+     *
+     * @param amount Committed amount.
+     */
+    void consumed(final ResourceValue amount) {
+        this.remaining.decrease(amount);
+        this.closeIfEmpty();
+    }
+
+    /**
+     * Update the remaining amount once a part of a single resource has been committed.
+     *
+     * @param position Resource position.
+     * @param amount   Committed amount.
+     */
+    void consumed(final int position, final float amount) {
+        ResourceVector v = this.remaining.vector();
+        v.set(position, v.get(position) - amount);
+        this.closeIfEmpty();
+    }
+
+    private void closeIfEmpty() {
+        for (int i = 0; i < this.remaining.size(); i++) {
+            if (this.remaining.getValue(i) > 0) {
+                return;
+            }
+        }
+        this.open = false;
+    }
+
+    private void checkCommit(final ResourceValue amount) {
+        this.checkOpen();
+        if (amount.hasNegative()) {
+            throw new IllegalArgumentException("Negative amount cannot be committed: " + amount);
+        }
+        if (!this.remaining.canBuy(amount)) {
+            throw new IllegalArgumentException("Amount bigger than the reservation: " + amount);
+        }
+    }
+
+    private void checkCommit(final int position, final float amount) {
+        this.checkOpen();
+        if (amount < 0) {
+            throw new IllegalArgumentException("Negative amount cannot be committed: " + amount);
+        }
+        if (this.remaining.getValue(position) < amount) {
+            throw new IllegalArgumentException("Amount bigger than the reservation: " + amount);
+        }
+    }
+
+    private void checkOpen() {
+        if (!this.open) {
+            throw new IllegalStateException("Reservation is no longer open.");
+        }
+    }
+}
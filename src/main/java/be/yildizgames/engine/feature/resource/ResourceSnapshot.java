@@ -0,0 +1,275 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.common.util.Util;
+
+/**
+ * Immutable state of a producer, published after every modification so any thread can read it without copying or locking.
+ * The values are the ones computed at the last update time, the values at a later time are projected from the ratio and the limit,
+ * and from the changes of the producer scopes made after the last update, they are resolved when projecting.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceSnapshot {
+
+    /**
+     * Associated city.
+     */
+    private final EntityId city;
+
+    /**
+     * Resource values at the last update time, never modified.
+     */
+    private final ResourceVector values;
+
+    /**
+     * Generation rates, never modified.
+     */
+    private final ResourceVector ratio;
+
+    /**
+     * Limits, never modified.
+     */
+    private final ResourceVector limit;
+
+    /**
+     * Sorted indexes of the bonus applied to the producer, never modified.
+     */
+    private final int[] bonusIndexes;
+
+    /**
+     * Segments of the producer scopes used at the last update time, their following segments are the later scope changes.
+     */
+    private final BonusScope.Segment[] segments;
+
+    /**
+     * Time when the values were computed.
+     */
+    private final long lastUpdate;
+
+    /**
+     * <code>true</code> if the producer was initialized, values are not generated otherwise.
+     */
+    private final boolean initialized;
+
+    /**
+     * Number of modifications of the producer before this snapshot.
+     */
+    private final long version;
+
+    /**
+     * Create a new snapshot, the vectors must not be modified once given.
+     *
+     * @param city        Associated city.
+     * @param values      Resource values at the last update time.
+     * @param ratio       Generation rates.
+     * @param limit       Limits.
+     * @param bonus       Sorted indexes of the applied bonus.
+     * @param segments    Scope segments used at the last update time.
+     * @param lastUpdate  Time when the values were computed.
+     * @param initialized Producer initialization state.
+     * @param version     Modification count.
+     */
+    ResourceSnapshot(final EntityId city, final ResourceVector values, final ResourceVector ratio, final ResourceVector limit,
+                     final int[] bonus, final BonusScope.Segment[] segments, final long lastUpdate, final boolean initialized, final long version) {
+        super();
+        this.city = city;
+        this.values = values;
+        this.ratio = ratio;
+        this.limit = limit;
+        this.bonusIndexes = bonus;
+        this.segments = segments;
+        this.lastUpdate = lastUpdate;
+        this.initialized = initialized;
+        this.version = version;
+    }
+
+    /**
+     * @return The associated city.
+     */
+    public EntityId getCity() {
+        return this.city;
+    }
+
+    /**
+     * @return The number of resources.
+     */
+    public int getSize() {
+        return this.values.width();
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The resource amount at the last update time.
+     */
+    public float getValue(final int position) {
+        return this.values.get(position);
+    }
+
+    /**
+     * @param type Resource type.
+     * @return The resource amount at the last update time.
+     */
+    public float getValue(final ResourceType type) {
+        return this.values.get(type.getId());
+    }
+
+    /**
+     * Project a resource amount at a given time, from the values, ratio and limit of this snapshot,
+     * the scope changes made after the last update are applied from their time.
+     *
+     * @param position Resource position.
+     * @param time     Time to project to, times before the last update return the last computed value.
+     * @return The projected resource amount.
+     */
+    public float getValue(final int position, final long time) {
+        float value = this.values.get(position);
+        if (!this.initialized || time < this.lastUpdate) {
+            return value;
+        }
+        float rate = this.ratio.get(position);
+        float max = this.limit.get(position);
+        if (this.segments.length == 0) {
+            return Util.setLimitedValue(value + rate * (time - this.lastUpdate) * 0.001f, max);
+        }
+        BonusScope.Segment[] cursors = this.segments.clone();
+        long start = this.lastUpdate;
+        while (true) {
+            long end = time;
+            for (int n = 0; n < cursors.length; n++) {
+                BonusScope.Segment next = cursors[n].next;
+                while (next != null && next.start <= start) {
+                    rate += next.ratio.get(position) - cursors[n].ratio.get(position);
+                    max += next.limit.get(position) - cursors[n].limit.get(position);
+                    cursors[n] = next;
+                    next = next.next;
+                }
+                if (next != null && next.start < end) {
+                    end = next.start;
+                }
+            }
+            value = Util.setLimitedValue(value + rate * (end - start) * 0.001f, max);
+            if (end >= time) {
+                return value;
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The generation rate of the resource at the last update time.
+     */
+    public float getRatio(final int position) {
+        return this.ratio.get(position);
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The limit of the resource at the last update time.
+     */
+    public float getLimit(final int position) {
+        return this.limit.get(position);
+    }
+
+    /**
+     * @return The time when the values were computed.
+     */
+    public long getLastUpdate() {
+        return this.lastUpdate;
+    }
+
+    /**
+     * @return <code>true</code> if the producer was initialized when this snapshot was taken.
+     */
+    public boolean isInitialized() {
+        return this.initialized;
+    }
+
+    /**
+     * @return The number of modifications of the producer before this snapshot, a greater version is a more recent state.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Provide the indexes of the bonus applied to the producer, bonus without index are not present.
+     *
+     * @return The sorted bonus indexes.
+     */
+    public int[] getBonusIndexes() {
+        return this.bonusIndexes.clone();
+    }
+
+    /**
+     * @return A new mutable value containing the values at the last update time.
+     */
+    public ResourceValue toResourceValue() {
+        return new ResourceValue(this.values.copy());
+    }
+
+    /**
+     * @return The persistable state for this snapshot.
+     */
+    public ResourceValueDto toValueDto() {
+        return new ResourceValueDto(this.city, this.toResourceValue(), this.lastUpdate);
+    }
+
+    /**
+     * @return The values vector, must not be modified.
+     */
+    ResourceVector values() {
+        return this.values;
+    }
+
+    /**
+     * @return The ratio vector, must not be modified.
+     */
+    ResourceVector ratio() {
+        return this.ratio;
+    }
+
+    /**
+     * @return The limit vector, must not be modified.
+     */
+    ResourceVector limit() {
+        return this.limit;
+    }
+
+    /**
+     * @return The bonus indexes, must not be modified.
+     */
+    int[] bonusIndexes() {
+        return this.bonusIndexes;
+    }
+
+    @Override
+    public String toString() {
+        return "Resource snapshot:" + this.city + ", version " + this.version + ", last update:" + this.lastUpdate;
+    }
+}
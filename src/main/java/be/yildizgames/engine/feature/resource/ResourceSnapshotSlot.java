@@ -0,0 +1,54 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+/**
+ * Storage receiving the published state of a producer in place of a heap snapshot, the snapshot is only built when it is read.
+ *
+ * @author Grégory Van den Borre
+ */
+interface ResourceSnapshotSlot {
+
+    /**
+     * Copy the published state, called while the producer is locked, the vectors must not be kept.
+     *
+     * @param values      Resource values.
+     * @param ratio       Ratio values, including the scopes.
+     * @param limit       Limit values, including the scopes.
+     * @param lastUpdate  Time when the values were computed.
+     * @param initialized Producer initialization state.
+     * @param version     Snapshot version.
+     */
+    void write(ResourceVector values, ResourceVector ratio, ResourceVector limit, long lastUpdate, boolean initialized, long version);
+
+    /**
+     * Build a snapshot from the last published state, it can be called without locking the producer.
+     *
+     * @param bonusIndexes Indexes of the bonus applied to the producer.
+     * @param segments     Scope segments used at the last update.
+     * @return The last published state.
+     */
+    ResourceSnapshot read(int[] bonusIndexes, BonusScope.Segment[] segments);
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+/**
+ * Kind of resource, used as a handle to access the values in constant time instead of looking up a name.
+ * Types are created by a ResourceTypeRegistry, their id is the position of the resource in the resource arrays.
+ * Types are meant to be kept as constants, i.e. private static final ResourceType METAL = REGISTRY.register("metal");
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceType {
+
+    /**
+     * Unique name in the registry.
+     */
+    private final String name;
+
+    /**
+     * Position of the resource in the resource arrays.
+     */
+    private final int id;
+
+    /**
+     * Create a new type, only the registry creates them.
+     *
+     * @param name Unique name.
+     * @param id   Position in the resource arrays.
+     */
+    ResourceType(final String name, final int id) {
+        super();
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * @return The position of this resource in the resource arrays.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return The name of this resource.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "(" + this.id + ")";
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registry of the resource types of a world, giving every type a stable dense id in registration order.
+ * Once all types are registered, the registry should be frozen, so the number of resources is known once for all values, codecs and storages.
+ * Registration is synchronized, lookups do not lock.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceTypeRegistry {
+
+    /**
+     * Registered types, by id, replaced on every registration.
+     */
+    private volatile ResourceType[] types = new ResourceType[0];
+
+    /**
+     * Registered types, by name, replaced on every registration.
+     */
+    private volatile Map<String, ResourceType> byName = Collections.emptyMap();
+
+    /**
+     * Flag set when no more types can be registered.
+     */
+    private volatile boolean frozen;
+
+    /**
+     * Register a new type, its id will be the number of types already registered.
+     *
+     * @param name Unique name for the type.
+     * @return The registered type.
+     * @throws IllegalArgumentException If a type with the same name is already registered.
+     * @throws IllegalStateException    If the registry is frozen.
+     */
+    public synchronized ResourceType register(final String name) {
+        assert name != null;
+        if (this.frozen) {
+            throw new IllegalStateException("Registry is frozen, cannot register " + name);
+        }
+        if (this.byName.containsKey(name)) {
+            throw new IllegalArgumentException("Resource type already registered: " + name);
+        }
+        ResourceType type = new ResourceType(name, this.types.length);
+        ResourceType[] newTypes = Arrays.copyOf(this.types, this.types.length + 1);
+        newTypes[type.getId()] = type;
+        Map<String, ResourceType> newByName = new HashMap<>(this.byName);
+        newByName.put(name, type);
+        this.types = newTypes;
+        this.byName = Collections.unmodifiableMap(newByName);
+        return type;
+    }
+
+    /**
+     * Prevent any new registration, the size will not change anymore.
+     */
+    public synchronized void freeze() {
+        this.frozen = true;
+    }
+
+    /**
+     * @return <code>true</code> if no more types can be registered.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * Provide a type from its id.
+     *
+     * @param id Type id.
+     * @return The type matching the id.
+     * @throws IllegalArgumentException If no type exists for that id.
+     */
+    public ResourceType get(final int id) {
+        ResourceType[] current = this.types;
+        if (id < 0 || id >= current.length) {
+            throw new IllegalArgumentException("No resource type for id " + id);
+        }
+        return current[id];
+    }
+
+    /**
+     * Provide a type from its name.
+     *
+     * @param name Type name.
+     * @return The type matching the name.
+     * @throws IllegalArgumentException If no type exists for that name.
+     */
+    public ResourceType get(final String name) {
+        return this.find(name).orElseThrow(() -> new IllegalArgumentException("No resource type for name " + name));
+    }
+
+    /**
+     * Provide a type from its name.
+     *
+     * @param name Type name.
+     * @return The type matching the name, empty if none is registered.
+     */
+    public Optional<ResourceType> find(final String name) {
+        return Optional.ofNullable(this.byName.get(name));
+    }
+
+    /**
+     * @return The number of registered types, which is the size of the resource arrays.
+     */
+    public int size() {
+        return this.types.length;
+    }
+
+    /**
+     * @return All registered types, in id order.
+     */
+    public List<ResourceType> getTypes() {
+        return Collections.unmodifiableList(Arrays.asList(this.types));
+    }
+
+    /**
+     * Create an empty resource value for all the registered types.
+     *
+     * @param layout Layout to use.
+     * @return The created value.
+     */
+    public ResourceValue newValue(final ResourceLayout layout) {
+        return layout.newValue(this.size());
+    }
+}
@@ -26,7 +26,8 @@ package be.yildizgames.engine.feature.resource;
 
 import be.yildizgames.common.util.Util;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Resource value.
@@ -38,17 +39,28 @@ public class ResourceValue {
     /**
      * Values of the resources.
      */
-    private float[] values;
+    private ResourceVector values;
 
     /**
-     * Full constructor.
+     * Full constructor, the values are stored in a dense layout.
      *
      * @param values Values to set a initialization, a copy will be used.
      */
     public ResourceValue (final float[] values) {
         super();
         assert  values != null;
-        this.values = values.clone();
+        this.values = new DenseResourceVector(values.clone());
+    }
+
+    /**
+     * Create a value using the given vector, no copy is made.
+     *
+     * @param values Vector containing the values.
+     */
+    ResourceValue(final ResourceVector values) {
+        super();
+        assert values != null;
+        this.values = values;
     }
 
     /**
@@ -59,12 +71,10 @@ public class ResourceValue {
      * @return <code>true</code> if the player had enough resources to pay the price and the transaction has been done, <code>false</code> otherwise.
      */
     public final boolean buy(final ResourceValue price) {
-        if (!Util.checkBiggerOrEqual(this.values, price.values)) {
+        if (!this.canBuy(price)) {
             return false;
         }
-        for (int i = 0; i < this.values.length; i++) {
-            this.values[i] -= price.values[i];
-        }
+        this.decrease(price);
         return true;
     }
 
@@ -72,7 +82,35 @@ public class ResourceValue {
      * @return A copy of the array containing the values.
      */
     public final float[] getArray() {
-        return this.values.clone();
+        return this.values.toArray();
+    }
+
+    /**
+     * @return The layout used to store the values.
+     */
+    public final ResourceLayout getLayout() {
+        return this.values.layout();
+    }
+
+    /**
+     * @return The number of resources in this value.
+     */
+    final int size() {
+        return this.values.width();
+    }
+
+    /**
+     * @return A new value containing a copy of this one, using the same layout.
+     */
+    final ResourceValue copy() {
+        return new ResourceValue(this.values.copy());
+    }
+
+    /**
+     * @return A new empty value, with the same size and layout as this one.
+     */
+    final ResourceValue empty() {
+        return new ResourceValue(this.values.layout().newVector(this.values.width()));
     }
 
     /**
@@ -80,7 +118,15 @@ public class ResourceValue {
      * @return The value at the given position.
      */
     public final float getValue(final int position) {
-        return this.values[position];
+        return this.values.get(position);
+    }
+
+    /**
+     * @param type Resource type.
+     * @return The value for the given resource type.
+     */
+    public final float getValue(final ResourceType type) {
+        return this.values.get(type.getId());
     }
 
     /**
@@ -91,9 +137,27 @@ public class ResourceValue {
      * @param limit Maximum values for this resources.
      */
     public final void add(final ResourceRatio ratio, final long delta, final ResourceLimit limit) {
-        for (int i = 0; i < this.values.length; i++) {
-            this.values[i] = Util.setLimitedValue(this.values[i] + ratio.getValues(i) * delta * 0.001f, limit.getLimits(i));
-
+        ResourceVector rates = ratio.vector();
+        ResourceVector limits = limit.vector();
+        if (this.values instanceof DenseResourceVector && rates instanceof DenseResourceVector && limits instanceof DenseResourceVector) {
+            float[] v = ((DenseResourceVector) this.values).values;
+            float[] r = ((DenseResourceVector) rates).values;
+            float[] l = ((DenseResourceVector) limits).values;
+            for (int i = 0; i < v.length; i++) {
+                v[i] = Util.setLimitedValue(v[i] + r[i] * delta * 0.001f, l[i]);
+            }
+            return;
+        }
+        for (int e = 0; e < this.values.entryCount(); e++) {
+            int i = this.values.entryIndex(e);
+            this.values.setEntryValue(e, Util.setLimitedValue(this.values.entryValue(e) + rates.get(i) * delta * 0.001f, limits.get(i)));
+        }
+        for (int e = 0; e < rates.entryCount(); e++) {
+            int i = rates.entryIndex(e);
+            float rate = rates.entryValue(e);
+            if (rate != 0 && !this.values.contains(i)) {
+                this.values.set(i, Util.setLimitedValue(rate * delta * 0.001f, limits.get(i)));
+            }
         }
     }
 
@@ -104,8 +168,27 @@ public class ResourceValue {
      * @param limit Maximum values for this resources.
      */
     public final void add(final ResourceValue toAdd, final ResourceLimit limit) {
-        for (int i = 0; i < this.values.length; i++) {
-            this.values[i] = Util.setLimitedValue(this.values[i] + toAdd.values[i], limit.getLimits(i));
+        ResourceVector amounts = toAdd.values;
+        ResourceVector limits = limit.vector();
+        if (this.values instanceof DenseResourceVector && amounts instanceof DenseResourceVector && limits instanceof DenseResourceVector) {
+            float[] v = ((DenseResourceVector) this.values).values;
+            float[] a = ((DenseResourceVector) amounts).values;
+            float[] l = ((DenseResourceVector) limits).values;
+            for (int i = 0; i < v.length; i++) {
+                v[i] = Util.setLimitedValue(v[i] + a[i], l[i]);
+            }
+            return;
+        }
+        for (int e = 0; e < this.values.entryCount(); e++) {
+            int i = this.values.entryIndex(e);
+            this.values.setEntryValue(e, Util.setLimitedValue(this.values.entryValue(e) + amounts.get(i), limits.get(i)));
+        }
+        for (int e = 0; e < amounts.entryCount(); e++) {
+            int i = amounts.entryIndex(e);
+            float amount = amounts.entryValue(e);
+            if (amount != 0 && !this.values.contains(i)) {
+                this.values.set(i, Util.setLimitedValue(amount, limits.get(i)));
+            }
         }
     }
 
@@ -116,20 +199,183 @@ public class ResourceValue {
      * @return <code>true</code> if resources are bigger than the price.
      */
     final boolean canBuy(final ResourceValue price) {
-        return Util.checkBiggerOrEqual(this.values, price.values);
+        if (this.values instanceof DenseResourceVector && price.values instanceof DenseResourceVector) {
+            return Util.checkBiggerOrEqual(((DenseResourceVector) this.values).values, ((DenseResourceVector) price.values).values);
+        }
+        for (int e = 0; e < price.values.entryCount(); e++) {
+            if (this.values.get(price.values.entryIndex(e)) < price.values.entryValue(e)) {
+                return false;
+            }
+        }
+        for (int e = 0; e < this.values.entryCount(); e++) {
+            if (this.values.entryValue(e) < price.values.get(this.values.entryIndex(e))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if the resources, minus a reserved amount, are enough to buy.
+     *
+     * @param price    Price to buy.
+     * @param reserved Amount of resources not available.
+     * @return <code>true</code> if resources minus the reserved amount are bigger than the price.
+     */
+    final boolean canBuy(final ResourceValue price, final ResourceValue reserved) {
+        return this.canBuyAt(price.values, price, reserved)
+                && this.canBuyAt(reserved.values, price, reserved)
+                && this.canBuyAt(this.values, price, reserved);
+    }
+
+    /**
+     * Check the buy condition for every index stored in a vector.
+     *
+     * @param entries  Vector providing the indexes to check.
+     * @param price    Price to buy.
+     * @param reserved Amount of resources not available.
+     * @return <code>true</code> if resources minus the reserved amount are bigger than the price for all checked indexes.
+     */
+    private boolean canBuyAt(final ResourceVector entries, final ResourceValue price, final ResourceValue reserved) {
+        for (int e = 0; e < entries.entryCount(); e++) {
+            int i = entries.entryIndex(e);
+            if (this.values.get(i) - reserved.values.get(i) < price.values.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> If any value is smaller than 0.
+     */
+    final boolean hasNegative() {
+        for (int e = 0; e < this.values.entryCount(); e++) {
+            if (this.values.entryValue(e) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add an amount to this one, without any limit.
+     *
+     * @param amount Amount to add.
+     */
+    final void increase(final ResourceValue amount) {
+        for (int e = 0; e < amount.values.entryCount(); e++) {
+            int i = amount.values.entryIndex(e);
+            this.values.set(i, this.values.get(i) + amount.values.entryValue(e));
+        }
+    }
+
+    /**
+     * Remove an amount from this one, without any check.
+     *
+     * @param amount Amount to remove.
+     */
+    final void decrease(final ResourceValue amount) {
+        for (int e = 0; e < amount.values.entryCount(); e++) {
+            int i = amount.values.entryIndex(e);
+            this.values.set(i, this.values.get(i) - amount.values.entryValue(e));
+        }
+    }
+
+    /**
+     * Remove as much as possible of an amount from this value, without going below the reserved amount.
+     *
+     * @param toRemove Amount to remove.
+     * @param reserved Amount of resources that cannot be removed.
+     * @return The amount actually removed, using the same layout as this value.
+     */
+    final ResourceValue steal(final ResourceValue toRemove, final ResourceValue reserved) {
+        ResourceVector stolen = this.values.layout().newVector(this.values.width());
+        for (int e = 0; e < toRemove.values.entryCount(); e++) {
+            int i = toRemove.values.entryIndex(e);
+            float wanted = toRemove.values.entryValue(e);
+            float current = this.values.get(i);
+            float available = Math.max(0.0f, current - reserved.values.get(i));
+            float taken = available >= wanted ? wanted : available;
+            if (taken != 0) {
+                stolen.set(i, taken);
+                this.values.set(i, current - taken);
+            }
+        }
+        return new ResourceValue(stolen);
+    }
+
+    /**
+     * Remove several amounts at once, when the available resources are not enough for all of them,
+     * every amount gets a share proportional to what it asked, whatever the order of the amounts.
+     *
+     * @param toRemove Amounts to remove, negative values are ignored.
+     * @param reserved Amount of resources that cannot be removed.
+     * @return The amounts actually removed, in the same order, using the same layout as this value.
+     */
+    final List<ResourceValue> steal(final List<ResourceValue> toRemove, final ResourceValue reserved) {
+        int width = this.values.width();
+        double[] requested = new double[width];
+        for (ResourceValue r : toRemove) {
+            for (int e = 0; e < r.values.entryCount(); e++) {
+                float wanted = r.values.entryValue(e);
+                if (wanted > 0) {
+                    requested[r.values.entryIndex(e)] += wanted;
+                }
+            }
+        }
+        double[] factors = new double[width];
+        for (int i = 0; i < width; i++) {
+            if (requested[i] > 0) {
+                float current = this.values.get(i);
+                float available = Math.max(0.0f, current - reserved.values.get(i));
+                if (available >= requested[i]) {
+                    factors[i] = 1;
+                    this.values.set(i, (float) (current - requested[i]));
+                } else {
+                    factors[i] = available / requested[i];
+                    this.values.set(i, current - available);
+                }
+            }
+        }
+        List<ResourceValue> result = new ArrayList<>(toRemove.size());
+        for (ResourceValue r : toRemove) {
+            ResourceVector stolen = this.values.layout().newVector(width);
+            for (int e = 0; e < r.values.entryCount(); e++) {
+                int i = r.values.entryIndex(e);
+                float wanted = r.values.entryValue(e);
+                if (wanted > 0) {
+                    stolen.set(i, (float) (wanted * factors[i]));
+                }
+            }
+            result.add(new ResourceValue(stolen));
+        }
+        return result;
     }
 
     @Override
     public final String toString() {
         StringBuilder sb = new StringBuilder();
-        for (float f : this.values) {
-            sb.append(f).append(",");
+        for (int i = 0; i < this.values.width(); i++) {
+            sb.append(this.values.get(i)).append(",");
         }
         return sb.toString();
     }
 
+    /**
+     * Replace the values by a copy of another value, both values stay independent.
+     *
+     * @param other Value to copy.
+     */
     final void setValues(final ResourceValue other) {
-        this.values = other.values;
+        this.values = other.values.copy();
+    }
+
+    /**
+     * @return The vector containing the values.
+     */
+    final ResourceVector vector() {
+        return this.values;
     }
 
     @Override
@@ -138,25 +384,12 @@ public class ResourceValue {
         if (o == null || getClass() != o.getClass()) return false;
 
         ResourceValue that = (ResourceValue) o;
-
-        float[] thisArray = this.values;
-        float[] thatArray = that.values;
-        if(thisArray.length != thatArray.length) {
-            return false;
-        }
-
-        for(int i = 0; i < thisArray.length; i++) {
-            float r = thisArray[i] - thatArray[i];
-            if(r > 0.0001f || r < -0.0001f) {
-                return false;
-            }
-        }
-        return true;
+        return this.values.valuesEqual(that.values, 0.0001f);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(values);
+        return this.values.valuesHashCode();
     }
 
 }
@@ -0,0 +1,153 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+/**
+ * Storage of the values of a resource array, dense or sparse depending on the world layout.
+ * Values are accessed by resource index, and the stored entries can be iterated to only visit the non empty part of the array.
+ * Indexes not stored are considered to be 0.
+ *
+ * @author Grégory Van den Borre
+ */
+abstract class ResourceVector {
+
+    /**
+     * @return The layout used by this vector.
+     */
+    abstract ResourceLayout layout();
+
+    /**
+     * @return The number of resources this vector can contain.
+     */
+    abstract int width();
+
+    /**
+     * @param index Resource index.
+     * @return The value for that index, 0 if not stored.
+     */
+    abstract float get(int index);
+
+    /**
+     * Set a value, sparse vectors will only store a new entry if the value is not 0.
+     *
+     * @param index Resource index.
+     * @param value Value to set.
+     */
+    abstract void set(int index, float value);
+
+    /**
+     * @param index Resource index.
+     * @return <code>true</code> if this vector holds an entry for the index.
+     */
+    abstract boolean contains(int index);
+
+    /**
+     * @return The number of stored entries.
+     */
+    abstract int entryCount();
+
+    /**
+     * @param entry Entry position, between 0 and entryCount.
+     * @return The resource index of the entry.
+     */
+    abstract int entryIndex(int entry);
+
+    /**
+     * @param entry Entry position, between 0 and entryCount.
+     * @return The value of the entry.
+     */
+    abstract float entryValue(int entry);
+
+    /**
+     * Update the value of an existing entry, the entries are left unchanged.
+     *
+     * @param entry Entry position, between 0 and entryCount.
+     * @param value Value to set.
+     */
+    abstract void setEntryValue(int entry, float value);
+
+    /**
+     * Set all values to 0.
+     */
+    abstract void clear();
+
+    /**
+     * @return A copy of this vector, using the same layout.
+     */
+    abstract ResourceVector copy();
+
+    /**
+     * @return A new array of full width containing the values.
+     */
+    final float[] toArray() {
+        float[] result = new float[this.width()];
+        for (int i = 0; i < this.entryCount(); i++) {
+            result[this.entryIndex(i)] = this.entryValue(i);
+        }
+        return result;
+    }
+
+    /**
+     * Hash code not depending on the layout, only non 0 values are used.
+     *
+     * @return The hash code for the vector values.
+     */
+    final int valuesHashCode() {
+        int result = this.width();
+        for (int i = 0; i < this.entryCount(); i++) {
+            float value = this.entryValue(i);
+            if (value != 0) {
+                result = 31 * result + 31 * this.entryIndex(i) + Float.hashCode(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare the values of two vectors, whatever their layout.
+     *
+     * @param other   Vector to compare with.
+     * @param epsilon Maximum difference between two values to consider them equals.
+     * @return <code>true</code> if both vectors have the same width and values.
+     */
+    final boolean valuesEqual(final ResourceVector other, final float epsilon) {
+        if (this.width() != other.width()) {
+            return false;
+        }
+        for (int i = 0; i < this.entryCount(); i++) {
+            float r = this.entryValue(i) - other.get(this.entryIndex(i));
+            if (r > epsilon || r < -epsilon) {
+                return false;
+            }
+        }
+        for (int i = 0; i < other.entryCount(); i++) {
+            float r = other.entryValue(i) - this.get(other.entryIndex(i));
+            if (r > epsilon || r < -epsilon) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -29,8 +29,14 @@ import be.yildizgames.engine.feature.resource.bonus.BonusListener;
 import be.yildizgames.engine.feature.resource.bonus.BonusResources;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Contains the resources values and the ratio to compute them.
@@ -39,8 +45,18 @@ import java.util.Set;
  */
 public final class ResourcesProducer {
 
+    /**
+     * Segments of a producer without scope.
+     */
+    private static final BonusScope.Segment[] NO_SEGMENT = new BonusScope.Segment[0];
+
     private static final System.Logger LOGGER = System.getLogger(ResourcesProducer.class.getName());
 
+    /**
+     * Last lock order given to a producer.
+     */
+    private static final AtomicLong LOCK_ORDER = new AtomicLong();
+
     /**
      * Contains the ratio values, the array must math the resource array.
      */
@@ -56,6 +72,11 @@ public final class ResourcesProducer {
      */
     private final ResourceLimit limit;
 
+    /**
+     * Resources reserved and not yet committed, they cannot be bought or stolen.
+     */
+    private final ResourceValue held;
+
     /**
      * List of associated bonus.
      */
@@ -63,7 +84,31 @@ public final class ResourcesProducer {
 
     private final Set<BonusResources> bonus = new HashSet<>();
 
+    /**
+     * Attached bonus scopes, with the segment used at the last update for each of them.
+     */
+    private final List<ScopeCursor> scopes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Own ratio plus the ratios of the segments used by the scope cursors, kept up to date while scopes are attached.
+     */
+    private ResourceRatio effectiveRatio;
+
+    /**
+     * Own limit plus the limits of the segments used by the scope cursors, kept up to date while scopes are attached.
+     */
+    private ResourceLimit effectiveLimit;
+
+    /**
+     * Listeners notified when this producer state is modified.
+     */
+    private final Set<ResourceChangeListener> changeListenerList = new CopyOnWriteArraySet<>();
+
     private final EntityId city;
+    /**
+     * Unique order used to lock several producers, two producers of the same city have different orders.
+     */
+    private final long lockOrder = LOCK_ORDER.incrementAndGet();
     /**
      * Time when the resources were computed for the last time.
      */
@@ -72,6 +117,34 @@ public final class ResourcesProducer {
      * When the producer is built, it has no bonus, if resource value is recomputed, it would always compute it as 0(limit is 0 an ratio is 0).
      */
     private boolean initialized = false;
+    /**
+     * Set when the state is modified, until it has been persisted.
+     */
+    private volatile boolean dirty = false;
+    /**
+     * Last published state, replaced after every modification, not used when the state is published in a slot.
+     */
+    private volatile ResourceSnapshot snapshot;
+    /**
+     * Set when a bonus changed the ratio or limit, so they are copied with the next snapshot.
+     */
+    private boolean bonusChanged = true;
+    /**
+     * Storage receiving the published state instead of the heap snapshot, null if the snapshot is kept on the heap.
+     */
+    private final ResourceSnapshotSlot slot;
+    /**
+     * Bonus indexes of the state published in the slot.
+     */
+    private volatile int[] slotBonusIndexes;
+    /**
+     * Scope segments of the state published in the slot.
+     */
+    private volatile BonusScope.Segment[] slotSegments = NO_SEGMENT;
+    /**
+     * Version of the state published in the slot.
+     */
+    private long slotVersion = -1;
 
     /**
      * Full constructor.
@@ -87,13 +160,32 @@ public final class ResourcesProducer {
     //@post this.resources == resources
     //@post this.initialized == false
     public ResourcesProducer(final EntityId cityId, final long time, final ResourceValue resources) {
+        this(cityId, time, resources, new ResourceRatio(resources.getLayout().newVector(resources.size())),
+                new ResourceLimit(resources.getLayout().newVector(resources.size())), resources.empty(), null);
+    }
+
+    /**
+     * Constructor using existing storage for the ratio, the limit and the reserved amounts.
+     *
+     * @param cityId    Associated city.
+     * @param time      Time when the resources were updated for the last time.
+     * @param resources Contains the last computed resource values.
+     * @param ratio     Empty ratio, of the same size as the resources.
+     * @param limit     Empty limit, of the same size as the resources.
+     * @param held      Empty reserved amounts, of the same size as the resources.
+     * @param slot      Storage receiving the published state, null to keep the snapshot on the heap.
+     */
+    ResourcesProducer(final EntityId cityId, final long time, final ResourceValue resources, final ResourceRatio ratio, final ResourceLimit limit,
+                      final ResourceValue held, final ResourceSnapshotSlot slot) {
         super();
         this.city = cityId;
         this.lastUpdate = time;
-        int size = resources.getArray().length;
-        this.ratio = new ResourceRatio(new float[size]);
+        this.ratio = ratio;
         this.resources = resources;
-        this.limit = new ResourceLimit(new float[size]);
+        this.limit = limit;
+        this.held = held;
+        this.slot = slot;
+        this.publish();
         assert this.invariant();
     }
 
@@ -101,8 +193,9 @@ public final class ResourcesProducer {
      * Must only be called once all bonus have been applied to avoid being limited to 0.
      */
     //@ensures this.initialized == true
-    public void setInitialised() {
+    public synchronized void setInitialised() {
         this.initialized = true;
+        this.publish();
         assert this.invariant();
     }
 
@@ -113,13 +206,33 @@ public final class ResourcesProducer {
      */
     //@requires bonus != null
     //@ensures this.bonus.size() == (@pre this.bonus.size()+1)
-    public void addBonus(final BonusResources bonus) {
-        this.getResources();
+    public synchronized void addBonus(final BonusResources bonus) {
+        this.addBonus(bonus, System.currentTimeMillis());
+    }
+
+    /**
+     * Add a bonus from a given time, the resources are computed up to that time with the previous ratio and limit,
+     * this allows to apply a bonus change at the time it originally happened, for example when replaying a journal.
+     *
+     * @param bonus To add to this production limit or ratio.
+     * @param time  Time of the change, if it is before the last computation, the resources are not recomputed.
+     */
+    public synchronized void addBonus(final BonusResources bonus, final long time) {
+        this.updateResources(time);
+        BonusResources replaced = this.findBonus(bonus);
         this.limit.addBonus(bonus);
         this.ratio.addBonus(bonus);
         this.bonus.remove(bonus);
         this.bonus.add(bonus);
+        if (!this.scopes.isEmpty()) {
+            this.refreshEffective(bonus);
+            if (replaced != null) {
+                this.refreshEffective(replaced);
+            }
+        }
         this.bonusListenerList.forEach(l -> l.bonusAdded(bonus));
+        this.bonusChanged = true;
+        this.changed();
         assert this.invariant();
     }
 
@@ -128,11 +241,27 @@ public final class ResourcesProducer {
      *
      * @param bonus To remove from this production generation speed.
      */
-    public void removeBonus(final BonusResources bonus) {
-        this.getResources();
+    public synchronized void removeBonus(final BonusResources bonus) {
+        this.removeBonus(bonus, System.currentTimeMillis());
+    }
+
+    /**
+     * Remove a bonus from a given time, the resources are computed up to that time with the previous ratio and limit.
+     *
+     * @param bonus To remove from this production generation speed.
+     * @param time  Time of the change, if it is before the last computation, the resources are not recomputed.
+     */
+    public synchronized void removeBonus(final BonusResources bonus, final long time) {
+        this.updateResources(time);
+        BonusResources removed = this.findBonus(bonus);
         this.ratio.removeBonus(bonus);
         this.bonus.remove(bonus);
+        if (removed != null && !this.scopes.isEmpty()) {
+            this.refreshEffective(removed);
+        }
         this.bonusListenerList.forEach(l -> l.bonusRemoved(bonus));
+        this.bonusChanged = true;
+        this.changed();
         assert this.invariant();
     }
 
@@ -142,22 +271,54 @@ public final class ResourcesProducer {
      * @param time          Time since last computing.
      * @param resourceValue Value at the last time computed.
      */
-    public void setNewValues(final long time, final ResourceValue resourceValue) {
+    public synchronized void setNewValues(final long time, final ResourceValue resourceValue) {
         this.lastUpdate = time;
         this.resources.setValues(resourceValue);
+        this.changed();
         assert this.invariant();
     }
 
     /**
      * Compute and return the resource values, computation is time elapsed * ratio.
+     * The returned value is the producer state and must not be shared with other threads, use getSnapshot for that purpose.
      *
      * @return The current resource values.
      */
-    public ResourceValue getResources() {
+    public synchronized ResourceValue getResources() {
         this.updateResources();
         return this.resources;
     }
 
+    /**
+     * Compute the resource values up to a given time, this allows to compute several producers for the same time.
+     * If the time is before the last computation, values are not recomputed.
+     *
+     * @param time Time to compute the values for, in milliseconds.
+     * @return The resource values at the given time.
+     */
+    public synchronized ResourceValue getResources(final long time) {
+        this.updateResources(time);
+        return this.resources;
+    }
+
+    /**
+     * Compute the resource values up to a given time and add them to world statistics, the values are read under the producer lock.
+     *
+     * @param time       Time to compute the values for, in milliseconds.
+     * @param totals     Sums to add the values to, at least as long as the resource count.
+     * @param fullCounts Counts to increment for the resources at their limit, at least as long as the resource count.
+     */
+    synchronized void addTo(final long time, final double[] totals, final int[] fullCounts) {
+        this.updateResources(time);
+        for (int i = 0; i < this.resources.size(); i++) {
+            float v = this.resources.getValue(i);
+            totals[i] += v;
+            if (v >= this.getMax(i)) {
+                fullCounts[i]++;
+            }
+        }
+    }
+
     /**
      * Give a ratio.
      *
@@ -165,7 +326,21 @@ public final class ResourcesProducer {
      * @return The ratio value for the given resource.
      */
     public float getRatios(final int position) {
-        return this.ratio.getValues(position);
+        float result = this.ratio.getValues(position);
+        for (ScopeCursor c : this.scopes) {
+            result += c.scope.getRatio(position);
+        }
+        return result;
+    }
+
+    /**
+     * Give a ratio.
+     *
+     * @param type Resource type.
+     * @return The ratio value for the given resource.
+     */
+    public float getRatios(final ResourceType type) {
+        return this.getRatios(type.getId());
     }
 
     /**
@@ -179,6 +354,16 @@ public final class ResourcesProducer {
         return value.getValue(position);
     }
 
+    /**
+     * Return an up to date(recomputed now) resource value.
+     *
+     * @param type Resource type.
+     * @return The current resource amount for the given resource.
+     */
+    public float getResource(final ResourceType type) {
+        return this.getResource(type.getId());
+    }
+
     /**
      * Get the max value.
      *
@@ -186,43 +371,126 @@ public final class ResourcesProducer {
      * @return The max value for the given resource.
      */
     public float getMax(final int position) {
-        return this.limit.getLimits(position);
+        float result = this.limit.getLimits(position);
+        for (ScopeCursor c : this.scopes) {
+            result += c.scope.getLimit(position);
+        }
+        return result;
+    }
+
+    /**
+     * Get the max value.
+     *
+     * @param type Resource type.
+     * @return The max value for the given resource.
+     */
+    public float getMax(final ResourceType type) {
+        return this.getMax(type.getId());
     }
 
     /**
-     * Steal resource.
+     * Steal resource, reserved resources cannot be stolen.
      *
      * @param toRemove Amount of resource to steal.
      * @return The amount of resource stolen.
      */
-    public ResourceValue steal(final ResourceValue toRemove) {
+    public synchronized ResourceValue steal(final ResourceValue toRemove) {
         this.updateResources();
-        float[] resourcesToRemove = toRemove.getArray();
-        float[] resourcesValues = this.resources.getArray();
-        float[] stolenValues = new float[resourcesValues.length];
-        for (int i = 0; i < resourcesToRemove.length; i++) {
-            if (resourcesValues[i] >= resourcesToRemove[i]) {
-                stolenValues[i] = resourcesToRemove[i];
-                resourcesValues[i] -= resourcesToRemove[i];
-            } else {
-                stolenValues[i] = resourcesValues[i];
-                resourcesValues[i] = 0.0f;
+        ResourceValue stolen = this.resources.steal(toRemove, this.held);
+        this.changed();
+        return stolen;
+    }
+
+    /**
+     * Resolve several simultaneous thefts at once, the resources are computed once and, when they are not enough for all thieves,
+     * every thief gets a share proportional to what it tried to steal, so the result does not depend on the arrival order.
+     * Reserved resources cannot be stolen.
+     *
+     * @param thefts Theft requests, the amount being what the receiver tries to steal.
+     * @return The actual transfers, in the same order as the requests.
+     * @throws IllegalArgumentException If a request cause is not a theft.
+     */
+    public synchronized List<ResourceTransferDto> steal(final List<ResourceTransferDto> thefts) {
+        List<ResourceValue> amounts = new ArrayList<>(thefts.size());
+        for (ResourceTransferDto t : thefts) {
+            if (t.cause != TransferCause.THEFT) {
+                throw new IllegalArgumentException("Not a theft: " + t.cause);
             }
+            amounts.add(t.resources);
         }
-        return new ResourceValue(stolenValues);
+        this.updateResources();
+        List<ResourceValue> stolen = this.resources.steal(amounts, this.held);
+        List<ResourceTransferDto> result = new ArrayList<>(thefts.size());
+        for (int i = 0; i < thefts.size(); i++) {
+            ResourceTransferDto t = thefts.get(i);
+            result.add(new ResourceTransferDto(t.receiver, t.giver, stolen.get(i), TransferCause.THEFT));
+        }
+        this.changed();
+        return result;
     }
 
     /**
-     * Add resource to this one.
+     * Add resource to this one, the result is limited by the own limit plus the limits of the attached scopes.
      *
      * @param toAdd Amount of resource to add.
      */
-    public void add(final ResourceValue toAdd) {
+    public synchronized void add(final ResourceValue toAdd) {
         this.updateResources();
-        this.resources.add(toAdd, this.limit);
+        this.resources.add(toAdd, this.currentLimit());
+        this.changed();
         assert this.invariant();
     }
 
+    /**
+     * Attach a bonus scope, its ratio and limit are added to this producer ones, from now on.
+     * Changes of the scope are taken into account when the resources are computed, without notification,
+     * the published snapshots resolve them when projecting the values.
+     *
+     * @param scope Scope to attach.
+     * @throws IllegalArgumentException If the scope width does not match the resources.
+     */
+    public synchronized void addScope(final BonusScope scope) {
+        if (scope.getWidth() != this.resources.size()) {
+            throw new IllegalArgumentException("Expected " + this.resources.size() + " resources, got " + scope.getWidth());
+        }
+        this.getResources();
+        if (this.effectiveRatio == null) {
+            ResourceLayout layout = this.resources.getLayout();
+            this.effectiveRatio = new ResourceRatio(layout.newVector(this.resources.size()));
+            this.effectiveLimit = new ResourceLimit(layout.newVector(this.resources.size()));
+        }
+        if (this.scopes.isEmpty()) {
+            this.effectiveRatio.vector().clear();
+            this.effectiveLimit.vector().clear();
+            this.addSegment(this.ratio.vector(), this.limit.vector(), 1);
+        } else {
+            this.advanceScopes(this.lastUpdate);
+        }
+        ScopeCursor cursor = new ScopeCursor(scope);
+        this.scopes.add(cursor);
+        this.addSegment(cursor.segment.ratio, cursor.segment.limit, 1);
+        this.bonusChanged = true;
+        this.changed();
+    }
+
+    /**
+     * Detach a bonus scope, its ratio and limit are no longer used from now on.
+     *
+     * @param scope Scope to detach.
+     */
+    public synchronized void removeScope(final BonusScope scope) {
+        this.getResources();
+        this.advanceScopes(this.lastUpdate);
+        for (ScopeCursor c : this.scopes) {
+            if (c.scope == scope) {
+                this.scopes.remove(c);
+                this.addSegment(c.segment.ratio, c.segment.limit, -1);
+            }
+        }
+        this.bonusChanged = true;
+        this.changed();
+    }
+
     /**
      * Add a new bonus listener, if already in the list, it will not be added.
      *
@@ -243,24 +511,460 @@ public final class ResourcesProducer {
      * Recompute the resources.
      */
     private void updateResources() {
-        if (this.initialized) {
-            final long current = System.currentTimeMillis();
-            final long delta = current - this.lastUpdate;
-            this.lastUpdate = current;
-            this.resources.add(this.ratio, delta, this.limit);
+        this.updateResources(System.currentTimeMillis());
+    }
+
+    /**
+     * Recompute the resources up to a given time.
+     *
+     * @param time Time to compute the resources for.
+     */
+    private void updateResources(final long time) {
+        if (this.initialized && time >= this.lastUpdate) {
+            final long delta = time - this.lastUpdate;
+            this.lastUpdate = time;
+            if (this.scopes.isEmpty()) {
+                this.resources.add(this.ratio, delta, this.limit);
+            } else {
+                this.updateWithScopes(time - delta, time);
+            }
         }
         assert this.invariant();
     }
 
+    /**
+     * Compute the resources over a period, split at every change of the attached scopes.
+     *
+     * @param from Start of the period.
+     * @param to   End of the period.
+     */
+    private void updateWithScopes(final long from, final long to) {
+        long start = from;
+        do {
+            this.advanceScopes(start);
+            long end = to;
+            for (ScopeCursor c : this.scopes) {
+                BonusScope.Segment next = c.segment.next;
+                if (next != null && next.start < end) {
+                    end = next.start;
+                }
+            }
+            this.resources.add(this.effectiveRatio, end - start, this.effectiveLimit);
+            start = end;
+        } while (start < to);
+    }
+
+    /**
+     * Provide the limit used to clamp the resources at the last update, the own limit plus the scopes ones.
+     *
+     * @return The own limit if no scope is attached, the effective limit otherwise.
+     */
+    private ResourceLimit currentLimit() {
+        if (this.scopes.isEmpty()) {
+            return this.limit;
+        }
+        this.advanceScopes(this.lastUpdate);
+        return this.effectiveLimit;
+    }
+
+    /**
+     * Move every scope cursor to the segment active at a time, the effective ratio and limit are only updated for the resources
+     * changed by the crossed segments.
+     *
+     * @param time Time to move to.
+     */
+    private void advanceScopes(final long time) {
+        ResourceVector r = this.effectiveRatio.vector();
+        ResourceVector l = this.effectiveLimit.vector();
+        for (ScopeCursor c : this.scopes) {
+            BonusScope.Segment next = c.segment.next;
+            while (next != null && next.start <= time) {
+                for (int i : next.changed) {
+                    r.set(i, r.get(i) + next.ratio.get(i) - c.segment.ratio.get(i));
+                    l.set(i, l.get(i) + next.limit.get(i) - c.segment.limit.get(i));
+                }
+                c.segment = next;
+                next = next.next;
+            }
+        }
+    }
+
+    /**
+     * Add or subtract ratio and limit values to the effective ones.
+     *
+     * @param ratioValues Ratio to add.
+     * @param limitValues Limit to add.
+     * @param sign        1 to add the values, -1 to subtract them.
+     */
+    private void addSegment(final ResourceVector ratioValues, final ResourceVector limitValues, final int sign) {
+        ResourceVector r = this.effectiveRatio.vector();
+        ResourceVector l = this.effectiveLimit.vector();
+        for (int e = 0; e < ratioValues.entryCount(); e++) {
+            int i = ratioValues.entryIndex(e);
+            r.set(i, r.get(i) + sign * ratioValues.entryValue(e));
+        }
+        for (int e = 0; e < limitValues.entryCount(); e++) {
+            int i = limitValues.entryIndex(e);
+            l.set(i, l.get(i) + sign * limitValues.entryValue(e));
+        }
+    }
+
+    /**
+     * Compute again the effective ratio and limit of the resources used by an own bonus, from the own values and the scope segments.
+     *
+     * @param changed Added or removed bonus.
+     */
+    private void refreshEffective(final BonusResources changed) {
+        ResourceVector r = this.effectiveRatio.vector();
+        ResourceVector l = this.effectiveLimit.vector();
+        for (int n = 0; n < changed.getRatioIndexCount(); n++) {
+            int i = changed.getRatioIndex(n);
+            float value = this.ratio.getValues(i);
+            for (ScopeCursor c : this.scopes) {
+                value += c.segment.ratio.get(i);
+            }
+            r.set(i, value);
+        }
+        for (int n = 0; n < changed.getLimitIndexCount(); n++) {
+            int i = changed.getLimitIndex(n);
+            float value = this.limit.getLimits(i);
+            for (ScopeCursor c : this.scopes) {
+                value += c.segment.limit.get(i);
+            }
+            l.set(i, value);
+        }
+    }
+
+    /**
+     * Find the applied bonus equal to a given one.
+     *
+     * @param b Bonus to find.
+     * @return The applied bonus, null if none is equal.
+     */
+    private BonusResources findBonus(final BonusResources b) {
+        if (!this.bonus.contains(b)) {
+            return null;
+        }
+        for (BonusResources applied : this.bonus) {
+            if (applied.equals(b)) {
+                return applied;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The segments used by the scope cursors.
+     */
+    private BonusScope.Segment[] scopeSegments() {
+        if (this.scopes.isEmpty()) {
+            return NO_SEGMENT;
+        }
+        BonusScope.Segment[] result = new BonusScope.Segment[this.scopes.size()];
+        int n = 0;
+        for (ScopeCursor c : this.scopes) {
+            result[n++] = c.segment;
+        }
+        return result;
+    }
+
     /**
      * Buying logic, check if resources are enough to pay the parameter price, it is the case, price is removed from the resources amount and the method return <code>true</code>, else, nothing is done
-     * and the method returns <code>false</code>.
+     * and the method returns <code>false</code>. Reserved resources cannot be used to buy.
      *
      * @param price Amount of resources to remove.
      * @return <code>true</code> if the city had enough resources to pay the price and the transaction has been done, <code>false</code> otherwise.
      */
-    public boolean buy(final ResourceValue price) {
-        return this.resources.buy(price);
+    public synchronized boolean buy(final ResourceValue price) {
+        if (this.resources.canBuy(price, this.held)) {
+            this.resources.decrease(price);
+            this.changed();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reserve an amount of resources, once reserved, they cannot be bought or stolen until the reservation is committed or released.
+     * The resources are computed before checking if they are enough.
+     *
+     * @param amount Amount of resources to reserve.
+     * @return The reservation, empty if the available resources are not enough.
+     * @throws IllegalArgumentException If an amount is negative.
+     */
+    public synchronized Optional<ResourceReservation> reserve(final ResourceValue amount) {
+        if (amount.hasNegative()) {
+            throw new IllegalArgumentException("Negative amount cannot be reserved: " + amount);
+        }
+        this.updateResources();
+        if (!this.resources.canBuy(amount, this.held)) {
+            return Optional.empty();
+        }
+        this.held.increase(amount);
+        return Optional.of(new ResourceReservation(this, amount.copy()));
+    }
+
+    /**
+     * Reserve an amount of a single resource, see reserve.
+     *
+     * @param position Position of the resource to reserve.
+     * @param amount   Amount to reserve.
+     * @return The reservation, empty if the available resources are not enough.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public synchronized Optional<ResourceReservation> reserve(final int position, final float amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Negative amount cannot be reserved: " + amount);
+        }
+        this.updateResources();
+        if (this.resources.getValue(position) - this.held.getValue(position) < amount) {
+            return Optional.empty();
+        }
+        ResourceVector h = this.held.vector();
+        h.set(position, h.get(position) + amount);
+        ResourceValue reserved = this.resources.empty();
+        reserved.vector().set(position, amount);
+        return Optional.of(new ResourceReservation(this, reserved));
+    }
+
+    /**
+     * Compute the resources and check if a single resource can be paid, and if the resource received in return fits under the limit.
+     *
+     * @param paid           Position of the paid resource.
+     * @param paidAmount     Amount to pay.
+     * @param received       Position of the received resource.
+     * @param receivedAmount Amount to receive, the limit is not checked if it is 0.
+     * @return <code>true</code> if the exchange can be done.
+     */
+    synchronized boolean canExchange(final int paid, final float paidAmount, final int received, final float receivedAmount) {
+        this.updateResources();
+        ResourceVector v = this.resources.vector();
+        if (v.get(paid) < paidAmount) {
+            return false;
+        }
+        return receivedAmount <= 0 || v.get(received) + receivedAmount <= this.currentLimit().vector().get(received);
+    }
+
+    /**
+     * Pay a single resource from a reservation and receive another one, without any check, canExchange must have been checked
+     * while holding this producer lock.
+     *
+     * @param reservation    Reservation to consume.
+     * @param paid           Position of the paid resource.
+     * @param paidAmount     Amount to pay.
+     * @param received       Position of the received resource.
+     * @param receivedAmount Amount to receive.
+     */
+    synchronized void exchange(final ResourceReservation reservation, final int paid, final float paidAmount, final int received,
+                               final float receivedAmount) {
+        ResourceVector v = this.resources.vector();
+        v.set(paid, v.get(paid) - paidAmount);
+        v.set(received, v.get(received) + receivedAmount);
+        ResourceVector h = this.held.vector();
+        h.set(paid, h.get(paid) - paidAmount);
+        reservation.consumed(paid, paidAmount);
+        this.changed();
+    }
+
+    /**
+     * Consume a part of a reservation.
+     *
+     * @param reservation Reservation to consume.
+     * @param amount      Amount to consume, must not be bigger than the reservation remaining amount.
+     * @return <code>true</code> if the resources were removed, <code>false</code> if a negative production consumed them in the meantime.
+     */
+    synchronized boolean commit(final ResourceReservation reservation, final ResourceValue amount) {
+        if (!this.canCommit(amount)) {
+            return false;
+        }
+        this.consume(reservation, amount);
+        return true;
+    }
+
+    /**
+     * Compute the resources and check if they are enough to commit an amount.
+     *
+     * @param amount Amount to commit.
+     * @return <code>true</code> if the resources are enough.
+     */
+    synchronized boolean canCommit(final ResourceValue amount) {
+        this.updateResources();
+        return this.resources.canBuy(amount);
+    }
+
+    /**
+     * Remove a committed amount without any check, canCommit must have been checked while holding this producer lock.
+     *
+     * @param reservation Reservation to consume.
+     * @param amount      Amount to consume.
+     */
+    synchronized void consume(final ResourceReservation reservation, final ResourceValue amount) {
+        this.resources.decrease(amount);
+        this.held.decrease(amount);
+        reservation.consumed(amount);
+        this.changed();
+    }
+
+    /**
+     * Release the remaining amount of a reservation, so it can be used again.
+     *
+     * @param reservation Reservation to release.
+     */
+    synchronized void release(final ResourceReservation reservation) {
+        this.held.decrease(reservation.remaining());
+    }
+
+    /**
+     * Provide the total amount currently reserved.
+     *
+     * @param position Resource position.
+     * @return The reserved amount of the given resource.
+     */
+    public synchronized float getReserved(final int position) {
+        return this.held.getValue(position);
+    }
+
+    /**
+     * Add a listener notified when this producer state is modified, if already registered, it will not be added.
+     *
+     * @param listener Listener to add.
+     */
+    public void addChangeListener(final ResourceChangeListener listener) {
+        assert listener != null;
+        this.changeListenerList.add(listener);
+    }
+
+    /**
+     * Remove a change listener.
+     *
+     * @param listener Listener to remove.
+     */
+    public void removeChangeListener(final ResourceChangeListener listener) {
+        this.changeListenerList.remove(listener);
+    }
+
+    /**
+     * @return <code>true</code> if the state has been modified since the last call to clearDirty.
+     */
+    public boolean isDirty() {
+        return this.dirty;
+    }
+
+    /**
+     * Reset the modification flag, to be called before persisting the state.
+     *
+     * @return <code>true</code> if the producer was dirty.
+     */
+    public synchronized boolean clearDirty() {
+        boolean wasDirty = this.dirty;
+        this.dirty = false;
+        return wasDirty;
+    }
+
+    /**
+     * Set the modification flag again, to be called when persisting the state failed after clearDirty.
+     */
+    public void markDirty() {
+        this.dirty = true;
+    }
+
+    /**
+     * Provide the persistable state of this producer, the values are the ones computed at the last update time, they are not recomputed.
+     *
+     * @return The last computed values and their time.
+     */
+    public ResourceValueDto toValueDto() {
+        return this.getSnapshot().toValueDto();
+    }
+
+    /**
+     * Provide the last published state, it is immutable and can be shared between threads without copy.
+     * A new snapshot is published after every modification, recomputing the values over time does not publish a new one,
+     * use the snapshot projection to get the values at a later time.
+     * When the producer is backed by an off heap store, the snapshot is read from the store on every call.
+     *
+     * @return The last published state.
+     */
+    public ResourceSnapshot getSnapshot() {
+        if (this.slot == null) {
+            return this.snapshot;
+        }
+        return this.slot.read(this.slotBonusIndexes, this.slotSegments);
+    }
+
+    /**
+     * Flag the producer as modified and notify the listeners.
+     */
+    private void changed() {
+        this.publish();
+        this.dirty = true;
+        for (ResourceChangeListener l : this.changeListenerList) {
+            l.resourcesChanged(this);
+        }
+    }
+
+    /**
+     * Publish a new snapshot of the current state, ratio, limit and bonus indexes are shared with the previous snapshot unless a bonus changed them.
+     */
+    private void publish() {
+        if (this.slot != null) {
+            this.publishInSlot();
+            return;
+        }
+        ResourceSnapshot previous = this.snapshot;
+        ResourceVector ratioValues;
+        ResourceVector limitValues;
+        int[] bonusIndexes;
+        BonusScope.Segment[] segments = NO_SEGMENT;
+        if (!this.scopes.isEmpty()) {
+            this.advanceScopes(this.lastUpdate);
+            segments = this.scopeSegments();
+            ratioValues = this.effectiveRatio.vector().copy();
+            limitValues = this.effectiveLimit.vector().copy();
+            bonusIndexes = previous == null || this.bonusChanged ? this.bonusIndexes() : previous.bonusIndexes();
+            this.bonusChanged = false;
+        } else if (previous == null || this.bonusChanged) {
+            ratioValues = this.ratio.vector().copy();
+            limitValues = this.limit.vector().copy();
+            bonusIndexes = this.bonusIndexes();
+            this.bonusChanged = false;
+        } else {
+            ratioValues = previous.ratio();
+            limitValues = previous.limit();
+            bonusIndexes = previous.bonusIndexes();
+        }
+        long version = previous == null ? 0 : previous.getVersion() + 1;
+        this.snapshot = new ResourceSnapshot(this.city, this.resources.vector().copy(), ratioValues, limitValues, bonusIndexes, segments,
+                this.lastUpdate, this.initialized, version);
+    }
+
+    /**
+     * Copy the current state in the slot, without building any heap snapshot.
+     */
+    private void publishInSlot() {
+        ResourceVector ratioValues = this.ratio.vector();
+        ResourceVector limitValues = this.limit.vector();
+        BonusScope.Segment[] segments = NO_SEGMENT;
+        if (!this.scopes.isEmpty()) {
+            this.advanceScopes(this.lastUpdate);
+            segments = this.scopeSegments();
+            ratioValues = this.effectiveRatio.vector();
+            limitValues = this.effectiveLimit.vector();
+        }
+        this.slotSegments = segments;
+        if (this.slotBonusIndexes == null || this.bonusChanged) {
+            this.slotBonusIndexes = this.bonusIndexes();
+            this.bonusChanged = false;
+        }
+        this.slotVersion++;
+        this.slot.write(this.resources.vector(), ratioValues, limitValues, this.lastUpdate, this.initialized, this.slotVersion);
+    }
+
+    /**
+     * @return The sorted indexes of the applied bonus, bonus without index are ignored.
+     */
+    private int[] bonusIndexes() {
+        return this.bonus.stream().mapToInt(BonusResources::getIndex).filter(i -> i != -1).sorted().toArray();
     }
 
     @Override
@@ -300,13 +1004,13 @@ public final class ResourcesProducer {
     }
 
     /**
-     * Check if the resources are enough to buy.
+     * Check if the resources are enough to buy, reserved resources are not taken into account.
      *
      * @param price Price to buy.
-     * @return <code>true</code> if resources are bigger than the price.
+     * @return <code>true</code> if resources minus the reserved ones are bigger than the price.
      */
-    public boolean canBuy(ResourceValue price) {
-        return this.resources.canBuy(price);
+    public synchronized boolean canBuy(ResourceValue price) {
+        return this.resources.canBuy(price, this.held);
     }
 
     /**
@@ -316,11 +1020,41 @@ public final class ResourcesProducer {
         return this.ratio.hasNegative();
     }
 
+    /**
+     * @return The number of resources handled by this producer.
+     */
+    public int getResourceCount() {
+        return this.resources.size();
+    }
+
     public EntityId getCity() {
         return this.city;
     }
 
+    /**
+     * @return The order in which this producer is locked with others, unique for every producer.
+     */
+    long getLockOrder() {
+        return this.lockOrder;
+    }
+
     public long getLastUpdate() {
         return this.lastUpdate;
     }
+
+    /**
+     * Attached scope and the segment used at the last update.
+     */
+    private static final class ScopeCursor {
+
+        private final BonusScope scope;
+
+        private BonusScope.Segment segment;
+
+        private ScopeCursor(final BonusScope scope) {
+            super();
+            this.scope = scope;
+            this.segment = scope.current();
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Resources shared by several players, like an alliance treasury, receiving many concurrent deposits.
+ * Deposits are accumulated without lock in striped cells, one adder per resource, and only moved to the balance when
+ * it is read or withdrawn from. The limit is applied when the deposits are moved, the part exceeding it is lost,
+ * as it would be by adding directly to the balance.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class SharedResourcePool {
+
+    /**
+     * Deposits not yet moved to the balance, one per resource.
+     */
+    private final DoubleAdder[] pending;
+
+    /**
+     * Reconciled resources.
+     */
+    private final ResourceValue balance;
+
+    /**
+     * Maximum amount for every resource.
+     */
+    private final ResourceLimit limit;
+
+    /**
+     * Create a new pool, the limit is 0 until a bonus is added.
+     *
+     * @param initial Initial balance, a copy is used.
+     */
+    public SharedResourcePool(final ResourceValue initial) {
+        super();
+        assert initial != null;
+        int size = initial.size();
+        this.balance = initial.copy();
+        this.limit = new ResourceLimit(initial.getLayout().newVector(size));
+        this.pending = new DoubleAdder[size];
+        for (int i = 0; i < size; i++) {
+            this.pending[i] = new DoubleAdder();
+        }
+    }
+
+    /**
+     * Deposit resources, this never blocks.
+     *
+     * @param amount Amount to deposit.
+     */
+    public void deposit(final ResourceValue amount) {
+        assert amount != null;
+        assert amount.size() == this.pending.length;
+        ResourceVector v = amount.vector();
+        for (int i = 0; i < v.entryCount(); i++) {
+            float value = v.entryValue(i);
+            if (value != 0) {
+                this.pending[v.entryIndex(i)].add(value);
+            }
+        }
+    }
+
+    /**
+     * Deposit a single resource, this never blocks.
+     *
+     * @param position Resource position.
+     * @param amount   Amount to deposit.
+     */
+    public void deposit(final int position, final float amount) {
+        this.pending[position].add(amount);
+    }
+
+    /**
+     * Withdraw resources if the balance is enough, nothing is withdrawn otherwise.
+     *
+     * @param amount Amount to withdraw.
+     * @return <code>true</code> if the amount was withdrawn.
+     */
+    public synchronized boolean withdraw(final ResourceValue amount) {
+        this.reconcile();
+        if (this.balance.canBuy(amount)) {
+            this.balance.decrease(amount);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return A copy of the balance, including all deposits made before.
+     */
+    public synchronized ResourceValue getBalance() {
+        this.reconcile();
+        return this.balance.copy();
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The balance of the resource, including all deposits made before.
+     */
+    public synchronized float getBalance(final int position) {
+        this.reconcile();
+        return this.balance.getValue(position);
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The maximum amount for the resource.
+     */
+    public synchronized float getLimit(final int position) {
+        return this.limit.getLimits(position);
+    }
+
+    /**
+     * Add a limit bonus to the pool, the ratio part is not used.
+     * The deposits made before are reconciled with the previous limit.
+     *
+     * @param bonus Bonus to add.
+     */
+    public synchronized void addBonus(final BonusResources bonus) {
+        this.reconcile();
+        this.limit.addBonus(bonus);
+    }
+
+    /**
+     * Move the pending deposits to the balance, clamped to the limit.
+     */
+    private void reconcile() {
+        ResourceVector toAdd = null;
+        for (int i = 0; i < this.pending.length; i++) {
+            double value = this.pending[i].sumThenReset();
+            if (value != 0) {
+                if (toAdd == null) {
+                    toAdd = this.balance.getLayout().newVector(this.pending.length);
+                }
+                toAdd.set(i, (float) value);
+            }
+        }
+        if (toAdd != null) {
+            this.balance.add(new ResourceValue(toAdd), this.limit);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import java.util.Arrays;
+
+/**
+ * Vector storing only the non empty resource values, as index/value pairs sorted by index.
+ * Entries set to 0 are kept until the vector is copied, so existing entries never move while they are updated.
+ *
+ * @author Grégory Van den Borre
+ */
+final class SparseResourceVector extends ResourceVector {
+
+    /**
+     * Initial capacity for the entries.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Number of resources in the catalog.
+     */
+    private final int width;
+
+    /**
+     * Resource indexes of the entries, sorted.
+     */
+    private int[] indexes;
+
+    /**
+     * Values of the entries.
+     */
+    private float[] values;
+
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Create an empty vector.
+     *
+     * @param width Number of resources in the catalog.
+     */
+    SparseResourceVector(final int width) {
+        this(width, new int[INITIAL_CAPACITY], new float[INITIAL_CAPACITY], 0);
+    }
+
+    private SparseResourceVector(final int width, final int[] indexes, final float[] values, final int size) {
+        super();
+        assert width >= 0;
+        this.width = width;
+        this.indexes = indexes;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Create a vector from a dense array, only the non 0 values are kept.
+     *
+     * @param dense Values.
+     * @return The created vector.
+     */
+    static SparseResourceVector of(final float[] dense) {
+        int count = 0;
+        for (float v : dense) {
+            if (v != 0) {
+                count++;
+            }
+        }
+        int[] indexes = new int[Math.max(count, INITIAL_CAPACITY)];
+        float[] values = new float[indexes.length];
+        int entry = 0;
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] != 0) {
+                indexes[entry] = i;
+                values[entry] = dense[i];
+                entry++;
+            }
+        }
+        return new SparseResourceVector(dense.length, indexes, values, count);
+    }
+
+    @Override
+    ResourceLayout layout() {
+        return ResourceLayout.SPARSE;
+    }
+
+    @Override
+    int width() {
+        return this.width;
+    }
+
+    @Override
+    float get(final int index) {
+        int entry = Arrays.binarySearch(this.indexes, 0, this.size, index);
+        return entry >= 0 ? this.values[entry] : 0;
+    }
+
+    @Override
+    void set(final int index, final float value) {
+        assert index >= 0 && index < this.width;
+        int entry = Arrays.binarySearch(this.indexes, 0, this.size, index);
+        if (entry >= 0) {
+            this.values[entry] = value;
+        } else if (value != 0) {
+            this.insert(-entry - 1, index, value);
+        }
+    }
+
+    @Override
+    boolean contains(final int index) {
+        return Arrays.binarySearch(this.indexes, 0, this.size, index) >= 0;
+    }
+
+    @Override
+    int entryCount() {
+        return this.size;
+    }
+
+    @Override
+    int entryIndex(final int entry) {
+        return this.indexes[entry];
+    }
+
+    @Override
+    float entryValue(final int entry) {
+        return this.values[entry];
+    }
+
+    @Override
+    void setEntryValue(final int entry, final float value) {
+        this.values[entry] = value;
+    }
+
+    @Override
+    void clear() {
+        this.size = 0;
+    }
+
+    @Override
+    SparseResourceVector copy() {
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.values[i] != 0) {
+                count++;
+            }
+        }
+        int[] copyIndexes = new int[Math.max(count, INITIAL_CAPACITY)];
+        float[] copyValues = new float[copyIndexes.length];
+        int entry = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.values[i] != 0) {
+                copyIndexes[entry] = this.indexes[i];
+                copyValues[entry] = this.values[i];
+                entry++;
+            }
+        }
+        return new SparseResourceVector(this.width, copyIndexes, copyValues, count);
+    }
+
+    private void insert(final int entry, final int index, final float value) {
+        if (this.size == this.indexes.length) {
+            int capacity = Math.min(Math.max(this.size << 1, INITIAL_CAPACITY), Math.max(this.width, INITIAL_CAPACITY));
+            this.indexes = Arrays.copyOf(this.indexes, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        System.arraycopy(this.indexes, entry, this.indexes, entry + 1, this.size - entry);
+        System.arraycopy(this.values, entry, this.values, entry + 1, this.size - entry);
+        this.indexes[entry] = index;
+        this.values[entry] = value;
+        this.size++;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compute all the producers of a world up to the same time, in parallel.
+ * The producers are split in fixed size partitions and the partial statistics are always combined in the same order,
+ * so the result does not depend on the number of threads.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class WorldTick {
+
+    /**
+     * Default number of producers computed sequentially by a task.
+     */
+    private static final int DEFAULT_PARTITION_SIZE = 1024;
+
+    /**
+     * Pool running the computation.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Number of producers computed sequentially by a task.
+     */
+    private final int partitionSize;
+
+    /**
+     * Create a new world tick using the common pool.
+     */
+    public WorldTick() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARTITION_SIZE);
+    }
+
+    /**
+     * Create a new world tick.
+     *
+     * @param pool          Pool running the computation.
+     * @param partitionSize Number of producers computed sequentially by a task.
+     */
+    public WorldTick(final ForkJoinPool pool, final int partitionSize) {
+        super();
+        assert pool != null;
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive: " + partitionSize);
+        }
+        this.pool = pool;
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * Compute all the producers up to the given time.
+     *
+     * @param producers Producers to compute, the list must support fast random access.
+     * @param time      Time to compute the producers for.
+     * @return The aggregated statistics of the producers once computed.
+     */
+    public WorldTickResult run(final List<ResourcesProducer> producers, final long time) {
+        assert producers != null;
+        Partial partial = this.pool.invoke(new TickTask(producers, 0, producers.size(), time, this.partitionSize));
+        return new WorldTickResult(time, producers.size(), partial.totals, partial.fullCounts);
+    }
+
+    /**
+     * Statistics for a part of the producers.
+     */
+    private static final class Partial {
+
+        private double[] totals = new double[0];
+
+        private int[] fullCounts = new int[0];
+
+        private void ensureSize(final int size) {
+            if (this.totals.length < size) {
+                this.totals = Arrays.copyOf(this.totals, size);
+                this.fullCounts = Arrays.copyOf(this.fullCounts, size);
+            }
+        }
+
+        private void add(final ResourcesProducer producer, final long time) {
+            this.ensureSize(producer.getResourceCount());
+            producer.addTo(time, this.totals, this.fullCounts);
+        }
+
+        private Partial combine(final Partial other) {
+            this.ensureSize(other.totals.length);
+            for (int i = 0; i < other.totals.length; i++) {
+                this.totals[i] += other.totals[i];
+                this.fullCounts[i] += other.fullCounts[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Compute a range of producers, split it in two halves until it is small enough.
+     */
+    private static final class TickTask extends RecursiveTask<Partial> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<ResourcesProducer> producers;
+
+        private final int from;
+
+        private final int to;
+
+        private final long time;
+
+        private final int partitionSize;
+
+        private TickTask(final List<ResourcesProducer> producers, final int from, final int to, final long time, final int partitionSize) {
+            super();
+            this.producers = producers;
+            this.from = from;
+            this.to = to;
+            this.time = time;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (this.to - this.from <= this.partitionSize) {
+                Partial partial = new Partial();
+                for (int i = this.from; i < this.to; i++) {
+                    partial.add(this.producers.get(i), this.time);
+                }
+                return partial;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            TickTask left = new TickTask(this.producers, this.from, middle, this.time, this.partitionSize);
+            TickTask right = new TickTask(this.producers, middle, this.to, this.time, this.partitionSize);
+            right.fork();
+            Partial leftResult = left.compute();
+            return leftResult.combine(right.join());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import java.util.Arrays;
+
+/**
+ * Aggregated statistics of a world tick, immutable class.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class WorldTickResult {
+
+    /**
+     * Time all the producers have been computed for.
+     */
+    private final long time;
+
+    /**
+     * Number of computed producers.
+     */
+    private final int producerCount;
+
+    /**
+     * Sum of every resource for all producers.
+     */
+    private final double[] totals;
+
+    /**
+     * Number of producers having reached their limit, for every resource.
+     */
+    private final int[] fullCounts;
+
+    WorldTickResult(final long time, final int producerCount, final double[] totals, final int[] fullCounts) {
+        super();
+        this.time = time;
+        this.producerCount = producerCount;
+        this.totals = totals;
+        this.fullCounts = fullCounts;
+    }
+
+    /**
+     * @return The time all the producers have been computed for.
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return The number of computed producers.
+     */
+    public int getProducerCount() {
+        return this.producerCount;
+    }
+
+    /**
+     * @return The number of resources in the statistics.
+     */
+    public int getResourceCount() {
+        return this.totals.length;
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The sum of the resource for all producers.
+     */
+    public double getTotal(final int position) {
+        return this.totals[position];
+    }
+
+    /**
+     * @param position Resource position.
+     * @return The number of producers having reached their limit for the resource.
+     */
+    public int getFullCount(final int position) {
+        return this.fullCounts[position];
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        WorldTickResult that = (WorldTickResult) o;
+        return this.time == that.time
+                && this.producerCount == that.producerCount
+                && Arrays.equals(this.totals, that.totals)
+                && Arrays.equals(this.fullCounts, that.fullCounts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(this.time);
+        result = 31 * result + this.producerCount;
+        result = 31 * result + Arrays.hashCode(this.totals);
+        result = 31 * result + Arrays.hashCode(this.fullCounts);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "World tick: " + this.producerCount + " producers at " + this.time + ", totals: " + Arrays.toString(this.totals);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.aggregate;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Sum of producer contributions, kept as a value and a slope at a reference time for every resource.
+ * Breakpoints of the contributions are stored in a queue ordered by time and applied when the reference time moves past them,
+ * so reading a total is constant time once the pending breakpoints are consumed.
+ * Times are kept in double to represent breakpoints between two milliseconds. This class is not thread safe.
+ *
+ * @author Grégory Van den Borre
+ */
+final class Aggregate {
+
+    /**
+     * Minimum number of obsolete events before the queue is purged.
+     */
+    private static final int PURGE_THRESHOLD = 64;
+
+    /**
+     * Totals, each one at its own time.
+     */
+    private final double[] totals;
+
+    /**
+     * Time of every total.
+     */
+    private final double[] times;
+
+    /**
+     * Total variation per millisecond.
+     */
+    private final double[] slopes;
+
+    /**
+     * Pending slope changes.
+     */
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    /**
+     * Reference time, never decreases, all events before it have been applied.
+     */
+    private double time = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Number of contributions in this aggregate.
+     */
+    private int count;
+
+    /**
+     * Number of events in the queue belonging to removed contributions.
+     */
+    private int obsolete;
+
+    /**
+     * Create an empty aggregate.
+     *
+     * @param size Number of resources.
+     */
+    Aggregate(final int size) {
+        super();
+        this.totals = new double[size];
+        this.times = new double[size];
+        this.slopes = new double[size];
+    }
+
+    /**
+     * Add a contribution, the reference time is moved to the contribution time if it is later.
+     *
+     * @param c Contribution to add.
+     */
+    void add(final Contribution c) {
+        this.advance(c.time());
+        for (int i = 0; i < this.totals.length; i++) {
+            this.move(i, this.time);
+            this.totals[i] += c.valueAt(i, this.time);
+            this.slopes[i] += c.slopeAt(i, this.time);
+            double breakpoint = c.breakpoint(i);
+            if (breakpoint > this.time) {
+                this.events.add(new Event(breakpoint, i, c.slopeDelta(i), c));
+            }
+        }
+        this.count++;
+    }
+
+    /**
+     * Remove a contribution previously added, it must have been flagged as removed.
+     *
+     * @param c Contribution to remove.
+     */
+    void remove(final Contribution c) {
+        assert c.removed;
+        this.count--;
+        if (this.count == 0) {
+            this.events.clear();
+            this.obsolete = 0;
+            Arrays.fill(this.totals, 0);
+            Arrays.fill(this.slopes, 0);
+            return;
+        }
+        for (int i = 0; i < this.totals.length; i++) {
+            this.move(i, this.time);
+            this.totals[i] -= c.valueAt(i, this.time);
+            this.slopes[i] -= c.slopeAt(i, this.time);
+            if (c.breakpoint(i) > this.time) {
+                this.obsolete++;
+            }
+        }
+        if (this.obsolete > PURGE_THRESHOLD && this.obsolete > this.events.size() / 2) {
+            this.events.removeIf(e -> e.contribution.removed);
+            this.obsolete = 0;
+        }
+    }
+
+    /**
+     * Move the reference time forward, applying the breakpoints on the way.
+     *
+     * @param to New reference time, ignored if before the current one.
+     */
+    void advance(final double to) {
+        if (to <= this.time) {
+            return;
+        }
+        Event e = this.events.peek();
+        while (e != null && e.time <= to) {
+            this.events.poll();
+            if (e.contribution.removed) {
+                this.obsolete--;
+            } else {
+                this.move(e.index, e.time);
+                this.slopes[e.index] += e.delta;
+            }
+            e = this.events.peek();
+        }
+        this.time = to;
+    }
+
+    /**
+     * @param index Resource index.
+     * @return The total at the reference time.
+     */
+    double total(final int index) {
+        double slope = this.slopes[index];
+        return slope == 0 ? this.totals[index] : this.totals[index] + slope * (this.time - this.times[index]);
+    }
+
+    /**
+     * @param index Resource index.
+     * @return The total variation per millisecond at the reference time.
+     */
+    double slope(final int index) {
+        return this.slopes[index];
+    }
+
+    /**
+     * @return The reference time.
+     */
+    double time() {
+        return this.time;
+    }
+
+    /**
+     * @return The number of contributions.
+     */
+    int count() {
+        return this.count;
+    }
+
+    private void move(final int index, final double to) {
+        if (this.slopes[index] != 0) {
+            this.totals[index] += this.slopes[index] * (to - this.times[index]);
+        }
+        this.times[index] = to;
+    }
+
+    /**
+     * Slope change for a resource of a contribution.
+     */
+    private static final class Event implements Comparable<Event> {
+
+        private final double time;
+
+        private final int index;
+
+        private final double delta;
+
+        private final Contribution contribution;
+
+        private Event(final double time, final int index, final double delta, final Contribution contribution) {
+            super();
+            this.time = time;
+            this.index = index;
+            this.delta = delta;
+            this.contribution = contribution;
+        }
+
+        @Override
+        public int compareTo(final Event o) {
+            return Double.compare(this.time, o.time);
+        }
+    }
+}
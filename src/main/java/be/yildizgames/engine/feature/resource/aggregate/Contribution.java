@@ -0,0 +1,174 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.aggregate;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+
+/**
+ * Contribution of a producer to the aggregates, taken from a snapshot.
+ * For every resource, the contribution over time is min(value + ratio * elapsed, limit), a linear segment and a constant one,
+ * the time where the segments meet is the breakpoint.
+ *
+ * @author Grégory Van den Borre
+ */
+final class Contribution {
+
+    /**
+     * Player owning the producer.
+     */
+    final PlayerId player;
+
+    /**
+     * Resource values at the snapshot time.
+     */
+    private final float[] values;
+
+    /**
+     * Generation rate, per millisecond.
+     */
+    private final double[] rates;
+
+    /**
+     * Resource limits.
+     */
+    private final float[] limits;
+
+    /**
+     * Snapshot time.
+     */
+    private final long time;
+
+    /**
+     * Values only change over time if the producer was initialized.
+     */
+    private final boolean initialized;
+
+    /**
+     * Version of the snapshot this contribution was taken from.
+     */
+    final long version;
+
+    /**
+     * Set once the contribution has been replaced or removed, its pending events are then ignored.
+     */
+    boolean removed;
+
+    /**
+     * Create a contribution from a producer snapshot.
+     *
+     * @param player   Player owning the producer.
+     * @param snapshot Producer state.
+     */
+    Contribution(final PlayerId player, final ResourceSnapshot snapshot) {
+        super();
+        this.player = player;
+        int size = snapshot.getSize();
+        this.values = new float[size];
+        this.rates = new double[size];
+        this.limits = new float[size];
+        for (int i = 0; i < size; i++) {
+            this.values[i] = snapshot.getValue(i);
+            this.rates[i] = snapshot.getRatio(i) * 0.001;
+            this.limits[i] = snapshot.getLimit(i);
+        }
+        this.time = snapshot.getLastUpdate();
+        this.initialized = snapshot.isInitialized();
+        this.version = snapshot.getVersion();
+    }
+
+    /**
+     * @return The number of resources.
+     */
+    int size() {
+        return this.values.length;
+    }
+
+    /**
+     * @return The snapshot time.
+     */
+    long time() {
+        return this.time;
+    }
+
+    /**
+     * Compute the value at a given time, not before the snapshot time.
+     *
+     * @param index Resource index.
+     * @param at    Time in milliseconds.
+     * @return The resource amount at that time.
+     */
+    double valueAt(final int index, final double at) {
+        if (!this.initialized) {
+            return this.values[index];
+        }
+        return Math.min(this.values[index] + this.rates[index] * (at - this.time), this.limits[index]);
+    }
+
+    /**
+     * Compute the variation per millisecond at a given time, at the breakpoint, the slope after it is returned.
+     *
+     * @param index Resource index.
+     * @param at    Time in milliseconds.
+     * @return The amount variation per millisecond.
+     */
+    double slopeAt(final int index, final double at) {
+        if (!this.initialized || this.rates[index] == 0) {
+            return 0;
+        }
+        double breakpoint = this.breakpoint(index);
+        if (this.rates[index] > 0) {
+            return at < breakpoint ? this.rates[index] : 0;
+        }
+        return at < breakpoint ? 0 : this.rates[index];
+    }
+
+    /**
+     * Compute the time where the slope changes: the limit is reached for a positive rate,
+     * the value goes below the limit for a negative rate.
+     *
+     * @param index Resource index.
+     * @return The breakpoint time, negative infinity if the slope never changes.
+     */
+    double breakpoint(final int index) {
+        double rate = this.rates[index];
+        if (!this.initialized || rate == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double gap = this.limits[index] - this.values[index];
+        if ((rate > 0 && gap <= 0) || (rate < 0 && gap > 0)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return this.time + gap / rate;
+    }
+
+    /**
+     * @param index Resource index.
+     * @return The slope variation at the breakpoint.
+     */
+    double slopeDelta(final int index) {
+        return this.rates[index] > 0 ? -this.rates[index] : this.rates[index];
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.aggregate;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceChangeListener;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Maintain the resource totals per player and for the whole world.
+ * Every tracked producer contributes its last snapshot, projected in closed form over time: the contribution grows with the ratio until the limit is reached.
+ * When a producer is modified(buy, steal, add, bonus...), it is only queued without locking the aggregator,
+ * and its previous contribution is replaced by its new snapshot at the next read, so reading a total only visits the modified cities.
+ * Totals can only be read for times after the last read or modification, earlier times are considered as that time.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceAggregator implements ResourceChangeListener {
+
+    /**
+     * Number of resources.
+     */
+    private final int size;
+
+    /**
+     * Totals for all tracked producers.
+     */
+    private final Aggregate world;
+
+    /**
+     * Totals per player.
+     */
+    private final Map<PlayerId, Aggregate> players = new HashMap<>();
+
+    /**
+     * Current contribution of every tracked producer.
+     */
+    private final Map<ResourcesProducer, Contribution> contributions = new HashMap<>();
+
+    /**
+     * Producers modified since the last read, in modification order.
+     */
+    private final Queue<ResourcesProducer> modified = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Producers currently in the modified queue, to queue them only once.
+     */
+    private final Set<ResourcesProducer> queued = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a new aggregator.
+     *
+     * @param size Number of resources in the producers.
+     */
+    public ResourceAggregator(final int size) {
+        super();
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be positive: " + size);
+        }
+        this.size = size;
+        this.world = new Aggregate(size);
+    }
+
+    /**
+     * Start tracking a producer, its changes will be applied to the totals. A producer already tracked is moved to the given player.
+     *
+     * @param player   Player owning the producer.
+     * @param producer Producer to track.
+     * @throws IllegalArgumentException If the producer does not have the expected number of resources.
+     */
+    public void track(final PlayerId player, final ResourcesProducer producer) {
+        assert player != null;
+        assert producer != null;
+        if (producer.getResourceCount() != this.size) {
+            throw new IllegalArgumentException("Producer has " + producer.getResourceCount() + " resources, expected " + this.size);
+        }
+        synchronized (this) {
+            this.replace(producer, new Contribution(player, producer.getSnapshot()));
+        }
+        producer.addChangeListener(this);
+        this.resourcesChanged(producer);
+    }
+
+    /**
+     * Stop tracking a producer, its contribution is removed from the totals.
+     *
+     * @param producer Producer to stop tracking.
+     */
+    public void untrack(final ResourcesProducer producer) {
+        producer.removeChangeListener(this);
+        synchronized (this) {
+            this.replace(producer, null);
+        }
+    }
+
+    @Override
+    public void resourcesChanged(final ResourcesProducer producer) {
+        if (this.queued.add(producer)) {
+            this.modified.offer(producer);
+        }
+    }
+
+    /**
+     * Provide a world total.
+     *
+     * @param index Resource index.
+     * @param time  Time to compute the total for.
+     * @return The sum of the resource for all tracked producers.
+     */
+    public synchronized double getWorldTotal(final int index, final long time) {
+        this.applyModified();
+        this.world.advance(time);
+        return this.world.total(index);
+    }
+
+    /**
+     * Provide a world production rate.
+     *
+     * @param index Resource index.
+     * @param time  Time to compute the rate for.
+     * @return The sum of the resource generation per second, producers having reached their limit are not counted.
+     */
+    public synchronized double getWorldRate(final int index, final long time) {
+        this.applyModified();
+        this.world.advance(time);
+        return this.world.slope(index) * 1000;
+    }
+
+    /**
+     * Provide a player total.
+     *
+     * @param player Player.
+     * @param index  Resource index.
+     * @param time   Time to compute the total for.
+     * @return The sum of the resource for all producers of the player, 0 if the player has none.
+     */
+    public synchronized double getPlayerTotal(final PlayerId player, final int index, final long time) {
+        this.applyModified();
+        Aggregate aggregate = this.players.get(player);
+        if (aggregate == null) {
+            return 0;
+        }
+        aggregate.advance(time);
+        return aggregate.total(index);
+    }
+
+    /**
+     * Provide all totals for a player.
+     *
+     * @param player Player.
+     * @param time   Time to compute the totals for.
+     * @return The sum of every resource for all producers of the player.
+     */
+    public synchronized double[] getPlayerTotals(final PlayerId player, final long time) {
+        this.applyModified();
+        double[] result = new double[this.size];
+        Aggregate aggregate = this.players.get(player);
+        if (aggregate != null) {
+            aggregate.advance(time);
+            for (int i = 0; i < result.length; i++) {
+                result[i] = aggregate.total(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Provide a player production rate.
+     *
+     * @param player Player.
+     * @param index  Resource index.
+     * @param time   Time to compute the rate for.
+     * @return The sum of the resource generation per second for all producers of the player.
+     */
+    public synchronized double getPlayerRate(final PlayerId player, final int index, final long time) {
+        this.applyModified();
+        Aggregate aggregate = this.players.get(player);
+        if (aggregate == null) {
+            return 0;
+        }
+        aggregate.advance(time);
+        return aggregate.slope(index) * 1000;
+    }
+
+    /**
+     * @return The number of tracked producers.
+     */
+    public synchronized int getProducerCount() {
+        return this.contributions.size();
+    }
+
+    /**
+     * Replace the contribution of the modified producers by their last snapshot.
+     * A producer is removed from the queued set before its snapshot is read, so a later modification queues it again.
+     */
+    private void applyModified() {
+        ResourcesProducer producer;
+        while ((producer = this.modified.poll()) != null) {
+            this.queued.remove(producer);
+            Contribution current = this.contributions.get(producer);
+            if (current != null) {
+                ResourceSnapshot snapshot = producer.getSnapshot();
+                if (snapshot.getVersion() != current.version) {
+                    this.replace(producer, new Contribution(current.player, snapshot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the contribution of a producer.
+     *
+     * @param producer     Producer.
+     * @param contribution New contribution, null to only remove the current one.
+     */
+    private void replace(final ResourcesProducer producer, final Contribution contribution) {
+        Contribution previous = contribution == null ? this.contributions.remove(producer) : this.contributions.put(producer, contribution);
+        if (previous != null) {
+            previous.removed = true;
+            this.world.remove(previous);
+            Aggregate player = this.players.get(previous.player);
+            player.remove(previous);
+            if (player.count() == 0) {
+                this.players.remove(previous.player);
+            }
+        }
+        if (contribution != null) {
+            this.world.add(contribution);
+            this.players.computeIfAbsent(contribution.player, p -> new Aggregate(this.size)).add(contribution);
+        }
+    }
+}
@@ -24,7 +24,10 @@
 
 package be.yildizgames.engine.feature.resource.bonus;
 
+import be.yildizgames.engine.feature.resource.ResourceType;
+
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * A bonus for resources, it can contains bonus for the resource limits, or the resource ratios. This class is meant to be inherited.
@@ -45,11 +48,26 @@ public class BonusResources {
      */
     private final float[] limit;
 
+    /**
+     * Indexes of the non zero ratio values.
+     */
+    private final int[] ratioIndexes;
+
+    /**
+     * Indexes of the non zero limit values.
+     */
+    private final int[] limitIndexes;
+
     /**
      * The index should be unique for every different kinds of boni, to provide an easy way to compute equality between them. The default value is -1.
      */
     private final int index;
 
+    /**
+     * Rule to combine this bonus with the other ones.
+     */
+    private final BonusStacking stacking;
+
     /**
      * Create a new bonus, containing values for a ratio and a limit resource, equality will be based on the index.
      *
@@ -62,9 +80,25 @@ public class BonusResources {
      */
     //@requires index >= 0
     protected BonusResources(final float[] ratio, final float[] limit, final int index) {
+        this(ratio, limit, index, BonusStacking.FLAT);
+    }
+
+    /**
+     * Create a new bonus, containing values for a ratio and a limit resource, combined with the other bonus using a stacking rule.
+     *
+     * @param ratio    Bonus ratio values.
+     * @param limit    Bonus limit values.
+     * @param index    Unique index, -1 if equality must be based on the object itself.
+     * @param stacking Rule to combine this bonus with the other ones.
+     * @throws NullPointerException if ratio, limit or stacking is <code>null</code>.
+     */
+    protected BonusResources(final float[] ratio, final float[] limit, final int index, final BonusStacking stacking) {
         super();
+        this.stacking = Objects.requireNonNull(stacking);
         this.ratio = Arrays.copyOf(ratio, ratio.length);
         this.limit = Arrays.copyOf(limit, limit.length);
+        this.ratioIndexes = nonZeroIndexes(this.ratio);
+        this.limitIndexes = nonZeroIndexes(this.limit);
         this.index = index;
     }
 
@@ -109,6 +143,19 @@ public class BonusResources {
         return this.ratio[i];
     }
 
+    /**
+     * Get a value from this bonus ratio.
+     *
+     * @param type Resource type of the ratio value to retrieve.
+     * @return The ratio value matching the given type.
+     */
+    //@requires type.getId() < this.ratio.length.
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final float getRatio(final ResourceType type) {
+        return this.ratio[type.getId()];
+    }
+
     /**
      * Get a value from this bonus limit.
      *
@@ -122,6 +169,89 @@ public class BonusResources {
         return this.limit[i];
     }
 
+    /**
+     * Get a value from this bonus limit.
+     *
+     * @param type Resource type of the limit value to retrieve.
+     * @return The limit value matching the given type.
+     */
+    //@requires type.getId() < this.limit.length.
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final float getLimit(final ResourceType type) {
+        return this.limit[type.getId()];
+    }
+
+    /**
+     * @return The rule to combine this bonus with the other ones.
+     */
+    //@requires none.
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final BonusStacking getStacking() {
+        return this.stacking;
+    }
+
+    /**
+     * @return The unique index of this bonus, -1 if it was built without index.
+     */
+    //@requires none.
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Number of ratio values different from 0, to only visit those with getRatioIndex when aggregating bonus.
+     *
+     * @return The number of non zero ratio values.
+     */
+    //@requires none.
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final int getRatioIndexCount() {
+        return this.ratioIndexes.length;
+    }
+
+    /**
+     * Provide an index of a ratio value different from 0.
+     *
+     * @param position Position in the non zero ratio values, between 0 and getRatioIndexCount excluded.
+     * @return The index of the non zero ratio value at the given position, in increasing order.
+     */
+    //@requires position >= 0 && position < getRatioIndexCount().
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final int getRatioIndex(final int position) {
+        return this.ratioIndexes[position];
+    }
+
+    /**
+     * Number of limit values different from 0, to only visit those with getLimitIndex when aggregating bonus.
+     *
+     * @return The number of non zero limit values.
+     */
+    //@requires none.
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final int getLimitIndexCount() {
+        return this.limitIndexes.length;
+    }
+
+    /**
+     * Provide an index of a limit value different from 0.
+     *
+     * @param position Position in the non zero limit values, between 0 and getLimitIndexCount excluded.
+     * @return The index of the non zero limit value at the given position, in increasing order.
+     */
+    //@requires position >= 0 && position < getLimitIndexCount().
+    //@modifies none.
+    //@ensures This object state is not affected.
+    public final int getLimitIndex(final int position) {
+        return this.limitIndexes[position];
+    }
+
     @Override
     public final int hashCode() {
         return this.index;
@@ -149,4 +279,21 @@ public class BonusResources {
         return this == obj;
     }
 
+    private static int[] nonZeroIndexes(final float[] values) {
+        int count = 0;
+        for (float v : values) {
+            if (v != 0) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        int position = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                result[position++] = i;
+            }
+        }
+        return result;
+    }
+
 }
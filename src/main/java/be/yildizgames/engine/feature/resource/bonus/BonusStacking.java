@@ -0,0 +1,55 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.bonus;
+
+/**
+ * Rule used to combine a bonus with the other ones, for every resource the value is computed as
+ * (sum of flat) * (1 + sum of additive percents) * product of (1 + multiplicative percents), limited to the smallest cap.
+ * Percent values are fractions, 0.1 is 10%. Only the non zero values of a bonus are used, so a cap cannot be 0.
+ *
+ * @author Grégory Van den Borre
+ */
+public enum BonusStacking {
+
+    /**
+     * Values are added to the base value.
+     */
+    FLAT,
+
+    /**
+     * Values are added together, and the base value is increased by their sum.
+     */
+    PERCENT_ADDITIVE,
+
+    /**
+     * The base value is increased by every value, one after the other.
+     */
+    PERCENT_MULTIPLICATIVE,
+
+    /**
+     * Values are maximums, the smallest one is used.
+     */
+    CAP
+}
@@ -0,0 +1,329 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.index;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceChangeListener;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Live ranking of the cities for every resource and for the sum of all resources.
+ * The cities are sorted by their amount projected at a reference time, and the highest production rate bounds how much an amount can grow after it.
+ * A query visits the cities in reference order, computing their exact projected amount, and stops as soon as no remaining city can reach the top,
+ * so only a few cities are visited instead of the whole world.
+ * The reference time is moved periodically to keep the bound tight, this requires to sort the cities again.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceLeaderboard implements ResourceChangeListener {
+
+    /**
+     * Default time between two reference time changes, in milliseconds.
+     */
+    private static final long DEFAULT_REBASE_INTERVAL = 60_000;
+
+    /**
+     * Entry order: highest reference value first, then city id, then creation order.
+     */
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingDouble(e -> -e.reference)
+            .thenComparingLong(e -> e.city.value)
+            .thenComparingLong(e -> e.sequence);
+
+    /**
+     * Number of resources, the ranking for the sum of resources uses this index.
+     */
+    private final int size;
+
+    /**
+     * Maximum time between the reference time and a query time before the reference is moved.
+     */
+    private final long rebaseInterval;
+
+    /**
+     * Cities sorted by reference value, for every resource, plus the total.
+     */
+    private final List<TreeSet<Entry>> rankings = new ArrayList<>();
+
+    /**
+     * Entries of every tracked producer.
+     */
+    private final Map<ResourcesProducer, Entry[]> entries = new HashMap<>();
+
+    /**
+     * Highest increase per millisecond of an amount after the reference time, for every ranking.
+     */
+    private final double[] maxRise;
+
+    /**
+     * Highest decrease per millisecond of an amount before the reference time, for every ranking.
+     */
+    private final double[] maxDecline;
+
+    /**
+     * Time used to compute the reference values.
+     */
+    private long reference;
+
+    /**
+     * Number of entries created, to order entries with the same value and city.
+     */
+    private long sequence;
+
+    /**
+     * Create a new leaderboard with a default rebase interval.
+     *
+     * @param size Number of resources in the producers.
+     */
+    public ResourceLeaderboard(final int size) {
+        this(size, DEFAULT_REBASE_INTERVAL);
+    }
+
+    /**
+     * Create a new leaderboard.
+     *
+     * @param size           Number of resources in the producers.
+     * @param rebaseInterval Maximum time between the reference time and a query time before the cities are sorted again, in milliseconds.
+     */
+    public ResourceLeaderboard(final int size, final long rebaseInterval) {
+        super();
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be positive: " + size);
+        }
+        if (rebaseInterval <= 0) {
+            throw new IllegalArgumentException("Rebase interval must be positive: " + rebaseInterval);
+        }
+        this.size = size;
+        this.rebaseInterval = rebaseInterval;
+        for (int i = 0; i <= size; i++) {
+            this.rankings.add(new TreeSet<>(ORDER));
+        }
+        this.maxRise = new double[size + 1];
+        this.maxDecline = new double[size + 1];
+    }
+
+    /**
+     * Start ranking a producer.
+     *
+     * @param producer Producer to rank.
+     * @throws IllegalArgumentException If the producer does not have the expected number of resources.
+     */
+    public void track(final ResourcesProducer producer) {
+        assert producer != null;
+        if (producer.getResourceCount() != this.size) {
+            throw new IllegalArgumentException("Producer has " + producer.getResourceCount() + " resources, expected " + this.size);
+        }
+        synchronized (this) {
+            this.update(producer, producer.getSnapshot());
+        }
+        producer.addChangeListener(this);
+        this.resourcesChanged(producer);
+    }
+
+    /**
+     * Stop ranking a producer.
+     *
+     * @param producer Producer to remove.
+     */
+    public void untrack(final ResourcesProducer producer) {
+        producer.removeChangeListener(this);
+        synchronized (this) {
+            this.remove(producer);
+        }
+    }
+
+    @Override
+    public synchronized void resourcesChanged(final ResourcesProducer producer) {
+        Entry[] current = this.entries.get(producer);
+        ResourceSnapshot snapshot = producer.getSnapshot();
+        if (current != null && snapshot.getVersion() != current[0].snapshot.getVersion()) {
+            this.update(producer, snapshot);
+        }
+    }
+
+    /**
+     * Provide the cities with the highest amount of a resource.
+     *
+     * @param index Resource index.
+     * @param count Maximum number of cities to return.
+     * @param time  Time to compute the amounts for.
+     * @return The best cities, the highest amount first.
+     */
+    public synchronized List<RankedCity> getTop(final int index, final int count, final long time) {
+        if (index < 0 || index >= this.size) {
+            throw new IllegalArgumentException("Invalid resource index: " + index);
+        }
+        return this.top(index, count, time);
+    }
+
+    /**
+     * Provide the cities with the highest sum of all resources.
+     *
+     * @param count Maximum number of cities to return.
+     * @param time  Time to compute the amounts for.
+     * @return The best cities, the highest amount first.
+     */
+    public synchronized List<RankedCity> getTopTotal(final int count, final long time) {
+        return this.top(this.size, count, time);
+    }
+
+    /**
+     * @return The number of ranked producers.
+     */
+    public synchronized int getProducerCount() {
+        return this.entries.size();
+    }
+
+    private List<RankedCity> top(final int ranking, final int count, final long time) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must be positive: " + count);
+        }
+        if (Math.abs(time - this.reference) > this.rebaseInterval) {
+            this.rebase(time);
+        }
+        double margin = time >= this.reference
+                ? this.maxRise[ranking] * (time - this.reference)
+                : this.maxDecline[ranking] * (this.reference - time);
+        PriorityQueue<RankedCity> best = new PriorityQueue<>(Comparator.comparingDouble(RankedCity::getValue));
+        for (Entry e : this.rankings.get(ranking)) {
+            if (best.size() == count && (count == 0 || e.reference + margin < best.peek().getValue())) {
+                break;
+            }
+            RankedCity candidate = new RankedCity(e.city, value(e.snapshot, ranking, this.size, time));
+            if (best.size() < count) {
+                best.add(candidate);
+            } else if (candidate.getValue() > best.peek().getValue()) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+        List<RankedCity> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(RankedCity::getValue).reversed().thenComparingLong(r -> r.getCity().value));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Move the reference time and sort all cities again.
+     *
+     * @param time New reference time.
+     */
+    private void rebase(final long time) {
+        this.reference = time;
+        for (TreeSet<Entry> r : this.rankings) {
+            r.clear();
+        }
+        Arrays.fill(this.maxRise, 0);
+        Arrays.fill(this.maxDecline, 0);
+        Map<ResourcesProducer, Entry[]> current = new HashMap<>(this.entries);
+        this.entries.clear();
+        current.forEach((p, e) -> this.update(p, e[0].snapshot));
+    }
+
+    private void update(final ResourcesProducer producer, final ResourceSnapshot snapshot) {
+        this.remove(producer);
+        Entry[] producerEntries = new Entry[this.size + 1];
+        EntityId city = snapshot.getCity();
+        double riseTotal = 0;
+        double declineTotal = 0;
+        for (int i = 0; i <= this.size; i++) {
+            producerEntries[i] = new Entry(city, snapshot, value(snapshot, i, this.size, this.reference), this.sequence++);
+            this.rankings.get(i).add(producerEntries[i]);
+            if (i < this.size) {
+                double rate = snapshot.isInitialized() ? snapshot.getRatio(i) * 0.001 : 0;
+                this.maxRise[i] = Math.max(this.maxRise[i], rate);
+                this.maxDecline[i] = Math.max(this.maxDecline[i], -rate);
+                riseTotal += Math.max(0, rate);
+                declineTotal += Math.max(0, -rate);
+            }
+        }
+        this.maxRise[this.size] = Math.max(this.maxRise[this.size], riseTotal);
+        this.maxDecline[this.size] = Math.max(this.maxDecline[this.size], declineTotal);
+        this.entries.put(producer, producerEntries);
+    }
+
+    private void remove(final ResourcesProducer producer) {
+        Entry[] previous = this.entries.remove(producer);
+        if (previous != null) {
+            for (int i = 0; i <= this.size; i++) {
+                this.rankings.get(i).remove(previous[i]);
+            }
+        }
+    }
+
+    /**
+     * Compute the projected amount of a ranking.
+     *
+     * @param snapshot Producer state.
+     * @param ranking  Resource index, or size for the sum of all resources.
+     * @param size     Number of resources.
+     * @param time     Time to project to.
+     * @return The projected amount.
+     */
+    private static float value(final ResourceSnapshot snapshot, final int ranking, final int size, final long time) {
+        if (ranking < size) {
+            return snapshot.getValue(ranking, time);
+        }
+        float total = 0;
+        for (int i = 0; i < size; i++) {
+            total += snapshot.getValue(i, time);
+        }
+        return total;
+    }
+
+    /**
+     * Position of a city in a ranking.
+     */
+    private static final class Entry {
+
+        private final EntityId city;
+
+        private final ResourceSnapshot snapshot;
+
+        /**
+         * Amount at the reference time.
+         */
+        private final double reference;
+
+        private final long sequence;
+
+        private Entry(final EntityId city, final ResourceSnapshot snapshot, final double reference, final long sequence) {
+            super();
+            this.city = city;
+            this.snapshot = snapshot;
+            this.reference = reference;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.index;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceChangeListener;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Index of the cities by resource amount, to find the ones holding at least, or between, given amounts without scanning the world.
+ * For every resource, the cities are grouped in buckets of fixed width of projected amount.
+ * Instead of updating all cities while they produce, the time when a city amount will leave its bucket is computed and queued,
+ * the city is only moved when that time is reached. Queries include the buckets inside the requested range without checking them,
+ * only the cities in the buckets at the range boundaries are checked against their exact projected amount.
+ * The index time only moves forward, a query for a time before the last query or modification uses that time instead.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceThresholdIndex implements ResourceChangeListener {
+
+    /**
+     * Minimum number of obsolete crossings before the queue is purged.
+     */
+    private static final int PURGE_THRESHOLD = 64;
+
+    /**
+     * Number of resources.
+     */
+    private final int size;
+
+    /**
+     * Amount range of a bucket.
+     */
+    private final double bucketWidth;
+
+    /**
+     * Buckets for every resource, by bucket number.
+     */
+    private final List<TreeMap<Long, Set<Entry>>> buckets = new ArrayList<>();
+
+    /**
+     * Entries of every tracked producer, one per resource.
+     */
+    private final Map<ResourcesProducer, Entry[]> entries = new HashMap<>();
+
+    /**
+     * Pending bucket changes, ordered by time.
+     */
+    private final PriorityQueue<Crossing> crossings = new PriorityQueue<>();
+
+    /**
+     * Index time, all bucket changes before it have been applied.
+     */
+    private double time = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Number of crossings in the queue belonging to removed entries.
+     */
+    private int obsolete;
+
+    /**
+     * Create a new index.
+     *
+     * @param size        Number of resources in the producers.
+     * @param bucketWidth Amount range of a bucket, a smaller width means less cities to check in queries but more bucket changes.
+     */
+    public ResourceThresholdIndex(final int size, final float bucketWidth) {
+        super();
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be positive: " + size);
+        }
+        if (!(bucketWidth > 0)) {
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+        }
+        this.size = size;
+        this.bucketWidth = bucketWidth;
+        for (int i = 0; i < size; i++) {
+            this.buckets.add(new TreeMap<>());
+        }
+    }
+
+    /**
+     * Start indexing a producer.
+     *
+     * @param producer Producer to index.
+     * @throws IllegalArgumentException If the producer does not have the expected number of resources.
+     */
+    public void track(final ResourcesProducer producer) {
+        assert producer != null;
+        if (producer.getResourceCount() != this.size) {
+            throw new IllegalArgumentException("Producer has " + producer.getResourceCount() + " resources, expected " + this.size);
+        }
+        synchronized (this) {
+            this.update(producer, producer.getSnapshot());
+        }
+        producer.addChangeListener(this);
+        this.resourcesChanged(producer);
+    }
+
+    /**
+     * Stop indexing a producer.
+     *
+     * @param producer Producer to remove.
+     */
+    public void untrack(final ResourcesProducer producer) {
+        producer.removeChangeListener(this);
+        synchronized (this) {
+            this.remove(producer);
+        }
+    }
+
+    @Override
+    public synchronized void resourcesChanged(final ResourcesProducer producer) {
+        Entry[] current = this.entries.get(producer);
+        ResourceSnapshot snapshot = producer.getSnapshot();
+        if (current != null && this.size > 0 && snapshot.getVersion() != current[0].snapshot.getVersion()) {
+            this.update(producer, snapshot);
+        }
+    }
+
+    /**
+     * Find the cities holding at least an amount of a resource.
+     *
+     * @param index     Resource index.
+     * @param threshold Minimum amount.
+     * @param time      Time to compute the amounts for.
+     * @return The matching cities, the highest amount first.
+     */
+    public List<RankedCity> findAtLeast(final int index, final float threshold, final long time) {
+        return this.findBetween(index, threshold, Float.POSITIVE_INFINITY, time, c -> true);
+    }
+
+    /**
+     * Find the cities holding at least an amount of a resource, and accepted by a filter, i.e. the cities within range of an attacker.
+     *
+     * @param index     Resource index.
+     * @param threshold Minimum amount.
+     * @param time      Time to compute the amounts for.
+     * @param filter    Filter on the city ids.
+     * @return The matching cities, the highest amount first.
+     */
+    public List<RankedCity> findAtLeast(final int index, final float threshold, final long time, final Predicate<EntityId> filter) {
+        return this.findBetween(index, threshold, Float.POSITIVE_INFINITY, time, filter);
+    }
+
+    /**
+     * Find the cities holding an amount of a resource between two values.
+     *
+     * @param index Resource index.
+     * @param min   Minimum amount, inclusive.
+     * @param max   Maximum amount, inclusive.
+     * @param time  Time to compute the amounts for.
+     * @return The matching cities, the highest amount first.
+     */
+    public List<RankedCity> findBetween(final int index, final float min, final float max, final long time) {
+        return this.findBetween(index, min, max, time, c -> true);
+    }
+
+    /**
+     * Find the cities holding an amount of a resource between two values, and accepted by a filter.
+     *
+     * @param index  Resource index.
+     * @param min    Minimum amount, inclusive.
+     * @param max    Maximum amount, inclusive.
+     * @param time   Time to compute the amounts for.
+     * @param filter Filter on the city ids.
+     * @return The matching cities, the highest amount first.
+     */
+    public synchronized List<RankedCity> findBetween(final int index, final float min, final float max, final long time, final Predicate<EntityId> filter) {
+        if (index < 0 || index >= this.size) {
+            throw new IllegalArgumentException("Invalid resource index: " + index);
+        }
+        assert filter != null;
+        this.advance(time);
+        long at = (long) Math.max(this.time, time);
+        List<RankedCity> result = new ArrayList<>();
+        if (min > max) {
+            return result;
+        }
+        long first = this.bucket(min) - 1;
+        long last = max == Float.POSITIVE_INFINITY ? Long.MAX_VALUE : this.bucket(max) + 1;
+        for (Map.Entry<Long, Set<Entry>> b : this.buckets.get(index).subMap(first, true, last, true).entrySet()) {
+            long bucket = b.getKey();
+            boolean inside = bucket * this.bucketWidth >= min && (bucket + 1) * this.bucketWidth <= max;
+            for (Entry e : b.getValue()) {
+                if (!filter.test(e.city)) {
+                    continue;
+                }
+                float value = e.snapshot.getValue(index, at);
+                if (inside || (value >= min && value <= max)) {
+                    result.add(new RankedCity(e.city, value));
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(RankedCity::getValue).reversed().thenComparingLong(r -> r.getCity().value));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return The number of indexed producers.
+     */
+    public synchronized int getProducerCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Apply all bucket changes up to a time.
+     *
+     * @param to Time to move to.
+     */
+    private void advance(final double to) {
+        if (to <= this.time) {
+            return;
+        }
+        Crossing c = this.crossings.peek();
+        while (c != null && c.time <= to) {
+            this.crossings.poll();
+            Entry e = c.entry;
+            if (e.pending == c) {
+                this.move(e, e.bucket + c.direction);
+                this.schedule(e);
+            } else {
+                this.obsolete--;
+            }
+            c = this.crossings.peek();
+        }
+        this.time = to;
+    }
+
+    private void update(final ResourcesProducer producer, final ResourceSnapshot snapshot) {
+        this.remove(producer);
+        this.advance(snapshot.getLastUpdate());
+        double at = Math.max(this.time, snapshot.getLastUpdate());
+        Entry[] producerEntries = new Entry[this.size];
+        for (int i = 0; i < this.size; i++) {
+            Entry e = new Entry(snapshot.getCity(), snapshot, i);
+            this.move(e, this.bucket(snapshot.getValue(i, (long) at)));
+            this.schedule(e);
+            producerEntries[i] = e;
+        }
+        this.entries.put(producer, producerEntries);
+    }
+
+    private void remove(final ResourcesProducer producer) {
+        Entry[] previous = this.entries.remove(producer);
+        if (previous != null) {
+            for (Entry e : previous) {
+                if (e.pending != null) {
+                    e.pending = null;
+                    this.obsolete++;
+                }
+                this.move(e, Long.MIN_VALUE);
+            }
+            if (this.obsolete > PURGE_THRESHOLD && this.obsolete > this.crossings.size() / 2) {
+                this.crossings.removeIf(c -> c.entry.pending != c);
+                this.obsolete = 0;
+            }
+        }
+    }
+
+    /**
+     * Move an entry to another bucket.
+     *
+     * @param e      Entry to move.
+     * @param bucket New bucket, Long.MIN_VALUE to only remove it.
+     */
+    private void move(final Entry e, final long bucket) {
+        TreeMap<Long, Set<Entry>> resourceBuckets = this.buckets.get(e.index);
+        if (e.bucket != Long.MIN_VALUE) {
+            Set<Entry> current = resourceBuckets.get(e.bucket);
+            current.remove(e);
+            if (current.isEmpty()) {
+                resourceBuckets.remove(e.bucket);
+            }
+        }
+        e.bucket = bucket;
+        if (bucket != Long.MIN_VALUE) {
+            resourceBuckets.computeIfAbsent(bucket, b -> new HashSet<>()).add(e);
+        }
+    }
+
+    /**
+     * Queue the time when an entry will leave its bucket, if it ever does.
+     *
+     * @param e Entry.
+     */
+    private void schedule(final Entry e) {
+        e.pending = null;
+        ResourceSnapshot s = e.snapshot;
+        if (!s.isInitialized()) {
+            return;
+        }
+        double rate = s.getRatio(e.index) * 0.001;
+        double value = s.getValue(e.index);
+        double limit = s.getLimit(e.index);
+        double boundary;
+        int direction;
+        if (rate > 0) {
+            boundary = (e.bucket + 1) * this.bucketWidth;
+            direction = 1;
+            if (boundary > limit || value >= limit) {
+                return;
+            }
+        } else if (rate < 0) {
+            boundary = e.bucket * this.bucketWidth;
+            direction = -1;
+        } else {
+            return;
+        }
+        double crossing = Math.max(this.time, s.getLastUpdate() + (boundary - value) / rate);
+        e.pending = new Crossing(crossing, e, direction);
+        this.crossings.add(e.pending);
+    }
+
+    private long bucket(final double value) {
+        return (long) Math.floor(value / this.bucketWidth);
+    }
+
+    /**
+     * Position of a city for a resource.
+     */
+    private static final class Entry {
+
+        private final EntityId city;
+
+        private final ResourceSnapshot snapshot;
+
+        private final int index;
+
+        /**
+         * Current bucket, Long.MIN_VALUE if not in any bucket.
+         */
+        private long bucket = Long.MIN_VALUE;
+
+        /**
+         * Next bucket change, null if none, crossings in the queue not matching it are obsolete.
+         */
+        private Crossing pending;
+
+        private Entry(final EntityId city, final ResourceSnapshot snapshot, final int index) {
+            super();
+            this.city = city;
+            this.snapshot = snapshot;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Time when an entry moves to the next or previous bucket.
+     */
+    private static final class Crossing implements Comparable<Crossing> {
+
+        private final double time;
+
+        private final Entry entry;
+
+        private final int direction;
+
+        private Crossing(final double time, final Entry entry, final int direction) {
+            super();
+            this.time = time;
+            this.entry = entry;
+            this.direction = direction;
+        }
+
+        @Override
+        public int compareTo(final Crossing o) {
+            return Double.compare(this.time, o.time);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.journal;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+
+/**
+ * Receive the journal records when it is replayed, in the order they were appended.
+ *
+ * @author Grégory Van den Borre
+ */
+public interface JournalHandler {
+
+    /**
+     * A transfer was appended.
+     *
+     * @param transfer Transfer.
+     */
+    default void transfer(ResourceTransferDto transfer) {
+    }
+
+    /**
+     * New values were set for a city.
+     *
+     * @param value City values.
+     */
+    default void value(ResourceValueDto value) {
+    }
+
+    /**
+     * A bonus was added to a city.
+     *
+     * @param city       City id.
+     * @param bonusIndex Index of the added bonus.
+     * @param time       Time from which the bonus is applied.
+     */
+    default void bonusAdded(EntityId city, int bonusIndex, long time) {
+    }
+
+    /**
+     * A bonus was removed from a city.
+     *
+     * @param city       City id.
+     * @param bonusIndex Index of the removed bonus.
+     * @param time       Time from which the bonus is no longer applied.
+     */
+    default void bonusRemoved(EntityId city, int bonusIndex, long time) {
+    }
+}
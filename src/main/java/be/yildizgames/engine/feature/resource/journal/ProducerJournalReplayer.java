@@ -0,0 +1,117 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.journal;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Replay the journal records on the producers to rebuild their state.
+ * Transfers are done between players, so they are forwarded to the game logic which knows the cities involved.
+ * Bonus changes are applied at their recorded time, so the production before them is computed with the previous ratio.
+ * Records for unknown cities or bonus are ignored.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ProducerJournalReplayer implements JournalHandler {
+
+    private static final System.Logger LOGGER = System.getLogger(ProducerJournalReplayer.class.getName());
+
+    /**
+     * Provide the producer of a city, null if it does not exist.
+     */
+    private final Function<EntityId, ResourcesProducer> producers;
+
+    /**
+     * Provide a bonus from its index, null if it does not exist.
+     */
+    private final IntFunction<BonusResources> bonus;
+
+    /**
+     * Apply the replayed transfers.
+     */
+    private final Consumer<ResourceTransferDto> transfers;
+
+    /**
+     * Create a new replayer.
+     *
+     * @param producers Provide the producer of a city, null if it does not exist.
+     * @param bonus     Provide a bonus from its index, null if it does not exist.
+     * @param transfers Apply the replayed transfers.
+     */
+    public ProducerJournalReplayer(final Function<EntityId, ResourcesProducer> producers, final IntFunction<BonusResources> bonus, final Consumer<ResourceTransferDto> transfers) {
+        super();
+        assert producers != null;
+        assert bonus != null;
+        assert transfers != null;
+        this.producers = producers;
+        this.bonus = bonus;
+        this.transfers = transfers;
+    }
+
+    @Override
+    public void transfer(final ResourceTransferDto transfer) {
+        this.transfers.accept(transfer);
+    }
+
+    @Override
+    public void value(final ResourceValueDto value) {
+        ResourcesProducer producer = this.producers.apply(value.cityId);
+        if (producer == null) {
+            LOGGER.log(System.Logger.Level.WARNING, "No producer for " + value.cityId + ", values ignored");
+            return;
+        }
+        producer.setNewValues(value.time, value.resources);
+    }
+
+    @Override
+    public void bonusAdded(final EntityId city, final int bonusIndex, final long time) {
+        ResourcesProducer producer = this.producers.apply(city);
+        BonusResources b = this.bonus.apply(bonusIndex);
+        if (producer == null || b == null) {
+            LOGGER.log(System.Logger.Level.WARNING, "No producer for " + city + " or no bonus " + bonusIndex + ", bonus ignored");
+            return;
+        }
+        producer.addBonus(b, time);
+    }
+
+    @Override
+    public void bonusRemoved(final EntityId city, final int bonusIndex, final long time) {
+        ResourcesProducer producer = this.producers.apply(city);
+        BonusResources b = this.bonus.apply(bonusIndex);
+        if (producer == null || b == null) {
+            LOGGER.log(System.Logger.Level.WARNING, "No producer for " + city + " or no bonus " + bonusIndex + ", bonus ignored");
+            return;
+        }
+        producer.removeBonus(b, time);
+    }
+}
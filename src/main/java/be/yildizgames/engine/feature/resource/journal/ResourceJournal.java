@@ -0,0 +1,482 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.journal;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.TransferCause;
+import be.yildizgames.engine.feature.resource.bonus.BonusListener;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of the transfers and producer changes, written in memory mapped segment files.
+ * Appending a record only copies it in the current segment, the segments are forced to the disk by group commits:
+ * all records appended since the previous commit are made durable by a single force, and the future returned when appending completes then.
+ * A commit is done periodically, or as soon as enough records are waiting. When a segment is full, a new one is created.
+ * Every record contains a checksum, so a record partially written before a crash ends the replay.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceJournal implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(ResourceJournal.class.getName());
+
+    /**
+     * Record header size: payload length and checksum.
+     */
+    private static final int RECORD_HEADER = 8;
+
+    private static final byte TRANSFER = 1;
+
+    private static final byte VALUE = 2;
+
+    private static final byte BONUS_ADDED = 3;
+
+    private static final byte BONUS_REMOVED = 4;
+
+    /**
+     * Directory containing the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * Size of a segment file.
+     */
+    private final int segmentSize;
+
+    /**
+     * Number of waiting records triggering a commit.
+     */
+    private final int groupSize;
+
+    /**
+     * Maximum time between an append and its commit.
+     */
+    private final Duration commitInterval;
+
+    /**
+     * Executor running the commits.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Set when a commit has been requested because a group is full.
+     */
+    private final AtomicBoolean commitRequested = new AtomicBoolean();
+
+    /**
+     * Lock to prevent concurrent commits.
+     */
+    private final Object commitLock = new Object();
+
+    /**
+     * Segments full and not yet forced.
+     */
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+
+    /**
+     * Segment being written.
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * Number of the segment being written.
+     */
+    private int segmentNumber;
+
+    /**
+     * Records waiting for the next commit.
+     */
+    private CompletableFuture<Void> group = new CompletableFuture<>();
+
+    /**
+     * Number of records waiting for the next commit.
+     */
+    private int groupCount;
+
+    /**
+     * Periodic commit task, null if not started.
+     */
+    private ScheduledFuture<?> task;
+
+    /**
+     * Open a journal, records are appended in a new segment after the existing ones.
+     *
+     * @param directory      Directory containing the segment files, created if it does not exist.
+     * @param segmentSize    Size of a segment file, in bytes.
+     * @param groupSize      Number of waiting records triggering a commit.
+     * @param commitInterval Maximum time between an append and its commit.
+     * @param scheduler      Executor running the commits.
+     * @throws UncheckedIOException If the directory cannot be read.
+     */
+    public ResourceJournal(final Path directory, final int segmentSize, final int groupSize, final Duration commitInterval, final ScheduledExecutorService scheduler) {
+        super();
+        assert directory != null;
+        assert commitInterval != null;
+        assert scheduler != null;
+        if (segmentSize <= RECORD_HEADER) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (groupSize <= 0) {
+            throw new IllegalArgumentException("Group size must be positive: " + groupSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupSize = groupSize;
+        this.commitInterval = commitInterval;
+        this.scheduler = scheduler;
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing = segments(directory);
+            this.segmentNumber = existing.isEmpty() ? 0 : number(existing.get(existing.size() - 1)) + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replay all records of the journal in a directory, in the order they were appended.
+     *
+     * @param directory Directory containing the segment files.
+     * @param handler   Handler receiving the records.
+     * @return The number of replayed records.
+     * @throws UncheckedIOException If the files cannot be read.
+     */
+    public static long replay(final Path directory, final JournalHandler handler) {
+        assert handler != null;
+        long count = 0;
+        try {
+            if (!Files.isDirectory(directory)) {
+                return 0;
+            }
+            for (Path file : segments(directory)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    count += replay(buffer, handler);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    /**
+     * Start the periodic commit.
+     */
+    public synchronized void start() {
+        if (this.task == null) {
+            long delay = this.commitInterval.toMillis();
+            this.task = this.scheduler.scheduleWithFixedDelay(this::commit, delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Journal the bonus changes of a producer, the bonus already present are not journaled.
+     * Bonus without index cannot be replayed and are ignored.
+     *
+     * @param city     City of the producer.
+     * @param producer Producer to journal.
+     */
+    public void track(final EntityId city, final ResourcesProducer producer) {
+        AtomicBoolean registered = new AtomicBoolean();
+        producer.addBonusListener(new BonusListener() {
+            @Override
+            public void bonusAdded(final BonusResources bonus) {
+                if (registered.get() && isJournaled(bonus)) {
+                    appendBonusAdded(city, bonus, producer.getLastUpdate());
+                }
+            }
+
+            @Override
+            public void bonusRemoved(final BonusResources bonus) {
+                if (registered.get() && isJournaled(bonus)) {
+                    appendBonusRemoved(city, bonus, producer.getLastUpdate());
+                }
+            }
+        });
+        registered.set(true);
+    }
+
+    /**
+     * Append a transfer.
+     *
+     * @param transfer Transfer to append.
+     * @return A future completed once the record is durable.
+     */
+    public CompletableFuture<Void> appendTransfer(final ResourceTransferDto transfer) {
+        float[] values = transfer.resources.getArray();
+        ByteBuffer payload = ByteBuffer.allocate(1 + 12 + 4 + values.length * 4);
+        payload.put(TRANSFER);
+        payload.putInt(transfer.receiver.value);
+        payload.putInt(transfer.giver.value);
+        payload.putInt(transfer.cause.value);
+        putValues(payload, values);
+        return this.append(payload.array());
+    }
+
+    /**
+     * Append new values for a city.
+     *
+     * @param value Values to append.
+     * @return A future completed once the record is durable.
+     */
+    public CompletableFuture<Void> appendValue(final ResourceValueDto value) {
+        float[] values = value.resources.getArray();
+        ByteBuffer payload = ByteBuffer.allocate(1 + 16 + 4 + values.length * 4);
+        payload.put(VALUE);
+        payload.putLong(value.cityId.value);
+        payload.putLong(value.time);
+        putValues(payload, values);
+        return this.append(payload.array());
+    }
+
+    /**
+     * Append a bonus addition.
+     *
+     * @param city  City receiving the bonus.
+     * @param bonus Added bonus, it must have an index.
+     * @param time  Time from which the bonus is applied.
+     * @return A future completed once the record is durable.
+     * @throws IllegalArgumentException If the bonus has no index.
+     */
+    public CompletableFuture<Void> appendBonusAdded(final EntityId city, final BonusResources bonus, final long time) {
+        return this.append(bonusRecord(BONUS_ADDED, city, bonus, time));
+    }
+
+    /**
+     * Append a bonus removal.
+     *
+     * @param city  City losing the bonus.
+     * @param bonus Removed bonus, it must have an index.
+     * @param time  Time from which the bonus is no longer applied.
+     * @return A future completed once the record is durable.
+     * @throws IllegalArgumentException If the bonus has no index.
+     */
+    public CompletableFuture<Void> appendBonusRemoved(final EntityId city, final BonusResources bonus, final long time) {
+        return this.append(bonusRecord(BONUS_REMOVED, city, bonus, time));
+    }
+
+    /**
+     * Force the records appended since the last commit to the disk and complete their future.
+     */
+    public void commit() {
+        synchronized (this.commitLock) {
+            this.commitRequested.set(false);
+            CompletableFuture<Void> committed;
+            List<MappedByteBuffer> toForce;
+            synchronized (this) {
+                if (this.groupCount == 0) {
+                    return;
+                }
+                committed = this.group;
+                this.group = new CompletableFuture<>();
+                this.groupCount = 0;
+                toForce = new ArrayList<>(this.unforced);
+                this.unforced.clear();
+                toForce.add(this.segment);
+            }
+            try {
+                for (MappedByteBuffer b : toForce) {
+                    b.force();
+                }
+                committed.complete(null);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error while committing the journal", e);
+                committed.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Stop the periodic commit and commit the waiting records.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.task != null) {
+                this.task.cancel(false);
+                this.task = null;
+            }
+        }
+        this.commit();
+    }
+
+    private CompletableFuture<Void> append(final byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        CompletableFuture<Void> result;
+        boolean full;
+        synchronized (this) {
+            int size = RECORD_HEADER + payload.length;
+            if (this.segment == null || this.segment.remaining() < size) {
+                this.roll(size);
+            }
+            this.segment.putInt(payload.length);
+            this.segment.putInt((int) crc.getValue());
+            this.segment.put(payload);
+            result = this.group;
+            full = ++this.groupCount >= this.groupSize;
+        }
+        if (full && this.commitRequested.compareAndSet(false, true)) {
+            this.scheduler.execute(this::commit);
+        }
+        return result;
+    }
+
+    /**
+     * Create a new segment, the current one will be forced with the next commit.
+     *
+     * @param recordSize Size of the record to write, the segment is made bigger if it does not fit.
+     */
+    private void roll(final int recordSize) {
+        if (this.segment != null) {
+            this.unforced.add(this.segment);
+        }
+        Path file = this.directory.resolve(String.format("journal-%06d.log", this.segmentNumber++));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(this.segmentSize, recordSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long replay(final ByteBuffer buffer, final JournalHandler handler) {
+        long count = 0;
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return count;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                LOGGER.log(System.Logger.Level.WARNING, "Corrupted journal record, replay of the segment stopped");
+                return count;
+            }
+            dispatch(ByteBuffer.wrap(payload), handler);
+            count++;
+        }
+        return count;
+    }
+
+    private static void dispatch(final ByteBuffer record, final JournalHandler handler) {
+        byte type = record.get();
+        switch (type) {
+            case TRANSFER:
+                PlayerId receiver = PlayerId.valueOf(record.getInt());
+                PlayerId giver = PlayerId.valueOf(record.getInt());
+                TransferCause cause = TransferCause.valueOf(record.getInt());
+                handler.transfer(new ResourceTransferDto(receiver, giver, getValues(record), cause));
+                break;
+            case VALUE:
+                EntityId city = EntityId.valueOf(record.getLong());
+                long time = record.getLong();
+                handler.value(new ResourceValueDto(city, getValues(record), time));
+                break;
+            case BONUS_ADDED:
+                handler.bonusAdded(EntityId.valueOf(record.getLong()), record.getInt(), record.getLong());
+                break;
+            case BONUS_REMOVED:
+                handler.bonusRemoved(EntityId.valueOf(record.getLong()), record.getInt(), record.getLong());
+                break;
+            default:
+                LOGGER.log(System.Logger.Level.WARNING, "Unknown journal record type: " + type);
+        }
+    }
+
+    private static boolean isJournaled(final BonusResources bonus) {
+        if (bonus.getIndex() == -1) {
+            LOGGER.log(System.Logger.Level.WARNING, "Bonus without index not journaled");
+            return false;
+        }
+        return true;
+    }
+
+    private static byte[] bonusRecord(final byte type, final EntityId city, final BonusResources bonus, final long time) {
+        if (bonus.getIndex() == -1) {
+            throw new IllegalArgumentException("Only bonus with an index can be journaled");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + 8);
+        payload.put(type);
+        payload.putLong(city.value);
+        payload.putInt(bonus.getIndex());
+        payload.putLong(time);
+        return payload.array();
+    }
+
+    private static void putValues(final ByteBuffer buffer, final float[] values) {
+        buffer.putInt(values.length);
+        for (float v : values) {
+            buffer.putFloat(v);
+        }
+    }
+
+    private static ResourceValue getValues(final ByteBuffer buffer) {
+        float[] values = new float[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getFloat();
+        }
+        return new ResourceValue(values);
+    }
+
+    private static List<Path> segments(final Path directory) throws IOException {
+        try (Stream<Path> s = Files.list(directory)) {
+            return s.filter(p -> p.getFileName().toString().matches("journal-\\d{6}\\.log")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static int number(final Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(8, 14));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.market;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Market with one order book for every resource, all paid with the same currency resource.
+ * Books are independent, orders on different resources can be submitted concurrently.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class CommercialMarket {
+
+    /**
+     * Order books, by resource position, the currency position has no book.
+     */
+    private final OrderBook[] books;
+
+    /**
+     * Create a new market.
+     *
+     * @param resourceCount Number of resources.
+     * @param currencyIndex Position of the resource used to pay.
+     * @param maxPrice      Maximum price, in ticks.
+     * @param tickSize      Currency amount for one price tick.
+     */
+    public CommercialMarket(final int resourceCount, final int currencyIndex, final int maxPrice, final float tickSize) {
+        super();
+        this.books = new OrderBook[resourceCount];
+        for (int i = 0; i < resourceCount; i++) {
+            if (i != currencyIndex) {
+                this.books[i] = new OrderBook(i, currencyIndex, maxPrice, tickSize);
+            }
+        }
+    }
+
+    /**
+     * Submit a new order in the book of a resource.
+     *
+     * @param resourceIndex Position of the traded resource.
+     * @param player        Player submitting the order.
+     * @param city          Producer paying and receiving the resources.
+     * @param side          Buy or sell.
+     * @param price         Limit price, in ticks, for one unit of resource.
+     * @param quantity      Number of resource units.
+     * @return The order id, or OrderBook.REFUSED if the producer does not have enough resources to cover the order.
+     */
+    public long submit(final int resourceIndex, final PlayerId player, final ResourcesProducer city, final OrderSide side, final int price, final long quantity) {
+        OrderBook book = this.getBook(resourceIndex);
+        synchronized (book) {
+            return book.submit(player, city, side, price, quantity);
+        }
+    }
+
+    /**
+     * Cancel an order.
+     *
+     * @param resourceIndex Position of the traded resource.
+     * @param orderId       Id of the order to cancel.
+     * @return <code>true</code> if the order was waiting in the book.
+     */
+    public boolean cancel(final int resourceIndex, final long orderId) {
+        OrderBook book = this.getBook(resourceIndex);
+        synchronized (book) {
+            return book.cancel(orderId);
+        }
+    }
+
+    /**
+     * Retrieve the transfers done in all books since the last call.
+     *
+     * @return The transfers, grouped by resource.
+     */
+    public List<ResourceTransferDto> drainTransfers() {
+        List<ResourceTransferDto> result = new ArrayList<>();
+        for (OrderBook book : this.books) {
+            if (book != null) {
+                synchronized (book) {
+                    result.addAll(book.drainTransfers());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Provide the book of a resource, to be used while holding its lock.
+     *
+     * @param resourceIndex Position of the traded resource.
+     * @return The order book for that resource.
+     */
+    public OrderBook getBook(final int resourceIndex) {
+        OrderBook book = this.books[resourceIndex];
+        if (book == null) {
+            throw new IllegalArgumentException("No order book for the currency: " + resourceIndex);
+        }
+        return book;
+    }
+}
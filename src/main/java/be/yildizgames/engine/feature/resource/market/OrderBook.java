@@ -0,0 +1,626 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.market;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceReservation;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.TransferCause;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Limit order book for one resource, paid with another resource used as currency.
+ * Orders are matched with price-time priority, a trade is done at the price of the order already in the book.
+ * The offered resources are reserved in the producer when the order is submitted, and the trades are settled directly in the producers.
+ * Prices are expressed in ticks between 0 and the maximum price, every price has its own level, and orders objects are reused.
+ * Matching does not allocate: a trade exchanges single resource amounts in the producers, and is only recorded in primitive arrays,
+ * the transfer objects are created when they are drained.
+ * A trade is refused if the buyer cannot hold the bought resources, or the seller the received currency, under their limit,
+ * the order of that producer is then removed as if it could no longer pay.
+ * This class is not thread safe.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class OrderBook {
+
+    /**
+     * Id returned when an order is refused.
+     */
+    public static final long REFUSED = -1;
+
+    /**
+     * Position of the traded resource.
+     */
+    private final int resourceIndex;
+
+    /**
+     * Position of the resource used to pay.
+     */
+    private final int currencyIndex;
+
+    /**
+     * Currency amount for one price tick.
+     */
+    private final float tickSize;
+
+    /**
+     * Oldest bid for every price.
+     */
+    private final Order[] bidHead;
+
+    /**
+     * Newest bid for every price.
+     */
+    private final Order[] bidTail;
+
+    /**
+     * Oldest ask for every price.
+     */
+    private final Order[] askHead;
+
+    /**
+     * Newest ask for every price.
+     */
+    private final Order[] askTail;
+
+    /**
+     * Total quantity waiting for every bid price.
+     */
+    private final long[] bidQuantity;
+
+    /**
+     * Total quantity waiting for every ask price.
+     */
+    private final long[] askQuantity;
+
+    /**
+     * Orders in the book, by id.
+     */
+    private final OrderIndex orders = new OrderIndex();
+
+    /**
+     * Orders available for reuse.
+     */
+    private final Deque<Order> pool = new ArrayDeque<>();
+
+    /**
+     * Buyer of every trade done since the last drain.
+     */
+    private PlayerId[] tradeBuyers = new PlayerId[16];
+
+    /**
+     * Seller of every trade done since the last drain.
+     */
+    private PlayerId[] tradeSellers = new PlayerId[16];
+
+    /**
+     * Resource count of the buyer and of the seller producers of every trade done since the last drain.
+     */
+    private int[] tradeWidths = new int[32];
+
+    /**
+     * Traded quantity of every trade done since the last drain.
+     */
+    private long[] tradeQuantities = new long[16];
+
+    /**
+     * Paid currency amount of every trade done since the last drain.
+     */
+    private float[] tradeCosts = new float[16];
+
+    /**
+     * Number of trades done since the last drain.
+     */
+    private int tradeCount;
+
+    /**
+     * Highest bid price, -1 if there is no bid.
+     */
+    private int bestBid = -1;
+
+    /**
+     * Lowest ask price, maximum price + 1 if there is no ask.
+     */
+    private int bestAsk;
+
+    private long nextId = 1;
+
+    /**
+     * Create a new empty order book.
+     *
+     * @param resourceIndex Position of the traded resource.
+     * @param currencyIndex Position of the resource used to pay.
+     * @param maxPrice      Maximum price, in ticks.
+     * @param tickSize      Currency amount for one price tick.
+     */
+    public OrderBook(final int resourceIndex, final int currencyIndex, final int maxPrice, final float tickSize) {
+        super();
+        if (resourceIndex == currencyIndex) {
+            throw new IllegalArgumentException("Resource and currency must be different: " + resourceIndex);
+        }
+        if (maxPrice <= 0 || tickSize <= 0) {
+            throw new IllegalArgumentException("Maximum price and tick size must be positive.");
+        }
+        this.resourceIndex = resourceIndex;
+        this.currencyIndex = currencyIndex;
+        this.tickSize = tickSize;
+        this.bidHead = new Order[maxPrice + 1];
+        this.bidTail = new Order[maxPrice + 1];
+        this.askHead = new Order[maxPrice + 1];
+        this.askTail = new Order[maxPrice + 1];
+        this.bidQuantity = new long[maxPrice + 1];
+        this.askQuantity = new long[maxPrice + 1];
+        this.bestAsk = maxPrice + 1;
+    }
+
+    /**
+     * Submit a new order, it is matched against the book, and what is not traded remains in the book.
+     *
+     * @param player   Player submitting the order.
+     * @param city     Producer paying and receiving the resources.
+     * @param side     Buy or sell.
+     * @param price    Limit price, in ticks, for one unit of resource.
+     * @param quantity Number of resource units.
+     * @return The order id, or REFUSED if the producer does not have enough resources to cover the order,
+     * or could no longer pay while the order was matched, in that case the trades already done are kept.
+     */
+    public long submit(final PlayerId player, final ResourcesProducer city, final OrderSide side, final int price, final long quantity) {
+        assert player != null;
+        assert city != null;
+        assert side != null;
+        if (price <= 0 || price >= this.bidHead.length) {
+            throw new IllegalArgumentException("Price out of range: " + price);
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        float locked = side == OrderSide.BID ? price * this.tickSize * quantity : quantity;
+        int lockedIndex = side == OrderSide.BID ? this.currencyIndex : this.resourceIndex;
+        Optional<ResourceReservation> reservation = city.reserve(lockedIndex, locked);
+        if (!reservation.isPresent()) {
+            return REFUSED;
+        }
+        Order order = this.pool.isEmpty() ? new Order() : this.pool.pop();
+        order.id = this.nextId++;
+        order.player = player;
+        order.city = city;
+        order.side = side;
+        order.price = price;
+        order.remaining = quantity;
+        order.reservation = reservation.get();
+        order.locked = locked;
+        boolean settled = side == OrderSide.BID ? this.matchBid(order) : this.matchAsk(order);
+        if (!settled) {
+            this.close(order);
+            return REFUSED;
+        }
+        long id = order.id;
+        if (order.remaining > 0 && order.reservation.isOpen()) {
+            this.rest(order);
+        } else {
+            this.close(order);
+        }
+        return id;
+    }
+
+    /**
+     * Remove an order from the book and release its reserved resources.
+     *
+     * @param orderId Id of the order to remove.
+     * @return <code>true</code> if the order was in the book.
+     */
+    public boolean cancel(final long orderId) {
+        Order order = this.orders.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        this.unlink(order);
+        this.close(order);
+        return true;
+    }
+
+    /**
+     * @param orderId Order id.
+     * @return <code>true</code> if the order is still waiting in the book.
+     */
+    public boolean isActive(final long orderId) {
+        return this.orders.get(orderId) != null;
+    }
+
+    /**
+     * @param orderId Order id.
+     * @return The quantity not yet traded for the order, 0 if the order is no longer in the book.
+     */
+    public long getRemaining(final long orderId) {
+        Order order = this.orders.get(orderId);
+        return order == null ? 0 : order.remaining;
+    }
+
+    /**
+     * @return The highest bid price, -1 if there is no bid.
+     */
+    public int getBestBid() {
+        return this.bestBid;
+    }
+
+    /**
+     * @return The lowest ask price, -1 if there is no ask.
+     */
+    public int getBestAsk() {
+        return this.bestAsk == this.askHead.length ? -1 : this.bestAsk;
+    }
+
+    /**
+     * @param side  Side of the orders.
+     * @param price Price level.
+     * @return The total quantity waiting at the given price.
+     */
+    public long getQuantity(final OrderSide side, final int price) {
+        return side == OrderSide.BID ? this.bidQuantity[price] : this.askQuantity[price];
+    }
+
+    /**
+     * @return The position of the traded resource.
+     */
+    public int getResourceIndex() {
+        return this.resourceIndex;
+    }
+
+    /**
+     * Retrieve the transfers done since the last call, every trade produces two commercial transfers, the resource to the buyer and the currency to the seller.
+     *
+     * @return The transfers, in trade order.
+     */
+    public List<ResourceTransferDto> drainTransfers() {
+        List<ResourceTransferDto> result = new ArrayList<>(this.tradeCount * 2);
+        for (int t = 0; t < this.tradeCount; t++) {
+            PlayerId buyer = this.tradeBuyers[t];
+            PlayerId seller = this.tradeSellers[t];
+            result.add(new ResourceTransferDto(buyer, seller, single(this.tradeWidths[2 * t + 1], this.resourceIndex, this.tradeQuantities[t]),
+                    TransferCause.COMMERCIAL));
+            result.add(new ResourceTransferDto(seller, buyer, single(this.tradeWidths[2 * t], this.currencyIndex, this.tradeCosts[t]),
+                    TransferCause.COMMERCIAL));
+            this.tradeBuyers[t] = null;
+            this.tradeSellers[t] = null;
+        }
+        this.tradeCount = 0;
+        return result;
+    }
+
+    /**
+     * Match a new bid against the asks in the book, the asks whose producer can no longer deliver are removed.
+     *
+     * @param bid New bid.
+     * @return <code>false</code> if the bid producer can no longer pay.
+     */
+    private boolean matchBid(final Order bid) {
+        while (bid.remaining > 0 && this.bestAsk <= bid.price) {
+            Order ask = this.askHead[this.bestAsk];
+            long quantity = Math.min(bid.remaining, ask.remaining);
+            Settlement result = this.settle(bid, ask, this.bestAsk, quantity);
+            if (result == Settlement.BUYER_FAILED) {
+                return false;
+            }
+            if (result == Settlement.SELLER_FAILED) {
+                this.cancel(ask.id);
+                continue;
+            }
+            bid.remaining -= quantity;
+            this.filled(ask, quantity);
+        }
+        return true;
+    }
+
+    /**
+     * Match a new ask against the bids in the book, the bids whose producer can no longer pay are removed.
+     *
+     * @param ask New ask.
+     * @return <code>false</code> if the ask producer can no longer deliver.
+     */
+    private boolean matchAsk(final Order ask) {
+        while (ask.remaining > 0 && this.bestBid >= ask.price) {
+            Order bid = this.bidHead[this.bestBid];
+            long quantity = Math.min(bid.remaining, ask.remaining);
+            Settlement result = this.settle(bid, ask, this.bestBid, quantity);
+            if (result == Settlement.SELLER_FAILED) {
+                return false;
+            }
+            if (result == Settlement.BUYER_FAILED) {
+                this.cancel(bid.id);
+                continue;
+            }
+            ask.remaining -= quantity;
+            this.filled(bid, quantity);
+        }
+        return true;
+    }
+
+    /**
+     * Exchange the resources between the buyer and the seller, both sides are exchanged together, so nothing is lost if one side fails,
+     * and a side unable to hold what it receives under its limit fails.
+     *
+     * @param bid      Buying order.
+     * @param ask      Selling order.
+     * @param price    Trade price.
+     * @param quantity Traded quantity.
+     * @return The settlement result.
+     */
+    private Settlement settle(final Order bid, final Order ask, final int price, final long quantity) {
+        float cost = Math.min(price * this.tickSize * quantity, bid.locked);
+        ResourceReservation failed = ResourceReservation.exchange(bid.reservation, this.currencyIndex, cost, ask.reservation, this.resourceIndex, quantity);
+        if (failed == bid.reservation) {
+            return Settlement.BUYER_FAILED;
+        }
+        if (failed != null) {
+            return Settlement.SELLER_FAILED;
+        }
+        bid.locked -= cost;
+        ask.locked -= quantity;
+        this.record(bid, ask, quantity, cost);
+        return Settlement.DONE;
+    }
+
+    /**
+     * Record a trade, to build its transfers when they are drained.
+     *
+     * @param bid      Buying order.
+     * @param ask      Selling order.
+     * @param quantity Traded quantity.
+     * @param cost     Paid currency amount.
+     */
+    private void record(final Order bid, final Order ask, final long quantity, final float cost) {
+        int t = this.tradeCount;
+        if (t == this.tradeBuyers.length) {
+            this.tradeBuyers = Arrays.copyOf(this.tradeBuyers, t * 2);
+            this.tradeSellers = Arrays.copyOf(this.tradeSellers, t * 2);
+            this.tradeWidths = Arrays.copyOf(this.tradeWidths, t * 4);
+            this.tradeQuantities = Arrays.copyOf(this.tradeQuantities, t * 2);
+            this.tradeCosts = Arrays.copyOf(this.tradeCosts, t * 2);
+        }
+        this.tradeBuyers[t] = bid.player;
+        this.tradeSellers[t] = ask.player;
+        this.tradeWidths[2 * t] = bid.city.getResourceCount();
+        this.tradeWidths[2 * t + 1] = ask.city.getResourceCount();
+        this.tradeQuantities[t] = quantity;
+        this.tradeCosts[t] = cost;
+        this.tradeCount++;
+    }
+
+    /**
+     * Update an order in the book after a trade, and remove it if fully traded.
+     *
+     * @param order    Order in the book.
+     * @param quantity Traded quantity.
+     */
+    private void filled(final Order order, final long quantity) {
+        order.remaining -= quantity;
+        if (order.side == OrderSide.BID) {
+            this.bidQuantity[order.price] -= quantity;
+        } else {
+            this.askQuantity[order.price] -= quantity;
+        }
+        if (order.remaining == 0) {
+            this.unlink(order);
+            this.close(order);
+        }
+    }
+
+    /**
+     * Add an order at the end of its price level.
+     *
+     * @param order Order to add.
+     */
+    private void rest(final Order order) {
+        Order[] head = order.side == OrderSide.BID ? this.bidHead : this.askHead;
+        Order[] tail = order.side == OrderSide.BID ? this.bidTail : this.askTail;
+        int price = order.price;
+        order.previous = tail[price];
+        order.next = null;
+        if (tail[price] == null) {
+            head[price] = order;
+        } else {
+            tail[price].next = order;
+        }
+        tail[price] = order;
+        if (order.side == OrderSide.BID) {
+            this.bidQuantity[price] += order.remaining;
+            this.bestBid = Math.max(this.bestBid, price);
+        } else {
+            this.askQuantity[price] += order.remaining;
+            this.bestAsk = Math.min(this.bestAsk, price);
+        }
+        this.orders.put(order);
+    }
+
+    /**
+     * Remove an order from its price level.
+     *
+     * @param order Order to remove.
+     */
+    private void unlink(final Order order) {
+        Order[] head = order.side == OrderSide.BID ? this.bidHead : this.askHead;
+        Order[] tail = order.side == OrderSide.BID ? this.bidTail : this.askTail;
+        int price = order.price;
+        if (order.previous == null) {
+            head[price] = order.next;
+        } else {
+            order.previous.next = order.next;
+        }
+        if (order.next == null) {
+            tail[price] = order.previous;
+        } else {
+            order.next.previous = order.previous;
+        }
+        if (order.side == OrderSide.BID) {
+            this.bidQuantity[price] -= order.remaining;
+            while (this.bestBid >= 0 && this.bidHead[this.bestBid] == null) {
+                this.bestBid--;
+            }
+        } else {
+            this.askQuantity[price] -= order.remaining;
+            while (this.bestAsk < this.askHead.length && this.askHead[this.bestAsk] == null) {
+                this.bestAsk++;
+            }
+        }
+        this.orders.remove(order.id);
+    }
+
+    /**
+     * Release what remains of an order reservation and give the order back to the pool.
+     *
+     * @param order Order to close, must not be in the book.
+     */
+    private void close(final Order order) {
+        order.reservation.release();
+        order.player = null;
+        order.city = null;
+        order.reservation = null;
+        order.previous = null;
+        order.next = null;
+        this.pool.push(order);
+    }
+
+    private static ResourceValue single(final int width, final int index, final float amount) {
+        float[] values = new float[width];
+        values[index] = amount;
+        return new ResourceValue(values);
+    }
+
+    /**
+     * Orders by id, in an open addressing table using the primitive ids as keys.
+     */
+    private static final class OrderIndex {
+
+        private Order[] table = new Order[64];
+
+        private int size;
+
+        private Order get(final long id) {
+            int mask = this.table.length - 1;
+            for (int i = slot(id, mask); this.table[i] != null; i = (i + 1) & mask) {
+                if (this.table[i].id == id) {
+                    return this.table[i];
+                }
+            }
+            return null;
+        }
+
+        private void put(final Order order) {
+            if ((this.size + 1) * 2 > this.table.length) {
+                Order[] old = this.table;
+                this.table = new Order[old.length * 2];
+                for (Order o : old) {
+                    if (o != null) {
+                        this.insert(o);
+                    }
+                }
+            }
+            this.insert(order);
+            this.size++;
+        }
+
+        private void insert(final Order order) {
+            int mask = this.table.length - 1;
+            int i = slot(order.id, mask);
+            while (this.table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            this.table[i] = order;
+        }
+
+        /**
+         * Remove an order, the following entries of the probe sequence are moved back so no tombstone is needed.
+         *
+         * @param id Order id.
+         */
+        private void remove(final long id) {
+            int mask = this.table.length - 1;
+            int i = slot(id, mask);
+            while (this.table[i] != null && this.table[i].id != id) {
+                i = (i + 1) & mask;
+            }
+            if (this.table[i] == null) {
+                return;
+            }
+            this.table[i] = null;
+            this.size--;
+            int j = (i + 1) & mask;
+            while (this.table[j] != null) {
+                int home = slot(this.table[j].id, mask);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    this.table[i] = this.table[j];
+                    this.table[j] = null;
+                    i = j;
+                }
+                j = (j + 1) & mask;
+            }
+        }
+
+        private static int slot(final long id, final int mask) {
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+
+    private enum Settlement {
+        DONE, BUYER_FAILED, SELLER_FAILED
+    }
+
+    /**
+     * Order in the book, reused once closed.
+     */
+    private static final class Order {
+
+        private long id;
+
+        private PlayerId player;
+
+        private ResourcesProducer city;
+
+        private OrderSide side;
+
+        private int price;
+
+        private long remaining;
+
+        private ResourceReservation reservation;
+
+        /**
+         * Reserved amount not yet committed.
+         */
+        private float locked;
+
+        private Order previous;
+
+        private Order next;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+/**
+ * Read values bit by bit from a byte array written by a BitOutput.
+ *
+ * @author Grégory Van den Borre
+ */
+final class BitInput {
+
+    /**
+     * Bytes to read.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Number of read bits.
+     */
+    private long position;
+
+    /**
+     * @param buffer Bytes to read.
+     */
+    BitInput(final byte[] buffer) {
+        super();
+        this.buffer = buffer;
+    }
+
+    /**
+     * Read an unsigned value.
+     *
+     * @param bits Number of bits to read, between 0 and 64.
+     * @return The read value.
+     */
+    long read(final int bits) {
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            int b = this.buffer[(int) (this.position >>> 3)] & (0x80 >>> (this.position & 7));
+            value = (value << 1) | (b != 0 ? 1 : 0);
+            this.position++;
+        }
+        return value;
+    }
+
+    /**
+     * @return The next bit.
+     */
+    boolean readBit() {
+        return this.read(1) == 1;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer to write values bit by bit, most significant bit first.
+ *
+ * @author Grégory Van den Borre
+ */
+final class BitOutput {
+
+    /**
+     * Written bytes.
+     */
+    private byte[] buffer = new byte[64];
+
+    /**
+     * Number of written bits.
+     */
+    private long position;
+
+    /**
+     * Write the lowest bits of a value.
+     *
+     * @param value Value to write.
+     * @param bits  Number of bits to write, between 0 and 64.
+     */
+    void write(final long value, final int bits) {
+        assert bits >= 0 && bits <= 64;
+        this.ensureCapacity(this.position + bits);
+        for (int i = bits - 1; i >= 0; i--) {
+            if (((value >>> i) & 1L) != 0) {
+                this.buffer[(int) (this.position >>> 3)] |= (byte) (0x80 >>> (this.position & 7));
+            }
+            this.position++;
+        }
+    }
+
+    /**
+     * Write a single bit.
+     *
+     * @param bit Bit to write.
+     */
+    void writeBit(final boolean bit) {
+        this.write(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * @return The number of bytes used.
+     */
+    int byteLength() {
+        return (int) ((this.position + 7) >>> 3);
+    }
+
+    /**
+     * @return A copy of the used bytes.
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(this.buffer, this.byteLength());
+    }
+
+    private void ensureCapacity(final long bits) {
+        int bytes = (int) ((bits + 7) >>> 3);
+        if (bytes > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(bytes, this.buffer.length << 1));
+        }
+    }
+}
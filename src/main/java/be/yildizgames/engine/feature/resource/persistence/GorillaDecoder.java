@@ -0,0 +1,163 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+/**
+ * Decompress a series of resource values written by a GorillaEncoder.
+ *
+ * @author Grégory Van den Borre
+ */
+final class GorillaDecoder {
+
+    /**
+     * Compressed data.
+     */
+    private final BitInput input;
+
+    /**
+     * Number of points to read.
+     */
+    private final int count;
+
+    /**
+     * Current value bits, per resource.
+     */
+    private final int[] values;
+
+    /**
+     * Leading zeros of the previous stored XOR, per resource.
+     */
+    private final int[] leadings;
+
+    /**
+     * Trailing zeros of the previous stored XOR, per resource.
+     */
+    private final int[] trailings;
+
+    /**
+     * Time of the current point.
+     */
+    private long time;
+
+    /**
+     * Delta between the last two points.
+     */
+    private long delta;
+
+    /**
+     * Number of read points.
+     */
+    private int read;
+
+    /**
+     * @param data  Compressed data.
+     * @param size  Number of resources in every point.
+     * @param count Number of points.
+     */
+    GorillaDecoder(final byte[] data, final int size, final int count) {
+        super();
+        this.input = new BitInput(data);
+        this.count = count;
+        this.values = new int[size];
+        this.leadings = new int[size];
+        this.trailings = new int[size];
+    }
+
+    /**
+     * @return <code>true</code> if a point remains to be read.
+     */
+    boolean hasNext() {
+        return this.read < this.count;
+    }
+
+    /**
+     * Read the next point.
+     */
+    void next() {
+        if (this.read == 0) {
+            this.time = this.input.read(64);
+        } else {
+            this.delta += readDeltaOfDelta(this.input);
+            this.time += this.delta;
+        }
+        for (int i = 0; i < this.values.length; i++) {
+            this.readValue(i);
+        }
+        this.read++;
+    }
+
+    /**
+     * @return The time of the current point.
+     */
+    long time() {
+        return this.time;
+    }
+
+    /**
+     * Copy the values of the current point.
+     *
+     * @param destination Array to fill.
+     */
+    void values(final float[] destination) {
+        for (int i = 0; i < this.values.length; i++) {
+            destination[i] = Float.intBitsToFloat(this.values[i]);
+        }
+    }
+
+    private void readValue(final int index) {
+        if (!this.input.readBit()) {
+            return;
+        }
+        if (this.input.readBit()) {
+            this.leadings[index] = (int) this.input.read(5);
+            int meaningful = (int) this.input.read(5) + 1;
+            this.trailings[index] = 32 - this.leadings[index] - meaningful;
+        }
+        int meaningful = 32 - this.leadings[index] - this.trailings[index];
+        int xor = (int) (this.input.read(meaningful) << this.trailings[index]);
+        this.values[index] ^= xor;
+    }
+
+    private static long readDeltaOfDelta(final BitInput input) {
+        if (!input.readBit()) {
+            return 0;
+        }
+        if (!input.readBit()) {
+            return signExtend(input.read(7), 7);
+        }
+        if (!input.readBit()) {
+            return signExtend(input.read(9), 9);
+        }
+        if (!input.readBit()) {
+            return signExtend(input.read(12), 12);
+        }
+        return input.read(64);
+    }
+
+    private static long signExtend(final long value, final int bits) {
+        int shift = 64 - bits;
+        return (value << shift) >> shift;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import java.util.Arrays;
+
+/**
+ * Compress a series of resource values, as described in the Gorilla time series paper.
+ * Times are stored as the difference between two consecutive deltas, so regularly spaced points take a single bit.
+ * Every resource value is stored as the XOR with the previous value of the same resource, unchanged values take a single bit,
+ * and only the meaningful bits of the XOR are stored otherwise.
+ *
+ * @author Grégory Van den Borre
+ */
+final class GorillaEncoder {
+
+    /**
+     * Compressed data.
+     */
+    private final BitOutput output = new BitOutput();
+
+    /**
+     * Previous value bits, per resource.
+     */
+    private final int[] previousValues;
+
+    /**
+     * Leading zeros of the previous stored XOR, per resource, -1 if none.
+     */
+    private final int[] previousLeading;
+
+    /**
+     * Trailing zeros of the previous stored XOR, per resource.
+     */
+    private final int[] previousTrailing;
+
+    /**
+     * Time of the first point.
+     */
+    private long firstTime;
+
+    /**
+     * Time of the last point.
+     */
+    private long previousTime;
+
+    /**
+     * Delta between the last two points.
+     */
+    private long previousDelta;
+
+    /**
+     * Number of points.
+     */
+    private int count;
+
+    /**
+     * @param size Number of resources in every point.
+     */
+    GorillaEncoder(final int size) {
+        super();
+        this.previousValues = new int[size];
+        this.previousLeading = new int[size];
+        this.previousTrailing = new int[size];
+        Arrays.fill(this.previousLeading, -1);
+    }
+
+    /**
+     * Add a point, times must not decrease.
+     *
+     * @param time   Point time.
+     * @param values Resource values.
+     */
+    void add(final long time, final float[] values) {
+        assert values.length == this.previousValues.length;
+        if (this.count == 0) {
+            this.firstTime = time;
+            this.output.write(time, 64);
+        } else {
+            long delta = time - this.previousTime;
+            writeDeltaOfDelta(this.output, delta - this.previousDelta);
+            this.previousDelta = delta;
+        }
+        this.previousTime = time;
+        for (int i = 0; i < values.length; i++) {
+            this.writeValue(i, Float.floatToIntBits(values[i]));
+        }
+        this.count++;
+    }
+
+    /**
+     * @return The number of points.
+     */
+    int count() {
+        return this.count;
+    }
+
+    /**
+     * @return The time of the first point.
+     */
+    long firstTime() {
+        return this.firstTime;
+    }
+
+    /**
+     * @return The time of the last point.
+     */
+    long lastTime() {
+        return this.previousTime;
+    }
+
+    /**
+     * @return The number of compressed bytes.
+     */
+    int byteLength() {
+        return this.output.byteLength();
+    }
+
+    /**
+     * @return A copy of the compressed bytes.
+     */
+    byte[] toBytes() {
+        return this.output.toBytes();
+    }
+
+    private void writeValue(final int index, final int bits) {
+        int xor = bits ^ this.previousValues[index];
+        this.previousValues[index] = bits;
+        if (xor == 0) {
+            this.output.writeBit(false);
+            return;
+        }
+        this.output.writeBit(true);
+        int leading = Math.min(31, Integer.numberOfLeadingZeros(xor));
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        int previousLead = this.previousLeading[index];
+        if (previousLead != -1 && leading >= previousLead && trailing >= this.previousTrailing[index]) {
+            this.output.writeBit(false);
+            int meaningful = 32 - previousLead - this.previousTrailing[index];
+            this.output.write(xor >>> this.previousTrailing[index], meaningful);
+        } else {
+            this.output.writeBit(true);
+            int meaningful = 32 - leading - trailing;
+            this.output.write(leading, 5);
+            this.output.write(meaningful - 1, 5);
+            this.output.write(xor >>> trailing, meaningful);
+            this.previousLeading[index] = leading;
+            this.previousTrailing[index] = trailing;
+        }
+    }
+
+    private static void writeDeltaOfDelta(final BitOutput output, final long dod) {
+        if (dod == 0) {
+            output.writeBit(false);
+        } else if (dod >= -64 && dod <= 63) {
+            output.write(0b10, 2);
+            output.write(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            output.write(0b110, 3);
+            output.write(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            output.write(0b1110, 4);
+            output.write(dod, 12);
+        } else {
+            output.write(0b1111, 4);
+            output.write(dod, 64);
+        }
+    }
+}
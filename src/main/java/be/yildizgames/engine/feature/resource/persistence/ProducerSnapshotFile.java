@@ -0,0 +1,286 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceLayout;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Binary image of the producers state, written in a single file and read by memory mapping it.
+ * Opening a file only maps it, a producer is built from its record when it is loaded, so a world can be served before all its cities are read.
+ * The file starts with a header and an index of the cities sorted by id, followed by a record for every city:
+ * last update time, initialization flag, resource values and applied bonus indexes.
+ * This class is thread safe once opened.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ProducerSnapshotFile {
+
+    /**
+     * Magic number at the beginning of the file.
+     */
+    private static final int MAGIC = 0x52505331;
+
+    /**
+     * Version of the format.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Header size: magic, format version and city count.
+     */
+    private static final int HEADER = 12;
+
+    /**
+     * Index entry size: city id and record offset.
+     */
+    private static final int INDEX_ENTRY = 16;
+
+    /**
+     * Mapped file content.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of cities in the file.
+     */
+    private final int count;
+
+    /**
+     * Layout of the loaded values.
+     */
+    private final ResourceLayout layout;
+
+    private ProducerSnapshotFile(final ByteBuffer buffer, final ResourceLayout layout) {
+        super();
+        this.buffer = buffer;
+        this.layout = layout;
+        if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a producer snapshot file");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot format version: " + version);
+        }
+        this.count = buffer.getInt(8);
+    }
+
+    /**
+     * Write the state of producers in a file, the file is replaced atomically once completely written.
+     *
+     * @param file      File to write.
+     * @param snapshots State of the producers to write, one per city.
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    public static void write(final Path file, final Collection<ResourceSnapshot> snapshots) {
+        assert file != null;
+        assert snapshots != null;
+        List<ResourceSnapshot> sorted = new ArrayList<>(snapshots);
+        sorted.sort(Comparator.comparingLong(s -> s.getCity().value));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sorted.size());
+            long offset = HEADER + (long) INDEX_ENTRY * sorted.size();
+            List<int[]> bonus = new ArrayList<>(sorted.size());
+            for (ResourceSnapshot s : sorted) {
+                int[] indexes = s.getBonusIndexes();
+                bonus.add(indexes);
+                out.writeLong(s.getCity().value);
+                out.writeLong(offset);
+                offset += 8 + 1 + 4 + 4L * s.getSize() + 4 + 4L * indexes.length;
+            }
+            for (int i = 0; i < sorted.size(); i++) {
+                ResourceSnapshot s = sorted.get(i);
+                out.writeLong(s.getLastUpdate());
+                out.writeBoolean(s.isInitialized());
+                out.writeInt(s.getSize());
+                for (int r = 0; r < s.getSize(); r++) {
+                    out.writeFloat(s.getValue(r));
+                }
+                out.writeInt(bonus.get(i).length);
+                for (int b : bonus.get(i)) {
+                    out.writeInt(b);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Open a file, the loaded values use a dense layout.
+     *
+     * @param file File to open.
+     * @return The opened file.
+     * @throws UncheckedIOException     If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a snapshot file or has an unsupported version.
+     */
+    public static ProducerSnapshotFile open(final Path file) {
+        return open(file, ResourceLayout.DENSE);
+    }
+
+    /**
+     * Open a file, only the file is mapped, no record is read.
+     *
+     * @param file   File to open.
+     * @param layout Layout of the loaded values.
+     * @return The opened file.
+     * @throws UncheckedIOException     If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a snapshot file or has an unsupported version.
+     */
+    public static ProducerSnapshotFile open(final Path file, final ResourceLayout layout) {
+        assert file != null;
+        assert layout != null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ProducerSnapshotFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), layout);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The number of cities in the file.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @return The ids of the cities in the file, sorted.
+     */
+    public List<EntityId> getCities() {
+        List<EntityId> result = new ArrayList<>(this.count);
+        for (int i = 0; i < this.count; i++) {
+            result.add(EntityId.valueOf(this.cityAt(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Check if a city is present in the file.
+     *
+     * @param city City id.
+     * @return <code>true</code> if the city has a record.
+     */
+    public boolean contains(final EntityId city) {
+        return this.find(city.value) >= 0;
+    }
+
+    /**
+     * Build the producer of a city from its record, the bonus are added and the producer is initialized if it was when written.
+     *
+     * @param city  City id.
+     * @param bonus Provide a bonus from its index, unknown indexes return null and are ignored.
+     * @return The producer, null if the city is not in the file.
+     */
+    public ResourcesProducer load(final EntityId city, final IntFunction<BonusResources> bonus) {
+        assert city != null;
+        assert bonus != null;
+        int entry = this.find(city.value);
+        if (entry < 0) {
+            return null;
+        }
+        int position = (int) this.buffer.getLong(HEADER + entry * INDEX_ENTRY + 8);
+        long lastUpdate = this.buffer.getLong(position);
+        boolean initialized = this.buffer.get(position + 8) != 0;
+        int size = this.buffer.getInt(position + 9);
+        position += 13;
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = this.buffer.getFloat(position);
+            position += 4;
+        }
+        ResourcesProducer producer = new ResourcesProducer(city, lastUpdate, this.layout.newValue(values));
+        int bonusCount = this.buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < bonusCount; i++) {
+            BonusResources b = bonus.apply(this.buffer.getInt(position));
+            position += 4;
+            if (b != null) {
+                producer.addBonus(b);
+            }
+        }
+        if (initialized) {
+            producer.setInitialised();
+        }
+        return producer;
+    }
+
+    private long cityAt(final int entry) {
+        return this.buffer.getLong(HEADER + entry * INDEX_ENTRY);
+    }
+
+    /**
+     * Binary search of a city in the index.
+     *
+     * @param city City id.
+     * @return The index entry, negative if not found.
+     */
+    private int find(final long city) {
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long c = this.cityAt(mid);
+            if (c < city) {
+                low = mid + 1;
+            } else if (c > city) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceChangeListener;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write checkpoints of the producers state without stopping the game logic.
+ * The producers publish an immutable snapshot after every modification, a checkpoint only collects those snapshots,
+ * so the producers are never locked while it is written and every producer is written in a consistent state.
+ * The first checkpoint contains all the tracked producers, the next ones only contain the producers modified since the previous one.
+ * Checkpoints are written as producer snapshot files, they are read back with {@link ResourceCheckpoints}.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceCheckpointer implements ResourceChangeListener {
+
+    private static final System.Logger LOGGER = System.getLogger(ResourceCheckpointer.class.getName());
+
+    /**
+     * Directory containing the checkpoint files.
+     */
+    private final Path directory;
+
+    /**
+     * Time between two periodic checkpoints.
+     */
+    private final Duration interval;
+
+    /**
+     * Executor running the checkpoints.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Tracked producers.
+     */
+    private final Set<ResourcesProducer> tracked = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Producers modified since the last checkpoint.
+     */
+    private final Set<ResourcesProducer> changed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Lock to prevent concurrent checkpoints.
+     */
+    private final Object checkpointLock = new Object();
+
+    /**
+     * Last written snapshot version, per city, only used while holding the checkpoint lock.
+     */
+    private final Map<EntityId, Long> written = new HashMap<>();
+
+    /**
+     * Number of the next checkpoint file.
+     */
+    private int next;
+
+    /**
+     * Periodic checkpoint task, null if not started.
+     */
+    private ScheduledFuture<?> task;
+
+    /**
+     * Create a new checkpointer, the checkpoints are numbered after the existing ones.
+     *
+     * @param directory Directory containing the checkpoint files, created if it does not exist.
+     * @param interval  Time between two periodic checkpoints.
+     * @param scheduler Executor running the checkpoints.
+     * @throws UncheckedIOException If the directory cannot be read.
+     */
+    public ResourceCheckpointer(final Path directory, final Duration interval, final ScheduledExecutorService scheduler) {
+        super();
+        assert directory != null;
+        assert interval != null;
+        assert scheduler != null;
+        this.directory = directory;
+        this.interval = interval;
+        this.scheduler = scheduler;
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing = ResourceCheckpoints.files(directory);
+            this.next = existing.isEmpty() ? 0 : ResourceCheckpoints.number(existing.get(existing.size() - 1)) + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Start to track a producer, it will be written with the next checkpoint.
+     *
+     * @param producer Producer to track.
+     */
+    public void track(final ResourcesProducer producer) {
+        this.tracked.add(producer);
+        producer.addChangeListener(this);
+        this.changed.add(producer);
+    }
+
+    /**
+     * Stop to track a producer, its last written state stays in the checkpoints until they are compacted.
+     *
+     * @param producer Producer to stop tracking.
+     */
+    public void untrack(final ResourcesProducer producer) {
+        producer.removeChangeListener(this);
+        this.tracked.remove(producer);
+        this.changed.remove(producer);
+    }
+
+    @Override
+    public void resourcesChanged(final ResourcesProducer producer) {
+        this.changed.add(producer);
+    }
+
+    /**
+     * Start the periodic checkpoints.
+     */
+    public synchronized void start() {
+        if (this.task == null) {
+            long delay = this.interval.toMillis();
+            this.task = this.scheduler.scheduleWithFixedDelay(this::periodic, delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic checkpoints and write a last one.
+     */
+    public synchronized void stop() {
+        if (this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+        this.checkpoint();
+    }
+
+    /**
+     * @return The number of producers modified since the last checkpoint.
+     */
+    public int getChangedCount() {
+        return this.changed.size();
+    }
+
+    /**
+     * Write the producers modified since the last checkpoint, it can be called from any thread while the producers are modified.
+     * If the file cannot be written, the producers are kept for the next checkpoint.
+     *
+     * @return The written file, null if no producer was modified.
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    public Path checkpoint() {
+        synchronized (this.checkpointLock) {
+            List<ResourcesProducer> producers = new ArrayList<>();
+            List<ResourceSnapshot> snapshots = new ArrayList<>();
+            Iterator<ResourcesProducer> it = this.changed.iterator();
+            while (it.hasNext()) {
+                ResourcesProducer producer = it.next();
+                it.remove();
+                ResourceSnapshot snapshot = producer.getSnapshot();
+                Long version = this.written.get(snapshot.getCity());
+                if (version == null || version != snapshot.getVersion()) {
+                    producers.add(producer);
+                    snapshots.add(snapshot);
+                }
+            }
+            if (snapshots.isEmpty()) {
+                return null;
+            }
+            try {
+                return this.write(snapshots);
+            } catch (UncheckedIOException e) {
+                for (ResourcesProducer p : producers) {
+                    if (this.tracked.contains(p)) {
+                        this.changed.add(p);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Write a checkpoint containing all the tracked producers and delete the previous ones.
+     *
+     * @return The written file.
+     * @throws UncheckedIOException If the file cannot be written or a previous one cannot be deleted.
+     */
+    public Path compact() {
+        synchronized (this.checkpointLock) {
+            List<ResourceSnapshot> snapshots = new ArrayList<>(this.tracked.size());
+            for (ResourcesProducer p : this.tracked) {
+                snapshots.add(p.getSnapshot());
+            }
+            this.written.clear();
+            Path file = this.write(snapshots);
+            try {
+                for (Path previous : ResourceCheckpoints.files(this.directory)) {
+                    if (!previous.equals(file)) {
+                        Files.delete(previous);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return file;
+        }
+    }
+
+    private void periodic() {
+        try {
+            this.checkpoint();
+        } catch (UncheckedIOException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Error while writing the checkpoint", e);
+        }
+    }
+
+    private Path write(final List<ResourceSnapshot> snapshots) {
+        Path file = this.directory.resolve(ResourceCheckpoints.fileName(this.next));
+        ProducerSnapshotFile.write(file, snapshots);
+        this.next++;
+        for (ResourceSnapshot s : snapshots) {
+            this.written.put(s.getCity(), s.getVersion());
+        }
+        return file;
+    }
+}
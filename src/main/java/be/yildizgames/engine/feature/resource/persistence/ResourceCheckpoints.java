@@ -0,0 +1,152 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceLayout;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Read the checkpoints written by a {@link ResourceCheckpointer}, the state of a city is taken from the most recent checkpoint containing it.
+ * All checkpoint files are mapped when opened, the producers are built when loaded.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceCheckpoints {
+
+    /**
+     * Checkpoint files, the most recent first.
+     */
+    private final List<ProducerSnapshotFile> files;
+
+    private ResourceCheckpoints(final List<ProducerSnapshotFile> files) {
+        super();
+        this.files = files;
+    }
+
+    /**
+     * Open the checkpoints of a directory, the loaded values use a dense layout.
+     *
+     * @param directory Directory containing the checkpoint files.
+     * @return The opened checkpoints, empty if the directory does not exist.
+     * @throws UncheckedIOException If the files cannot be read.
+     */
+    public static ResourceCheckpoints open(final Path directory) {
+        return open(directory, ResourceLayout.DENSE);
+    }
+
+    /**
+     * Open the checkpoints of a directory.
+     *
+     * @param directory Directory containing the checkpoint files.
+     * @param layout    Layout of the loaded values.
+     * @return The opened checkpoints, empty if the directory does not exist.
+     * @throws UncheckedIOException If the files cannot be read.
+     */
+    public static ResourceCheckpoints open(final Path directory, final ResourceLayout layout) {
+        assert directory != null;
+        List<ProducerSnapshotFile> files = new ArrayList<>();
+        try {
+            if (Files.isDirectory(directory)) {
+                for (Path file : files(directory)) {
+                    files.add(0, ProducerSnapshotFile.open(file, layout));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ResourceCheckpoints(files);
+    }
+
+    /**
+     * @return The ids of the cities present in at least one checkpoint, sorted.
+     */
+    public List<EntityId> getCities() {
+        Set<Long> ids = new TreeSet<>();
+        for (ProducerSnapshotFile f : this.files) {
+            f.getCities().forEach(c -> ids.add(c.value));
+        }
+        return ids.stream().map(EntityId::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * Build the producer of a city from its most recent checkpoint.
+     *
+     * @param city  City id.
+     * @param bonus Provide a bonus from its index, unknown indexes return null and are ignored.
+     * @return The producer, null if the city is in no checkpoint.
+     */
+    public ResourcesProducer load(final EntityId city, final IntFunction<BonusResources> bonus) {
+        for (ProducerSnapshotFile f : this.files) {
+            ResourcesProducer p = f.load(city, bonus);
+            if (p != null) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * List the checkpoint files of a directory.
+     *
+     * @param directory Directory containing the files.
+     * @return The checkpoint files, the oldest first.
+     * @throws IOException If the directory cannot be read.
+     */
+    static List<Path> files(final Path directory) throws IOException {
+        try (Stream<Path> s = Files.list(directory)) {
+            return s.filter(p -> p.getFileName().toString().matches("checkpoint-\\d{6}\\.snap")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param number Checkpoint number.
+     * @return The name of the checkpoint file.
+     */
+    static String fileName(final int number) {
+        return String.format("checkpoint-%06d.snap", number);
+    }
+
+    /**
+     * @param file Checkpoint file.
+     * @return The checkpoint number.
+     */
+    static int number(final Path file) {
+        return Integer.parseInt(file.getFileName().toString().substring(11, 17));
+    }
+}
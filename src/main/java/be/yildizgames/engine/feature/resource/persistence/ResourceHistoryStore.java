@@ -0,0 +1,686 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append only history of the city resources, stored compressed in memory mapped segment files.
+ * The points of a city are compressed in memory with delta of delta timestamps and XOR float values, once a chunk is full,
+ * it is appended to the current segment file. Chunks are indexed per city by time, so a range scan only decompresses the chunks of the city overlapping the range.
+ * Flushing does not seal the chunks being filled, so they keep their compression, the points appended since the previous flush are added to a separate log,
+ * rewritten with only the points of the chunks being filled once it grows over twice their count, and restored when the store is opened again.
+ * Points appended since the last flush are lost if the store is not flushed or closed.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceHistoryStore implements AutoCloseable {
+
+    /**
+     * Marker at the start of every segment file.
+     */
+    private static final int SEGMENT_MAGIC = 0x52485331;
+
+    /**
+     * Marker at the start of every chunk, an other value marks the end of the written chunks.
+     */
+    private static final int CHUNK_MAGIC = 0x52484331;
+
+    /**
+     * Marker at the start of the log containing the points of the chunks being filled.
+     */
+    private static final int PARTIAL_MAGIC = 0x52485032;
+
+    /**
+     * Log containing the points of the chunks being filled at the last flush.
+     */
+    private static final String PARTIAL_FILE = "history-open.part";
+
+    /**
+     * Segment header size: magic and resource count.
+     */
+    private static final int SEGMENT_HEADER = 8;
+
+    /**
+     * Chunk header size: magic, city, point count, first time, last time, data length.
+     */
+    private static final int CHUNK_HEADER = 36;
+
+    /**
+     * Partial log header size: magic and resource count.
+     */
+    private static final int PARTIAL_HEADER = 8;
+
+    /**
+     * Default number of points in a chunk.
+     */
+    private static final int DEFAULT_CHUNK_POINTS = 120;
+
+    /**
+     * Default segment file size.
+     */
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Directory containing the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * Number of resources in every point.
+     */
+    private final int resourceCount;
+
+    /**
+     * Number of points in a chunk.
+     */
+    private final int chunkPoints;
+
+    /**
+     * Size of a segment file.
+     */
+    private final int segmentSize;
+
+    /**
+     * Mapped segment files, in creation order.
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * Written chunks, per city, in time order.
+     */
+    private final Map<EntityId, List<Chunk>> chunks = new HashMap<>();
+
+    /**
+     * Chunks being filled, per city.
+     */
+    private final Map<EntityId, GorillaEncoder> open = new HashMap<>();
+
+    /**
+     * Points appended since the last flush, as partial log records.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * Partial log, opened at the first flush appending to it.
+     */
+    private FileChannel partial;
+
+    /**
+     * Number of points in the chunks being filled.
+     */
+    private long openPoints;
+
+    /**
+     * Number of records in the partial log.
+     */
+    private long loggedPoints;
+
+    /**
+     * <code>true</code> if the partial log must be rewritten at the next flush, because it ends with an incomplete record.
+     */
+    private boolean rewrite;
+
+    /**
+     * Write position in the last segment.
+     */
+    private int position;
+
+    /**
+     * <code>true</code> once the store is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Open a store with the default chunk and segment sizes.
+     *
+     * @param directory     Directory containing the segment files, created if it does not exist.
+     * @param resourceCount Number of resources in every point.
+     * @throws UncheckedIOException If the files cannot be opened.
+     */
+    public ResourceHistoryStore(final Path directory, final int resourceCount) {
+        this(directory, resourceCount, DEFAULT_CHUNK_POINTS, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open a store, the existing segments are scanned to rebuild the chunk index.
+     *
+     * @param directory     Directory containing the segment files, created if it does not exist.
+     * @param resourceCount Number of resources in every point.
+     * @param chunkPoints   Number of points in a chunk.
+     * @param segmentSize   Size of a segment file, in bytes.
+     * @throws UncheckedIOException     If the files cannot be opened.
+     * @throws IllegalArgumentException If an existing segment was written with another resource count.
+     */
+    public ResourceHistoryStore(final Path directory, final int resourceCount, final int chunkPoints, final int segmentSize) {
+        super();
+        assert directory != null;
+        if (resourceCount <= 0) {
+            throw new IllegalArgumentException("Resource count must be positive: " + resourceCount);
+        }
+        if (chunkPoints <= 0) {
+            throw new IllegalArgumentException("Chunk points must be positive: " + chunkPoints);
+        }
+        if (segmentSize <= SEGMENT_HEADER + CHUNK_HEADER) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.resourceCount = resourceCount;
+        this.chunkPoints = chunkPoints;
+        this.segmentSize = segmentSize;
+        this.pending = ByteBuffer.allocate(this.recordSize() * 16);
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> s = Files.list(directory)) {
+                files = s.filter(p -> p.getFileName().toString().matches("history-\\d{6}\\.seg")).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                this.load(file);
+            }
+            this.loadPartial(directory.resolve(PARTIAL_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Add a point to the history of a city, points of a city must be appended in strictly increasing time order.
+     *
+     * @param value City resources at a given time.
+     * @throws IllegalArgumentException If the value does not have the expected number of resources, or is not newer than the last point of the city.
+     * @throws IllegalStateException    If the store is closed.
+     */
+    public synchronized void append(final ResourceValueDto value) {
+        assert value != null;
+        this.checkOpen();
+        float[] values = value.resources.getArray();
+        if (values.length != this.resourceCount) {
+            throw new IllegalArgumentException("Expected " + this.resourceCount + " resources, got " + values.length);
+        }
+        GorillaEncoder encoder = this.open.get(value.cityId);
+        long last = encoder != null ? encoder.lastTime() : this.lastWrittenTime(value.cityId);
+        if (value.time <= last) {
+            throw new IllegalArgumentException("Point not newer than the last one for " + value.cityId + ": " + value.time + " <= " + last);
+        }
+        this.add(value.cityId, value.time, values);
+        this.log(value.cityId, value.time, values);
+    }
+
+    /**
+     * Provide the history of a city in a time range.
+     *
+     * @param city City id.
+     * @param from Start time, inclusive.
+     * @param to   End time, inclusive.
+     * @return The points in the range, in time order.
+     * @throws IllegalStateException If the store is closed.
+     */
+    public synchronized List<ResourceValueDto> scan(final EntityId city, final long from, final long to) {
+        this.checkOpen();
+        List<ResourceValueDto> result = new ArrayList<>();
+        this.scan(city, from, to, (time, values) -> result.add(new ResourceValueDto(city, new ResourceValue(values), time)));
+        return result;
+    }
+
+    /**
+     * Provide the history of a city in a time range, averaged over fixed steps.
+     *
+     * @param city City id.
+     * @param from Start time, inclusive.
+     * @param to   End time, inclusive.
+     * @param step Step duration, in milliseconds.
+     * @return One point per step containing at least one point, with the step start time and the average values.
+     * @throws IllegalStateException If the store is closed.
+     */
+    public synchronized List<ResourceValueDto> downsample(final EntityId city, final long from, final long to, final long step) {
+        this.checkOpen();
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        }
+        List<ResourceValueDto> result = new ArrayList<>();
+        double[] sums = new double[this.resourceCount];
+        long[] bucket = {Long.MIN_VALUE, 0};
+        this.scan(city, from, to, (time, values) -> {
+            long start = from + Math.floorDiv(time - from, step) * step;
+            if (start != bucket[0]) {
+                this.addAverage(result, city, bucket[0], sums, bucket[1]);
+                bucket[0] = start;
+                bucket[1] = 0;
+            }
+            for (int i = 0; i < values.length; i++) {
+                sums[i] += values[i];
+            }
+            bucket[1]++;
+        });
+        this.addAverage(result, city, bucket[0], sums, bucket[1]);
+        return result;
+    }
+
+    /**
+     * Force the segments to the disk and log the points appended since the previous flush, the chunks being filled are not sealed and keep receiving points.
+     *
+     * @throws IllegalStateException If the store is closed.
+     * @throws UncheckedIOException  If the points cannot be logged.
+     */
+    public synchronized void flush() {
+        this.checkOpen();
+        for (MappedByteBuffer segment : this.segments) {
+            segment.force();
+        }
+        this.savePartial();
+    }
+
+    /**
+     * @return The number of bytes written in the segments.
+     */
+    public synchronized long getDiskUsage() {
+        long usage = 0;
+        for (int i = 0; i < this.segments.size() - 1; i++) {
+            usage += this.segments.get(i).capacity();
+        }
+        return this.segments.isEmpty() ? 0 : usage + this.position;
+    }
+
+    /**
+     * Flush the store, it cannot be used anymore, closing it again does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.flush();
+        this.closePartial();
+        this.closed = true;
+        this.segments.clear();
+        this.chunks.clear();
+        this.open.clear();
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("History store is closed.");
+        }
+    }
+
+    private int recordSize() {
+        return 16 + 4 * this.resourceCount;
+    }
+
+    /**
+     * Add a point to the chunk being filled for a city, the chunk is sealed once full.
+     *
+     * @param city   City id.
+     * @param time   Point time.
+     * @param values Point values.
+     */
+    private void add(final EntityId city, final long time, final float[] values) {
+        GorillaEncoder encoder = this.open.computeIfAbsent(city, c -> new GorillaEncoder(this.resourceCount));
+        encoder.add(time, values);
+        this.openPoints++;
+        if (encoder.count() >= this.chunkPoints) {
+            this.seal(city, encoder);
+        }
+    }
+
+    /**
+     * Keep a point until the next flush adds it to the partial log.
+     *
+     * @param city   City id.
+     * @param time   Point time.
+     * @param values Point values.
+     */
+    private void log(final EntityId city, final long time, final float[] values) {
+        if (this.pending.remaining() < this.recordSize()) {
+            ByteBuffer larger = ByteBuffer.allocate(this.pending.capacity() * 2);
+            this.pending.flip();
+            larger.put(this.pending);
+            this.pending = larger;
+        }
+        this.pending.putLong(city.value);
+        this.pending.putLong(time);
+        for (float v : values) {
+            this.pending.putFloat(v);
+        }
+    }
+
+    /**
+     * Add the pending points to the partial log, it is rewritten instead once it grows over twice the points of the chunks being filled.
+     */
+    private void savePartial() {
+        int records = this.pending.position() / this.recordSize();
+        try {
+            if (this.rewrite || this.loggedPoints + records > 2 * this.openPoints + this.chunkPoints) {
+                this.rewritePartial();
+            } else if (records > 0) {
+                if (this.partial == null) {
+                    this.partial = this.openPartial();
+                }
+                ByteBuffer data = this.pending.duplicate();
+                data.flip();
+                try {
+                    while (data.hasRemaining()) {
+                        this.partial.write(data);
+                    }
+                    this.partial.force(false);
+                } catch (IOException e) {
+                    this.rewrite = true;
+                    throw e;
+                }
+                this.loggedPoints += records;
+            }
+            this.pending.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileChannel openPartial() throws IOException {
+        Path file = this.directory.resolve(PARTIAL_FILE);
+        boolean exists = Files.exists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!exists) {
+            ByteBuffer header = ByteBuffer.allocate(PARTIAL_HEADER);
+            header.putInt(PARTIAL_MAGIC);
+            header.putInt(this.resourceCount);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Replace the partial log with the points of the chunks being filled, it is removed if there is none.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    private void rewritePartial() throws IOException {
+        this.closePartial();
+        Path file = this.directory.resolve(PARTIAL_FILE);
+        if (this.openPoints == 0) {
+            Files.deleteIfExists(file);
+        } else {
+            Path tmp = this.directory.resolve(PARTIAL_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(PARTIAL_HEADER + this.chunkPoints * this.recordSize());
+                buffer.putInt(PARTIAL_MAGIC);
+                buffer.putInt(this.resourceCount);
+                float[] values = new float[this.resourceCount];
+                for (Map.Entry<EntityId, GorillaEncoder> e : this.open.entrySet()) {
+                    GorillaDecoder decoder = new GorillaDecoder(e.getValue().toBytes(), this.resourceCount, e.getValue().count());
+                    while (decoder.hasNext()) {
+                        decoder.next();
+                        decoder.values(values);
+                        if (buffer.remaining() < this.recordSize()) {
+                            write(channel, buffer);
+                        }
+                        buffer.putLong(e.getKey().value);
+                        buffer.putLong(decoder.time());
+                        for (float v : values) {
+                            buffer.putFloat(v);
+                        }
+                    }
+                }
+                write(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.loggedPoints = this.openPoints;
+        this.rewrite = false;
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void closePartial() {
+        if (this.partial == null) {
+            return;
+        }
+        try {
+            this.partial.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.partial = null;
+        }
+    }
+
+    /**
+     * Restore the chunks being filled from the partial log, the points already sealed in a segment are ignored.
+     * An incomplete record at the end of the log is dropped, and the log is rewritten at the next flush.
+     *
+     * @param file Partial log.
+     * @throws IOException If the file cannot be read.
+     */
+    private void loadPartial(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < PARTIAL_HEADER || buffer.getInt() != PARTIAL_MAGIC) {
+            throw new IOException("Invalid history file: " + file);
+        }
+        if (buffer.getInt() != this.resourceCount) {
+            throw new IllegalArgumentException("File " + file + " has another resource count, expected " + this.resourceCount);
+        }
+        float[] values = new float[this.resourceCount];
+        while (buffer.remaining() >= this.recordSize()) {
+            EntityId city = EntityId.valueOf(buffer.getLong());
+            long time = buffer.getLong();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buffer.getFloat();
+            }
+            GorillaEncoder encoder = this.open.get(city);
+            if (time > (encoder != null ? encoder.lastTime() : this.lastWrittenTime(city))) {
+                this.add(city, time, values);
+            }
+            this.loggedPoints++;
+        }
+        this.rewrite = buffer.hasRemaining();
+    }
+
+    private void scan(final EntityId city, final long from, final long to, final PointConsumer consumer) {
+        float[] values = new float[this.resourceCount];
+        for (Chunk c : this.chunks.getOrDefault(city, List.of())) {
+            if (c.lastTime >= from && c.firstTime <= to) {
+                ByteBuffer data = this.segments.get(c.segment).duplicate();
+                data.position(c.offset);
+                byte[] bytes = new byte[c.length];
+                data.get(bytes);
+                decode(new GorillaDecoder(bytes, this.resourceCount, c.count), from, to, values, consumer);
+            }
+        }
+        GorillaEncoder encoder = this.open.get(city);
+        if (encoder != null && encoder.lastTime() >= from && encoder.firstTime() <= to) {
+            decode(new GorillaDecoder(encoder.toBytes(), this.resourceCount, encoder.count()), from, to, values, consumer);
+        }
+    }
+
+    private static void decode(final GorillaDecoder decoder, final long from, final long to, final float[] values, final PointConsumer consumer) {
+        while (decoder.hasNext()) {
+            decoder.next();
+            long time = decoder.time();
+            if (time > to) {
+                return;
+            }
+            if (time >= from) {
+                decoder.values(values);
+                consumer.accept(time, values.clone());
+            }
+        }
+    }
+
+    private void addAverage(final List<ResourceValueDto> result, final EntityId city, final long start, final double[] sums, final long count) {
+        if (count == 0) {
+            return;
+        }
+        float[] average = new float[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            average[i] = (float) (sums[i] / count);
+            sums[i] = 0;
+        }
+        result.add(new ResourceValueDto(city, new ResourceValue(average), start));
+    }
+
+    private long lastWrittenTime(final EntityId city) {
+        List<Chunk> cityChunks = this.chunks.get(city);
+        return cityChunks == null ? Long.MIN_VALUE : cityChunks.get(cityChunks.size() - 1).lastTime;
+    }
+
+    /**
+     * Append a chunk to the current segment, a new segment is created if it does not fit.
+     *
+     * @param city    City id.
+     * @param encoder Chunk data.
+     */
+    private void seal(final EntityId city, final GorillaEncoder encoder) {
+        this.open.remove(city);
+        this.openPoints -= encoder.count();
+        byte[] data = encoder.toBytes();
+        int size = CHUNK_HEADER + data.length;
+        if (this.segments.isEmpty() || this.position + size > this.segments.get(this.segments.size() - 1).capacity()) {
+            this.newSegment(Math.max(this.segmentSize, SEGMENT_HEADER + size));
+        }
+        MappedByteBuffer segment = this.segments.get(this.segments.size() - 1);
+        int offset = this.position;
+        segment.putInt(offset, CHUNK_MAGIC);
+        segment.putLong(offset + 4, city.value);
+        segment.putInt(offset + 12, encoder.count());
+        segment.putLong(offset + 16, encoder.firstTime());
+        segment.putLong(offset + 24, encoder.lastTime());
+        segment.putInt(offset + 32, data.length);
+        ByteBuffer target = segment.duplicate();
+        target.position(offset + CHUNK_HEADER);
+        target.put(data);
+        this.position = offset + size;
+        this.index(city, new Chunk(this.segments.size() - 1, offset + CHUNK_HEADER, data.length, encoder.count(), encoder.firstTime(), encoder.lastTime()));
+    }
+
+    private void newSegment(final int size) {
+        Path file = this.directory.resolve(String.format("history-%06d.seg", this.segments.size()));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            segment.putInt(0, SEGMENT_MAGIC);
+            segment.putInt(4, this.resourceCount);
+            this.segments.add(segment);
+            this.position = SEGMENT_HEADER;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void load(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (segment.capacity() < SEGMENT_HEADER || segment.getInt(0) != SEGMENT_MAGIC) {
+                throw new IOException("Invalid history segment: " + file);
+            }
+            if (segment.getInt(4) != this.resourceCount) {
+                throw new IllegalArgumentException("Segment " + file + " has " + segment.getInt(4) + " resources, expected " + this.resourceCount);
+            }
+            int index = this.segments.size();
+            this.segments.add(segment);
+            int offset = SEGMENT_HEADER;
+            while (offset + CHUNK_HEADER <= segment.capacity() && segment.getInt(offset) == CHUNK_MAGIC) {
+                int length = segment.getInt(offset + 32);
+                if (offset + CHUNK_HEADER + length > segment.capacity()) {
+                    break;
+                }
+                EntityId city = EntityId.valueOf(segment.getLong(offset + 4));
+                this.index(city, new Chunk(index, offset + CHUNK_HEADER, length, segment.getInt(offset + 12), segment.getLong(offset + 16), segment.getLong(offset + 24)));
+                offset += CHUNK_HEADER + length;
+            }
+            this.position = offset;
+        }
+    }
+
+    private void index(final EntityId city, final Chunk chunk) {
+        this.chunks.computeIfAbsent(city, c -> new ArrayList<>()).add(chunk);
+    }
+
+    /**
+     * Receive the decoded points.
+     */
+    @FunctionalInterface
+    private interface PointConsumer {
+
+        void accept(long time, float[] values);
+    }
+
+    /**
+     * Location of a written chunk.
+     */
+    private static final class Chunk {
+
+        private final int segment;
+
+        private final int offset;
+
+        private final int length;
+
+        private final int count;
+
+        private final long firstTime;
+
+        private final long lastTime;
+
+        private Chunk(final int segment, final int offset, final int length, final int count, final long firstTime, final long lastTime) {
+            super();
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.engine.feature.resource.ResourceChangeListener;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persist the modified producers asynchronously, only the producers modified since the last flush are written.
+ * A flush is done at the latest after the max delay, or as soon as enough producers are modified to fill a batch.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class WriteBehindFlusher implements ResourceChangeListener {
+
+    private static final System.Logger LOGGER = System.getLogger(WriteBehindFlusher.class.getName());
+
+    /**
+     * Destination of the persisted values.
+     */
+    private final ResourceValueSink sink;
+
+    /**
+     * Maximum number of values sent to the sink in a single write.
+     */
+    private final int batchSize;
+
+    /**
+     * Maximum time between a modification and its persistence.
+     */
+    private final Duration maxDelay;
+
+    /**
+     * Executor running the flushes.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Producers modified since the last flush.
+     */
+    private final Set<ResourcesProducer> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of producers in the pending set.
+     */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * Set when a flush has been requested because a batch is full.
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * Lock to prevent concurrent flushes.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Periodic flush task, null if not started.
+     */
+    private ScheduledFuture<?> task;
+
+    /**
+     * Create a new flusher, it must be started to flush periodically.
+     *
+     * @param sink      Destination of the persisted values.
+     * @param batchSize Maximum number of values sent to the sink in a single write.
+     * @param maxDelay  Maximum time between a modification and its persistence.
+     * @param scheduler Executor running the flushes.
+     */
+    public WriteBehindFlusher(final ResourceValueSink sink, final int batchSize, final Duration maxDelay, final ScheduledExecutorService scheduler) {
+        super();
+        assert sink != null;
+        assert maxDelay != null;
+        assert scheduler != null;
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Start to track the modifications of a producer, if it is already dirty, it will be flushed with the next batch.
+     *
+     * @param producer Producer to track.
+     */
+    public void track(final ResourcesProducer producer) {
+        producer.addChangeListener(this);
+        if (producer.isDirty()) {
+            this.resourcesChanged(producer);
+        }
+    }
+
+    /**
+     * Stop to track the modifications of a producer, pending modifications will still be flushed.
+     *
+     * @param producer Producer to stop tracking.
+     */
+    public void untrack(final ResourcesProducer producer) {
+        producer.removeChangeListener(this);
+    }
+
+    /**
+     * Start the periodic flush.
+     */
+    public synchronized void start() {
+        if (this.task == null) {
+            long delay = this.maxDelay.toMillis();
+            this.task = this.scheduler.scheduleWithFixedDelay(this::flush, delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic flush and persist the pending modifications.
+     */
+    public synchronized void stop() {
+        if (this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+        this.flush();
+    }
+
+    @Override
+    public void resourcesChanged(final ResourcesProducer producer) {
+        if (this.pending.add(producer)
+                && this.pendingCount.incrementAndGet() >= this.batchSize
+                && this.flushRequested.compareAndSet(false, true)) {
+            this.scheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * @return The number of producers waiting to be persisted.
+     */
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * Persist all the pending producers now, in batches.
+     * If the sink fails, the producers of the failed batch are kept for the next flush.
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            this.flushRequested.set(false);
+            List<ResourcesProducer> failed = new ArrayList<>();
+            List<ResourcesProducer> producers = new ArrayList<>(this.batchSize);
+            Iterator<ResourcesProducer> it = this.pending.iterator();
+            while (it.hasNext()) {
+                ResourcesProducer producer = it.next();
+                it.remove();
+                this.pendingCount.decrementAndGet();
+                producers.add(producer);
+                if (producers.size() == this.batchSize) {
+                    this.write(producers, failed);
+                    producers = new ArrayList<>(this.batchSize);
+                }
+            }
+            if (!producers.isEmpty()) {
+                this.write(producers, failed);
+            }
+            for (ResourcesProducer producer : failed) {
+                if (this.pending.add(producer)) {
+                    this.pendingCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a batch to the sink, the producers are cleared before their state is read so a later modification flags them again,
+     * and flagged again if the sink fails so they are not considered persisted.
+     *
+     * @param producers Producers to persist.
+     * @param failed    List to fill with the producers if the sink failed.
+     */
+    private void write(final List<ResourcesProducer> producers, final List<ResourcesProducer> failed) {
+        List<ResourceValueDto> batch = new ArrayList<>(producers.size());
+        for (ResourcesProducer producer : producers) {
+            producer.clearDirty();
+            batch.add(producer.toValueDto());
+        }
+        try {
+            this.sink.write(batch);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Error while persisting resources, will retry on next flush", e);
+            for (ResourcesProducer producer : producers) {
+                producer.markDirty();
+            }
+            failed.addAll(producers);
+        }
+    }
+}
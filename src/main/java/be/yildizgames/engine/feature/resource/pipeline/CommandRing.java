@@ -0,0 +1,138 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.pipeline;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated multiple producers, single consumer ring buffer of commands.
+ * Publishers claim a sequence with an atomic increment and fill the matching slot, the slot sequence is written last to publish it.
+ * The consumer reads the slots in sequence order and releases them in batches. Publishers wait while the ring is full.
+ *
+ * @author Grégory Van den Borre
+ */
+final class CommandRing {
+
+    /**
+     * Preallocated slots.
+     */
+    private final Command[] slots;
+
+    /**
+     * Mask to compute a slot index from a sequence.
+     */
+    private final int mask;
+
+    /**
+     * Next sequence to claim by a publisher.
+     */
+    private final AtomicLong claim = new AtomicLong();
+
+    /**
+     * First sequence not yet released by the consumer.
+     */
+    private final AtomicLong released = new AtomicLong();
+
+    /**
+     * Next sequence to read, only used by the consumer.
+     */
+    private long next;
+
+    /**
+     * Create a new ring.
+     *
+     * @param size Number of slots, must be a power of 2.
+     */
+    CommandRing(final int size) {
+        super();
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a positive power of 2: " + size);
+        }
+        this.slots = new Command[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Command();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Publish a command, waiting for a free slot if the ring is full.
+     *
+     * @param type     Command type.
+     * @param city     City to apply the command to.
+     * @param target   Receiving city for a transfer, null otherwise.
+     * @param amount   Resources of the command, null for bonus commands.
+     * @param bonus    Bonus of the command, null for the other commands.
+     * @param callback Notified once the command is applied.
+     */
+    void publish(final CommandType type, final EntityId city, final EntityId target, final ResourceValue amount, final BonusResources bonus,
+                 final CommandCallback callback) {
+        long sequence = this.claim.getAndIncrement();
+        while (sequence - this.slots.length >= this.released.get()) {
+            LockSupport.parkNanos(1000);
+        }
+        Command slot = this.slots[(int) sequence & this.mask];
+        slot.type = type;
+        slot.city = city;
+        slot.target = target;
+        slot.amount = amount;
+        slot.bonus = bonus;
+        slot.callback = callback;
+        slot.sequence = sequence;
+    }
+
+    /**
+     * Provide the next published command, the consumer must call release once done with it.
+     *
+     * @return The next command, null if none is published.
+     */
+    Command poll() {
+        Command slot = this.slots[(int) this.next & this.mask];
+        if (slot.sequence != this.next) {
+            return null;
+        }
+        this.next++;
+        return slot;
+    }
+
+    /**
+     * Give back all the slots read so far to the publishers.
+     */
+    void release() {
+        this.released.lazySet(this.next);
+    }
+
+    /**
+     * @return <code>true</code> if no command is waiting.
+     */
+    boolean isEmpty() {
+        return this.claim.get() == this.released.get();
+    }
+}
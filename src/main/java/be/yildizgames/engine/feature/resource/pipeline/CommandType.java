@@ -0,0 +1,73 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.pipeline;
+
+/**
+ * Kind of a command.
+ *
+ * @author Grégory Van den Borre
+ */
+enum CommandType {
+
+    /**
+     * Buy with the city resources.
+     */
+    BUY,
+
+    /**
+     * Steal from the city.
+     */
+    STEAL,
+
+    /**
+     * Add to the city.
+     */
+    ADD,
+
+    /**
+     * Pay from the city, and add to the target city once paid.
+     */
+    TRANSFER,
+
+    /**
+     * Add an amount paid by the target city for a transfer, the amount is given back to the target if the city is not found.
+     */
+    CREDIT,
+
+    /**
+     * Give back an amount paid by the city for a transfer that could not be completed.
+     */
+    REFUND,
+
+    /**
+     * Add a bonus to the city.
+     */
+    ADD_BONUS,
+
+    /**
+     * Remove a bonus from the city.
+     */
+    REMOVE_BONUS
+}
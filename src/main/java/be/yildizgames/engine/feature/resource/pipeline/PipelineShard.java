@@ -0,0 +1,261 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.pipeline;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Consumer owning a part of the cities, it is the only thread applying commands to them.
+ *
+ * @author Grégory Van den Borre
+ */
+final class PipelineShard implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(PipelineShard.class.getName());
+
+    /**
+     * Number of empty polls before parking.
+     */
+    private static final int SPINS = 100;
+
+    /**
+     * Commands published by the game threads.
+     */
+    private final CommandRing ring;
+
+    /**
+     * Commands forwarded by the other shards, kept apart so a shard never waits for another one.
+     */
+    private final Queue<Command> forwarded = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Provide the producer of a city, null if it does not exist.
+     */
+    private final Function<EntityId, ResourcesProducer> producers;
+
+    /**
+     * Maximum number of commands applied before releasing the slots.
+     */
+    private final int batchSize;
+
+    /**
+     * Pipeline owning this shard, used to forward the transfers.
+     */
+    private final ResourceCommandPipeline pipeline;
+
+    /**
+     * Set to stop the shard once all commands are applied.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Set once the ring has been applied after the stop request.
+     */
+    private boolean drained;
+
+    PipelineShard(final ResourceCommandPipeline pipeline, final Function<EntityId, ResourcesProducer> producers, final int ringSize, final int batchSize) {
+        super();
+        this.pipeline = pipeline;
+        this.producers = producers;
+        this.ring = new CommandRing(ringSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Provide the ring receiving the commands of the game threads.
+     *
+     * @return The shard ring.
+     */
+    CommandRing ring() {
+        return this.ring;
+    }
+
+    /**
+     * Publish a command from another shard, it never waits.
+     *
+     * @param command Command to publish, it must not be reused.
+     */
+    void forward(final Command command) {
+        this.pipeline.forwarding();
+        this.forwarded.add(command);
+    }
+
+    /**
+     * Stop once all published commands are applied, and no shard has a forwarded command left.
+     */
+    void stop() {
+        this.stopping = true;
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (!this.stopping || !this.ring.isEmpty() || !this.forwarded.isEmpty() || !this.pipeline.isDrained()) {
+            int applied = this.drain();
+            if (this.stopping && !this.drained && this.ring.isEmpty()) {
+                this.drained = true;
+                this.pipeline.shardDrained();
+            }
+            if (applied > 0) {
+                idle = 0;
+            } else if (++idle > SPINS) {
+                LockSupport.parkNanos(50_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Apply the forwarded commands and a batch of published commands.
+     *
+     * @return The number of applied commands.
+     */
+    int drain() {
+        int applied = 0;
+        Command command;
+        while ((command = this.forwarded.poll()) != null) {
+            this.apply(command);
+            this.pipeline.forwardApplied();
+            applied++;
+        }
+        int batch = 0;
+        while (batch < this.batchSize && (command = this.ring.poll()) != null) {
+            this.apply(command);
+            command.clear();
+            batch++;
+        }
+        if (batch > 0) {
+            this.ring.release();
+        }
+        return applied + batch;
+    }
+
+    private void apply(final Command command) {
+        CommandCallback callback = command.callback;
+        ResourcesProducer producer = this.producers.apply(command.city);
+        if (producer == null) {
+            if (command.type == CommandType.CREDIT) {
+                LOGGER.log(System.Logger.Level.WARNING, "No producer for " + command.city + ", transfer refunded to " + command.target);
+                this.refund(command);
+                return;
+            }
+            LOGGER.log(System.Logger.Level.WARNING, "No producer for " + command.city + ", " + command.type + " ignored");
+            complete(callback, false, null);
+            return;
+        }
+        boolean success = false;
+        ResourceValue amount = null;
+        try {
+            switch (command.type) {
+                case BUY:
+                    success = producer.buy(command.amount);
+                    break;
+                case STEAL:
+                    amount = producer.steal(command.amount);
+                    success = true;
+                    break;
+                case ADD:
+                    producer.add(command.amount);
+                    amount = command.amount;
+                    success = true;
+                    break;
+                case TRANSFER:
+                    if (this.producers.apply(command.target) != null && producer.buy(command.amount)) {
+                        Command credit = new Command();
+                        credit.type = CommandType.CREDIT;
+                        credit.city = command.target;
+                        credit.target = command.city;
+                        credit.amount = command.amount;
+                        credit.callback = callback;
+                        this.pipeline.shard(command.target).forward(credit);
+                        return;
+                    }
+                    break;
+                case CREDIT:
+                    producer.add(command.amount);
+                    amount = command.amount;
+                    success = true;
+                    break;
+                case REFUND:
+                    producer.add(command.amount);
+                    break;
+                case ADD_BONUS:
+                    producer.addBonus(command.bonus);
+                    success = true;
+                    break;
+                case REMOVE_BONUS:
+                    producer.removeBonus(command.bonus);
+                    success = true;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown command: " + command.type);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Error while applying " + command.type + " to " + command.city, e);
+            if (command.type == CommandType.CREDIT) {
+                this.refund(command);
+                return;
+            }
+        }
+        complete(callback, success, amount);
+    }
+
+    /**
+     * Give the amount of a credit that could not be applied back to the city which paid it, the transfer fails once refunded.
+     *
+     * @param credit Credit that could not be applied.
+     */
+    private void refund(final Command credit) {
+        Command refund = new Command();
+        refund.type = CommandType.REFUND;
+        refund.city = credit.target;
+        refund.amount = credit.amount;
+        refund.callback = credit.callback;
+        this.pipeline.shard(credit.target).forward(refund);
+    }
+
+    /**
+     * Notify a callback, an exception thrown by the callback is logged so it cannot stop the shard.
+     *
+     * @param callback Callback to notify.
+     * @param success  Command result.
+     * @param amount   Stolen or transferred amount.
+     */
+    private static void complete(final CommandCallback callback, final boolean success, final ResourceValue amount) {
+        try {
+            callback.completed(success, amount);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Error in command callback", e);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.pipeline;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Apply the resource commands of the game threads on single writer threads.
+ * The cities are split in shards, every shard is owned by a thread consuming the commands from a preallocated ring buffer,
+ * so a producer is only modified by one thread and its lock is never contended.
+ * Commands are applied in publication order for a given city, and their result is given to a callback once applied.
+ * The producers must only be modified through the pipeline while it is running.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceCommandPipeline implements AutoCloseable {
+
+    /**
+     * Default number of slots in a shard ring.
+     */
+    private static final int DEFAULT_RING_SIZE = 1024;
+
+    /**
+     * Default number of commands applied before releasing the ring slots.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Shards, a city always belongs to the same one.
+     */
+    private final PipelineShard[] shards;
+
+    /**
+     * Threads running the shards.
+     */
+    private final List<Thread> threads = new ArrayList<>();
+
+    /**
+     * Number of commands forwarded between shards and not applied yet.
+     */
+    private final AtomicInteger forwarded = new AtomicInteger();
+
+    /**
+     * Number of stopping shards having applied all the commands of their ring.
+     */
+    private final AtomicInteger drainedShards = new AtomicInteger();
+
+    /**
+     * Create a new pipeline with default ring and batch sizes.
+     *
+     * @param producers     Provide the producer of a city, null if it does not exist, it is called from the shard threads.
+     * @param shardCount    Number of shards, and of threads.
+     * @param threadFactory Factory creating the shard threads.
+     */
+    public ResourceCommandPipeline(final Function<EntityId, ResourcesProducer> producers, final int shardCount, final ThreadFactory threadFactory) {
+        this(producers, shardCount, DEFAULT_RING_SIZE, DEFAULT_BATCH_SIZE, threadFactory);
+    }
+
+    /**
+     * Create a new pipeline, the threads are started immediately.
+     *
+     * @param producers     Provide the producer of a city, null if it does not exist, it is called from the shard threads.
+     * @param shardCount    Number of shards, and of threads.
+     * @param ringSize      Number of commands a shard can hold, must be a power of 2, publishers wait when it is full.
+     * @param batchSize     Number of commands applied before releasing the ring slots.
+     * @param threadFactory Factory creating the shard threads.
+     */
+    public ResourceCommandPipeline(final Function<EntityId, ResourcesProducer> producers, final int shardCount, final int ringSize,
+                                   final int batchSize, final ThreadFactory threadFactory) {
+        super();
+        assert producers != null;
+        assert threadFactory != null;
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.shards = new PipelineShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new PipelineShard(this, producers, ringSize, batchSize);
+        }
+        for (PipelineShard shard : this.shards) {
+            Thread t = threadFactory.newThread(shard);
+            this.threads.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Buy with the resources of a city.
+     *
+     * @param city     City paying.
+     * @param price    Price to pay.
+     * @param callback Notified with <code>true</code> if the city could pay.
+     */
+    public void buy(final EntityId city, final ResourceValue price, final CommandCallback callback) {
+        this.publish(CommandType.BUY, city, null, price, null, callback);
+    }
+
+    /**
+     * Steal resources from a city.
+     *
+     * @param city     City to steal from.
+     * @param amount   Amount to steal.
+     * @param callback Notified with the stolen amount.
+     */
+    public void steal(final EntityId city, final ResourceValue amount, final CommandCallback callback) {
+        this.publish(CommandType.STEAL, city, null, amount, null, callback);
+    }
+
+    /**
+     * Add resources to a city.
+     *
+     * @param city     City receiving the resources.
+     * @param amount   Amount to add.
+     * @param callback Notified once added.
+     */
+    public void add(final EntityId city, final ResourceValue amount, final CommandCallback callback) {
+        this.publish(CommandType.ADD, city, null, amount, null, callback);
+    }
+
+    /**
+     * Transfer resources between two cities, the giver pays the whole amount or nothing is transferred.
+     * The receiver gets the resources after the giver paid, from the thread owning it.
+     * If the receiver is not found once the giver paid, the amount is given back to the giver and the transfer fails.
+     *
+     * @param giver    City giving the resources.
+     * @param receiver City receiving the resources.
+     * @param amount   Amount to transfer.
+     * @param callback Notified once the receiver got the resources, or if the giver could not pay.
+     */
+    public void transfer(final EntityId giver, final EntityId receiver, final ResourceValue amount, final CommandCallback callback) {
+        assert receiver != null;
+        this.publish(CommandType.TRANSFER, giver, receiver, amount, null, callback);
+    }
+
+    /**
+     * Add a bonus to a city.
+     *
+     * @param city     City receiving the bonus.
+     * @param bonus    Bonus to add.
+     * @param callback Notified once added.
+     */
+    public void addBonus(final EntityId city, final BonusResources bonus, final CommandCallback callback) {
+        this.publish(CommandType.ADD_BONUS, city, null, null, bonus, callback);
+    }
+
+    /**
+     * Remove a bonus from a city.
+     *
+     * @param city     City losing the bonus.
+     * @param bonus    Bonus to remove.
+     * @param callback Notified once removed.
+     */
+    public void removeBonus(final EntityId city, final BonusResources bonus, final CommandCallback callback) {
+        this.publish(CommandType.REMOVE_BONUS, city, null, null, bonus, callback);
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Stop the shard threads once all published commands have been applied, commands published after must not be expected to complete.
+     * The shards stop in two phases: every shard first applies all the commands of its ring, then they all keep running
+     * until no forwarded command is left, so a transfer paid by a shard is never lost because its receiver shard stopped first.
+     */
+    @Override
+    public void close() {
+        for (PipelineShard shard : this.shards) {
+            shard.stop();
+        }
+        for (Thread t : this.threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Count a command forwarded between shards, before it is made visible to the target shard.
+     */
+    void forwarding() {
+        this.forwarded.incrementAndGet();
+    }
+
+    /**
+     * Count a forwarded command as applied, after the commands it forwarded itself have been counted.
+     */
+    void forwardApplied() {
+        this.forwarded.decrementAndGet();
+    }
+
+    /**
+     * Called once by every stopping shard when its ring is empty.
+     */
+    void shardDrained() {
+        this.drainedShards.incrementAndGet();
+    }
+
+    /**
+     * @return <code>true</code> if all the shards applied their ring and no forwarded command is left, the shards can stop.
+     */
+    boolean isDrained() {
+        return this.drainedShards.get() == this.shards.length && this.forwarded.get() == 0;
+    }
+
+    /**
+     * Provide the shard owning a city.
+     *
+     * @param city City id.
+     * @return The shard for that city.
+     */
+    PipelineShard shard(final EntityId city) {
+        return this.shards[(int) Long.remainderUnsigned(city.value * 0x9E3779B97F4A7C15L, this.shards.length)];
+    }
+
+    private void publish(final CommandType type, final EntityId city, final EntityId target, final ResourceValue amount,
+                         final BonusResources bonus, final CommandCallback callback) {
+        assert city != null;
+        assert callback != null;
+        this.shard(city).ring().publish(type, city, target, amount, bonus, callback);
+    }
+}
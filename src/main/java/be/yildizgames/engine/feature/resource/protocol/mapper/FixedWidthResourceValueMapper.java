@@ -0,0 +1,109 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.protocol.mapper;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.mapping.Separator;
+import be.yildizgames.engine.feature.resource.ResourceLayout;
+import be.yildizgames.engine.feature.resource.ResourceTypeRegistry;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+
+/**
+ * Map resource values whose size is known by both sides from the resource type registry, so the size is not sent with every value.
+ *
+ * @author Grégory Van den Borre
+ */
+public class FixedWidthResourceValueMapper implements ObjectMapper<ResourceValue> {
+
+    /**
+     * Registry providing the number of resources.
+     */
+    private final ResourceTypeRegistry registry;
+
+    /**
+     * Layout of the mapped values.
+     */
+    private final ResourceLayout layout;
+
+    /**
+     * Create a mapper building dense values.
+     *
+     * @param registry Registry providing the number of resources.
+     */
+    public FixedWidthResourceValueMapper(final ResourceTypeRegistry registry) {
+        this(registry, ResourceLayout.DENSE);
+    }
+
+    /**
+     * Create a mapper.
+     *
+     * @param registry Registry providing the number of resources.
+     * @param layout   Layout of the mapped values.
+     */
+    public FixedWidthResourceValueMapper(final ResourceTypeRegistry registry, final ResourceLayout layout) {
+        super();
+        assert registry != null;
+        assert layout != null;
+        this.registry = registry;
+        this.layout = layout;
+    }
+
+    @Override
+    public ResourceValue from(String s) {
+        assert s != null;
+        try {
+            String[] v = s.split(Separator.VAR_SEPARATOR);
+            int size = this.registry.size();
+            if (v.length != size) {
+                throw new MappingException("Expected " + size + " values, got " + v.length);
+            }
+            float[] f = new float[size];
+            for (int i = 0; i < f.length; i++) {
+                f[i] = Float.parseFloat(v[i]);
+            }
+            return this.layout.newValue(f);
+        } catch (NumberFormatException e) {
+            throw new MappingException(e);
+        }
+    }
+
+    @Override
+    public String to(ResourceValue value) {
+        assert value != null;
+        float[] values = value.getArray();
+        if (values.length != this.registry.size()) {
+            throw new MappingException("Expected " + this.registry.size() + " values, got " + values.length);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(Separator.VAR_SEPARATOR);
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.protocol.mapper;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ImportResult {
+
+    /**
+     * Number of imported lines.
+     */
+    private final long imported;
+
+    /**
+     * Number of lines that could not be mapped.
+     */
+    private final long errorCount;
+
+    /**
+     * Errors for the first invalid lines, in file order.
+     */
+    private final List<MappingException> errors;
+
+    ImportResult(final long imported, final long errorCount, final List<MappingException> errors) {
+        super();
+        this.imported = imported;
+        this.errorCount = errorCount;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return The number of imported lines.
+     */
+    public long getImported() {
+        return this.imported;
+    }
+
+    /**
+     * @return The number of lines that could not be mapped.
+     */
+    public long getErrorCount() {
+        return this.errorCount;
+    }
+
+    /**
+     * Provide the errors of the first invalid lines, the number of kept errors is limited by the importer.
+     *
+     * @return The kept errors, in file order.
+     */
+    public List<MappingException> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * @return <code>true</code> if at least one line could not be mapped.
+     */
+    public boolean hasErrors() {
+        return this.errorCount > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Import result: " + this.imported + " imported, " + this.errorCount + " errors";
+    }
+}
@@ -23,7 +23,12 @@
  */
 package be.yildizgames.engine.feature.resource.protocol.mapper;
 
-class MappingException extends IllegalArgumentException {
+/**
+ * Thrown when a string cannot be mapped to an object.
+ *
+ * @author Grégory Van den Borre
+ */
+public class MappingException extends IllegalArgumentException {
 
     MappingException(String message) {
         super(message);
@@ -0,0 +1,300 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.protocol.mapper;
+
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Import a file containing one resource value per line, in the resource value dto mapper format.
+ * The file is memory mapped and split in chunks on line boundaries, the chunks are parsed in parallel.
+ * Invalid lines do not stop the import, they are collected as mapping exceptions in the result.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceValueDtoImporter {
+
+    /**
+     * Default size of the part of the file parsed sequentially by a task.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Default maximum number of errors kept in the result.
+     */
+    private static final int DEFAULT_MAX_ERRORS = 1000;
+
+    /**
+     * Pool running the import.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Size of the part of the file parsed sequentially by a task, in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * Maximum number of errors kept in the result, the others are only counted.
+     */
+    private final int maxErrors;
+
+    /**
+     * Create a new importer using the common pool.
+     */
+    public ResourceValueDtoImporter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Create a new importer.
+     *
+     * @param pool      Pool running the import.
+     * @param chunkSize Size of the part of the file parsed sequentially by a task, in bytes.
+     * @param maxErrors Maximum number of errors kept in the result, the others are only counted.
+     */
+    public ResourceValueDtoImporter(final ForkJoinPool pool, final int chunkSize, final int maxErrors) {
+        super();
+        assert pool != null;
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Max errors must not be negative: " + maxErrors);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Import a file and build a producer for every line, the producers are not initialized as they have no bonus yet.
+     *
+     * @param file     File to import.
+     * @param storage  Receive the built producers, it is called from several threads.
+     * @param progress Notified after every chunk.
+     * @return The import result.
+     * @throws UncheckedIOException If the file cannot be read.
+     */
+    public ImportResult importProducers(final Path file, final Consumer<ResourcesProducer> storage, final ImportProgressListener progress) {
+        assert storage != null;
+        return this.importValues(file, dto -> storage.accept(new ResourcesProducer(dto.cityId, dto.time, dto.resources)), progress);
+    }
+
+    /**
+     * Import a file.
+     *
+     * @param file     File to import.
+     * @param sink     Receive the mapped values, it is called from several threads.
+     * @param progress Notified after every chunk.
+     * @return The import result.
+     * @throws UncheckedIOException If the file cannot be read.
+     */
+    public ImportResult importValues(final Path file, final Consumer<ResourceValueDto> sink, final ImportProgressListener progress) {
+        assert file != null;
+        assert sink != null;
+        assert progress != null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            AtomicLong done = new AtomicLong();
+            List<ChunkTask> tasks = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = nextLine(channel, Math.min(size, start + this.chunkSize), size);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                tasks.add(new ChunkTask(buffer, start, sink, progress, done, size, this.maxErrors));
+                start = end;
+            }
+            return this.pool.invoke(new ImportTask(tasks));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Find the beginning of the line following a position.
+     *
+     * @param channel  File to read.
+     * @param position Position to start from.
+     * @param size     File size.
+     * @return The position after the next line feed, or the file size if there is none.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long nextLine(final FileChannel channel, final long position, final long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long current = position;
+        while (current < size) {
+            window.clear();
+            int read = channel.read(window, current);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return size;
+    }
+
+    /**
+     * Run all the chunk tasks and merge their results in file order.
+     */
+    private static final class ImportTask extends RecursiveTask<ImportResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<ChunkTask> tasks;
+
+        private ImportTask(final List<ChunkTask> tasks) {
+            super();
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected ImportResult compute() {
+            ForkJoinTask.invokeAll(this.tasks);
+            long imported = 0;
+            long errorCount = 0;
+            List<MappingException> errors = new ArrayList<>();
+            for (ChunkTask t : this.tasks) {
+                ChunkResult r = t.join();
+                imported += r.imported;
+                errorCount += r.errorCount;
+                for (MappingException e : r.errors) {
+                    if (errors.size() < t.maxErrors) {
+                        errors.add(e);
+                    }
+                }
+            }
+            return new ImportResult(imported, errorCount, errors);
+        }
+    }
+
+    /**
+     * Partial result of a chunk.
+     */
+    private static final class ChunkResult {
+
+        private final List<MappingException> errors = new ArrayList<>();
+
+        private long imported;
+
+        private long errorCount;
+    }
+
+    /**
+     * Parse the lines of a part of the file, the part only contains complete lines.
+     */
+    private static final class ChunkTask extends RecursiveTask<ChunkResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedByteBuffer buffer;
+
+        private final long offset;
+
+        private final transient Consumer<ResourceValueDto> sink;
+
+        private final transient ImportProgressListener progress;
+
+        private final AtomicLong done;
+
+        private final long total;
+
+        private final int maxErrors;
+
+        private ChunkTask(final MappedByteBuffer buffer, final long offset, final Consumer<ResourceValueDto> sink,
+                          final ImportProgressListener progress, final AtomicLong done, final long total, final int maxErrors) {
+            super();
+            this.buffer = buffer;
+            this.offset = offset;
+            this.sink = sink;
+            this.progress = progress;
+            this.done = done;
+            this.total = total;
+            this.maxErrors = maxErrors;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            ChunkResult result = new ChunkResult();
+            int limit = this.buffer.limit();
+            int position = 0;
+            byte[] line = new byte[256];
+            while (position < limit) {
+                int length = 0;
+                while (position < limit && this.buffer.get(position) != '\n') {
+                    if (length == line.length) {
+                        byte[] bigger = new byte[line.length * 2];
+                        System.arraycopy(line, 0, bigger, 0, length);
+                        line = bigger;
+                    }
+                    line[length++] = this.buffer.get(position++);
+                }
+                long lineOffset = this.offset + position - length;
+                position++;
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                if (length > 0) {
+                    this.parse(new String(line, 0, length, StandardCharsets.UTF_8), lineOffset, result);
+                }
+            }
+            this.progress.progress(this.done.addAndGet(limit), this.total);
+            return result;
+        }
+
+        private void parse(final String line, final long lineOffset, final ChunkResult result) {
+            ResourceValueDto dto;
+            try {
+                dto = ResourceValueDtoMapper.getInstance().from(line);
+            } catch (IllegalArgumentException e) {
+                result.errorCount++;
+                if (result.errors.size() < this.maxErrors) {
+                    result.errors.add(new MappingException("Invalid line at offset " + lineOffset + ": " + line, e));
+                }
+                return;
+            }
+            this.sink.accept(dto);
+            result.imported++;
+        }
+    }
+}
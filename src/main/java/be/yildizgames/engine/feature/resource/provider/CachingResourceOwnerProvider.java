@@ -0,0 +1,771 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.provider;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceOwner;
+import be.yildizgames.engine.feature.resource.ResourceOwnerProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Provider keeping only the active owners in memory, the other ones are loaded on demand from a loader.
+ * When the total weight of the cached owners exceeds the budget, the cold owners are evicted following a W-TinyLFU policy:
+ * new owners enter a small LRU window, and once out of it, they are only admitted in the main space if they are more frequently used
+ * than the owner that would be evicted for them.
+ * Concurrent misses for the same owner are coalesced into a single load, and batch lookups load all their misses in a single call to the loader.
+ * Cache hits are recorded in striped buffers without locking, and applied to the policy in batches once a buffer is full or before evicting.
+ * Owners with a dirty producer are never evicted: when found among the eviction candidates, they are parked out of the policy queues,
+ * and a few of them are checked again on every eviction to return to the main space once persisted. The cache can exceed its budget meanwhile.
+ * Evicted and invalidated owners are given to a removal listener, a removed instance must not be used anymore.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class CachingResourceOwnerProvider implements ResourceOwnerProvider {
+
+    private static final System.Logger LOGGER = System.getLogger(CachingResourceOwnerProvider.class.getName());
+
+    /**
+     * Percentage of the budget used for the admission window.
+     */
+    private static final double WINDOW_PERCENT = 0.01;
+
+    /**
+     * Percentage of the main space used for the protected segment.
+     */
+    private static final double PROTECTED_PERCENT = 0.8;
+
+    /**
+     * Number of parked owners checked again on every eviction.
+     */
+    private static final int PARKED_CHECKS = 4;
+
+    /**
+     * Loader to retrieve the owners not in memory.
+     */
+    private final ResourceOwnerLoader loader;
+
+    /**
+     * Compute the weight of an owner.
+     */
+    private final ToLongFunction<ResourceOwner> weigher;
+
+    /**
+     * Executor running the asynchronous lookups.
+     */
+    private final Executor executor;
+
+    /**
+     * Notified when owners leave the memory.
+     */
+    private final ResourceOwnerRemovalListener removalListener;
+
+    /**
+     * Cached owners.
+     */
+    private final Map<EntityId, Node> data = new ConcurrentHashMap<>();
+
+    /**
+     * Loads currently in progress, used to coalesce concurrent misses.
+     */
+    private final Map<EntityId, Load> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Lock protecting the eviction policy state.
+     */
+    private final Object policyLock = new Object();
+
+    /**
+     * Estimated frequency of the keys.
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * Recently added owners, in LRU order.
+     */
+    private final AccessQueue window = new AccessQueue();
+
+    /**
+     * Owners admitted in the main space but not accessed since.
+     */
+    private final AccessQueue probation = new AccessQueue();
+
+    /**
+     * Owners accessed while in the main space.
+     */
+    private final AccessQueue protectedQueue = new AccessQueue();
+
+    /**
+     * Dirty owners removed from the eviction candidates until they are persisted, the least recently checked first.
+     */
+    private final AccessQueue parked = new AccessQueue();
+
+    /**
+     * Cache hits not yet applied to the policy, a buffer is chosen by the reading thread.
+     */
+    private final ReadBuffer[] readBuffers;
+
+    private final long maximumWeight;
+
+    private final long windowMaximum;
+
+    private final long mainMaximum;
+
+    private final long protectedMaximum;
+
+    /**
+     * Create a new provider, the budget is expressed in estimated bytes.
+     *
+     * @param loader      Loader to retrieve the owners not in memory.
+     * @param memoryBytes Maximum estimated memory to use for the cached owners.
+     */
+    public CachingResourceOwnerProvider(final ResourceOwnerLoader loader, final long memoryBytes) {
+        this(loader, memoryBytes, CachingResourceOwnerProvider::estimateMemory);
+    }
+
+    /**
+     * Create a new provider, the asynchronous lookups are run in a dedicated pool of daemon threads shared by the providers built without executor.
+     *
+     * @param loader        Loader to retrieve the owners not in memory.
+     * @param maximumWeight Maximum total weight of the cached owners.
+     * @param weigher       Compute the weight of an owner, must be positive.
+     */
+    public CachingResourceOwnerProvider(final ResourceOwnerLoader loader, final long maximumWeight, final ToLongFunction<ResourceOwner> weigher) {
+        this(loader, maximumWeight, weigher, LoaderPool.EXECUTOR);
+    }
+
+    /**
+     * Create a new provider.
+     *
+     * @param loader        Loader to retrieve the owners not in memory.
+     * @param maximumWeight Maximum total weight of the cached owners.
+     * @param weigher       Compute the weight of an owner, must be positive.
+     * @param executor      Executor running the asynchronous lookups, it should allow blocking if the loader does.
+     */
+    public CachingResourceOwnerProvider(final ResourceOwnerLoader loader, final long maximumWeight, final ToLongFunction<ResourceOwner> weigher, final Executor executor) {
+        this(loader, maximumWeight, weigher, executor, ResourceOwnerRemovalListener.NONE);
+    }
+
+    /**
+     * Create a new provider.
+     *
+     * @param loader          Loader to retrieve the owners not in memory.
+     * @param maximumWeight   Maximum total weight of the cached owners.
+     * @param weigher         Compute the weight of an owner, must be positive.
+     * @param executor        Executor running the asynchronous lookups, it should allow blocking if the loader does.
+     * @param removalListener Notified when owners are evicted or invalidated, for example to persist them.
+     */
+    public CachingResourceOwnerProvider(final ResourceOwnerLoader loader, final long maximumWeight, final ToLongFunction<ResourceOwner> weigher,
+                                        final Executor executor, final ResourceOwnerRemovalListener removalListener) {
+        super();
+        assert loader != null;
+        assert weigher != null;
+        assert executor != null;
+        assert removalListener != null;
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+        }
+        this.loader = loader;
+        this.weigher = weigher;
+        this.executor = executor;
+        this.removalListener = removalListener;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_PERCENT));
+        this.mainMaximum = maximumWeight - this.windowMaximum;
+        this.protectedMaximum = (long) (this.mainMaximum * PROTECTED_PERCENT);
+        this.sketch = new FrequencySketch(16);
+        this.readBuffers = new ReadBuffer[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)];
+        for (int i = 0; i < this.readBuffers.length; i++) {
+            this.readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * Estimate the memory used by an owner.
+     *
+     * @param owner Owner to estimate.
+     * @return The estimated number of bytes used by the owner and its producer.
+     */
+    public static long estimateMemory(final ResourceOwner owner) {
+        return 256L + 12L * owner.getProducer().getResourceCount();
+    }
+
+    @Override
+    public ResourceOwner getOwnerById(final EntityId cityId) {
+        assert cityId != null;
+        Node node = this.data.get(cityId);
+        if (node != null) {
+            this.afterRead(node);
+            return node.owner;
+        }
+        return this.load(cityId);
+    }
+
+    @Override
+    public Map<EntityId, ResourceOwner> getOwnersByIds(final Collection<EntityId> cityIds) {
+        assert cityIds != null;
+        Map<EntityId, ResourceOwner> found = new LinkedHashMap<>();
+        Map<EntityId, Load> toLoad = new LinkedHashMap<>();
+        Map<EntityId, CompletableFuture<ResourceOwner>> loadedByOthers = new LinkedHashMap<>();
+        for (EntityId id : cityIds) {
+            if (found.containsKey(id) || toLoad.containsKey(id) || loadedByOthers.containsKey(id)) {
+                continue;
+            }
+            Node node = this.data.get(id);
+            if (node != null) {
+                this.afterRead(node);
+                found.put(id, node.owner);
+                continue;
+            }
+            Load future = new Load();
+            Load existing = this.loading.putIfAbsent(id, future);
+            if (existing != null) {
+                loadedByOthers.put(id, existing);
+            } else {
+                node = this.data.get(id);
+                if (node != null) {
+                    this.afterRead(node);
+                    found.put(id, node.owner);
+                    future.complete(node.owner);
+                    this.loading.remove(id, future);
+                } else {
+                    toLoad.put(id, future);
+                }
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            this.loadAll(toLoad, found);
+        }
+        loadedByOthers.forEach((id, future) -> found.put(id, join(future)));
+        Map<EntityId, ResourceOwner> result = new LinkedHashMap<>();
+        for (EntityId id : cityIds) {
+            ResourceOwner owner = found.get(id);
+            if (owner != null) {
+                result.put(id, owner);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve several owners at once without blocking the caller, using the executor of this provider.
+     *
+     * @param cityIds Ids of the cities to retrieve.
+     * @return A future completed with the result of getOwnersByIds.
+     */
+    public CompletableFuture<Map<EntityId, ResourceOwner>> getOwnersByIdsAsync(final Collection<EntityId> cityIds) {
+        return this.getOwnersByIdsAsync(cityIds, this.executor);
+    }
+
+    /**
+     * Remove an owner from the memory, it will be loaded again on next access.
+     * A load in progress for that owner is fenced: its result is not cached and it is loaded again.
+     *
+     * @param cityId Id of the owner to remove.
+     */
+    public void invalidate(final EntityId cityId) {
+        Node node;
+        synchronized (this.policyLock) {
+            Load pending = this.loading.get(cityId);
+            if (pending != null) {
+                pending.stale = true;
+            }
+            node = this.data.remove(cityId);
+            if (node != null) {
+                this.unlink(node);
+            }
+        }
+        if (node != null) {
+            this.notifyRemoved(List.of(node));
+        }
+    }
+
+    /**
+     * @return The number of owners currently in memory.
+     */
+    public int size() {
+        return this.data.size();
+    }
+
+    /**
+     * @return The total weight of the owners currently in memory.
+     */
+    public long weightedSize() {
+        synchronized (this.policyLock) {
+            return this.window.weight + this.mainWeight();
+        }
+    }
+
+    /**
+     * Check if an owner is in memory, without affecting its eviction priority.
+     *
+     * @param cityId Id of the owner.
+     * @return <code>true</code> if the owner is currently cached.
+     */
+    public boolean isCached(final EntityId cityId) {
+        return this.data.containsKey(cityId);
+    }
+
+    /**
+     * Load an owner, if another thread is already loading it, wait for its result instead of loading it again.
+     *
+     * @param cityId Id of the owner to load.
+     * @return The loaded owner, <code>null</code> if it does not exist.
+     */
+    private ResourceOwner load(final EntityId cityId) {
+        Load future = new Load();
+        Load existing = this.loading.putIfAbsent(cityId, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            Node node = this.data.get(cityId);
+            ResourceOwner owner;
+            if (node != null) {
+                this.afterRead(node);
+                owner = node.owner;
+            } else {
+                do {
+                    future.stale = false;
+                    owner = this.loader.load(cityId);
+                } while (!this.admit(cityId, owner, future));
+            }
+            future.complete(owner);
+            return owner;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loading.remove(cityId, future);
+        }
+    }
+
+    /**
+     * Load all the given owners in a single call to the loader, and complete the futures waited by concurrent lookups.
+     *
+     * @param toLoad Futures registered by this lookup, mapped by owner id.
+     * @param found  Map to fill with the loaded owners.
+     */
+    private void loadAll(final Map<EntityId, Load> toLoad, final Map<EntityId, ResourceOwner> found) {
+        try {
+            Map<EntityId, Load> remaining = toLoad;
+            while (!remaining.isEmpty()) {
+                remaining.values().forEach(f -> f.stale = false);
+                Map<EntityId, ResourceOwner> loaded = this.loader.loadAll(remaining.keySet());
+                Map<EntityId, Load> fenced = new LinkedHashMap<>();
+                remaining.forEach((id, future) -> {
+                    ResourceOwner owner = loaded.get(id);
+                    if (!this.admit(id, owner, future)) {
+                        fenced.put(id, future);
+                    } else {
+                        if (owner != null) {
+                            found.put(id, owner);
+                        }
+                        future.complete(owner);
+                    }
+                });
+                remaining = fenced;
+            }
+        } catch (RuntimeException | Error e) {
+            toLoad.values().forEach(f -> f.completeExceptionally(e));
+            throw e;
+        } finally {
+            toLoad.forEach(this.loading::remove);
+        }
+    }
+
+    private static ResourceOwner join(final CompletableFuture<ResourceOwner> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Add a newly loaded owner in the admission window, and evict the owners exceeding the budget.
+     * Nothing is done if the owner was invalidated while it was loaded.
+     *
+     * @param cityId Owner id.
+     * @param owner  Loaded owner, null if it does not exist.
+     * @param future Load registered for this owner.
+     * @return <code>false</code> if the load was invalidated and must be done again.
+     */
+    private boolean admit(final EntityId cityId, final ResourceOwner owner, final Load future) {
+        Node node = owner == null ? null : new Node(cityId, owner, Math.max(1, this.weigher.applyAsLong(owner)));
+        List<Node> removed = new ArrayList<>();
+        synchronized (this.policyLock) {
+            if (future.stale) {
+                return false;
+            }
+            this.sketch.increment(cityId.hashCode());
+            if (node != null) {
+                this.data.put(cityId, node);
+                this.sketch.ensureCapacity((int) Math.min(Integer.MAX_VALUE, Math.max(this.data.size(), this.maximumWeight / node.weight)));
+                this.window.addLast(node);
+                this.drainReads();
+                this.evict(removed);
+            }
+        }
+        this.notifyRemoved(removed);
+        return true;
+    }
+
+    /**
+     * Record an access to an owner, the policy is only locked when the buffer of the current thread is full.
+     *
+     * @param node Accessed owner node.
+     */
+    private void afterRead(final Node node) {
+        ReadBuffer buffer = this.readBuffers[(int) Thread.currentThread().getId() & (this.readBuffers.length - 1)];
+        if (!buffer.offer(node)) {
+            synchronized (this.policyLock) {
+                this.drainReads();
+                this.onAccess(node);
+            }
+        }
+    }
+
+    /**
+     * Apply the buffered accesses to the policy, must be called with the policy lock held.
+     */
+    private void drainReads() {
+        for (ReadBuffer buffer : this.readBuffers) {
+            buffer.drain(this);
+        }
+    }
+
+    /**
+     * Update the policy when an owner is accessed, must be called with the policy lock held.
+     *
+     * @param node Accessed owner node.
+     */
+    private void onAccess(final Node node) {
+        this.sketch.increment(node.key.hashCode());
+        if (node.queue == this.window || node.queue == this.protectedQueue) {
+            node.queue.moveToLast(node);
+        } else if (node.queue == this.probation) {
+            this.probation.remove(node);
+            this.protectedQueue.addLast(node);
+            while (this.protectedQueue.weight > this.protectedMaximum && this.protectedQueue.head != node) {
+                Node demoted = this.protectedQueue.head;
+                this.protectedQueue.remove(demoted);
+                this.probation.addLast(demoted);
+            }
+        }
+    }
+
+    /**
+     * Move the owners overflowing the window to the main space if they are frequent enough, and evict the losers.
+     * Dirty owners are never evicted.
+     *
+     * @param removed List to fill with the evicted nodes.
+     */
+    private void evict(final List<Node> removed) {
+        while (this.window.weight > this.windowMaximum && this.window.head != null) {
+            Node candidate = this.window.head;
+            this.window.remove(candidate);
+            int candidateFrequency = this.sketch.frequency(candidate.key.hashCode());
+            boolean candidateDirty = isDirty(candidate);
+            while (candidate != null && this.mainWeight() + candidate.weight > this.mainMaximum) {
+                Node victim = this.findVictim();
+                if (victim == null) {
+                    break;
+                }
+                if (candidateDirty || candidateFrequency > this.sketch.frequency(victim.key.hashCode())) {
+                    this.unlink(victim);
+                    this.remove(victim, removed);
+                } else {
+                    this.remove(candidate, removed);
+                    candidate = null;
+                }
+            }
+            if (candidate != null) {
+                if (candidateDirty && this.mainWeight() + candidate.weight > this.mainMaximum) {
+                    this.parked.addLast(candidate);
+                } else if (candidateDirty || this.mainWeight() + candidate.weight <= this.mainMaximum) {
+                    this.probation.addLast(candidate);
+                } else {
+                    this.remove(candidate, removed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the owner to evict, the persisted parked owners are first returned to the probation head.
+     *
+     * @return The least recently used owner of the main space that is not dirty, null if there is none.
+     */
+    private Node findVictim() {
+        for (int i = 0; i < PARKED_CHECKS && this.parked.head != null; i++) {
+            Node node = this.parked.head;
+            this.parked.remove(node);
+            if (isDirty(node)) {
+                this.parked.addLast(node);
+            } else {
+                this.probation.addFirst(node);
+            }
+        }
+        Node victim = this.findVictim(this.probation);
+        return victim == null ? this.findVictim(this.protectedQueue) : victim;
+    }
+
+    /**
+     * Park the dirty owners at the head of a queue.
+     *
+     * @param queue Queue to take the victim from.
+     * @return The head of the queue once the dirty owners are parked, null if it is empty.
+     */
+    private Node findVictim(final AccessQueue queue) {
+        Node node = queue.head;
+        while (node != null && isDirty(node)) {
+            queue.remove(node);
+            this.parked.addLast(node);
+            node = queue.head;
+        }
+        return node;
+    }
+
+    private static boolean isDirty(final Node node) {
+        return node.owner.getProducer().isDirty();
+    }
+
+    private void remove(final Node node, final List<Node> removed) {
+        if (this.data.remove(node.key, node)) {
+            removed.add(node);
+        }
+    }
+
+    /**
+     * Give the removed owners to the removal listener.
+     *
+     * @param removed Removed nodes.
+     */
+    private void notifyRemoved(final List<Node> removed) {
+        for (Node node : removed) {
+            try {
+                this.removalListener.ownerRemoved(node.key, node.owner);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error in the removal listener for " + node.key, e);
+            }
+        }
+    }
+
+    private long mainWeight() {
+        return this.probation.weight + this.protectedQueue.weight + this.parked.weight;
+    }
+
+    private void unlink(final Node node) {
+        if (node.queue != null) {
+            node.queue.remove(node);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Caching owner provider: " + this.data.size() + " owners, max weight: " + this.maximumWeight;
+    }
+
+    /**
+     * Pool used when no executor is given, loaders may block so the common fork join pool is not used.
+     */
+    private static final class LoaderPool {
+
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "resource-owner-loader-" + COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Load in progress, marked stale when the owner is invalidated meanwhile.
+     */
+    private static final class Load extends CompletableFuture<ResourceOwner> {
+
+        private volatile boolean stale;
+    }
+
+    /**
+     * Ring of accessed nodes filled by the readers and drained under the policy lock.
+     */
+    private static final class ReadBuffer {
+
+        private static final int SIZE = 16;
+
+        private final AtomicReferenceArray<Node> ring = new AtomicReferenceArray<>(SIZE);
+
+        private final AtomicLong writes = new AtomicLong();
+
+        private volatile long reads;
+
+        /**
+         * Add an accessed node.
+         *
+         * @param node Accessed node.
+         * @return <code>false</code> if the buffer is full and the node was not added.
+         */
+        private boolean offer(final Node node) {
+            while (true) {
+                long w = this.writes.get();
+                if (w - this.reads >= SIZE) {
+                    return false;
+                }
+                if (this.writes.compareAndSet(w, w + 1)) {
+                    this.ring.set((int) w & (SIZE - 1), node);
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Apply the buffered nodes, stops at a slot reserved but not written yet.
+         *
+         * @param provider Provider owning the buffer, its policy lock must be held.
+         */
+        private void drain(final CachingResourceOwnerProvider provider) {
+            long r = this.reads;
+            long w = this.writes.get();
+            while (r < w) {
+                int index = (int) r & (SIZE - 1);
+                Node node = this.ring.get(index);
+                if (node == null) {
+                    break;
+                }
+                this.ring.set(index, null);
+                provider.onAccess(node);
+                r++;
+                this.reads = r;
+            }
+        }
+    }
+
+    /**
+     * Cache entry, linked in one of the policy queues.
+     */
+    private static final class Node {
+
+        private final EntityId key;
+
+        private final ResourceOwner owner;
+
+        private final long weight;
+
+        private AccessQueue queue;
+
+        private Node previous;
+
+        private Node next;
+
+        private Node(final EntityId key, final ResourceOwner owner, final long weight) {
+            super();
+            this.key = key;
+            this.owner = owner;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes, the head is the least recently used one.
+     */
+    private static final class AccessQueue {
+
+        private Node head;
+
+        private Node tail;
+
+        private long weight;
+
+        private void addLast(final Node node) {
+            node.queue = this;
+            node.previous = this.tail;
+            node.next = null;
+            if (this.tail == null) {
+                this.head = node;
+            } else {
+                this.tail.next = node;
+            }
+            this.tail = node;
+            this.weight += node.weight;
+        }
+
+        private void remove(final Node node) {
+            if (node.previous == null) {
+                this.head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                this.tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            node.queue = null;
+            this.weight -= node.weight;
+        }
+
+        private void addFirst(final Node node) {
+            node.queue = this;
+            node.previous = null;
+            node.next = this.head;
+            if (this.head == null) {
+                this.tail = node;
+            } else {
+                this.head.previous = node;
+            }
+            this.head = node;
+            this.weight += node.weight;
+        }
+
+        private void moveToLast(final Node node) {
+            if (this.tail != node) {
+                this.remove(node);
+                this.addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.provider;
+
+/**
+ * Approximate access frequency of the cache keys, implemented as a count-min sketch with 4 bits counters.
+ * The counters are periodically halved so the popularity of old keys fades over time.
+ * This class is not thread safe.
+ *
+ * @author Grégory Van den Borre
+ */
+final class FrequencySketch {
+
+    /**
+     * Seeds used to compute the 4 hashes of a key.
+     */
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * Mask to halve all counters packed in a long at once.
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * Maximum value for a counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * Counters, every long contains 16 counters of 4 bits.
+     */
+    private long[] table;
+
+    /**
+     * Mask to compute an index in the table.
+     */
+    private int tableMask;
+
+    /**
+     * Number of increments before the counters are halved.
+     */
+    private int sampleSize;
+
+    /**
+     * Number of increments since the last reset.
+     */
+    private int size;
+
+    /**
+     * Create a new sketch.
+     *
+     * @param expectedEntries Number of entries expected to be tracked.
+     */
+    FrequencySketch(final int expectedEntries) {
+        super();
+        this.ensureCapacity(expectedEntries);
+    }
+
+    /**
+     * Resize the sketch if the number of tracked entries grew beyond its capacity, history is lost when resizing.
+     *
+     * @param expectedEntries Number of entries expected to be tracked.
+     */
+    void ensureCapacity(final int expectedEntries) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+        if (this.table != null && this.table.length >= capacity) {
+            return;
+        }
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = 10 * capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Provide the estimated frequency of a key.
+     *
+     * @param hash Key hash.
+     * @return The estimated frequency, between 0 and 15.
+     */
+    int frequency(final int hash) {
+        int frequency = MAX_COUNT;
+        int start = (spread(hash) & 3) << 2;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increment the frequency of a key.
+     *
+     * @param hash Key hash.
+     */
+    void increment(final int hash) {
+        int start = (spread(hash) & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            int offset = (start + i) << 2;
+            long mask = 0xfL << offset;
+            if ((this.table[index] & mask) != mask) {
+                this.table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++this.size == this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Halve all the counters.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = this.size >>> 1;
+    }
+
+    private int indexOf(final int hash, final int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & this.tableMask;
+    }
+
+    private static int spread(final int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
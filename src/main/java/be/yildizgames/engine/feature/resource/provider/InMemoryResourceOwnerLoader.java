@@ -0,0 +1,71 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.provider;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceOwner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loader keeping all owners in memory, to be used as a stand-in for the real backing store.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class InMemoryResourceOwnerLoader implements ResourceOwnerLoader {
+
+    /**
+     * Registered owners.
+     */
+    private final Map<EntityId, ResourceOwner> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Register an owner, an owner already registered with the same id will be replaced.
+     *
+     * @param cityId Id of the city.
+     * @param owner  Owner to register.
+     */
+    public void register(final EntityId cityId, final ResourceOwner owner) {
+        assert cityId != null;
+        assert owner != null;
+        this.owners.put(cityId, owner);
+    }
+
+    /**
+     * Remove an owner from this loader.
+     *
+     * @param cityId Id of the city to remove.
+     */
+    public void unregister(final EntityId cityId) {
+        this.owners.remove(cityId);
+    }
+
+    @Override
+    public ResourceOwner load(final EntityId cityId) {
+        return this.owners.get(cityId);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.provider;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceOwner;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load a resource owner from its backing store, used by the caching provider when the owner is not in memory.
+ *
+ * @author Grégory Van den Borre
+ */
+@FunctionalInterface
+public interface ResourceOwnerLoader {
+
+    /**
+     * Load an owner from the backing store.
+     *
+     * @param cityId Id of the city to load.
+     * @return The loaded owner, <code>null</code> if no owner exists for that id.
+     */
+    ResourceOwner load(EntityId cityId);
+
+    /**
+     * Load several owners from the backing store, the default implementation loads them one by one,
+     * implementations should override it to retrieve them in a single round trip.
+     *
+     * @param cityIds Ids of the cities to load.
+     * @return The loaded owners mapped by their id, ids without owner are not present.
+     */
+    default Map<EntityId, ResourceOwner> loadAll(Collection<EntityId> cityIds) {
+        Map<EntityId, ResourceOwner> result = new HashMap<>();
+        for (EntityId id : cityIds) {
+            ResourceOwner owner = this.load(id);
+            if (owner != null) {
+                result.put(id, owner);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.publisher;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceChangeListener;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publish the resource values of the cities to the subscribers, honoring their demand.
+ * Every subscriber has at most one pending update per city, a new update for a city replacing the pending one,
+ * so a slow subscriber receives the latest values of the modified cities instead of building an unbounded queue.
+ * Updates are delivered on the given executor, in the order the cities were first modified.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResourceUpdatePublisher implements Flow.Publisher<ResourceValueDto>, ResourceChangeListener, AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(ResourceUpdatePublisher.class.getName());
+
+    /**
+     * Executor delivering the updates.
+     */
+    private final Executor executor;
+
+    /**
+     * Active subscriptions.
+     */
+    private final List<CitySubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Set once closed, no more update is accepted.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Create a new publisher.
+     *
+     * @param executor Executor delivering the updates to the subscribers.
+     */
+    public ResourceUpdatePublisher(final Executor executor) {
+        super();
+        assert executor != null;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ResourceValueDto> subscriber) {
+        Objects.requireNonNull(subscriber);
+        CitySubscription subscription = new CitySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (this.closed) {
+            subscription.complete();
+        } else {
+            this.subscriptions.add(subscription);
+            if (this.closed) {
+                subscription.complete();
+            }
+        }
+    }
+
+    /**
+     * Publish the updates of a producer.
+     *
+     * @param producer Producer to publish.
+     */
+    public void track(final ResourcesProducer producer) {
+        producer.addChangeListener(this);
+    }
+
+    /**
+     * Stop publishing the updates of a producer.
+     *
+     * @param producer Producer to stop publishing.
+     */
+    public void untrack(final ResourcesProducer producer) {
+        producer.removeChangeListener(this);
+    }
+
+    @Override
+    public void resourcesChanged(final ResourcesProducer producer) {
+        ResourceSnapshot snapshot = producer.getSnapshot();
+        this.offer(snapshot.getCity(), snapshot::toValueDto);
+    }
+
+    /**
+     * Publish an update.
+     *
+     * @param value Update to publish.
+     */
+    public void submit(final ResourceValueDto value) {
+        assert value != null;
+        this.offer(value.cityId, () -> value);
+    }
+
+    /**
+     * @return The number of active subscribers.
+     */
+    public int getSubscriberCount() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * Stop accepting updates, subscribers are completed once their pending updates are delivered.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        for (CitySubscription s : this.subscriptions) {
+            s.complete();
+        }
+    }
+
+    private void offer(final EntityId city, final Supplier<ResourceValueDto> value) {
+        if (this.closed) {
+            return;
+        }
+        for (CitySubscription s : this.subscriptions) {
+            s.offer(city, value);
+        }
+    }
+
+    /**
+     * Subscription holding the pending update of every modified city.
+     */
+    private final class CitySubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ResourceValueDto> subscriber;
+
+        /**
+         * Latest pending update per city, in first modification order.
+         */
+        private final Map<EntityId, Supplier<ResourceValueDto>> pending = new LinkedHashMap<>();
+
+        /**
+         * Number of updates requested and not yet delivered.
+         */
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * Number of drain requests, only one drain runs at a time.
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile boolean completing;
+
+        /**
+         * Error to signal, set when the subscriber requested an invalid amount.
+         */
+        private volatile Throwable error;
+
+        private CitySubscription(final Flow.Subscriber<? super ResourceValueDto> subscriber) {
+            super();
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Requested amount must be positive: " + n);
+            } else {
+                this.requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this.pending) {
+                this.pending.clear();
+            }
+        }
+
+        private void offer(final EntityId city, final Supplier<ResourceValueDto> value) {
+            synchronized (this.pending) {
+                this.pending.put(city, value);
+            }
+            this.schedule();
+        }
+
+        private void complete() {
+            this.completing = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (this.wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private Supplier<ResourceValueDto> poll() {
+            synchronized (this.pending) {
+                Iterator<Supplier<ResourceValueDto>> it = this.pending.values().iterator();
+                if (!it.hasNext()) {
+                    return null;
+                }
+                Supplier<ResourceValueDto> next = it.next();
+                it.remove();
+                return next;
+            }
+        }
+
+        private boolean isEmpty() {
+            synchronized (this.pending) {
+                return this.pending.isEmpty();
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (this.cancelled) {
+                    return;
+                }
+                if (this.error != null) {
+                    this.cancel();
+                    this.subscriber.onError(this.error);
+                    return;
+                }
+                while (this.requested.get() > 0 && !this.cancelled) {
+                    Supplier<ResourceValueDto> next = this.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    try {
+                        this.subscriber.onNext(next.get());
+                    } catch (RuntimeException e) {
+                        LOGGER.log(System.Logger.Level.ERROR, "Subscriber failed, subscription cancelled", e);
+                        this.cancel();
+                        return;
+                    }
+                    this.requested.getAndUpdate(r -> r == Long.MAX_VALUE ? r : r - 1);
+                }
+                if (this.completing && !this.cancelled && this.isEmpty()) {
+                    this.cancel();
+                    this.subscriber.onComplete();
+                    return;
+                }
+                missed = this.wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
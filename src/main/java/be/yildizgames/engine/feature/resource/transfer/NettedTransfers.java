@@ -0,0 +1,68 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.transfer;
+
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a netting window: the transfers to apply and the original transfers kept for audit.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class NettedTransfers {
+
+    /**
+     * Transfers to apply.
+     */
+    private final List<ResourceTransferDto> transfers;
+
+    /**
+     * Transfers received during the window, in submission order.
+     */
+    private final List<ResourceTransferDto> originals;
+
+    NettedTransfers(final List<ResourceTransferDto> transfers, final List<ResourceTransferDto> originals) {
+        super();
+        this.transfers = Collections.unmodifiableList(transfers);
+        this.originals = Collections.unmodifiableList(originals);
+    }
+
+    /**
+     * @return The transfers to apply, at most two per pair of players and cause.
+     */
+    public List<ResourceTransferDto> getTransfers() {
+        return this.transfers;
+    }
+
+    /**
+     * @return The transfers received during the window, in submission order.
+     */
+    public List<ResourceTransferDto> getOriginals() {
+        return this.originals;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.transfer;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.TransferCause;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collect the transfers during a window and net the opposing flows before applying them.
+ * Transfers between the same two players for the same cause are summed per resource, amounts going in opposite directions cancel each other,
+ * so at most two transfers per pair of players and cause are applied: one for each direction, holding only the resources going that way.
+ * The original transfers are kept with the result for audit.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class TransferNetting {
+
+    private static final System.Logger LOGGER = System.getLogger(TransferNetting.class.getName());
+
+    /**
+     * Net amounts smaller than this are considered as cancelled.
+     */
+    private static final float EPSILON = 0.0001f;
+
+    /**
+     * Destination of the netted transfers.
+     */
+    private final TransferSink sink;
+
+    /**
+     * Netting window duration.
+     */
+    private final Duration window;
+
+    /**
+     * Executor running the periodic flush.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Transfers received since the last flush.
+     */
+    private List<ResourceTransferDto> pending = new ArrayList<>();
+
+    /**
+     * Number of resources of the transfers, set by the first submitted transfer, -1 before.
+     */
+    private int width = -1;
+
+    /**
+     * Lock preventing concurrent flushes, so a failed window is put back before the next one is taken.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Periodic flush task, null if not started.
+     */
+    private ScheduledFuture<?> task;
+
+    /**
+     * Create a new netting stage, it must be started to flush periodically.
+     *
+     * @param sink      Destination of the netted transfers.
+     * @param window    Netting window duration.
+     * @param scheduler Executor running the flushes.
+     */
+    public TransferNetting(final TransferSink sink, final Duration window, final ScheduledExecutorService scheduler) {
+        super();
+        assert sink != null;
+        assert window != null;
+        assert scheduler != null;
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        this.sink = sink;
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Add a transfer to the current window, all the transfers must have the same number of resources as the first one.
+     *
+     * @param transfer Transfer to add.
+     * @throws IllegalArgumentException If the transfer does not have the same number of resources as the previous ones, it is not added.
+     */
+    public void submit(final ResourceTransferDto transfer) {
+        assert transfer != null;
+        int size = transfer.resources.getArray().length;
+        synchronized (this) {
+            if (this.width == -1) {
+                this.width = size;
+            } else if (this.width != size) {
+                throw new IllegalArgumentException("Transfers must have " + this.width + " resources: " + size);
+            }
+            this.pending.add(transfer);
+        }
+    }
+
+    /**
+     * @return The number of transfers in the current window.
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Start the periodic flush.
+     */
+    public synchronized void start() {
+        if (this.task == null) {
+            long delay = this.window.toMillis();
+            this.task = this.scheduler.scheduleWithFixedDelay(this::flush, delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic flush and apply the pending transfers.
+     */
+    public synchronized void stop() {
+        if (this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+        this.flush();
+    }
+
+    /**
+     * Net the transfers of the current window and send them to the sink.
+     * If the sink fails, the transfers are put back in front of the pending ones and netted again on the next flush.
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            List<ResourceTransferDto> transfers;
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                transfers = this.pending;
+                this.pending = new ArrayList<>();
+            }
+            NettedTransfers netted = net(transfers);
+            try {
+                this.sink.write(netted);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error while applying netted transfers, will retry on next flush", e);
+                synchronized (this) {
+                    transfers.addAll(this.pending);
+                    this.pending = transfers;
+                }
+            }
+        }
+    }
+
+    /**
+     * Net a list of transfers.
+     *
+     * @param transfers Transfers to net, they must all have the same number of resources.
+     * @return The netted transfers, in order of first appearance of every pair of players and cause, with the originals.
+     * @throws IllegalArgumentException If the transfers do not have the same number of resources.
+     */
+    public static NettedTransfers net(final List<ResourceTransferDto> transfers) {
+        Map<Key, float[]> flows = new LinkedHashMap<>();
+        int size = -1;
+        for (ResourceTransferDto t : transfers) {
+            float[] values = t.resources.getArray();
+            if (size == -1) {
+                size = values.length;
+            } else if (size != values.length) {
+                throw new IllegalArgumentException("Transfers must have the same number of resources: " + size + ", " + values.length);
+            }
+            boolean ordered = t.giver.value <= t.receiver.value;
+            Key key = ordered ? new Key(t.giver, t.receiver, t.cause) : new Key(t.receiver, t.giver, t.cause);
+            float[] flow = flows.computeIfAbsent(key, k -> new float[values.length]);
+            for (int i = 0; i < values.length; i++) {
+                flow[i] += ordered ? values[i] : -values[i];
+            }
+        }
+        List<ResourceTransferDto> result = new ArrayList<>();
+        for (Map.Entry<Key, float[]> e : flows.entrySet()) {
+            Key key = e.getKey();
+            if (key.first.equals(key.second)) {
+                continue;
+            }
+            float[] flow = e.getValue();
+            float[] forward = new float[flow.length];
+            float[] backward = new float[flow.length];
+            boolean hasForward = false;
+            boolean hasBackward = false;
+            for (int i = 0; i < flow.length; i++) {
+                if (flow[i] > EPSILON) {
+                    forward[i] = flow[i];
+                    hasForward = true;
+                } else if (flow[i] < -EPSILON) {
+                    backward[i] = -flow[i];
+                    hasBackward = true;
+                }
+            }
+            if (hasForward) {
+                result.add(new ResourceTransferDto(key.second, key.first, new ResourceValue(forward), key.cause));
+            }
+            if (hasBackward) {
+                result.add(new ResourceTransferDto(key.first, key.second, new ResourceValue(backward), key.cause));
+            }
+        }
+        return new NettedTransfers(result, new ArrayList<>(transfers));
+    }
+
+    /**
+     * Pair of players and cause, the first player has the lowest id.
+     */
+    private static final class Key {
+
+        private final PlayerId first;
+
+        private final PlayerId second;
+
+        private final TransferCause cause;
+
+        private Key(final PlayerId first, final PlayerId second, final TransferCause cause) {
+            super();
+            this.first = first;
+            this.second = second;
+            this.cause = cause;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.first.equals(other.first) && this.second.equals(other.second) && this.cause == other.cause;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.first, this.second, this.cause);
+        }
+    }
+}
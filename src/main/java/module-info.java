@@ -31,4 +31,13 @@ module be.yildizgames.feature.resource.shared {
     exports be.yildizgames.engine.feature.resource;
     exports be.yildizgames.engine.feature.resource.protocol.mapper;
     exports be.yildizgames.engine.feature.resource.bonus;
+    exports be.yildizgames.engine.feature.resource.provider;
+    exports be.yildizgames.engine.feature.resource.persistence;
+    exports be.yildizgames.engine.feature.resource.market;
+    exports be.yildizgames.engine.feature.resource.aggregate;
+    exports be.yildizgames.engine.feature.resource.index;
+    exports be.yildizgames.engine.feature.resource.publisher;
+    exports be.yildizgames.engine.feature.resource.transfer;
+    exports be.yildizgames.engine.feature.resource.journal;
+    exports be.yildizgames.engine.feature.resource.pipeline;
 }
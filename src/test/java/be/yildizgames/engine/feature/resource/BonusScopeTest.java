@@ -0,0 +1,170 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class BonusScopeTest {
+
+    @Test
+    public void testScopeAddedToProducer() {
+        BonusScope world = new BonusScope("world", 2);
+        world.addBonus(new Bonus(new float[]{1, 0}, new float[]{0, 0}, 1), 0);
+        ResourcesProducer producer = producer(world);
+        Assertions.assertEquals(3f, producer.getRatios(0));
+        Assertions.assertEquals(1000f, producer.getMax(0));
+        Assertions.assertEquals(30f, producer.getResources(11_000).getValue(0), 0.001f);
+    }
+
+    @Test
+    public void testChangeSplitsIntegration() {
+        BonusScope world = new BonusScope("world", 2);
+        ResourcesProducer producer = producer(world);
+        Bonus event = new Bonus(new float[]{8, 0}, new float[]{0, 0}, 1);
+        world.addBonus(event, 5_000);
+        world.removeBonus(event, 7_000);
+        Assertions.assertEquals(2 * 10 + 8 * 2f, producer.getResources(11_000).getValue(0), 0.001f);
+        Assertions.assertEquals(2f, producer.getRatios(0));
+    }
+
+    @Test
+    public void testSeveralScopes() {
+        BonusScope world = new BonusScope("world", 2);
+        BonusScope region = new BonusScope("region", 2);
+        ResourcesProducer producer = producer(world, region);
+        world.addBonus(new Bonus(new float[]{1, 1}, new float[]{0, 0}, 1), 3_000);
+        region.addBonus(new Bonus(new float[]{0, 0}, new float[]{0, 10}, 2), 4_000);
+        region.addBonus(new Bonus(new float[]{2, 0}, new float[]{0, 0}, 3), 6_000);
+        ResourceValue value = producer.getResources(11_000);
+        Assertions.assertEquals(2 * 10 + 1 * 8 + 2 * 5f, value.getValue(0), 0.001f);
+        Assertions.assertEquals(8f, value.getValue(1), 0.001f);
+        Assertions.assertEquals(1010f, producer.getMax(1));
+        Assertions.assertEquals(5f, producer.getRatios(0));
+        producer.removeScope(region);
+        Assertions.assertEquals(3f, producer.getRatios(0));
+    }
+
+    @Test
+    public void testLimitRemovedWithBonus() {
+        BonusScope world = new BonusScope("world", 2);
+        Bonus b = new Bonus(new float[]{0, 0}, new float[]{0, 500}, 1);
+        world.addBonus(b, 0);
+        Assertions.assertEquals(500f, world.getLimit(1));
+        world.removeBonus(b, 10);
+        Assertions.assertEquals(0f, world.getLimit(1));
+    }
+
+    @Test
+    public void testSnapshotUsesScope() {
+        BonusScope world = new BonusScope("world", 2);
+        world.addBonus(new Bonus(new float[]{3, 0}, new float[]{0, 0}, 1), 0);
+        ResourcesProducer producer = producer(world);
+        Assertions.assertEquals(5f, producer.getSnapshot().getRatio(0));
+    }
+
+    @Test
+    public void testAddClampedByScopeLimit() {
+        BonusScope world = new BonusScope("world", 2);
+        world.addBonus(new Bonus(new float[]{0, 0}, new float[]{100, 0}, 1), 0);
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(1L), 1_000, new ResourceValue(new float[]{200, 0}));
+        producer.addBonus(new Bonus(new float[]{0, 0}, new float[]{100, 0}, 10));
+        producer.addScope(world);
+        producer.setInitialised();
+        producer.add(new ResourceValue(new float[]{1, 0}));
+        Assertions.assertEquals(200f, producer.getSnapshot().getValue(0));
+    }
+
+    @Test
+    public void testScopeChangeResolvedBySnapshot() {
+        BonusScope world = new BonusScope("world", 2);
+        ResourcesProducer producer = producer(world);
+        List<ResourcesProducer> changed = new ArrayList<>();
+        producer.addChangeListener(changed::add);
+        ResourceSnapshot snapshot = producer.getSnapshot();
+        Bonus event = new Bonus(new float[]{4, 0}, new float[]{0, 0}, 1);
+        world.addBonus(event, 5_000);
+        world.removeBonus(event, 7_000);
+        Assertions.assertEquals(2, world.getVersion());
+        Assertions.assertTrue(changed.isEmpty());
+        Assertions.assertSame(snapshot, producer.getSnapshot());
+        Assertions.assertEquals(2f, snapshot.getRatio(0));
+        Assertions.assertEquals(2 * 10 + 4 * 2f, snapshot.getValue(0, 11_000), 0.001f);
+        Assertions.assertEquals(snapshot.getValue(0, 11_000), producer.getResources(11_000).getValue(0), 0.001f);
+    }
+
+    @Test
+    public void testOwnBonusWithScope() {
+        BonusScope world = new BonusScope("world", 2);
+        world.addBonus(new Bonus(new float[]{1, 1}, new float[]{0, 50}, 1), 0);
+        ResourcesProducer producer = producer(world);
+        producer.addBonus(new Bonus(new float[]{0, 3}, new float[]{0, 0}, 11), 1_000);
+        Assertions.assertEquals(4f, producer.getSnapshot().getRatio(1));
+        Assertions.assertEquals(1050f, producer.getSnapshot().getLimit(1));
+        producer.removeScope(world);
+        Assertions.assertEquals(3f, producer.getSnapshot().getRatio(1));
+        producer.addScope(world);
+        Assertions.assertEquals(3f, producer.getSnapshot().getRatio(0));
+        Assertions.assertEquals(4f, producer.getSnapshot().getRatio(1));
+    }
+
+    @Test
+    public void testChangeInThePast() {
+        BonusScope world = new BonusScope("world", 2);
+        world.addBonus(new Bonus(new float[]{1, 0}, new float[]{0, 0}, 1), 100);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> world.addBonus(new Bonus(new float[]{1, 0}, new float[]{0, 0}, 2), 50));
+    }
+
+    @Test
+    public void testWidthMismatch() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(1L), 1_000, new ResourceValue(new float[3]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> producer.addScope(new BonusScope("world", 2)));
+    }
+
+    private static ResourcesProducer producer(BonusScope... scopes) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(1L), 1_000, new ResourceValue(new float[]{0, 0}));
+        producer.addBonus(new Bonus(new float[]{2, 0}, new float[]{1000, 1000}, 10));
+        for (BonusScope scope : scopes) {
+            producer.addScope(scope);
+        }
+        producer.setInitialised();
+        return producer;
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit, int index) {
+            super(ratio, limit, index);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import be.yildizgames.engine.feature.resource.bonus.BonusStacking;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class BonusStackTest {
+
+    @Test
+    public void testFlatOnly() {
+        ResourceRatio ratio = new ResourceRatio(new float[2]);
+        Bonus b1 = new Bonus(new float[]{2, 1}, 1, BonusStacking.FLAT);
+        ratio.addBonus(b1);
+        ratio.addBonus(new Bonus(new float[]{3, 0}, 2, BonusStacking.FLAT));
+        Assertions.assertEquals(5f, ratio.getValues(0));
+        Assertions.assertEquals(1f, ratio.getValues(1));
+        ratio.removeBonus(b1);
+        Assertions.assertEquals(3f, ratio.getValues(0));
+        Assertions.assertEquals(0f, ratio.getValues(1));
+    }
+
+    @Test
+    public void testAllRules() {
+        ResourceRatio ratio = new ResourceRatio(new float[2]);
+        ratio.addBonus(new Bonus(new float[]{10, 4}, 1, BonusStacking.FLAT));
+        ratio.addBonus(new Bonus(new float[]{0.1f, 0}, 2, BonusStacking.PERCENT_ADDITIVE));
+        ratio.addBonus(new Bonus(new float[]{0.4f, 0}, 3, BonusStacking.PERCENT_ADDITIVE));
+        ratio.addBonus(new Bonus(new float[]{1, 0}, 4, BonusStacking.PERCENT_MULTIPLICATIVE));
+        ratio.addBonus(new Bonus(new float[]{0.5f, 0}, 5, BonusStacking.PERCENT_MULTIPLICATIVE));
+        Assertions.assertEquals(10 * 1.5f * 2 * 1.5f, ratio.getValues(0), 0.001f);
+        Assertions.assertEquals(4f, ratio.getValues(1), 0.001f);
+        ratio.addBonus(new Bonus(new float[]{30, 3}, 6, BonusStacking.CAP));
+        ratio.addBonus(new Bonus(new float[]{25, 0}, 7, BonusStacking.CAP));
+        Assertions.assertEquals(25f, ratio.getValues(0), 0.001f);
+        Assertions.assertEquals(3f, ratio.getValues(1), 0.001f);
+    }
+
+    @Test
+    public void testRemoveEvaluatesAgain() {
+        ResourceRatio ratio = new ResourceRatio(new float[1]);
+        Bonus percent = new Bonus(new float[]{0.5f}, 2, BonusStacking.PERCENT_MULTIPLICATIVE);
+        Bonus cap = new Bonus(new float[]{12}, 3, BonusStacking.CAP);
+        ratio.addBonus(new Bonus(new float[]{10}, 1, BonusStacking.FLAT));
+        ratio.addBonus(percent);
+        ratio.addBonus(cap);
+        Assertions.assertEquals(12f, ratio.getValues(0), 0.001f);
+        ratio.removeBonus(cap);
+        Assertions.assertEquals(15f, ratio.getValues(0), 0.001f);
+        ratio.removeBonus(percent);
+        Assertions.assertEquals(10f, ratio.getValues(0), 0.001f);
+    }
+
+    @Test
+    public void testRemoveUpdatesCoefficients() {
+        ResourceRatio ratio = new ResourceRatio(new float[1]);
+        Bonus additive = new Bonus(new float[]{0.5f}, 2, BonusStacking.PERCENT_ADDITIVE);
+        Bonus zero = new Bonus(new float[]{-1}, 3, BonusStacking.PERCENT_MULTIPLICATIVE);
+        Bonus twice = new Bonus(new float[]{1}, 4, BonusStacking.PERCENT_MULTIPLICATIVE);
+        ratio.addBonus(new Bonus(new float[]{10}, 1, BonusStacking.FLAT));
+        ratio.addBonus(additive);
+        ratio.addBonus(zero);
+        ratio.addBonus(twice);
+        Assertions.assertEquals(0f, ratio.getValues(0), 0.001f);
+        ratio.removeBonus(zero);
+        Assertions.assertEquals(30f, ratio.getValues(0), 0.001f);
+        ratio.removeBonus(additive);
+        Assertions.assertEquals(20f, ratio.getValues(0), 0.001f);
+        ratio.addBonus(new Bonus(new float[]{0.5f}, 4, BonusStacking.PERCENT_MULTIPLICATIVE));
+        Assertions.assertEquals(15f, ratio.getValues(0), 0.001f);
+    }
+
+    @Test
+    public void testFlatChangeAppliesPercent() {
+        ResourceRatio ratio = new ResourceRatio(new float[1]);
+        ratio.addBonus(new Bonus(new float[]{0.2f}, 2, BonusStacking.PERCENT_ADDITIVE));
+        Assertions.assertEquals(0f, ratio.getValues(0), 0.001f);
+        ratio.addBonus(new Bonus(new float[]{10}, 1, BonusStacking.FLAT));
+        Assertions.assertEquals(12f, ratio.getValues(0), 0.001f);
+        ratio.addBonus(new Bonus(new float[]{20}, 1, BonusStacking.FLAT));
+        Assertions.assertEquals(24f, ratio.getValues(0), 0.001f);
+    }
+
+    @Test
+    public void testLimit() {
+        ResourceLimit limit = new ResourceLimit(new float[2]);
+        limit.addBonus(new Bonus(new float[2], new float[]{100, 100}, 1, BonusStacking.FLAT));
+        limit.addBonus(new Bonus(new float[]{0.5f, 0.5f}, new float[]{0, 0.5f}, 2, BonusStacking.PERCENT_ADDITIVE));
+        Assertions.assertEquals(100f, limit.getLimits(0), 0.001f);
+        Assertions.assertEquals(150f, limit.getLimits(1), 0.001f);
+    }
+
+    @Test
+    public void testScopeRejectsPercent() {
+        BonusScope scope = new BonusScope("world", 1);
+        Bonus b = new Bonus(new float[]{0.5f}, 1, BonusStacking.PERCENT_ADDITIVE);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> scope.addBonus(b, 0));
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, int index, BonusStacking stacking) {
+            this(ratio, new float[ratio.length], index, stacking);
+        }
+
+        private Bonus(float[] ratio, float[] limit, int index, BonusStacking stacking) {
+            super(ratio, limit, index, stacking);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class OffHeapResourceStoreTest {
+
+    @Test
+    public void testProducerOperations() throws IOException {
+        Path file = Files.createTempFile("store", ".bin");
+        try {
+            OffHeapResourceStore store = new OffHeapResourceStore(file, 2, 10);
+            ResourcesProducer producer = store.create(EntityId.valueOf(5L), 1000, new ResourceValue(new float[]{10, 20}));
+            producer.addBonus(new Bonus(new float[]{1, 2}, new float[]{100, 100}));
+            producer.setInitialised();
+            Assertions.assertEquals(1, store.size());
+            Assertions.assertEquals(15f, producer.getResources(6000).getValue(0));
+            Assertions.assertTrue(producer.buy(new ResourceValue(new float[]{5, 5})));
+            Assertions.assertEquals(1f, producer.getRatios(0));
+            Assertions.assertEquals(100f, producer.getMax(1));
+            Assertions.assertEquals(10f, producer.getSnapshot().getValue(0));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testReader() throws IOException {
+        Path file = Files.createTempFile("store", ".bin");
+        try {
+            OffHeapResourceStore store = new OffHeapResourceStore(file, 2, 10);
+            ResourcesProducer producer = store.create(EntityId.valueOf(5L), 1000, new ResourceValue(new float[]{10, 20}));
+            OffHeapResourceReader reader = OffHeapResourceReader.open(file);
+            Assertions.assertEquals(List.of(EntityId.valueOf(5L)), reader.getCities());
+            Assertions.assertNull(reader.read(EntityId.valueOf(6L)));
+            producer.addBonus(new Bonus(new float[]{1, 2}, new float[]{100, 100}));
+            producer.setInitialised();
+            ResourceSnapshot snapshot = reader.read(EntityId.valueOf(5L));
+            Assertions.assertTrue(snapshot.isInitialized());
+            Assertions.assertEquals(producer.getSnapshot().getVersion(), snapshot.getVersion());
+            Assertions.assertEquals(2f, snapshot.getRatio(1));
+            Assertions.assertEquals(30f, snapshot.getValue(1, 6000));
+            store.create(EntityId.valueOf(6L), 1000, new ResourceValue(new float[]{1, 1}));
+            Assertions.assertNull(reader.read(EntityId.valueOf(6L)));
+            reader.refresh();
+            Assertions.assertEquals(1f, reader.read(EntityId.valueOf(6L)).getValue(0));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSnapshotReadFromStore() throws IOException {
+        Path file = Files.createTempFile("store", ".bin");
+        try {
+            OffHeapResourceStore store = new OffHeapResourceStore(file, 2, 10);
+            ResourcesProducer producer = store.create(EntityId.valueOf(5L), 1000, new ResourceValue(new float[]{10, 20}));
+            OffHeapResourceReader reader = OffHeapResourceReader.open(file);
+            producer.addBonus(new Bonus(new float[]{0, 0}, new float[]{100, 100}));
+            producer.setInitialised();
+            ResourceSnapshot before = producer.getSnapshot();
+            Assertions.assertTrue(producer.reserve(new ResourceValue(new float[]{4, 0})).isPresent());
+            Assertions.assertEquals(4f, producer.getReserved(0));
+            Assertions.assertFalse(producer.buy(new ResourceValue(new float[]{7, 0})));
+            Assertions.assertTrue(producer.buy(new ResourceValue(new float[]{6, 0})));
+            ResourceSnapshot after = producer.getSnapshot();
+            Assertions.assertEquals(10f, before.getValue(0));
+            Assertions.assertEquals(4f, after.getValue(0));
+            Assertions.assertEquals(before.getVersion() + 1, after.getVersion());
+            Assertions.assertEquals(100f, after.getLimit(1));
+            Assertions.assertEquals(reader.read(EntityId.valueOf(5L)).getVersion(), after.getVersion());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testReadWhileWritten() throws Exception {
+        Path file = Files.createTempFile("store", ".bin");
+        try {
+            OffHeapResourceStore store = new OffHeapResourceStore(file, 4, 1);
+            ResourcesProducer producer = store.create(EntityId.valueOf(1L), 1, new ResourceValue(new float[4]));
+            OffHeapResourceReader reader = OffHeapResourceReader.open(file);
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread writer = new Thread(() -> {
+                long time = 2;
+                while (running.get()) {
+                    producer.setNewValues(time, new ResourceValue(new float[]{time, time, time, time}));
+                    time++;
+                }
+            });
+            writer.start();
+            try {
+                for (int i = 0; i < 10000; i++) {
+                    ResourceSnapshot s = reader.read(EntityId.valueOf(1L));
+                    float expected = s.getLastUpdate() == 1 ? 0 : s.getLastUpdate();
+                    for (int r = 0; r < 4; r++) {
+                        Assertions.assertEquals(expected, s.getValue(r), 0.5f);
+                    }
+                }
+            } finally {
+                running.set(false);
+                writer.join();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTornSlot() throws IOException {
+        Path file = Files.createTempFile("store", ".bin");
+        try {
+            OffHeapResourceStore store = new OffHeapResourceStore(file, 2, 10);
+            store.create(EntityId.valueOf(5L), 1000, new ResourceValue(new float[]{10, 20}));
+            OffHeapResourceReader reader = OffHeapResourceReader.open(file);
+            Assertions.assertEquals(10f, reader.read(EntityId.valueOf(5L)).getValue(0));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(0, 3), OffHeapResourceStore.HEADER);
+            }
+            Assertions.assertThrows(IllegalStateException.class, () -> reader.read(EntityId.valueOf(5L)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFull() throws IOException {
+        Path file = Files.createTempFile("store", ".bin");
+        try {
+            OffHeapResourceStore store = new OffHeapResourceStore(file, 1, 1);
+            store.create(EntityId.valueOf(1L), 1, new ResourceValue(new float[1]));
+            Assertions.assertThrows(IllegalStateException.class, () -> store.create(EntityId.valueOf(2L), 1, new ResourceValue(new float[1])));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new OffHeapResourceStore(file, 0, 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceLayoutTest {
+
+    private static final int WIDTH = 200;
+
+    @Test
+    public void testSparseEqualsDense() {
+        float[] values = new float[WIDTH];
+        values[3] = 12;
+        values[150] = 4;
+        ResourceValue dense = ResourceLayout.DENSE.newValue(values);
+        ResourceValue sparse = ResourceLayout.SPARSE.newValue(values);
+        Assertions.assertEquals(ResourceLayout.SPARSE, sparse.getLayout());
+        Assertions.assertEquals(dense, sparse);
+        Assertions.assertEquals(dense.hashCode(), sparse.hashCode());
+        Assertions.assertArrayEquals(values, sparse.getArray());
+        Assertions.assertEquals(4, sparse.getValue(150), 0.0001f);
+        Assertions.assertEquals(0, sparse.getValue(151), 0.0001f);
+    }
+
+    @Test
+    public void testBuy() {
+        ResourceValue sparse = ResourceLayout.SPARSE.newValue(single(10, 5));
+        Assertions.assertFalse(sparse.buy(ResourceLayout.SPARSE.newValue(single(10, 6))));
+        Assertions.assertFalse(sparse.buy(ResourceLayout.DENSE.newValue(single(11, 1))));
+        Assertions.assertTrue(sparse.buy(ResourceLayout.DENSE.newValue(single(10, 2))));
+        Assertions.assertEquals(3, sparse.getValue(10), 0.0001f);
+    }
+
+    @Test
+    public void testProducerSameResultForBothLayouts() {
+        ResourcesProducer dense = producer(ResourceLayout.DENSE);
+        ResourcesProducer sparse = producer(ResourceLayout.SPARSE);
+        Assertions.assertEquals(dense.getResources(5001), sparse.getResources(5001));
+        Assertions.assertEquals(10, sparse.getResources(5001).getValue(7), 0.0001f);
+        Assertions.assertEquals(50, sparse.getResources(5001).getValue(120), 0.0001f);
+
+        float[] steal = new float[WIDTH];
+        steal[7] = 4;
+        steal[120] = 100;
+        steal[42] = 1;
+        ResourceValue stolenDense = dense.steal(ResourceLayout.DENSE.newValue(steal));
+        ResourceValue stolenSparse = sparse.steal(ResourceLayout.SPARSE.newValue(steal));
+        Assertions.assertEquals(stolenDense, stolenSparse);
+        Assertions.assertEquals(50, stolenSparse.getValue(120), 0.0001f);
+        Assertions.assertEquals(0, stolenSparse.getValue(42), 0.0001f);
+        Assertions.assertEquals(dense.getResources(5001), sparse.getResources(5001));
+        Assertions.assertEquals(4, stolenSparse.getValue(7), 0.0001f);
+        Assertions.assertEquals(0, sparse.getResources(5001).getValue(120), 0.0001f);
+    }
+
+    @Test
+    public void testBonusIndexes() {
+        float[] ratio = new float[WIDTH];
+        ratio[5] = 1;
+        ratio[80] = -1;
+        BonusResources bonus = new Bonus(ratio, new float[WIDTH]);
+        Assertions.assertEquals(2, bonus.getRatioIndexCount());
+        Assertions.assertEquals(5, bonus.getRatioIndex(0));
+        Assertions.assertEquals(80, bonus.getRatioIndex(1));
+        Assertions.assertEquals(0, bonus.getLimitIndexCount());
+    }
+
+    private static ResourcesProducer producer(ResourceLayout layout) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 1, layout.newValue(WIDTH));
+        float[] ratio = new float[WIDTH];
+        float[] limit = new float[WIDTH];
+        ratio[7] = 2;
+        limit[7] = 100;
+        ratio[120] = 20;
+        limit[120] = 50;
+        producer.addBonus(new Bonus(ratio, limit));
+        producer.setInitialised();
+        return producer;
+    }
+
+    private static float[] single(int index, float value) {
+        float[] result = new float[WIDTH];
+        result[index] = value;
+        return result;
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceSnapshotTest {
+
+    @Test
+    public void testSnapshotNotModifiedByProducer() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{5, 5}));
+        producer.addBonus(new Bonus(new float[]{0, 0}, new float[]{100, 100}));
+        ResourceSnapshot before = producer.getSnapshot();
+        Assertions.assertTrue(producer.buy(new ResourceValue(new float[]{2, 1})));
+        ResourceSnapshot after = producer.getSnapshot();
+        Assertions.assertEquals(5, before.getValue(0), 0.0001f);
+        Assertions.assertEquals(3, after.getValue(0), 0.0001f);
+        Assertions.assertEquals(4, after.getValue(1), 0.0001f);
+        Assertions.assertTrue(after.getVersion() > before.getVersion());
+    }
+
+    @Test
+    public void testSetNewValuesNoAliasing() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{0}));
+        ResourceValue value = new ResourceValue(new float[]{8});
+        producer.setNewValues(20, value);
+        value.add(new ResourceValue(new float[]{1}), new ResourceLimit(new float[]{100}));
+        Assertions.assertEquals(9, value.getValue(0), 0.0001f);
+        Assertions.assertEquals(8, producer.getSnapshot().getValue(0), 0.0001f);
+        Assertions.assertEquals(8, producer.toValueDto().resources.getValue(0), 0.0001f);
+    }
+
+    @Test
+    public void testProjection() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 1000, new ResourceValue(new float[]{0}));
+        producer.addBonus(new Bonus(new float[]{2}, new float[]{10}));
+        ResourceSnapshot notInitialized = producer.getSnapshot();
+        Assertions.assertEquals(0, notInitialized.getValue(0, 4000), 0.0001f);
+        producer.setInitialised();
+        ResourceSnapshot snapshot = producer.getSnapshot();
+        Assertions.assertEquals(2, snapshot.getRatio(0), 0.0001f);
+        Assertions.assertEquals(10, snapshot.getLimit(0), 0.0001f);
+        Assertions.assertEquals(6, snapshot.getValue(0, 4000), 0.0001f);
+        Assertions.assertEquals(10, snapshot.getValue(0, 100000), 0.0001f);
+        Assertions.assertEquals(producer.getResources(4000).getValue(0), snapshot.getValue(0, 4000), 0.0001f);
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceTypeRegistryTest {
+
+    @Test
+    public void testRegisterDenseIds() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry();
+        ResourceType metal = registry.register("metal");
+        ResourceType energy = registry.register("energy");
+        Assertions.assertEquals(0, metal.getId());
+        Assertions.assertEquals(1, energy.getId());
+        Assertions.assertEquals(2, registry.size());
+        Assertions.assertSame(energy, registry.get("energy"));
+        Assertions.assertSame(metal, registry.get(0));
+        Assertions.assertFalse(registry.find("gold").isPresent());
+        Assertions.assertEquals(2, registry.getTypes().size());
+    }
+
+    @Test
+    public void testRegisterTwice() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry();
+        registry.register("metal");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.register("metal"));
+    }
+
+    @Test
+    public void testUnknown() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.get("metal"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.get(0));
+    }
+
+    @Test
+    public void testFrozen() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry();
+        registry.register("metal");
+        registry.freeze();
+        Assertions.assertTrue(registry.isFrozen());
+        Assertions.assertThrows(IllegalStateException.class, () -> registry.register("energy"));
+    }
+
+    @Test
+    public void testHandleAccess() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry();
+        registry.register("metal");
+        ResourceType energy = registry.register("energy");
+        ResourceValue value = registry.newValue(ResourceLayout.SPARSE);
+        Assertions.assertEquals(2, value.getArray().length);
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{1, 7}));
+        Assertions.assertEquals(7, producer.getResource(energy), 0.0001f);
+        Assertions.assertEquals(7, producer.getResources().getValue(energy), 0.0001f);
+    }
+}
@@ -25,13 +25,18 @@
 package be.yildizgames.engine.feature.resource;
 
 import be.yildizgames.common.model.EntityId;
+import be.yildizgames.common.model.PlayerId;
 import be.yildizgames.engine.feature.resource.bonus.BonusResources;
 import com.jayway.awaitility.Awaitility;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Grégory Van den Borre
@@ -132,6 +137,114 @@ public final class ResourcesProducerTest {
     public void testGetMax() {
     }
 
+    @Test
+    public void testReserveExcludedFromBuyAndSteal() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{10.0f}));
+        ResourceReservation reservation = producer.reserve(new ResourceValue(new float[]{6.0f})).orElseThrow(AssertionError::new);
+        assertEquals(6.0f, producer.getReserved(0), 0.001f);
+        assertFalse(producer.canBuy(new ResourceValue(new float[]{5.0f})));
+        assertFalse(producer.reserve(new ResourceValue(new float[]{5.0f})).isPresent());
+        ResourceValue stolen = producer.steal(new ResourceValue(new float[]{10.0f}));
+        assertEquals(4.0f, stolen.getValue(0), 0.001f);
+        assertEquals(6.0f, producer.getResource(0), 0.001f);
+        assertTrue(reservation.commit());
+        assertFalse(reservation.isOpen());
+        assertEquals(0.0f, producer.getResource(0), 0.001f);
+        assertEquals(0.0f, producer.getReserved(0), 0.001f);
+    }
+
+    @Test
+    public void testReservationPartialCommitAndRelease() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{10.0f, 5.0f}));
+        ResourceReservation reservation = producer.reserve(new ResourceValue(new float[]{4.0f, 2.0f})).orElseThrow(AssertionError::new);
+        assertTrue(reservation.commit(new ResourceValue(new float[]{1.0f, 2.0f})));
+        assertTrue(reservation.isOpen());
+        assertEquals(new ResourceValue(new float[]{3.0f, 0.0f}), reservation.getRemaining());
+        assertThrows(IllegalArgumentException.class, () -> reservation.commit(new ResourceValue(new float[]{4.0f, 0.0f})));
+        reservation.release();
+        assertFalse(reservation.isOpen());
+        assertThrows(IllegalStateException.class, reservation::commit);
+        assertEquals(0.0f, producer.getReserved(0), 0.001f);
+        assertTrue(producer.buy(new ResourceValue(new float[]{9.0f, 3.0f})));
+    }
+
+    @Test
+    public void testCommitBothSameCityConcurrently() throws InterruptedException {
+        ResourcesProducer first = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{10000.0f}));
+        ResourcesProducer second = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{10000.0f}));
+        ResourceValue one = new ResourceValue(new float[]{1.0f});
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            ResourcesProducer left = t == 0 ? first : second;
+            ResourcesProducer right = t == 0 ? second : first;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    ResourceReservation r1 = left.reserve(one).orElseThrow(AssertionError::new);
+                    ResourceReservation r2 = right.reserve(one).orElseThrow(AssertionError::new);
+                    assertEquals(null, ResourceReservation.commitBoth(r1, one, r2, one));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(thread.isAlive());
+        }
+        assertTrue(first.getLockOrder() != second.getLockOrder());
+        assertEquals(6000.0f, first.getResource(0), 0.001f);
+        assertEquals(6000.0f, second.getResource(0), 0.001f);
+    }
+
+    @Test
+    public void testReserveNegativeRejected() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{10.0f, 5.0f}));
+        assertThrows(IllegalArgumentException.class, () -> producer.reserve(new ResourceValue(new float[]{4.0f, -2.0f})));
+        assertEquals(0.0f, producer.getReserved(1), 0.001f);
+        ResourceReservation reservation = producer.reserve(new ResourceValue(new float[]{4.0f, 2.0f})).orElseThrow(AssertionError::new);
+        assertThrows(IllegalArgumentException.class, () -> reservation.commit(new ResourceValue(new float[]{1.0f, -1.0f})));
+        assertEquals(2.0f, producer.getReserved(1), 0.001f);
+    }
+
+    @Test
+    public void testStealBatchProportional() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{100.0f, 30.0f}));
+        producer.reserve(new ResourceValue(new float[]{0.0f, 10.0f}));
+        List<ResourceTransferDto> result = producer.steal(List.of(
+                theft(1, new float[]{50.0f, 30.0f}),
+                theft(2, new float[]{150.0f, 10.0f}),
+                theft(3, new float[]{0.0f, 0.0f})));
+        assertEquals(3, result.size());
+        assertEquals(PlayerId.valueOf(1), result.get(0).receiver);
+        assertEquals(TransferCause.THEFT, result.get(0).cause);
+        assertEquals(25.0f, result.get(0).resources.getValue(0), 0.001f);
+        assertEquals(75.0f, result.get(1).resources.getValue(0), 0.001f);
+        assertEquals(15.0f, result.get(0).resources.getValue(1), 0.001f);
+        assertEquals(5.0f, result.get(1).resources.getValue(1), 0.001f);
+        assertEquals(0.0f, result.get(2).resources.getValue(0), 0.001f);
+        assertEquals(0.0f, producer.getSnapshot().getValue(0), 0.001f);
+        assertEquals(10.0f, producer.getSnapshot().getValue(1), 0.001f);
+    }
+
+    @Test
+    public void testStealBatchEnough() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{100.0f}));
+        List<ResourceTransferDto> result = producer.steal(List.of(theft(1, new float[]{20.0f}), theft(2, new float[]{30.0f})));
+        assertEquals(20.0f, result.get(0).resources.getValue(0), 0.001f);
+        assertEquals(30.0f, result.get(1).resources.getValue(0), 0.001f);
+        assertEquals(50.0f, producer.getSnapshot().getValue(0), 0.001f);
+    }
+
+    @Test
+    public void testStealBatchNotTheft() {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.WORLD, 10, new ResourceValue(new float[]{100.0f}));
+        assertThrows(IllegalArgumentException.class, () -> producer.steal(List.of(
+                new ResourceTransferDto(PlayerId.valueOf(1), PlayerId.valueOf(9), new ResourceValue(new float[]{1.0f}), TransferCause.GIFT))));
+    }
+
+    private static ResourceTransferDto theft(int thief, float[] amount) {
+        return new ResourceTransferDto(PlayerId.valueOf(thief), PlayerId.valueOf(9), new ResourceValue(amount), TransferCause.THEFT);
+    }
+
     private static final class DummyMaxResources extends BonusResources {
 
         DummyMaxResources(float max) {
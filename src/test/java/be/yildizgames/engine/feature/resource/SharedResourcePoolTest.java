@@ -0,0 +1,101 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class SharedResourcePoolTest {
+
+    @Test
+    public void testConcurrentDeposits() throws InterruptedException {
+        SharedResourcePool pool = new SharedResourcePool(new ResourceValue(new float[2]));
+        pool.addBonus(new Bonus(new float[]{1_000_000, 1_000_000}));
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    pool.deposit(new ResourceValue(new float[]{1, 0}));
+                    pool.deposit(1, 2);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Assertions.assertEquals(80_000f, pool.getBalance(0));
+        Assertions.assertEquals(160_000f, pool.getBalance().getValue(1));
+    }
+
+    @Test
+    public void testLimit() {
+        SharedResourcePool pool = new SharedResourcePool(new ResourceValue(new float[]{5, 0}));
+        Assertions.assertEquals(0f, pool.getLimit(0));
+        pool.addBonus(new Bonus(new float[]{100, 10}));
+        pool.deposit(new ResourceValue(new float[]{200, 5}));
+        Assertions.assertEquals(100f, pool.getBalance(0));
+        Assertions.assertEquals(5f, pool.getBalance(1));
+        Assertions.assertEquals(100f, pool.getLimit(0));
+    }
+
+    @Test
+    public void testWithdraw() {
+        SharedResourcePool pool = new SharedResourcePool(new ResourceValue(new float[]{0, 0}));
+        pool.addBonus(new Bonus(new float[]{100, 100}));
+        pool.deposit(new ResourceValue(new float[]{30, 10}));
+        Assertions.assertTrue(pool.withdraw(new ResourceValue(new float[]{20, 10})));
+        Assertions.assertFalse(pool.withdraw(new ResourceValue(new float[]{20, 0})));
+        Assertions.assertEquals(10f, pool.getBalance(0));
+        Assertions.assertEquals(0f, pool.getBalance(1));
+    }
+
+    @Test
+    public void testSparse() {
+        SharedResourcePool pool = new SharedResourcePool(ResourceLayout.SPARSE.newValue(1000));
+        float[] limit = new float[1000];
+        limit[500] = 10;
+        pool.addBonus(new Bonus(limit));
+        pool.deposit(500, 4);
+        pool.deposit(2, 4);
+        Assertions.assertEquals(4f, pool.getBalance(500));
+        Assertions.assertEquals(0f, pool.getBalance(2));
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] limit) {
+            super(new float[limit.length], limit);
+        }
+    }
+}
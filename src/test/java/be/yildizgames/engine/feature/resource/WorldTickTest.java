@@ -0,0 +1,94 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class WorldTickTest {
+
+    private static List<ResourcesProducer> world(int size) {
+        List<ResourcesProducer> producers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(i + 1L), 1000, new ResourceValue(new float[]{i % 7, 0.1f * i}));
+            producer.addBonus(new Bonus(new float[]{0.3f * (i % 5), 1}, new float[]{50, 10000}));
+            producer.setInitialised();
+            producers.add(producer);
+        }
+        return producers;
+    }
+
+    @Test
+    public void testComputeAtCommonTime() {
+        List<ResourcesProducer> producers = world(10);
+        WorldTickResult result = new WorldTick().run(producers, 11000);
+        Assertions.assertEquals(10, result.getProducerCount());
+        Assertions.assertEquals(11000, result.getTime());
+        double expected = 0;
+        for (ResourcesProducer p : producers) {
+            Assertions.assertEquals(11000, p.getLastUpdate());
+            expected += p.getResources(11000).getValue(1);
+        }
+        Assertions.assertEquals(expected, result.getTotal(1), 0.001);
+        Assertions.assertEquals(0, result.getFullCount(1));
+    }
+
+    @Test
+    public void testFullCount() {
+        List<ResourcesProducer> producers = world(10);
+        WorldTickResult result = new WorldTick().run(producers, 1_000_000);
+        Assertions.assertEquals(8, result.getFullCount(0));
+    }
+
+    @Test
+    public void testDeterministicWhateverThreadCount() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(8);
+        try {
+            WorldTickResult r1 = new WorldTick(single, 16).run(world(5000), 123456);
+            WorldTickResult r2 = new WorldTick(many, 16).run(world(5000), 123456);
+            Assertions.assertEquals(r1, r2);
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
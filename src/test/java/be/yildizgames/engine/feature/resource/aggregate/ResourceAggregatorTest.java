@@ -0,0 +1,151 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.aggregate;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceAggregatorTest {
+
+    private static final PlayerId P1 = PlayerId.valueOf(1);
+
+    private static final PlayerId P2 = PlayerId.valueOf(2);
+
+    @Test
+    public void testClosedFormProjection() {
+        ResourceAggregator aggregator = new ResourceAggregator(2);
+        aggregator.track(P1, producer(1, 0, 2, 10));
+        aggregator.track(P1, producer(2, 5, 1, 100));
+        aggregator.track(P2, producer(3, 0, 4, 1000));
+        Assertions.assertEquals(3, aggregator.getProducerCount());
+        Assertions.assertEquals(5, aggregator.getWorldTotal(0, 1000), 0.001);
+        Assertions.assertEquals(7, aggregator.getWorldRate(0, 1000), 0.001);
+        // first producer is full at 6000
+        Assertions.assertEquals(2 * 4 + 5 + 4 + 4 * 4, aggregator.getWorldTotal(0, 5000), 0.001);
+        Assertions.assertEquals(10 + 5 + 9, aggregator.getPlayerTotal(P1, 0, 10000), 0.001);
+        Assertions.assertEquals(1, aggregator.getPlayerRate(P1, 0, 10000), 0.001);
+        Assertions.assertEquals(36, aggregator.getPlayerTotal(P2, 0, 10000), 0.001);
+        Assertions.assertEquals(0, aggregator.getPlayerTotal(P2, 1, 10000), 0.001);
+        Assertions.assertEquals(0, aggregator.getPlayerTotal(PlayerId.valueOf(5), 0, 10000), 0.001);
+    }
+
+    @Test
+    public void testModificationAndUntrack() {
+        ResourceAggregator aggregator = new ResourceAggregator(2);
+        ResourcesProducer p1 = producer(1, 50, 0, 100);
+        ResourcesProducer p2 = producer(2, 20, 0, 100);
+        aggregator.track(P1, p1);
+        aggregator.track(P2, p2);
+        Assertions.assertTrue(p1.buy(new ResourceValue(new float[]{30, 0})));
+        long time = System.currentTimeMillis() + 10;
+        Assertions.assertEquals(40, aggregator.getWorldTotal(0, time), 0.001);
+        Assertions.assertEquals(20, aggregator.getPlayerTotal(P1, 0, time), 0.001);
+        aggregator.untrack(p2);
+        Assertions.assertEquals(20, aggregator.getWorldTotal(0, time), 0.001);
+        Assertions.assertEquals(0, aggregator.getPlayerTotal(P2, 0, time), 0.001);
+        Assertions.assertTrue(p1.buy(new ResourceValue(new float[]{5, 0})));
+        Assertions.assertTrue(p2.buy(new ResourceValue(new float[]{5, 0})));
+        Assertions.assertEquals(15, aggregator.getWorldTotal(0, time + 10), 0.001);
+    }
+
+    @Test
+    public void testMatchesSnapshotsOverTime() {
+        ResourceAggregator aggregator = new ResourceAggregator(2);
+        ResourcesProducer[] producers = new ResourcesProducer[20];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = producer(i + 1, i, i % 3 == 0 ? -1 : i, 10 * i);
+            aggregator.track(i % 2 == 0 ? P1 : P2, producers[i]);
+        }
+        for (long t = 1000; t < 40000; t += 700) {
+            double expected = 0;
+            for (ResourcesProducer p : producers) {
+                expected += p.getSnapshot().getValue(0, t);
+            }
+            Assertions.assertEquals(expected, aggregator.getWorldTotal(0, t), 0.01);
+        }
+    }
+
+    @Test
+    public void testConcurrentModifications() throws Exception {
+        ResourceAggregator aggregator = new ResourceAggregator(2);
+        ResourcesProducer[] producers = new ResourcesProducer[400];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = producer(i + 1, 1000, 0, 100000);
+            aggregator.track(i % 2 == 0 ? P1 : P2, producers[i]);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int first = t * 50;
+                tasks.add(executor.submit(() -> {
+                    for (int round = 0; round < 100; round++) {
+                        for (int i = first; i < first + 50; i++) {
+                            Assertions.assertTrue(producers[i].buy(new ResourceValue(new float[]{1, 0})));
+                        }
+                        aggregator.getPlayerTotal(P1, 0, System.currentTimeMillis());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long time = System.currentTimeMillis() + 10;
+        Assertions.assertEquals(400 * 900, aggregator.getWorldTotal(0, time), 0.01);
+        Assertions.assertEquals(200 * 900, aggregator.getPlayerTotal(P2, 0, time), 0.01);
+    }
+
+    private static ResourcesProducer producer(long id, float value, float ratio, float limit) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(id), 1000, new ResourceValue(new float[]{value, 0}));
+        producer.addBonus(new Bonus(new float[]{ratio, 0}, new float[]{limit, 0}));
+        producer.setInitialised();
+        return producer;
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
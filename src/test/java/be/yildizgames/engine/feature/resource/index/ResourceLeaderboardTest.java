@@ -0,0 +1,113 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.index;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceLeaderboardTest {
+
+    @Test
+    public void testProductionChangesRanking() {
+        ResourceLeaderboard leaderboard = new ResourceLeaderboard(2, 1_000_000);
+        leaderboard.track(producer(1, 100, 0, 1000));
+        leaderboard.track(producer(2, 0, 10, 1000));
+        leaderboard.track(producer(3, 50, 0, 1000));
+        List<RankedCity> top = leaderboard.getTop(0, 2, 1000);
+        Assertions.assertEquals(2, top.size());
+        Assertions.assertEquals(EntityId.valueOf(1), top.get(0).getCity());
+        Assertions.assertEquals(EntityId.valueOf(3), top.get(1).getCity());
+        top = leaderboard.getTop(0, 2, 21000);
+        Assertions.assertEquals(EntityId.valueOf(2), top.get(0).getCity());
+        Assertions.assertEquals(200, top.get(0).getValue(), 0.001f);
+        Assertions.assertEquals(EntityId.valueOf(1), top.get(1).getCity());
+    }
+
+    @Test
+    public void testModification() {
+        ResourceLeaderboard leaderboard = new ResourceLeaderboard(2);
+        ResourcesProducer p1 = producer(1, 100, 0, 1000);
+        leaderboard.track(p1);
+        leaderboard.track(producer(2, 60, 0, 1000));
+        long time = System.currentTimeMillis();
+        Assertions.assertEquals(EntityId.valueOf(1), leaderboard.getTop(0, 1, time).get(0).getCity());
+        Assertions.assertTrue(p1.buy(new ResourceValue(new float[]{50, 0})));
+        Assertions.assertEquals(EntityId.valueOf(2), leaderboard.getTop(0, 1, time).get(0).getCity());
+        leaderboard.untrack(p1);
+        Assertions.assertEquals(1, leaderboard.getTop(0, 5, time).size());
+    }
+
+    @Test
+    public void testMatchesFullSort() {
+        Random random = new Random(42);
+        ResourceLeaderboard leaderboard = new ResourceLeaderboard(2, 5000);
+        List<ResourcesProducer> producers = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            ResourcesProducer p = producer(i, random.nextInt(500), random.nextInt(20) - 5, 200 + random.nextInt(800));
+            producers.add(p);
+            leaderboard.track(p);
+        }
+        for (long t = 1000; t < 120_000; t += 3700) {
+            final long time = t;
+            List<RankedCity> top = leaderboard.getTop(0, 10, time);
+            List<Float> expected = new ArrayList<>();
+            for (ResourcesProducer p : producers) {
+                expected.add(p.getSnapshot().getValue(0, time));
+            }
+            expected.sort(Comparator.reverseOrder());
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals(expected.get(i), top.get(i).getValue(), 0.001f);
+            }
+            List<RankedCity> total = leaderboard.getTopTotal(3, time);
+            Assertions.assertEquals(expected.get(0), total.get(0).getValue(), 0.001f);
+        }
+    }
+
+    private static ResourcesProducer producer(long id, float value, float ratio, float limit) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(id), 1000, new ResourceValue(new float[]{value, 0}));
+        producer.addBonus(new Bonus(new float[]{ratio, 0}, new float[]{limit, 0}));
+        producer.setInitialised();
+        return producer;
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
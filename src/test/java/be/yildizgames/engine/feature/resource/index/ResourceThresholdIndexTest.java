@@ -0,0 +1,117 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.index;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceThresholdIndexTest {
+
+    @Test
+    public void testAtLeastWithProduction() {
+        ResourceThresholdIndex index = new ResourceThresholdIndex(2, 10);
+        index.track(producer(1, 100, 0, 1000));
+        index.track(producer(2, 0, 10, 1000));
+        index.track(producer(3, 50, 0, 1000));
+        List<RankedCity> result = index.findAtLeast(0, 50, 1000);
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertEquals(EntityId.valueOf(1), result.get(0).getCity());
+        result = index.findAtLeast(0, 60, 10500);
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertEquals(EntityId.valueOf(2), result.get(1).getCity());
+        Assertions.assertEquals(95, result.get(1).getValue(), 0.001f);
+        result = index.findAtLeast(0, 60, 21000, c -> c.value != 1);
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertEquals(EntityId.valueOf(2), result.get(0).getCity());
+    }
+
+    @Test
+    public void testBetweenAndModification() {
+        ResourceThresholdIndex index = new ResourceThresholdIndex(2, 25);
+        ResourcesProducer p1 = producer(1, 100, 0, 1000);
+        index.track(p1);
+        index.track(producer(2, 40, 0, 1000));
+        long time = System.currentTimeMillis();
+        Assertions.assertEquals(1, index.findBetween(0, 30, 90, time).size());
+        Assertions.assertTrue(p1.buy(new ResourceValue(new float[]{45, 0})));
+        Assertions.assertEquals(2, index.findBetween(0, 30, 90, time).size());
+        index.untrack(p1);
+        Assertions.assertEquals(1, index.findAtLeast(0, 0, time).size());
+        Assertions.assertEquals(1, index.getProducerCount());
+    }
+
+    @Test
+    public void testMatchesScan() {
+        Random random = new Random(7);
+        ResourceThresholdIndex index = new ResourceThresholdIndex(2, 50);
+        List<ResourcesProducer> producers = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            ResourcesProducer p = producer(i, random.nextInt(500), random.nextInt(30) - 10, 100 + random.nextInt(900));
+            producers.add(p);
+            index.track(p);
+        }
+        for (long t = 1000; t < 200_000; t += 4300) {
+            float threshold = random.nextInt(800);
+            int expected = 0;
+            int expectedBetween = 0;
+            for (ResourcesProducer p : producers) {
+                float value = p.getSnapshot().getValue(0, t);
+                if (value >= threshold) {
+                    expected++;
+                }
+                if (value >= threshold - 100 && value <= threshold) {
+                    expectedBetween++;
+                }
+            }
+            Assertions.assertEquals(expected, index.findAtLeast(0, threshold, t).size());
+            Assertions.assertEquals(expectedBetween, index.findBetween(0, threshold - 100, threshold, t).size());
+        }
+    }
+
+    private static ResourcesProducer producer(long id, float value, float ratio, float limit) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(id), 1000, new ResourceValue(new float[]{value, 0}));
+        producer.addBonus(new Bonus(new float[]{ratio, 0}, new float[]{limit, 0}));
+        producer.setInitialised();
+        return producer;
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.journal;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.TransferCause;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceJournalTest {
+
+    private Path directory;
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = Files.createTempDirectory("journal");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        this.scheduler.shutdownNow();
+        try (Stream<Path> s = Files.walk(this.directory)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testAppendAndReplay() throws Exception {
+        ResourceTransferDto transfer = new ResourceTransferDto(PlayerId.valueOf(1), PlayerId.valueOf(2), new ResourceValue(new float[]{1, 2}), TransferCause.GIFT);
+        ResourceValueDto value = new ResourceValueDto(EntityId.valueOf(5L), new ResourceValue(new float[]{3, 4, 5}), 100);
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.appendTransfer(transfer);
+            journal.appendValue(value);
+            journal.appendBonusAdded(EntityId.valueOf(5L), new Bonus(3), 200);
+            CompletableFuture<Void> f = journal.appendBonusRemoved(EntityId.valueOf(5L), new Bonus(3), 300);
+            Assertions.assertFalse(f.isDone());
+            journal.commit();
+            Assertions.assertTrue(f.isDone());
+        }
+        Recorder recorder = new Recorder();
+        Assertions.assertEquals(4, ResourceJournal.replay(this.directory, recorder));
+        Assertions.assertEquals(List.of(transfer), recorder.transfers);
+        Assertions.assertEquals(List.of(value), recorder.values);
+        Assertions.assertEquals(List.of("+5:3@200", "-5:3@300"), recorder.bonus);
+    }
+
+    @Test
+    public void testGroupCommitWhenFull() throws Exception {
+        try (ResourceJournal journal = this.journal(4096, 2)) {
+            CompletableFuture<Void> f1 = journal.appendValue(this.value(1));
+            CompletableFuture<Void> f2 = journal.appendValue(this.value(2));
+            f2.get(5, TimeUnit.SECONDS);
+            Assertions.assertTrue(f1.isDone());
+        }
+    }
+
+    @Test
+    public void testPeriodicCommit() throws Exception {
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.start();
+            journal.appendValue(this.value(1)).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testSegmentRolling() throws IOException {
+        try (ResourceJournal journal = this.journal(64, 1000)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.appendValue(this.value(i));
+            }
+        }
+        try (Stream<Path> s = Files.list(this.directory)) {
+            Assertions.assertEquals(10, s.count());
+        }
+        Recorder recorder = new Recorder();
+        Assertions.assertEquals(10, ResourceJournal.replay(this.directory, recorder));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(i + 1, recorder.values.get(i).time);
+        }
+    }
+
+    @Test
+    public void testReopenContinueAfterExistingSegments() {
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.appendValue(this.value(1));
+        }
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.appendValue(this.value(2));
+        }
+        Recorder recorder = new Recorder();
+        Assertions.assertEquals(2, ResourceJournal.replay(this.directory, recorder));
+        Assertions.assertEquals(2, recorder.values.get(1).time);
+    }
+
+    @Test
+    public void testCorruptedRecordStopReplay() throws IOException {
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.appendValue(this.value(1));
+            journal.appendValue(this.value(2));
+        }
+        Path segment;
+        try (Stream<Path> s = Files.list(this.directory)) {
+            segment = s.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 60);
+        }
+        Recorder recorder = new Recorder();
+        Assertions.assertEquals(1, ResourceJournal.replay(this.directory, recorder));
+    }
+
+    @Test
+    public void testBonusWithoutIndex() {
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> journal.appendBonusAdded(EntityId.valueOf(1L), new Bonus(-1), 0));
+        }
+    }
+
+    @Test
+    public void testTrackAndReplayInProducer() {
+        Bonus existing = new Bonus(1);
+        Bonus added = new Bonus(2);
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(7L), 1, new ResourceValue(new float[]{0, 0}));
+        producer.addBonus(existing);
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.track(EntityId.valueOf(7L), producer);
+            producer.addBonus(added);
+            journal.appendValue(new ResourceValueDto(EntityId.valueOf(7L), new ResourceValue(new float[]{10, 20}), 50));
+        }
+        ResourcesProducer restored = new ResourcesProducer(EntityId.valueOf(7L), 1, new ResourceValue(new float[]{0, 0}));
+        List<ResourceTransferDto> transfers = new ArrayList<>();
+        ProducerJournalReplayer replayer = new ProducerJournalReplayer(id -> id.equals(EntityId.valueOf(7L)) ? restored : null, i -> i == 2 ? added : null, transfers::add);
+        Assertions.assertEquals(2, ResourceJournal.replay(this.directory, replayer));
+        Assertions.assertEquals(added.getLimit(0), restored.getMax(0), 0.001f);
+        Assertions.assertEquals(10, restored.getResource(0), 0.001f);
+        Assertions.assertTrue(transfers.isEmpty());
+    }
+
+    @Test
+    public void testReplayBonusAtRecordedTime() {
+        Bonus existing = new Bonus(1);
+        Bonus added = new Bonus(2);
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(7L), 1000, new ResourceValue(new float[]{0, 0}));
+        producer.addBonus(existing, 1000);
+        producer.setInitialised();
+        try (ResourceJournal journal = this.journal(4096, 1000)) {
+            journal.track(EntityId.valueOf(7L), producer);
+            producer.addBonus(added, 11_000);
+        }
+        ResourcesProducer restored = new ResourcesProducer(EntityId.valueOf(7L), 1000, new ResourceValue(new float[]{0, 0}));
+        restored.addBonus(existing, 1000);
+        restored.setInitialised();
+        ProducerJournalReplayer replayer = new ProducerJournalReplayer(id -> restored, i -> i == 2 ? added : null, t -> {});
+        Assertions.assertEquals(1, ResourceJournal.replay(this.directory, replayer));
+        Assertions.assertEquals(11_000, restored.getLastUpdate());
+        Assertions.assertEquals(30, producer.getResources(21_000).getValue(0), 0.001f);
+        Assertions.assertEquals(30, restored.getResources(21_000).getValue(0), 0.001f);
+    }
+
+    @Test
+    public void testReplayNoDirectory() {
+        Assertions.assertEquals(0, ResourceJournal.replay(this.directory.resolve("none"), new Recorder()));
+    }
+
+    private ResourceJournal journal(int segmentSize, int groupSize) {
+        return new ResourceJournal(this.directory, segmentSize, groupSize, Duration.ofMillis(10), this.scheduler);
+    }
+
+    private ResourceValueDto value(long time) {
+        return new ResourceValueDto(EntityId.valueOf(1L), new ResourceValue(new float[]{1, 2}), time);
+    }
+
+    private static final class Recorder implements JournalHandler {
+
+        private final List<ResourceTransferDto> transfers = new ArrayList<>();
+
+        private final List<ResourceValueDto> values = new ArrayList<>();
+
+        private final List<String> bonus = new ArrayList<>();
+
+        @Override
+        public void transfer(ResourceTransferDto transfer) {
+            this.transfers.add(transfer);
+        }
+
+        @Override
+        public void value(ResourceValueDto value) {
+            this.values.add(value);
+        }
+
+        @Override
+        public void bonusAdded(EntityId city, int bonusIndex, long time) {
+            this.bonus.add("+" + city.value + ":" + bonusIndex + "@" + time);
+        }
+
+        @Override
+        public void bonusRemoved(EntityId city, int bonusIndex, long time) {
+            this.bonus.add("-" + city.value + ":" + bonusIndex + "@" + time);
+        }
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(int index) {
+            super(new float[]{1, 1}, new float[]{100 + index, 100}, index);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.market;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.TransferCause;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class OrderBookTest {
+
+    private static final int GOLD = 0;
+
+    private static final int WOOD = 1;
+
+    private static ResourcesProducer city(long id, float gold, float wood) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(id), System.currentTimeMillis(), new ResourceValue(new float[]{gold, wood}));
+        producer.addBonus(new Storage());
+        return producer;
+    }
+
+    @Test
+    public void testMatchAtRestingPrice() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer seller = city(1, 0, 50);
+        ResourcesProducer buyer = city(2, 1000, 0);
+        long ask = book.submit(PlayerId.valueOf(1), seller, OrderSide.ASK, 10, 20);
+        Assertions.assertTrue(book.isActive(ask));
+        Assertions.assertEquals(10, book.getBestAsk());
+        Assertions.assertEquals(20, seller.getReserved(WOOD), 0.001f);
+        long bid = book.submit(PlayerId.valueOf(2), buyer, OrderSide.BID, 12, 15);
+        Assertions.assertFalse(book.isActive(bid));
+        Assertions.assertEquals(5, book.getRemaining(ask));
+        Assertions.assertEquals(1000 - 150, buyer.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(15, buyer.getResource(WOOD), 0.001f);
+        Assertions.assertEquals(0, buyer.getReserved(GOLD), 0.001f);
+        Assertions.assertEquals(150, seller.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(35, seller.getResource(WOOD), 0.001f);
+        List<ResourceTransferDto> transfers = book.drainTransfers();
+        Assertions.assertEquals(2, transfers.size());
+        Assertions.assertEquals(new ResourceTransferDto(PlayerId.valueOf(2), PlayerId.valueOf(1), new ResourceValue(new float[]{0, 15}), TransferCause.COMMERCIAL), transfers.get(0));
+        Assertions.assertEquals(new ResourceTransferDto(PlayerId.valueOf(1), PlayerId.valueOf(2), new ResourceValue(new float[]{150, 0}), TransferCause.COMMERCIAL), transfers.get(1));
+        Assertions.assertTrue(book.drainTransfers().isEmpty());
+    }
+
+    @Test
+    public void testPriceTimePriority() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer first = city(1, 0, 10);
+        ResourcesProducer second = city(2, 0, 10);
+        ResourcesProducer cheaper = city(3, 0, 10);
+        ResourcesProducer buyer = city(4, 1000, 0);
+        long a1 = book.submit(PlayerId.valueOf(1), first, OrderSide.ASK, 20, 10);
+        long a2 = book.submit(PlayerId.valueOf(2), second, OrderSide.ASK, 20, 10);
+        long a3 = book.submit(PlayerId.valueOf(3), cheaper, OrderSide.ASK, 15, 10);
+        book.submit(PlayerId.valueOf(4), buyer, OrderSide.BID, 20, 15);
+        Assertions.assertFalse(book.isActive(a3));
+        Assertions.assertEquals(5, book.getRemaining(a1));
+        Assertions.assertEquals(10, book.getRemaining(a2));
+        Assertions.assertEquals(15 * 10 + 20 * 5, 1000 - buyer.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(15, book.getQuantity(OrderSide.ASK, 20));
+    }
+
+    @Test
+    public void testRefusedWithoutResources() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer buyer = city(1, 10, 0);
+        Assertions.assertEquals(OrderBook.REFUSED, book.submit(PlayerId.valueOf(1), buyer, OrderSide.BID, 5, 3));
+        Assertions.assertEquals(-1, book.getBestBid());
+    }
+
+    @Test
+    public void testCancelReleasesReservation() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer buyer = city(1, 100, 0);
+        long bid = book.submit(PlayerId.valueOf(1), buyer, OrderSide.BID, 5, 10);
+        Assertions.assertEquals(50, buyer.getReserved(GOLD), 0.001f);
+        Assertions.assertFalse(buyer.canBuy(new ResourceValue(new float[]{60, 0})));
+        Assertions.assertTrue(book.cancel(bid));
+        Assertions.assertFalse(book.cancel(bid));
+        Assertions.assertEquals(0, buyer.getReserved(GOLD), 0.001f);
+        Assertions.assertEquals(-1, book.getBestBid());
+    }
+
+    @Test
+    public void testSellerFailingRemovedWithoutLoss() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer failing = city(1, 0, 10);
+        ResourcesProducer seller = city(2, 0, 10);
+        ResourcesProducer buyer = city(3, 1000, 0);
+        long a1 = book.submit(PlayerId.valueOf(1), failing, OrderSide.ASK, 20, 10);
+        long a2 = book.submit(PlayerId.valueOf(2), seller, OrderSide.ASK, 20, 10);
+        failing.setNewValues(failing.getLastUpdate(), new ResourceValue(new float[]{0, 0}));
+        long bid = book.submit(PlayerId.valueOf(3), buyer, OrderSide.BID, 20, 15);
+        Assertions.assertNotEquals(OrderBook.REFUSED, bid);
+        Assertions.assertFalse(book.isActive(a1));
+        Assertions.assertFalse(book.isActive(a2));
+        Assertions.assertEquals(5, book.getRemaining(bid));
+        Assertions.assertEquals(1000 - 200, buyer.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(100, buyer.getReserved(GOLD), 0.001f);
+        Assertions.assertEquals(10, buyer.getResource(WOOD), 0.001f);
+        Assertions.assertEquals(0, failing.getReserved(WOOD), 0.001f);
+        Assertions.assertEquals(0, failing.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(200, seller.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(2, book.drainTransfers().size());
+    }
+
+    @Test
+    public void testBuyerFailingRemovedWithoutLoss() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer buyer = city(1, 100, 0);
+        ResourcesProducer seller = city(2, 0, 10);
+        long bid = book.submit(PlayerId.valueOf(1), buyer, OrderSide.BID, 10, 10);
+        buyer.setNewValues(buyer.getLastUpdate(), new ResourceValue(new float[]{20, 0}));
+        long ask = book.submit(PlayerId.valueOf(2), seller, OrderSide.ASK, 10, 10);
+        Assertions.assertFalse(book.isActive(bid));
+        Assertions.assertTrue(book.isActive(ask));
+        Assertions.assertEquals(10, book.getRemaining(ask));
+        Assertions.assertEquals(20, buyer.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(0, buyer.getReserved(GOLD), 0.001f);
+        Assertions.assertEquals(10, seller.getResource(WOOD), 0.001f);
+        Assertions.assertTrue(book.drainTransfers().isEmpty());
+    }
+
+    @Test
+    public void testBuyerWithoutRoomRefused() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer seller = city(1, 0, 10);
+        ResourcesProducer buyer = city(2, 1000, 9995);
+        long ask = book.submit(PlayerId.valueOf(1), seller, OrderSide.ASK, 10, 10);
+        Assertions.assertEquals(OrderBook.REFUSED, book.submit(PlayerId.valueOf(2), buyer, OrderSide.BID, 10, 10));
+        Assertions.assertEquals(1000, buyer.getResource(GOLD), 0.001f);
+        Assertions.assertEquals(9995, buyer.getResource(WOOD), 0.001f);
+        Assertions.assertEquals(0, buyer.getReserved(GOLD), 0.001f);
+        Assertions.assertTrue(book.isActive(ask));
+        Assertions.assertEquals(10, seller.getResource(WOOD), 0.001f);
+        Assertions.assertTrue(book.drainTransfers().isEmpty());
+    }
+
+    @Test
+    public void testManyOrders() {
+        OrderBook book = new OrderBook(WOOD, GOLD, 100, 1.0f);
+        ResourcesProducer seller = city(1, 0, 5000);
+        long[] ids = new long[500];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = book.submit(PlayerId.valueOf(1), seller, OrderSide.ASK, 1 + i % 90, 1);
+        }
+        for (int i = 0; i < ids.length; i += 2) {
+            Assertions.assertTrue(book.cancel(ids[i]));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            Assertions.assertEquals(i % 2 == 1, book.isActive(ids[i]));
+        }
+        Assertions.assertEquals(250, seller.getReserved(WOOD), 0.001f);
+    }
+
+    @Test
+    public void testMarketSeparateBooks() {
+        CommercialMarket market = new CommercialMarket(2, GOLD, 100, 0.5f);
+        ResourcesProducer seller = city(1, 0, 10);
+        ResourcesProducer buyer = city(2, 100, 0);
+        market.submit(WOOD, PlayerId.valueOf(1), seller, OrderSide.ASK, 10, 4);
+        market.submit(WOOD, PlayerId.valueOf(2), buyer, OrderSide.BID, 10, 4);
+        Assertions.assertEquals(2, market.drainTransfers().size());
+        Assertions.assertEquals(80, buyer.getResource(GOLD), 0.001f);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> market.getBook(GOLD));
+    }
+
+    private static final class Storage extends BonusResources {
+
+        private Storage() {
+            super(new float[]{0, 0}, new float[]{10000, 10000}, 1);
+        }
+    }
+}
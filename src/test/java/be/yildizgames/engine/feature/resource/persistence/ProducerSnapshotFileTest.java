@@ -0,0 +1,121 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceSnapshot;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ProducerSnapshotFileTest {
+
+    private static final Map<Integer, BonusResources> BONUS = Map.of(1, new Bonus(1), 2, new Bonus(2));
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        Path file = Files.createTempFile("producers", ".snap");
+        try {
+            List<ResourcesProducer> producers = new ArrayList<>();
+            for (int i = 10; i > 0; i--) {
+                ResourcesProducer p = new ResourcesProducer(EntityId.valueOf(i), 1000 + i, new ResourceValue(new float[]{i, 2 * i}));
+                p.addBonus(BONUS.get(1));
+                if (i % 2 == 0) {
+                    p.addBonus(BONUS.get(2));
+                }
+                p.addBonus(new Bonus(new float[]{1, 1}, new float[]{1, 1}));
+                if (i != 5) {
+                    p.setInitialised();
+                }
+                producers.add(p);
+            }
+            List<ResourceSnapshot> snapshots = new ArrayList<>();
+            producers.forEach(p -> snapshots.add(p.getSnapshot()));
+            ProducerSnapshotFile.write(file, snapshots);
+
+            ProducerSnapshotFile f = ProducerSnapshotFile.open(file);
+            Assertions.assertEquals(10, f.size());
+            Assertions.assertEquals(EntityId.valueOf(1L), f.getCities().get(0));
+            Assertions.assertFalse(f.contains(EntityId.valueOf(11L)));
+            Assertions.assertNull(f.load(EntityId.valueOf(11L), BONUS::get));
+            for (ResourcesProducer expected : producers) {
+                ResourcesProducer loaded = f.load(expected.getCity(), BONUS::get);
+                Assertions.assertEquals(expected.getLastUpdate(), loaded.getLastUpdate());
+                Assertions.assertEquals(expected.getSnapshot().isInitialized(), loaded.getSnapshot().isInitialized());
+                Assertions.assertArrayEquals(expected.getSnapshot().getBonusIndexes(), loaded.getSnapshot().getBonusIndexes());
+                Assertions.assertEquals(expected.getSnapshot().getValue(1), loaded.getSnapshot().getValue(1));
+                Assertions.assertEquals(expected.getRatios(0) - 1, loaded.getRatios(0), 0.0001f);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path file = Files.createTempFile("producers", ".snap");
+        try {
+            ProducerSnapshotFile.write(file, List.of());
+            Assertions.assertEquals(0, ProducerSnapshotFile.open(file).size());
+            Assertions.assertFalse(ProducerSnapshotFile.open(file).contains(EntityId.valueOf(1L)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testNotSnapshotFile() throws IOException {
+        Path file = Files.createTempFile("producers", ".snap");
+        try {
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+            Assertions.assertThrows(IllegalArgumentException.class, () -> ProducerSnapshotFile.open(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(int index) {
+            super(new float[]{index, index}, new float[]{100, 100}, index);
+        }
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
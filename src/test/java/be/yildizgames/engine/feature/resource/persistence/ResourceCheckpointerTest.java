@@ -0,0 +1,168 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceCheckpointerTest {
+
+    private Path directory;
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = Files.createTempDirectory("checkpoint");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        this.scheduler.shutdownNow();
+        try (Stream<Path> s = Files.walk(this.directory)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testIncremental() {
+        List<ResourcesProducer> producers = producers(5);
+        ResourceCheckpointer checkpointer = new ResourceCheckpointer(this.directory, Duration.ofSeconds(10), this.scheduler);
+        producers.forEach(checkpointer::track);
+        Path first = checkpointer.checkpoint();
+        Assertions.assertEquals(5, ProducerSnapshotFile.open(first).size());
+        Assertions.assertNull(checkpointer.checkpoint());
+        producers.get(2).setNewValues(50, new ResourceValue(new float[]{7, 8}));
+        Assertions.assertEquals(1, checkpointer.getChangedCount());
+        Path second = checkpointer.checkpoint();
+        Assertions.assertEquals(List.of(EntityId.valueOf(3L)), ProducerSnapshotFile.open(second).getCities());
+
+        ResourceCheckpoints checkpoints = ResourceCheckpoints.open(this.directory);
+        Assertions.assertEquals(5, checkpoints.getCities().size());
+        Assertions.assertEquals(7f, checkpoints.load(EntityId.valueOf(3L), i -> null).getResource(0));
+        Assertions.assertEquals(50, checkpoints.load(EntityId.valueOf(3L), i -> null).getLastUpdate());
+        Assertions.assertEquals(1f, checkpoints.load(EntityId.valueOf(1L), i -> null).getResource(0));
+        Assertions.assertNull(checkpoints.load(EntityId.valueOf(9L), i -> null));
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        List<ResourcesProducer> producers = producers(3);
+        ResourceCheckpointer checkpointer = new ResourceCheckpointer(this.directory, Duration.ofSeconds(10), this.scheduler);
+        producers.forEach(checkpointer::track);
+        checkpointer.checkpoint();
+        producers.get(0).setNewValues(50, new ResourceValue(new float[]{7, 8}));
+        checkpointer.checkpoint();
+        checkpointer.untrack(producers.get(1));
+        Path compacted = checkpointer.compact();
+        try (Stream<Path> s = Files.list(this.directory)) {
+            Assertions.assertEquals(List.of(compacted), s.collect(Collectors.toList()));
+        }
+        ResourceCheckpoints checkpoints = ResourceCheckpoints.open(this.directory);
+        Assertions.assertEquals(List.of(EntityId.valueOf(1L), EntityId.valueOf(3L)), checkpoints.getCities());
+        Assertions.assertEquals(7f, checkpoints.load(EntityId.valueOf(1L), i -> null).getResource(0));
+        Assertions.assertNull(checkpointer.checkpoint());
+    }
+
+    @Test
+    public void testNumberingContinueAfterRestart() {
+        List<ResourcesProducer> producers = producers(2);
+        ResourceCheckpointer checkpointer = new ResourceCheckpointer(this.directory, Duration.ofSeconds(10), this.scheduler);
+        producers.forEach(checkpointer::track);
+        Path first = checkpointer.checkpoint();
+        ResourceCheckpointer restarted = new ResourceCheckpointer(this.directory, Duration.ofSeconds(10), this.scheduler);
+        restarted.track(producers.get(0));
+        Path second = restarted.checkpoint();
+        Assertions.assertNotEquals(first, second);
+        Assertions.assertTrue(second.getFileName().toString().compareTo(first.getFileName().toString()) > 0);
+    }
+
+    @Test
+    public void testCheckpointWhileModified() throws Exception {
+        List<ResourcesProducer> producers = producers(50);
+        ResourceCheckpointer checkpointer = new ResourceCheckpointer(this.directory, Duration.ofSeconds(10), this.scheduler);
+        producers.forEach(checkpointer::track);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch firstPass = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            long time = 10;
+            while (running.get()) {
+                for (ResourcesProducer p : producers) {
+                    p.setNewValues(time, new ResourceValue(new float[]{time, time}));
+                }
+                firstPass.countDown();
+                time++;
+            }
+        });
+        writer.start();
+        Assertions.assertTrue(firstPass.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            checkpointer.checkpoint();
+        }
+        running.set(false);
+        writer.join();
+        checkpointer.checkpoint();
+        ResourceCheckpoints checkpoints = ResourceCheckpoints.open(this.directory);
+        for (ResourcesProducer p : producers) {
+            ResourcesProducer loaded = checkpoints.load(p.getCity(), i -> null);
+            Assertions.assertEquals(p.getLastUpdate(), loaded.getLastUpdate());
+            Assertions.assertEquals(loaded.getLastUpdate(), loaded.getResource(0), 0.001f);
+        }
+    }
+
+    private static List<ResourcesProducer> producers(int size) {
+        List<ResourcesProducer> result = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            result.add(new ResourcesProducer(EntityId.valueOf(i), 1, new ResourceValue(new float[]{i, i})));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceHistoryStoreTest {
+
+    private static final EntityId CITY = EntityId.valueOf(7);
+
+    @Test
+    public void testScanRange() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 16, 4096)) {
+            for (int i = 0; i < 100; i++) {
+                store.append(point(CITY, 1000L + i * 1000, i));
+                store.append(point(EntityId.valueOf(8), 1000L + i * 1000, -i));
+            }
+            List<ResourceValueDto> result = store.scan(CITY, 11000, 20000);
+            Assertions.assertEquals(10, result.size());
+            Assertions.assertEquals(point(CITY, 11000, 10), result.get(0));
+            Assertions.assertEquals(point(CITY, 20000, 19), result.get(9));
+            Assertions.assertEquals(100, store.scan(CITY, 0, Long.MAX_VALUE).size());
+            Assertions.assertTrue(store.scan(EntityId.valueOf(9), 0, Long.MAX_VALUE).isEmpty());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        try {
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 16, 1024)) {
+                for (int i = 0; i < 200; i++) {
+                    store.append(point(CITY, 1000L + i * 500 + (i % 3), i));
+                }
+            }
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 16, 1024)) {
+                List<ResourceValueDto> result = store.scan(CITY, 0, Long.MAX_VALUE);
+                Assertions.assertEquals(200, result.size());
+                for (int i = 0; i < 200; i++) {
+                    Assertions.assertEquals(point(CITY, 1000L + i * 500 + (i % 3), i), result.get(i));
+                }
+                Assertions.assertThrows(IllegalArgumentException.class, () -> store.append(point(CITY, 10, 0)));
+                store.append(point(CITY, 1_000_000, 1));
+                Assertions.assertEquals(201, store.scan(CITY, 0, Long.MAX_VALUE).size());
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new ResourceHistoryStore(dir, 4, 16, 1024));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testDownsample() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3)) {
+            for (int i = 0; i < 60; i++) {
+                store.append(point(CITY, i * 1000L, i));
+            }
+            List<ResourceValueDto> result = store.downsample(CITY, 0, 59000, 10000);
+            Assertions.assertEquals(6, result.size());
+            Assertions.assertEquals(10000, result.get(1).time);
+            Assertions.assertEquals(14.5f, result.get(1).resources.getValue(0), 0.001f);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 10, 120, 1024 * 1024)) {
+            float[] values = new float[10];
+            for (int i = 0; i < 1200; i++) {
+                values[i % 10] += 1.5f;
+                store.append(new ResourceValueDto(CITY, new ResourceValue(values), i * 60_000L));
+            }
+            store.flush();
+            long raw = 1200L * (8 + 10 * 4);
+            Assertions.assertTrue(store.getDiskUsage() * 3 < raw, "Disk usage: " + store.getDiskUsage());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testFlushKeepsChunkOpen() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        Path reference = Files.createTempDirectory("history");
+        try {
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 16, 4096);
+                 ResourceHistoryStore unflushed = new ResourceHistoryStore(reference, 3, 16, 4096)) {
+                for (int i = 0; i < 20; i++) {
+                    store.append(point(CITY, 1000L + i * 1000, i));
+                    unflushed.append(point(CITY, 1000L + i * 1000, i));
+                    store.flush();
+                }
+                long sealed = store.getDiskUsage();
+                Assertions.assertEquals(unflushed.getDiskUsage(), sealed);
+                for (int i = 20; i < 24; i++) {
+                    store.append(point(CITY, 1000L + i * 1000, i));
+                }
+                store.flush();
+                Assertions.assertEquals(sealed, store.getDiskUsage());
+            }
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 16, 4096)) {
+                List<ResourceValueDto> result = store.scan(CITY, 0, Long.MAX_VALUE);
+                Assertions.assertEquals(24, result.size());
+                Assertions.assertEquals(point(CITY, 24000, 23), result.get(23));
+                for (int i = 24; i < 32; i++) {
+                    store.append(point(CITY, 1000L + i * 1000, i));
+                }
+                Assertions.assertEquals(32, store.scan(CITY, 0, Long.MAX_VALUE).size());
+            }
+        } finally {
+            delete(dir);
+            delete(reference);
+        }
+    }
+
+    @Test
+    public void testSameTimeRejected() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        try {
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 4, 4096)) {
+                for (int i = 1; i <= 4; i++) {
+                    store.append(point(CITY, i * 1000L, i));
+                }
+                Assertions.assertThrows(IllegalArgumentException.class, () -> store.append(point(CITY, 4000, 5)));
+                store.append(point(CITY, 5000, 5));
+                Assertions.assertThrows(IllegalArgumentException.class, () -> store.append(point(CITY, 5000, 6)));
+            }
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 4, 4096)) {
+                List<ResourceValueDto> result = store.scan(CITY, 0, Long.MAX_VALUE);
+                Assertions.assertEquals(5, result.size());
+                Assertions.assertEquals(point(CITY, 5000, 5), result.get(4));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testFlushAppendsNewPoints() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        Path log = dir.resolve("history-open.part");
+        try {
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 64, 4096)) {
+                for (int c = 0; c < 50; c++) {
+                    store.append(point(EntityId.valueOf(c), 1000, c));
+                }
+                store.flush();
+                long size = Files.size(log);
+                store.append(point(CITY, 2000, 1));
+                store.flush();
+                Assertions.assertEquals(size + 28, Files.size(log));
+            }
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+            }
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 64, 4096)) {
+                Assertions.assertEquals(2, store.scan(CITY, 0, Long.MAX_VALUE).size());
+                store.append(point(CITY, 3000, 2));
+            }
+            try (ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 64, 4096)) {
+                Assertions.assertEquals(3, store.scan(CITY, 0, Long.MAX_VALUE).size());
+                Assertions.assertEquals(1, store.scan(EntityId.valueOf(49), 0, Long.MAX_VALUE).size());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testClosed() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        try {
+            ResourceHistoryStore store = new ResourceHistoryStore(dir, 3, 16, 4096);
+            store.append(point(CITY, 1000, 1));
+            store.close();
+            store.close();
+            Assertions.assertThrows(IllegalStateException.class, () -> store.append(point(CITY, 2000, 2)));
+            Assertions.assertThrows(IllegalStateException.class, () -> store.scan(CITY, 0, Long.MAX_VALUE));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static ResourceValueDto point(EntityId city, long time, float base) {
+        return new ResourceValueDto(city, new ResourceValue(new float[]{base, base * 2.5f, 100}), time);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.persistence;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.provider.CachingResourceOwnerProvider;
+import be.yildizgames.engine.feature.resource.provider.InMemoryResourceOwnerLoader;
+import be.yildizgames.engine.feature.resource.provider.ResourceOwnerRemovalListener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class WriteBehindFlusherTest {
+
+    private static ResourcesProducer producer(long id) {
+        return new ResourcesProducer(EntityId.valueOf(id), 10, new ResourceValue(new float[]{10, 10}));
+    }
+
+    @Test
+    public void testOnlyModifiedFlushed() {
+        List<List<ResourceValueDto>> written = new ArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WriteBehindFlusher flusher = new WriteBehindFlusher(written::add, 10, Duration.ofMinutes(1), scheduler);
+            ResourcesProducer p1 = producer(1);
+            ResourcesProducer p2 = producer(2);
+            ResourcesProducer p3 = producer(3);
+            flusher.track(p1);
+            flusher.track(p2);
+            flusher.track(p3);
+            Assertions.assertTrue(p1.buy(new ResourceValue(new float[]{1, 1})));
+            Assertions.assertFalse(p2.buy(new ResourceValue(new float[]{100, 1})));
+            p3.steal(new ResourceValue(new float[]{5, 0}));
+            Assertions.assertTrue(p1.isDirty());
+            Assertions.assertFalse(p2.isDirty());
+            Assertions.assertEquals(2, flusher.getPendingCount());
+            flusher.flush();
+            Assertions.assertEquals(1, written.size());
+            Assertions.assertEquals(2, written.get(0).size());
+            Assertions.assertTrue(written.get(0).contains(new ResourceValueDto(EntityId.valueOf(1), new ResourceValue(new float[]{9, 9}), 10)));
+            Assertions.assertTrue(written.get(0).contains(new ResourceValueDto(EntityId.valueOf(3), new ResourceValue(new float[]{5, 10}), 10)));
+            Assertions.assertFalse(p1.isDirty());
+            flusher.flush();
+            Assertions.assertEquals(1, written.size());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFullBatchFlushedImmediately() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<List<ResourceValueDto>> written = new ArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WriteBehindFlusher flusher = new WriteBehindFlusher(v -> {
+                written.add(v);
+                latch.countDown();
+            }, 2, Duration.ofMinutes(1), scheduler);
+            flusher.start();
+            ResourcesProducer p1 = producer(1);
+            ResourcesProducer p2 = producer(2);
+            flusher.track(p1);
+            flusher.track(p2);
+            p1.add(new ResourceValue(new float[]{1, 1}));
+            p1.add(new ResourceValue(new float[]{1, 1}));
+            Assertions.assertEquals(1, flusher.getPendingCount());
+            p2.add(new ResourceValue(new float[]{1, 1}));
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, written.get(0).size());
+            flusher.stop();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedBatchRetried() {
+        List<List<ResourceValueDto>> written = new ArrayList<>();
+        boolean[] fail = {true};
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WriteBehindFlusher flusher = new WriteBehindFlusher(v -> {
+                if (fail[0]) {
+                    throw new IllegalStateException("Store unavailable");
+                }
+                written.add(v);
+            }, 10, Duration.ofMinutes(1), scheduler);
+            ResourcesProducer p1 = producer(1);
+            flusher.track(p1);
+            p1.add(new ResourceValue(new float[]{1, 1}));
+            flusher.flush();
+            Assertions.assertEquals(1, flusher.getPendingCount());
+            fail[0] = false;
+            flusher.flush();
+            Assertions.assertEquals(1, written.size());
+            Assertions.assertEquals(0, flusher.getPendingCount());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedBatchNotEvicted() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        for (long i = 1; i <= 20; i++) {
+            ResourcesProducer producer = producer(i);
+            loader.register(EntityId.valueOf(i), () -> producer);
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WriteBehindFlusher flusher = new WriteBehindFlusher(v -> {
+                throw new IllegalStateException("Store unavailable");
+            }, 10, Duration.ofMinutes(1), scheduler);
+            CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 5, o -> 1, Runnable::run, ResourceOwnerRemovalListener.NONE);
+            ResourcesProducer p1 = provider.getOwnerById(EntityId.valueOf(1L)).getProducer();
+            flusher.track(p1);
+            p1.add(new ResourceValue(new float[]{1, 1}));
+            flusher.flush();
+            Assertions.assertTrue(p1.isDirty());
+            for (long i = 2; i <= 20; i++) {
+                provider.getOwnerById(EntityId.valueOf(i));
+            }
+            Assertions.assertTrue(provider.isCached(EntityId.valueOf(1L)));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
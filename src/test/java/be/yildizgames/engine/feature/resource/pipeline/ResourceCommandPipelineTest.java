@@ -0,0 +1,217 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.pipeline;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceCommandPipelineTest {
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        Map<EntityId, ResourcesProducer> producers = producers(4, 0);
+        try (ResourceCommandPipeline pipeline = new ResourceCommandPipeline(producers::get, 2, 16, 4, Thread::new)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        pipeline.add(EntityId.valueOf(1L + i % 4), new ResourceValue(new float[]{1, 2}), CommandCallback.NONE);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+        }
+        for (ResourcesProducer p : producers.values()) {
+            Assertions.assertEquals(1000f, p.getSnapshot().getValue(0));
+            Assertions.assertEquals(2000f, p.getSnapshot().getValue(1));
+        }
+    }
+
+    @Test
+    public void testBuyAndSteal() throws Exception {
+        Map<EntityId, ResourcesProducer> producers = producers(1, 10);
+        try (ResourceCommandPipeline pipeline = new ResourceCommandPipeline(producers::get, 1, Thread::new)) {
+            Assertions.assertTrue(this.call(c -> pipeline.buy(EntityId.valueOf(1L), new ResourceValue(new float[]{4, 4}), c)).success);
+            Assertions.assertFalse(this.call(c -> pipeline.buy(EntityId.valueOf(1L), new ResourceValue(new float[]{7, 7}), c)).success);
+            Result stolen = this.call(c -> pipeline.steal(EntityId.valueOf(1L), new ResourceValue(new float[]{2, 2}), c));
+            Assertions.assertTrue(stolen.success);
+            Assertions.assertEquals(2f, stolen.amount.getValue(0));
+            Assertions.assertFalse(this.call(c -> pipeline.add(EntityId.valueOf(9L), new ResourceValue(new float[]{1, 1}), c)).success);
+        }
+        Assertions.assertEquals(4f, producers.get(EntityId.valueOf(1L)).getSnapshot().getValue(0));
+    }
+
+    @Test
+    public void testTransferBetweenShards() throws Exception {
+        Map<EntityId, ResourcesProducer> producers = producers(8, 100);
+        try (ResourceCommandPipeline pipeline = new ResourceCommandPipeline(producers::get, 4, Thread::new)) {
+            AtomicInteger done = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(70);
+            for (int i = 0; i < 70; i++) {
+                EntityId giver = EntityId.valueOf(1L + i % 8);
+                EntityId receiver = EntityId.valueOf(1L + (i + 3) % 8);
+                pipeline.transfer(giver, receiver, new ResourceValue(new float[]{10, 0}), (s, a) -> {
+                    if (s) {
+                        done.incrementAndGet();
+                    }
+                    latch.countDown();
+                });
+            }
+            Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Assertions.assertFalse(this.call(c -> pipeline.transfer(EntityId.valueOf(1L), EntityId.valueOf(99L), new ResourceValue(new float[]{1, 0}), c)).success);
+            Assertions.assertEquals(70, done.get());
+        }
+        float total = 0;
+        for (ResourcesProducer p : producers.values()) {
+            total += p.getSnapshot().getValue(0);
+        }
+        Assertions.assertEquals(800f, total);
+    }
+
+    @Test
+    public void testCloseDuringTransfers() {
+        Map<EntityId, ResourcesProducer> producers = producers(8, 1000);
+        AtomicInteger completed = new AtomicInteger();
+        ResourceCommandPipeline pipeline = new ResourceCommandPipeline(producers::get, 4, 64, 4, Thread::new);
+        for (int i = 0; i < 2000; i++) {
+            EntityId giver = EntityId.valueOf(1L + i % 8);
+            EntityId receiver = EntityId.valueOf(1L + (i + 5) % 8);
+            pipeline.transfer(giver, receiver, new ResourceValue(new float[]{1, 0}), (s, a) -> completed.incrementAndGet());
+        }
+        pipeline.close();
+        Assertions.assertEquals(2000, completed.get());
+        float total = 0;
+        for (ResourcesProducer p : producers.values()) {
+            total += p.getSnapshot().getValue(0);
+        }
+        Assertions.assertEquals(8000f, total);
+    }
+
+    @Test
+    public void testTransferRefundedWhenReceiverRemoved() throws Exception {
+        Map<EntityId, ResourcesProducer> producers = producers(2, 10);
+        AtomicInteger lookups = new AtomicInteger();
+        Function<EntityId, ResourcesProducer> lookup = id -> id.equals(EntityId.valueOf(2L)) && lookups.incrementAndGet() > 1 ? null : producers.get(id);
+        try (ResourceCommandPipeline pipeline = new ResourceCommandPipeline(lookup, 2, Thread::new)) {
+            Assertions.assertFalse(this.call(c -> pipeline.transfer(EntityId.valueOf(1L), EntityId.valueOf(2L), new ResourceValue(new float[]{4, 0}), c)).success);
+        }
+        Assertions.assertEquals(10f, producers.get(EntityId.valueOf(1L)).getSnapshot().getValue(0));
+        Assertions.assertEquals(10f, producers.get(EntityId.valueOf(2L)).getSnapshot().getValue(0));
+    }
+
+    @Test
+    public void testFailingCallback() throws Exception {
+        Map<EntityId, ResourcesProducer> producers = producers(1, 0);
+        try (ResourceCommandPipeline pipeline = new ResourceCommandPipeline(producers::get, 1, 4, 4, Thread::new)) {
+            for (int i = 0; i < 10; i++) {
+                pipeline.add(EntityId.valueOf(1L), new ResourceValue(new float[]{1, 1}), (s, a) -> {
+                    throw new IllegalStateException("callback");
+                });
+            }
+            Assertions.assertTrue(this.call(c -> pipeline.add(EntityId.valueOf(1L), new ResourceValue(new float[]{1, 1}), c)).success);
+        }
+        Assertions.assertEquals(11f, producers.get(EntityId.valueOf(1L)).getSnapshot().getValue(0));
+    }
+
+    @Test
+    public void testBonus() throws Exception {
+        Map<EntityId, ResourcesProducer> producers = producers(1, 0);
+        BonusResources bonus = new Bonus(new float[]{2, 2}, new float[]{0, 0});
+        try (ResourceCommandPipeline pipeline = new ResourceCommandPipeline(producers::get, 1, Thread::new)) {
+            Assertions.assertTrue(this.call(c -> pipeline.addBonus(EntityId.valueOf(1L), bonus, c)).success);
+            Assertions.assertEquals(2f, producers.get(EntityId.valueOf(1L)).getRatios(0));
+            Assertions.assertTrue(this.call(c -> pipeline.removeBonus(EntityId.valueOf(1L), bonus, c)).success);
+            Assertions.assertEquals(0f, producers.get(EntityId.valueOf(1L)).getRatios(0));
+        }
+    }
+
+    @Test
+    public void testInvalidRingSize() {
+        Map<EntityId, ResourcesProducer> producers = producers(1, 0);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ResourceCommandPipeline(producers::get, 1, 10, 4, Thread::new));
+    }
+
+    private Result call(Consumer<CommandCallback> command) throws InterruptedException {
+        AtomicReference<Result> result = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        command.accept((s, a) -> {
+            result.set(new Result(s, a));
+            latch.countDown();
+        });
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private static Map<EntityId, ResourcesProducer> producers(int count, float value) {
+        Map<EntityId, ResourcesProducer> result = new ConcurrentHashMap<>();
+        for (int i = 1; i <= count; i++) {
+            ResourcesProducer p = new ResourcesProducer(EntityId.valueOf(i), 1, new ResourceValue(new float[]{value, value}));
+            p.addBonus(new Bonus(new float[]{0, 0}, new float[]{1_000_000, 1_000_000}));
+            result.put(EntityId.valueOf(i), p);
+        }
+        return result;
+    }
+
+    private static final class Result {
+
+        private final boolean success;
+
+        private final ResourceValue amount;
+
+        private Result(boolean success, ResourceValue amount) {
+            this.success = success;
+            this.amount = amount;
+        }
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.protocol.mapper;
+
+import be.yildizgames.common.mapping.Separator;
+import be.yildizgames.engine.feature.resource.ResourceTypeRegistry;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class FixedWidthResourceValueMapperTest extends BaseMapperTest<ResourceValue> {
+
+    private static final float[] f = {1000,100,410};
+
+    public FixedWidthResourceValueMapperTest() {
+        super(new FixedWidthResourceValueMapper(registry()), new ResourceValue(f));
+    }
+
+    @Test
+    public void noSizePrefix() {
+        FixedWidthResourceValueMapper mapper = new FixedWidthResourceValueMapper(registry());
+        Assertions.assertEquals(3, mapper.to(new ResourceValue(f)).split(Separator.VAR_SEPARATOR).length);
+    }
+
+    @Test
+    public void wrongWidth() {
+        FixedWidthResourceValueMapper mapper = new FixedWidthResourceValueMapper(registry());
+        Assertions.assertThrows(MappingException.class, () -> mapper.to(new ResourceValue(new float[]{1, 2})));
+    }
+
+    private static ResourceTypeRegistry registry() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry();
+        registry.register("metal");
+        registry.register("energy");
+        registry.register("food");
+        registry.freeze();
+        return registry;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.protocol.mapper;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceValueDtoImporterTest {
+
+    @Test
+    public void testImportInParallel() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 1000; i++) {
+            content.append(ResourceValueDtoMapper.getInstance().to(new ResourceValueDto(EntityId.valueOf(i), new ResourceValue(new float[]{i, 2 * i}), 10 + i)));
+            content.append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Path file = this.write(content.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Map<EntityId, ResourcesProducer> storage = new ConcurrentHashMap<>();
+            AtomicLong progress = new AtomicLong();
+            ImportResult result = new ResourceValueDtoImporter(pool, 100, 10).importProducers(file, p -> storage.put(p.getCity(), p), (done, total) -> {
+                Assertions.assertTrue(done <= total);
+                progress.accumulateAndGet(done, Math::max);
+            });
+            Assertions.assertEquals(1000, result.getImported());
+            Assertions.assertFalse(result.hasErrors());
+            Assertions.assertEquals(1000, storage.size());
+            Assertions.assertEquals(Files.size(file), progress.get());
+            ResourcesProducer p = storage.get(EntityId.valueOf(500L));
+            Assertions.assertEquals(510, p.getLastUpdate());
+            Assertions.assertEquals(1000f, p.getSnapshot().getValue(1));
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testErrorsCollected() throws IOException {
+        String valid = ResourceValueDtoMapper.getInstance().to(new ResourceValueDto(EntityId.valueOf(1L), new ResourceValue(new float[]{1}), 10));
+        Path file = this.write(valid + "\nbad\n\n" + valid + "\nworse\nagain");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ImportResult result = new ResourceValueDtoImporter(pool, 8, 2).importValues(file, d -> {}, (done, total) -> {});
+            Assertions.assertEquals(2, result.getImported());
+            Assertions.assertEquals(3, result.getErrorCount());
+            Assertions.assertEquals(2, result.getErrors().size());
+            Assertions.assertTrue(result.getErrors().get(0).getMessage().contains("bad"));
+            Assertions.assertTrue(result.getErrors().get(1).getMessage().contains("worse"));
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Path file = this.write("");
+        try {
+            ImportResult result = new ResourceValueDtoImporter().importValues(file, d -> Assertions.fail("No value expected"), (done, total) -> {});
+            Assertions.assertEquals(0, result.getImported());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile("values", ".txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
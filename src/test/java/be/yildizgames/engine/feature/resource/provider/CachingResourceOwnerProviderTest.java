@@ -0,0 +1,309 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.provider;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceOwner;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class CachingResourceOwnerProviderTest {
+
+    private static ResourceOwner owner(long id) {
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(id), 10, new ResourceValue(new float[]{1, 2}));
+        return () -> producer;
+    }
+
+    @Test
+    public void testLoadOnMissThenHit() {
+        AtomicInteger loads = new AtomicInteger();
+        ResourceOwner owner = owner(1);
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(id -> {
+            loads.incrementAndGet();
+            return owner;
+        }, 10, o -> 1);
+        Assertions.assertSame(owner, provider.getOwnerById(EntityId.valueOf(1)));
+        Assertions.assertSame(owner, provider.getOwnerById(EntityId.valueOf(1)));
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertTrue(provider.isCached(EntityId.valueOf(1)));
+    }
+
+    @Test
+    public void testUnknownNotCached() {
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(id -> null, 10, o -> 1);
+        Assertions.assertNull(provider.getOwnerById(EntityId.valueOf(1)));
+        Assertions.assertEquals(0, provider.size());
+    }
+
+    @Test
+    public void testBudgetRespected() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        for (long i = 1; i <= 1000; i++) {
+            loader.register(EntityId.valueOf(i), owner(i));
+        }
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 100, o -> 1);
+        for (long i = 1; i <= 1000; i++) {
+            Assertions.assertNotNull(provider.getOwnerById(EntityId.valueOf(i)));
+        }
+        Assertions.assertTrue(provider.weightedSize() <= 100);
+        Assertions.assertEquals(provider.weightedSize(), provider.size());
+    }
+
+    @Test
+    public void testFrequentOwnersSurviveScan() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        for (long i = 1; i <= 2000; i++) {
+            loader.register(EntityId.valueOf(i), owner(i));
+        }
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 100, o -> 1);
+        for (int round = 0; round < 20; round++) {
+            for (long i = 1; i <= 10; i++) {
+                provider.getOwnerById(EntityId.valueOf(i));
+            }
+        }
+        for (long i = 100; i <= 2000; i++) {
+            provider.getOwnerById(EntityId.valueOf(i));
+        }
+        for (long i = 1; i <= 10; i++) {
+            Assertions.assertTrue(provider.isCached(EntityId.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testInvalidate() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        loader.register(EntityId.valueOf(1), owner(1));
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 10, o -> 1);
+        provider.getOwnerById(EntityId.valueOf(1));
+        provider.invalidate(EntityId.valueOf(1));
+        Assertions.assertFalse(provider.isCached(EntityId.valueOf(1)));
+        Assertions.assertEquals(0, provider.weightedSize());
+    }
+
+    @Test
+    public void testInvalidateNotifiesListener() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        ResourceOwner owner = owner(1);
+        loader.register(EntityId.valueOf(1), owner);
+        List<ResourceOwner> removed = new ArrayList<>();
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 10, o -> 1, Runnable::run, (id, o) -> removed.add(o));
+        provider.getOwnerById(EntityId.valueOf(1));
+        provider.invalidate(EntityId.valueOf(1));
+        Assertions.assertEquals(List.of(owner), removed);
+    }
+
+    @Test
+    public void testDirtyOwnersNotEvicted() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        for (long i = 1; i <= 1000; i++) {
+            loader.register(EntityId.valueOf(i), owner(i));
+        }
+        List<EntityId> removed = new ArrayList<>();
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 100, o -> 1, Runnable::run, (id, o) -> removed.add(id));
+        for (long i = 1; i <= 5; i++) {
+            provider.getOwnerById(EntityId.valueOf(i)).getProducer().add(new ResourceValue(new float[]{1, 1}));
+        }
+        for (long i = 6; i <= 1000; i++) {
+            provider.getOwnerById(EntityId.valueOf(i));
+        }
+        for (long i = 1; i <= 5; i++) {
+            Assertions.assertTrue(provider.isCached(EntityId.valueOf(i)));
+        }
+        Assertions.assertEquals(1000 - provider.size(), removed.size());
+        Assertions.assertTrue(provider.weightedSize() <= 100);
+    }
+
+    @Test
+    public void testPersistedOwnersEvicted() {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        for (long i = 1; i <= 200; i++) {
+            loader.register(EntityId.valueOf(i), owner(i));
+        }
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 10, o -> 1, Runnable::run, ResourceOwnerRemovalListener.NONE);
+        for (long i = 1; i <= 20; i++) {
+            provider.getOwnerById(EntityId.valueOf(i)).getProducer().add(new ResourceValue(new float[]{1, 1}));
+        }
+        Assertions.assertEquals(20, provider.weightedSize());
+        for (long i = 1; i <= 20; i++) {
+            provider.getOwnerById(EntityId.valueOf(i)).getProducer().clearDirty();
+        }
+        for (long i = 21; i <= 200; i++) {
+            provider.getOwnerById(EntityId.valueOf(i));
+            provider.getOwnerById(EntityId.valueOf(i));
+            provider.getOwnerById(EntityId.valueOf(i));
+        }
+        for (long i = 1; i <= 20; i++) {
+            Assertions.assertFalse(provider.isCached(EntityId.valueOf(i)));
+        }
+        Assertions.assertTrue(provider.weightedSize() <= 10);
+    }
+
+    @Test
+    public void testConcurrentHits() throws Exception {
+        InMemoryResourceOwnerLoader loader = new InMemoryResourceOwnerLoader();
+        for (long i = 1; i <= 50; i++) {
+            loader.register(EntityId.valueOf(i), owner(i));
+        }
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 20, o -> 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        long id = 1 + (i * 31L + seed) % (i % 4 == 0 ? 50 : 10);
+                        Assertions.assertNotNull(provider.getOwnerById(EntityId.valueOf(id)));
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertTrue(provider.weightedSize() <= 20);
+        Assertions.assertEquals(provider.weightedSize(), provider.size());
+        for (long i = 1; i <= 10; i++) {
+            Assertions.assertTrue(provider.isCached(EntityId.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testInvalidateDuringLoadFenced() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResourceOwner stale = owner(1);
+        ResourceOwner fresh = owner(1);
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(id -> {
+            if (loads.incrementAndGet() > 1) {
+                return fresh;
+            }
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return stale;
+        }, 10, o -> 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResourceOwner> first = executor.submit(() -> provider.getOwnerById(EntityId.valueOf(1)));
+            started.await(5, TimeUnit.SECONDS);
+            provider.invalidate(EntityId.valueOf(1));
+            release.countDown();
+            Assertions.assertSame(fresh, first.get(5, TimeUnit.SECONDS));
+            Assertions.assertSame(fresh, provider.getOwnerById(EntityId.valueOf(1)));
+            Assertions.assertEquals(2, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentMissesCoalesced() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResourceOwner owner = owner(1);
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(id -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return owner;
+        }, 10, o -> 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<ResourceOwner> first = executor.submit(() -> provider.getOwnerById(EntityId.valueOf(1)));
+            started.await(5, TimeUnit.SECONDS);
+            Future<ResourceOwner> second = executor.submit(() -> provider.getOwnerById(EntityId.valueOf(1)));
+            Future<ResourceOwner> third = executor.submit(() -> provider.getOwnerById(EntityId.valueOf(1)));
+            Thread.sleep(100);
+            release.countDown();
+            Assertions.assertSame(owner, first.get(5, TimeUnit.SECONDS));
+            Assertions.assertSame(owner, second.get(5, TimeUnit.SECONDS));
+            Assertions.assertSame(owner, third.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatchLookupSingleLoad() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger requested = new AtomicInteger();
+        ResourceOwnerLoader loader = new ResourceOwnerLoader() {
+            @Override
+            public ResourceOwner load(EntityId cityId) {
+                throw new AssertionError("Single load not expected");
+            }
+
+            @Override
+            public Map<EntityId, ResourceOwner> loadAll(Collection<EntityId> cityIds) {
+                batches.incrementAndGet();
+                requested.addAndGet(cityIds.size());
+                Map<EntityId, ResourceOwner> result = new HashMap<>();
+                cityIds.stream().filter(id -> !id.equals(EntityId.valueOf(3))).forEach(id -> result.put(id, owner(1)));
+                return result;
+            }
+        };
+        CachingResourceOwnerProvider provider = new CachingResourceOwnerProvider(loader, 10, o -> 1);
+        List<EntityId> ids = Arrays.asList(EntityId.valueOf(2), EntityId.valueOf(1), EntityId.valueOf(3), EntityId.valueOf(2));
+        Map<EntityId, ResourceOwner> result = provider.getOwnersByIds(ids);
+        Assertions.assertEquals(Arrays.asList(EntityId.valueOf(2), EntityId.valueOf(1)), List.copyOf(result.keySet()));
+        Assertions.assertEquals(1, batches.get());
+        Assertions.assertEquals(3, requested.get());
+        Map<EntityId, ResourceOwner> again = provider.getOwnersByIdsAsync(List.of(EntityId.valueOf(1), EntityId.valueOf(4))).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, again.size());
+        Assertions.assertEquals(2, batches.get());
+        Assertions.assertEquals(4, requested.get());
+    }
+}
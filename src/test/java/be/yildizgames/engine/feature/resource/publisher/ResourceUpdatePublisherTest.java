@@ -0,0 +1,146 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.publisher;
+
+import be.yildizgames.common.model.EntityId;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.ResourceValueDto;
+import be.yildizgames.engine.feature.resource.ResourcesProducer;
+import be.yildizgames.engine.feature.resource.bonus.BonusResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class ResourceUpdatePublisherTest {
+
+    @Test
+    public void testConflation() {
+        ResourceUpdatePublisher publisher = new ResourceUpdatePublisher(Runnable::run);
+        Collector collector = new Collector();
+        publisher.subscribe(collector);
+        publisher.submit(dto(1, 10));
+        publisher.submit(dto(2, 5));
+        publisher.submit(dto(1, 20));
+        publisher.submit(dto(1, 30));
+        Assertions.assertTrue(collector.received.isEmpty());
+        collector.subscription.request(10);
+        Assertions.assertEquals(2, collector.received.size());
+        Assertions.assertEquals(dto(1, 30), collector.received.get(0));
+        Assertions.assertEquals(dto(2, 5), collector.received.get(1));
+    }
+
+    @Test
+    public void testDemandHonored() {
+        ResourceUpdatePublisher publisher = new ResourceUpdatePublisher(Runnable::run);
+        Collector collector = new Collector();
+        publisher.subscribe(collector);
+        collector.subscription.request(1);
+        publisher.submit(dto(1, 10));
+        publisher.submit(dto(2, 10));
+        publisher.submit(dto(3, 10));
+        Assertions.assertEquals(1, collector.received.size());
+        collector.subscription.request(1);
+        Assertions.assertEquals(2, collector.received.size());
+        Assertions.assertEquals(dto(2, 10), collector.received.get(1));
+    }
+
+    @Test
+    public void testProducerChangesAndClose() {
+        ResourceUpdatePublisher publisher = new ResourceUpdatePublisher(Runnable::run);
+        ResourcesProducer producer = new ResourcesProducer(EntityId.valueOf(4), 10, new ResourceValue(new float[]{10}));
+        producer.addBonus(new Bonus(new float[]{0}, new float[]{100}));
+        publisher.track(producer);
+        Collector collector = new Collector();
+        publisher.subscribe(collector);
+        Assertions.assertTrue(producer.buy(new ResourceValue(new float[]{2})));
+        Assertions.assertTrue(producer.buy(new ResourceValue(new float[]{3})));
+        publisher.close();
+        Assertions.assertFalse(collector.completed);
+        collector.subscription.request(Long.MAX_VALUE);
+        Assertions.assertEquals(1, collector.received.size());
+        Assertions.assertEquals(5, collector.received.get(0).resources.getValue(0), 0.001f);
+        Assertions.assertTrue(collector.completed);
+        Assertions.assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        ResourceUpdatePublisher publisher = new ResourceUpdatePublisher(Runnable::run);
+        Collector collector = new Collector();
+        publisher.subscribe(collector);
+        collector.subscription.request(0);
+        Assertions.assertTrue(collector.error instanceof IllegalArgumentException);
+        publisher.submit(dto(1, 10));
+        Assertions.assertTrue(collector.received.isEmpty());
+    }
+
+    private static ResourceValueDto dto(long city, float value) {
+        return new ResourceValueDto(EntityId.valueOf(city), new ResourceValue(new float[]{value}), 100);
+    }
+
+    private static final class Collector implements Flow.Subscriber<ResourceValueDto> {
+
+        private final List<ResourceValueDto> received = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        private boolean completed;
+
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ResourceValueDto item) {
+            this.received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+
+    private static final class Bonus extends BonusResources {
+
+        private Bonus(float[] ratio, float[] limit) {
+            super(ratio, limit);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.engine.feature.resource.transfer;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.engine.feature.resource.ResourceTransferDto;
+import be.yildizgames.engine.feature.resource.ResourceValue;
+import be.yildizgames.engine.feature.resource.TransferCause;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Grégory Van den Borre
+ */
+public class TransferNettingTest {
+
+    private static final PlayerId P1 = PlayerId.valueOf(1);
+
+    private static final PlayerId P2 = PlayerId.valueOf(2);
+
+    private static final PlayerId P3 = PlayerId.valueOf(3);
+
+    @Test
+    public void testOpposingFlowsCancel() {
+        NettedTransfers result = TransferNetting.net(Arrays.asList(
+                transfer(P1, P2, TransferCause.GIFT, 10, 5),
+                transfer(P2, P1, TransferCause.GIFT, 4, 5),
+                transfer(P1, P2, TransferCause.GIFT, 1, 0)));
+        Assertions.assertEquals(1, result.getTransfers().size());
+        Assertions.assertEquals(transfer(P1, P2, TransferCause.GIFT, 7, 0), result.getTransfers().get(0));
+        Assertions.assertEquals(3, result.getOriginals().size());
+    }
+
+    @Test
+    public void testMixedDirections() {
+        NettedTransfers result = TransferNetting.net(Arrays.asList(
+                transfer(P2, P1, TransferCause.COMMERCIAL, 10, 0),
+                transfer(P1, P2, TransferCause.COMMERCIAL, 0, 20)));
+        Assertions.assertEquals(2, result.getTransfers().size());
+        Assertions.assertEquals(transfer(P2, P1, TransferCause.COMMERCIAL, 10, 0), result.getTransfers().get(1));
+        Assertions.assertEquals(transfer(P1, P2, TransferCause.COMMERCIAL, 0, 20), result.getTransfers().get(0));
+    }
+
+    @Test
+    public void testCausesAndPairsAreSeparated() {
+        NettedTransfers result = TransferNetting.net(Arrays.asList(
+                transfer(P1, P2, TransferCause.GIFT, 10, 0),
+                transfer(P2, P1, TransferCause.COMMERCIAL, 10, 0),
+                transfer(P1, P3, TransferCause.GIFT, 10, 0),
+                transfer(P3, P3, TransferCause.GIFT, 10, 0)));
+        Assertions.assertEquals(3, result.getTransfers().size());
+        Assertions.assertEquals(4, result.getOriginals().size());
+    }
+
+    @Test
+    public void testFlushToSink() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<NettedTransfers> written = new ArrayList<>();
+            TransferNetting netting = new TransferNetting(written::add, Duration.ofHours(1), scheduler);
+            netting.submit(transfer(P1, P2, TransferCause.GIFT, 10, 0));
+            netting.submit(transfer(P2, P1, TransferCause.GIFT, 10, 0));
+            Assertions.assertEquals(2, netting.getPendingCount());
+            netting.flush();
+            Assertions.assertEquals(0, netting.getPendingCount());
+            Assertions.assertEquals(1, written.size());
+            Assertions.assertTrue(written.get(0).getTransfers().isEmpty());
+            netting.flush();
+            Assertions.assertEquals(1, written.size());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedSinkRetried() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<NettedTransfers> written = new ArrayList<>();
+            AtomicBoolean fail = new AtomicBoolean(true);
+            TransferNetting netting = new TransferNetting(t -> {
+                if (fail.get()) {
+                    throw new IllegalStateException("Sink unavailable");
+                }
+                written.add(t);
+            }, Duration.ofHours(1), scheduler);
+            netting.submit(transfer(P1, P2, TransferCause.GIFT, 10, 0));
+            netting.flush();
+            Assertions.assertEquals(1, netting.getPendingCount());
+            netting.submit(transfer(P2, P1, TransferCause.GIFT, 4, 0));
+            fail.set(false);
+            netting.flush();
+            Assertions.assertEquals(0, netting.getPendingCount());
+            Assertions.assertEquals(1, written.size());
+            Assertions.assertEquals(List.of(transfer(P1, P2, TransferCause.GIFT, 6, 0)), written.get(0).getTransfers());
+            Assertions.assertEquals(2, written.get(0).getOriginals().size());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidTransferRejectedAlone() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<NettedTransfers> written = new ArrayList<>();
+            TransferNetting netting = new TransferNetting(written::add, Duration.ofHours(1), scheduler);
+            netting.submit(transfer(P1, P2, TransferCause.GIFT, 10, 0));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> netting.submit(new ResourceTransferDto(P2, P1, new ResourceValue(new float[]{1, 2, 3}), TransferCause.GIFT)));
+            netting.submit(transfer(P2, P1, TransferCause.GIFT, 4, 0));
+            netting.flush();
+            Assertions.assertEquals(1, written.size());
+            Assertions.assertEquals(List.of(transfer(P1, P2, TransferCause.GIFT, 6, 0)), written.get(0).getTransfers());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static ResourceTransferDto transfer(PlayerId giver, PlayerId receiver, TransferCause cause, float r0, float r1) {
+        return new ResourceTransferDto(receiver, giver, new ResourceValue(new float[]{r0, r1}), cause);
+    }
+}